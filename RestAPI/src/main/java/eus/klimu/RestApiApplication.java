@@ -24,8 +24,7 @@ import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.io.File;
 import java.nio.file.Files;
@@ -40,6 +39,7 @@ import java.util.List;
 import java.util.Random;
 
 @Slf4j
+@EnableScheduling
 @SpringBootApplication
 public class RestApiApplication {
 
@@ -124,11 +124,6 @@ public class RestApiApplication {
         SpringApplication.run(RestApiApplication.class, args);
     }
 
-    @Bean
-    PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-
     /**
      * Generate the default elements for the application. The function checks if the elements have already been
      * created and if they exist in the database it won't create them.
@@ -183,9 +178,7 @@ public class RestApiApplication {
             }
             if (userService.countAll() <= 0) {
                 log.info("Generating default users klimu.user and klimu.admin");
-                PasswordEncoder passwordEncoder = passwordEncoder();
-                appUsers.forEach(user -> user.setPassword(passwordEncoder.encode(user.getPassword())));
-
+                // The passwords are hashed by the user service.
                 userService.saveAllUsers(appUsers);
                 for (AppUser user : appUsers) {
                     roleService.addRoleToUser(user.getUsername(), roles.get(0).getName());
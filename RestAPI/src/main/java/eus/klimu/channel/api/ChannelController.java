@@ -3,6 +3,7 @@ package eus.klimu.channel.api;
 import eus.klimu.channel.domain.model.Channel;
 import eus.klimu.channel.domain.model.ChannelDTO;
 import eus.klimu.channel.domain.service.definition.ChannelService;
+import eus.klimu.pagination.KeysetPagination;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -11,6 +12,8 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
@@ -28,6 +31,10 @@ public class ChannelController {
      * A class that allows modifying the channels.
      */
     private final ChannelService channelService;
+    /**
+     * Reads the lists by pages.
+     */
+    private final KeysetPagination keysetPagination;
 
     /**
      * <p>Get a channel based on its ID.</p>
@@ -82,23 +89,52 @@ public class ChannelController {
     }
 
     /**
-     * <p>Get all the Channels from the database.</p>
+     * <p>Get all the Channels from the database. They are read by batches and written as they are read, so the
+     * memory used doesn't depend on the amount of channels.</p>
+     *
+     * <p><a href="https://klimu.eus/RestAPI/channel/all">https://klimu.eus/RestAPI/channel/all</a></p>
      *
      * <ul>
      *     <li>Produces: application/json</li>
      *     <li>Requires: Access and Refresh tokens as headers.</li>
      * </ul>
      *
-     * <p><a href='https://klimu.eus/RestAPI/channel/all'>https://klimu.eus/RestAPI/channel/all</a></p>
+     * @param response The response the channels are written to.
+     * @throws IOException Generated if the response could not be written.
+     */
+    @GetMapping(
+            value = "/all",
+            params = {"!after", "!limit"},
+            produces = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public void getAllChannels(HttpServletResponse response) throws IOException {
+        keysetPagination.stream(response, channelService::getChannelsAfter, Channel::getId);
+    }
+
+    /**
+     * <p>Get a page of the Channels from the database, in order of their ID. The ID to continue from is sent on
+     * the X-Next-Cursor header, and it's missing on the last page.</p>
+     *
+     * <p><a href="https://klimu.eus/RestAPI/channel/all?after={cursor}&limit={limit}">https://klimu.eus/RestAPI/channel/all?after={cursor}&limit={limit}</a></p>
+     *
+     * <ul>
+     *     <li>Produces: application/json</li>
+     *     <li>Requires: Access and Refresh tokens as headers.</li>
+     * </ul>
      *
-     * @return A list with all the channels from the database.
+     * @param after The ID of the last channel of the previous page, none for the first page.
+     * @param limit The maximum amount of channels on the page, up to 1000.
+     * @return A 200 ok with the page or a 400 bad request if the parameters are not valid.
      */
     @GetMapping(
             value = "/all",
             produces = {MediaType.APPLICATION_JSON_VALUE}
     )
-    public ResponseEntity<List<Channel>> getAllChannels() {
-        return ResponseEntity.ok().body(channelService.getAllChannels());
+    public ResponseEntity<List<Channel>> getAllChannels(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "500") int limit
+    ) {
+        return keysetPagination.page(channelService::getChannelsAfter, Channel::getId, after, limit);
     }
 
     /**
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -24,7 +25,8 @@ public class Channel {
      * The identification number of the channel.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "channel_seq")
+    @GenericGenerator(name = "channel_seq", strategy = "eus.klimu.database.PooledSequenceGenerator")
     private Long id;
     /**
      * The name of the channel.
@@ -0,0 +1,34 @@
+package eus.klimu.channel.domain.model;
+
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+import eus.klimu.notification.domain.dispatch.Recipient;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * The notifications of a user whose digest window has ended, ready to be sent as a single email.
+ */
+@Getter
+@AllArgsConstructor
+public class EmailDigest {
+
+    /**
+     * The user the digest is sent to.
+     */
+    private final Recipient recipient;
+    /**
+     * The notifications listed on the digest, oldest first.
+     */
+    private final List<DeliveryBatch> notifications;
+    /**
+     * The notifications that didn't fit on the digest.
+     */
+    private final int omitted;
+    /**
+     * The identification numbers of the entries the digest was built from.
+     */
+    private final List<Long> entryIds;
+
+}
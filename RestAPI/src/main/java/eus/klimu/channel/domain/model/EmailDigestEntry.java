@@ -0,0 +1,59 @@
+package eus.klimu.channel.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A notification held for the email digest of a user. The entries are kept on the database until the digest is
+ * sent, so they survive a restart and any instance of the application can send them once the window has ended.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "email_digest")
+@Table(indexes = @Index(name = "idx_email_digest_email_created", columnList = "email, createdAt"))
+public class EmailDigestEntry {
+
+    /**
+     * The identification number of the entry.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "email_digest_seq")
+    @GenericGenerator(name = "email_digest_seq", strategy = "eus.klimu.database.PooledSequenceGenerator")
+    private Long id;
+    /**
+     * The identification number of the AppUser.
+     */
+    private Long userId;
+    /**
+     * The username of the AppUser.
+     */
+    private String username;
+    /**
+     * The email the digest is sent to.
+     */
+    @Column(nullable = false)
+    private String email;
+    /**
+     * The identification number of the notification.
+     */
+    @Column(nullable = false)
+    private Long notificationId;
+    /**
+     * The date when the notification was added to the digest.
+     */
+    @Column(nullable = false)
+    private Date createdAt;
+    /**
+     * The time until which an instance is sending the entry, null if nobody is sending it.
+     */
+    private Date claimedUntil;
+
+}
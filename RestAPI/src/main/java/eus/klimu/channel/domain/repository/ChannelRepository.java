@@ -1,8 +1,10 @@
 package eus.klimu.channel.domain.repository;
 
 import eus.klimu.channel.domain.model.Channel;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -18,4 +20,12 @@ public interface ChannelRepository extends JpaRepository<Channel, Long> {
      */
     Optional<Channel> findChannelByName(String name);
 
+    /**
+     * Find the channels after an identification number, in order of their identification number.
+     * @param id The identification number of the last channel already read.
+     * @param pageable The maximum amount of channels.
+     * @return A list with the channels after that identification number.
+     */
+    List<Channel> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
 }
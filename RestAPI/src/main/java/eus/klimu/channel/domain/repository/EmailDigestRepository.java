@@ -0,0 +1,40 @@
+package eus.klimu.channel.domain.repository;
+
+import eus.klimu.channel.domain.model.EmailDigestEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Access to the database for the entries of the email digests.
+ * Extends from a JpaRepository.
+ */
+public interface EmailDigestRepository extends JpaRepository<EmailDigestEntry, Long> {
+
+    /**
+     * Lock the entries of the emails whose digest window has ended, skipping the ones locked by other instances.
+     * An email is due when its oldest entry nobody is sending was added before the cutoff.
+     * @param cutoff The time the oldest entry of an email must be older than.
+     * @param now The current time, the entries claimed until a later time are being sent.
+     * @param limit The maximum amount of emails.
+     * @return A list with the locked entries, by email and from the oldest.
+     */
+    @Query(value = "SELECT d.* FROM email_digest d WHERE d.email IN (" +
+            "SELECT due.email FROM (SELECT email FROM email_digest " +
+            "WHERE claimed_until IS NULL OR claimed_until < :now " +
+            "GROUP BY email HAVING MIN(created_at) <= :cutoff LIMIT :limit) due) " +
+            "AND (d.claimed_until IS NULL OR d.claimed_until < :now) " +
+            "ORDER BY d.email, d.created_at FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<EmailDigestEntry> lockDue(@Param("cutoff") Date cutoff, @Param("now") Date now, @Param("limit") int limit);
+
+    /**
+     * Count the emails with a digest waiting.
+     * @return The amount of different emails.
+     */
+    @Query("SELECT COUNT(DISTINCT d.email) FROM email_digest d")
+    long countEmails();
+
+}
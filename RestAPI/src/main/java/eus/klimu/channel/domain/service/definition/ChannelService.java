@@ -62,4 +62,12 @@ public interface ChannelService {
      */
     void deleteChannel(Channel channel);
 
+    /**
+     * Get a page of the channels, in order of their identification number.
+     * @param after The identification number of the last channel already read.
+     * @param limit The maximum amount of channels.
+     * @return A list with the channels after that identification number.
+     */
+    List<Channel> getChannelsAfter(long after, int limit);
+
 }
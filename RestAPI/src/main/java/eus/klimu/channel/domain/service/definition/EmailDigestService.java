@@ -0,0 +1,42 @@
+package eus.klimu.channel.domain.service.definition;
+
+import eus.klimu.channel.domain.model.EmailDigest;
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+import eus.klimu.notification.domain.dispatch.Recipient;
+
+import java.util.List;
+
+/**
+ * Definition of the different functions available for the email digests.
+ */
+public interface EmailDigestService {
+
+    /**
+     * Add a notification to the digest of several users.
+     * @param batch The notification.
+     * @param recipients The users, with an email.
+     */
+    void hold(DeliveryBatch batch, List<Recipient> recipients);
+
+    /**
+     * Claim the digests whose window has ended, so no other instance sends them meanwhile.
+     * @param windowMillis The time the notifications of a user are held.
+     * @param maxDigests The maximum amount of digests.
+     * @param maxPerDigest The maximum notifications listed on a digest, the next ones are only counted.
+     * @return The digests that have to be sent.
+     */
+    List<EmailDigest> claimDue(long windowMillis, int maxDigests, int maxPerDigest);
+
+    /**
+     * Remove the digests that have been sent.
+     * @param digests The digests that have been sent.
+     */
+    void complete(List<EmailDigest> digests);
+
+    /**
+     * Count the users with a digest waiting.
+     * @return The amount of emails with a digest.
+     */
+    long countWaiting();
+
+}
@@ -5,6 +5,7 @@ import eus.klimu.channel.domain.repository.ChannelRepository;
 import eus.klimu.channel.domain.service.definition.ChannelService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
@@ -110,4 +111,16 @@ public class ChannelServiceImp implements ChannelService {
         log.info("Deleting channel with id={}", channel.getId());
         channelRepository.delete(channel);
     }
+
+    /**
+     * Get a page of the channels from the database, in order of their identification number.
+     * @param after The identification number of the last channel already read.
+     * @param limit The maximum amount of channels.
+     * @return A list with the channels after that identification number.
+     */
+    @Override
+    public List<Channel> getChannelsAfter(long after, int limit) {
+        log.info("Fetching {} channels after id={}", limit, after);
+        return channelRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, limit));
+    }
 }
@@ -0,0 +1,161 @@
+package eus.klimu.channel.domain.service.implementation;
+
+import eus.klimu.channel.domain.model.EmailDigest;
+import eus.klimu.channel.domain.model.EmailDigestEntry;
+import eus.klimu.channel.domain.repository.EmailDigestRepository;
+import eus.klimu.channel.domain.service.definition.EmailDigestService;
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+import eus.klimu.notification.domain.dispatch.Recipient;
+import eus.klimu.notification.domain.model.Notification;
+import eus.klimu.notification.domain.repository.NotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The implementation of the email digest service. The notifications of each user are kept on the email_digest
+ * table until the digest is sent, and the digests are claimed for some time before being sent, so several
+ * instances of the application can send them without sending any of them twice.
+ */
+@Slf4j
+@Service
+@Transactional
+public class EmailDigestServiceImp implements EmailDigestService {
+
+    /**
+     * The connection with the email digest table on the database.
+     */
+    private final EmailDigestRepository digestRepository;
+    /**
+     * The connection with the notification table on the database.
+     */
+    private final NotificationRepository notificationRepository;
+    /**
+     * The time an instance has for sending the digests it claimed before others can claim them.
+     */
+    private final long leaseMillis;
+
+    /**
+     * Create a new instance of the email digest service.
+     * @param digestRepository The connection with the email digest table on the database.
+     * @param notificationRepository The connection with the notification table on the database.
+     * @param leaseMillis The time an instance has for sending the digests it claimed before others can claim them.
+     */
+    public EmailDigestServiceImp(
+            EmailDigestRepository digestRepository, NotificationRepository notificationRepository,
+            @Value("${klimu.channel.email.digest.lease-ms:60000}") long leaseMillis
+    ) {
+        this.digestRepository = digestRepository;
+        this.notificationRepository = notificationRepository;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * Add a notification to the digest of several users.
+     * @param batch The notification.
+     * @param recipients The users, with an email.
+     */
+    @Override
+    public void hold(DeliveryBatch batch, List<Recipient> recipients) {
+        Date now = new Date();
+        List<EmailDigestEntry> entries = new ArrayList<>(recipients.size());
+        recipients.forEach(recipient -> entries.add(new EmailDigestEntry(
+                null, recipient.getUserId(), recipient.getUsername(), recipient.getEmail(),
+                batch.getNotificationId(), now, null
+        )));
+        digestRepository.saveAll(entries);
+    }
+
+    /**
+     * Claim the digests whose window has ended. The entries are locked with SKIP LOCKED and marked as claimed for
+     * the lease time, if the instance doesn't complete them by then, any instance can claim them again.
+     * A notification held twice for the same user, or already removed, is only listed once, or not at all.
+     * @param windowMillis The time the notifications of a user are held.
+     * @param maxDigests The maximum amount of digests.
+     * @param maxPerDigest The maximum notifications listed on a digest, the next ones are only counted.
+     * @return The digests that have to be sent.
+     */
+    @Override
+    public List<EmailDigest> claimDue(long windowMillis, int maxDigests, int maxPerDigest) {
+        long now = System.currentTimeMillis();
+        List<EmailDigestEntry> entries = digestRepository.lockDue(new Date(now - windowMillis), new Date(now), maxDigests);
+        if (entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Date claimedUntil = new Date(now + leaseMillis);
+        entries.forEach(entry -> entry.setClaimedUntil(claimedUntil));
+        digestRepository.saveAll(entries);
+
+        Map<Long, Notification> notifications = notificationRepository.findAllById(
+                entries.stream().map(EmailDigestEntry::getNotificationId).collect(Collectors.toSet())
+        ).stream().collect(Collectors.toMap(Notification::getId, Function.identity()));
+
+        Map<String, List<EmailDigestEntry>> byEmail = new LinkedHashMap<>();
+        entries.forEach(entry -> byEmail.computeIfAbsent(entry.getEmail(), email -> new ArrayList<>()).add(entry));
+
+        List<EmailDigest> digests = new ArrayList<>(byEmail.size());
+        List<Long> empty = new ArrayList<>();
+        for (List<EmailDigestEntry> emailEntries : byEmail.values()) {
+            EmailDigestEntry first = emailEntries.get(0);
+            Recipient recipient = new Recipient(first.getUserId(), first.getUsername(), first.getEmail(), null, null);
+            List<Long> entryIds = emailEntries.stream().map(EmailDigestEntry::getId).collect(Collectors.toList());
+            Set<Long> listed = new HashSet<>();
+            List<DeliveryBatch> batches = new ArrayList<>();
+            int omitted = 0;
+
+            for (EmailDigestEntry entry : emailEntries) {
+                Notification notification = notifications.get(entry.getNotificationId());
+                if (notification == null || !listed.add(notification.getId())) {
+                    continue;
+                }
+                if (batches.size() < maxPerDigest) {
+                    batches.add(new DeliveryBatch(
+                            notification.getId(), notification.getMessage(), notification.getDate(),
+                            notification.getType().getName(), notification.getLocation().toString(),
+                            null, "Email", Collections.singletonList(recipient)
+                    ));
+                } else {
+                    omitted++;
+                }
+            }
+            if (batches.isEmpty()) {
+                empty.addAll(entryIds);
+            } else {
+                digests.add(new EmailDigest(recipient, batches, omitted, entryIds));
+            }
+        }
+        if (!empty.isEmpty()) {
+            log.info("Removing {} digest entries of notifications that no longer exist", empty.size());
+            digestRepository.deleteAllByIdInBatch(empty);
+        }
+        return digests;
+    }
+
+    /**
+     * Remove the digests that have been sent.
+     * @param digests The digests that have been sent.
+     */
+    @Override
+    public void complete(List<EmailDigest> digests) {
+        List<Long> ids = new ArrayList<>();
+        digests.forEach(digest -> ids.addAll(digest.getEntryIds()));
+        if (!ids.isEmpty()) {
+            digestRepository.deleteAllByIdInBatch(ids);
+        }
+    }
+
+    /**
+     * Count the users with a digest waiting.
+     * @return The amount of emails with a digest.
+     */
+    @Override
+    public long countWaiting() {
+        return digestRepository.countEmails();
+    }
+}
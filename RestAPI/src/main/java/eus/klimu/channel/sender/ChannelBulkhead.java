@@ -0,0 +1,210 @@
+package eus.klimu.channel.sender;
+
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a channel sender on its own bounded executor. When the queue of the channel is full the batch is rejected
+ * straight away instead of waiting, so a slow channel only fills its own queue and the other channels keep going.
+ */
+@Slf4j
+@ManagedResource(description = "Executor and metrics of a channel sender")
+public class ChannelBulkhead {
+
+    /**
+     * The sender of the channel.
+     */
+    private final ChannelSender sender;
+    /**
+     * The executor that runs the sender.
+     */
+    private final ThreadPoolExecutor executor;
+    /**
+     * The maximum time a batch can take, counting the time on the queue.
+     */
+    private final long timeoutMillis;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Create a new bulkhead for a channel sender.
+     * @param sender The sender of the channel.
+     * @param threads The amount of threads sending batches.
+     * @param queueSize The amount of batches that can wait for a thread.
+     * @param timeoutMillis The maximum time a batch can take, counting the time on the queue.
+     */
+    public ChannelBulkhead(ChannelSender sender, int threads, int queueSize, long timeoutMillis) {
+        String name = sender.getChannelName().toLowerCase();
+        AtomicInteger threadCount = new AtomicInteger();
+
+        this.sender = sender;
+        this.timeoutMillis = timeoutMillis;
+        this.executor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "channel-" + name + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * Get the sender of the channel.
+     * @return The sender of the channel.
+     */
+    public ChannelSender getSender() {
+        return sender;
+    }
+
+    /**
+     * Queue a batch on the executor of the channel.
+     * @param batch The batch that is going to be sent.
+     * @return A future with the outcome of each recipient.
+     * @throws ChannelSaturatedException Generated if the queue of the channel is full.
+     */
+    public Future<List<DeliveryOutcome>> submit(DeliveryBatch batch) {
+        try {
+            return executor.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    List<DeliveryOutcome> outcomes = sender.send(batch);
+                    outcomes.forEach(this::count);
+                    return outcomes;
+                } finally {
+                    long nanos = System.nanoTime() - start;
+                    batches.increment();
+                    totalNanos.add(nanos);
+                    maxNanos.accumulateAndGet(nanos, Math::max);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ChannelSaturatedException("The queue of channel " + sender.getChannelName() + " is full");
+        }
+    }
+
+    /**
+     * Send a batch on the executor of the channel and wait for the result.
+     * @param batch The batch that is going to be sent.
+     * @return The outcome of each recipient.
+     * @throws ChannelSaturatedException Generated if the queue is full or the batch took too long.
+     */
+    public List<DeliveryOutcome> send(DeliveryBatch batch) {
+        Future<List<DeliveryOutcome>> future = submit(batch);
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new ChannelSaturatedException("Channel " + sender.getChannelName() + " didn't answer on time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ChannelSaturatedException("Interrupted while sending on channel " + sender.getChannelName());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Stop the executor of the channel, waiting for the batches being sent.
+     * @param waitMillis The maximum time to wait.
+     * @throws InterruptedException Generated if the thread was interrupted while waiting.
+     */
+    public void shutdown(long waitMillis) throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(waitMillis, TimeUnit.MILLISECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void count(DeliveryOutcome outcome) {
+        switch (outcome.getStatus()) {
+            case SENT:
+                sent.increment(); break;
+            case QUEUED:
+                queued.increment(); break;
+            case FAILED:
+                failed.increment(); break;
+            case RETRY:
+                retried.increment(); break;
+            default:
+                skipped.increment(); break;
+        }
+    }
+
+    @ManagedAttribute(description = "Batches waiting for a thread")
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    @ManagedAttribute(description = "Threads currently sending batches")
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @ManagedAttribute(description = "Batches sent, successfully or not")
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    @ManagedAttribute(description = "Batches rejected because the queue was full")
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @ManagedAttribute(description = "Messages accepted by the channel")
+    public long getSent() {
+        return sent.sum();
+    }
+
+    @ManagedAttribute(description = "Messages queued by the channel for a later delivery")
+    public long getQueued() {
+        return queued.sum();
+    }
+
+    @ManagedAttribute(description = "Messages rejected by the channel")
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @ManagedAttribute(description = "Messages the channel couldn't take right now, sent again later")
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    @ManagedAttribute(description = "Recipients that can't be reached on the channel")
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    @ManagedAttribute(description = "Average time to send a batch in milliseconds")
+    public double getAverageLatencyMillis() {
+        long count = batches.sum();
+        return count == 0 ? 0 : totalNanos.sum() / (double) count / 1_000_000.0;
+    }
+
+    @ManagedAttribute(description = "Longest time to send a batch in milliseconds")
+    public double getMaxLatencyMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+}
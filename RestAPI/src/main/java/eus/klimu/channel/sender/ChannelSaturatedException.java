@@ -0,0 +1,17 @@
+package eus.klimu.channel.sender;
+
+/**
+ * Generated when a batch can't be handed to a channel because its queue is full or the channel didn't answer
+ * on time. The delivery should be retried later.
+ */
+public class ChannelSaturatedException extends RuntimeException {
+
+    /**
+     * Create a new instance of the exception.
+     * @param msg The reason why the batch was not sent.
+     */
+    public ChannelSaturatedException(String msg) {
+        super(msg);
+    }
+
+}
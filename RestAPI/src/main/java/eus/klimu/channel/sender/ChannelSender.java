@@ -0,0 +1,28 @@
+package eus.klimu.channel.sender;
+
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+
+import java.util.List;
+
+/**
+ * Sends the notifications through a communication channel. Each implementation registered as a bean handles
+ * the channel with the same name (Telegram, Email, Desktop...), and runs on its own bounded executor, see
+ * {@link ChannelBulkhead}, so a slow channel never holds back the others.
+ */
+public interface ChannelSender {
+
+    /**
+     * Get the name of the channel this sender handles.
+     * @return The name of the channel, as stored on the database.
+     */
+    String getChannelName();
+
+    /**
+     * Send a notification to a group of recipients.
+     * @param batch The notification and its recipients.
+     * @return The outcome of each recipient of the batch.
+     * @throws RuntimeException Generated if the whole batch could not be sent, so it's retried later.
+     */
+    List<DeliveryOutcome> send(DeliveryBatch batch);
+
+}
@@ -0,0 +1,99 @@
+package eus.klimu.channel.sender;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.env.Environment;
+import org.springframework.jmx.export.MBeanExporter;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.*;
+
+/**
+ * The senders of every channel, each one wrapped on its own bulkhead. The size of each bulkhead can be configured
+ * per channel, for example <i>klimu.channel.email.threads</i>, falling back to <i>klimu.channel.default.*</i>.
+ */
+@Slf4j
+@Component
+public class ChannelSenderRegistry {
+
+    private static final String PREFIX = "klimu.channel.";
+
+    /**
+     * The bulkheads, by the lower case name of the channel.
+     */
+    private final Map<String, ChannelBulkhead> bulkheads = new HashMap<>();
+
+    /**
+     * Wrap every channel sender on a bulkhead and publish its metrics.
+     * @param senders The channel senders registered as beans.
+     * @param environment The configuration of the application.
+     * @param exporters The JMX exporter, if JMX is enabled.
+     */
+    public ChannelSenderRegistry(
+            ObjectProvider<ChannelSender> senders, Environment environment, ObjectProvider<MBeanExporter> exporters
+    ) {
+        MBeanExporter exporter = exporters.getIfAvailable();
+
+        senders.orderedStream().forEach(sender -> {
+            String name = sender.getChannelName().toLowerCase(Locale.ROOT);
+            ChannelBulkhead bulkhead = new ChannelBulkhead(
+                    sender,
+                    property(environment, name, "threads", Integer.class, 2),
+                    property(environment, name, "queue-size", Integer.class, 100),
+                    property(environment, name, "timeout-ms", Long.class, 30000L)
+            );
+            bulkheads.put(name, bulkhead);
+
+            if (exporter != null) {
+                try {
+                    exporter.registerManagedResource(
+                            bulkhead, ObjectName.getInstance("eus.klimu:type=ChannelSender,name=" + name)
+                    );
+                } catch (MalformedObjectNameException e) {
+                    log.warn("Couldn't publish the metrics of channel {}", name);
+                }
+            }
+            log.info("Registered sender for channel {}", sender.getChannelName());
+        });
+    }
+
+    /**
+     * Get the bulkhead of a channel.
+     * @param channelName The name of the channel.
+     * @return The bulkhead of the channel, or null if there is no sender for it.
+     */
+    public ChannelBulkhead get(String channelName) {
+        return channelName != null ? bulkheads.get(channelName.toLowerCase(Locale.ROOT)) : null;
+    }
+
+    /**
+     * Get the names of the channels with a sender.
+     * @return The lower case names of the channels.
+     */
+    public Set<String> getChannelNames() {
+        return Collections.unmodifiableSet(bulkheads.keySet());
+    }
+
+    /**
+     * Stop every bulkhead when the application is closed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (ChannelBulkhead bulkhead : bulkheads.values()) {
+            try {
+                bulkhead.shutdown(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static <T> T property(Environment environment, String channel, String key, Class<T> type, T defaultValue) {
+        T value = environment.getProperty(PREFIX + channel + "." + key, type);
+        return value != null ? value : environment.getProperty(PREFIX + "default." + key, type, defaultValue);
+    }
+}
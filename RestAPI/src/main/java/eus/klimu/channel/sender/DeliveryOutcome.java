@@ -0,0 +1,63 @@
+package eus.klimu.channel.sender;
+
+import eus.klimu.notification.domain.dispatch.Recipient;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * The result of sending a notification to a single recipient.
+ */
+@Getter
+@AllArgsConstructor
+public class DeliveryOutcome {
+
+    /**
+     * The possible results of a delivery.
+     */
+    public enum Status {
+        /** The message was accepted by the channel. */
+        SENT,
+        /** The message was queued by the channel and will be sent later. */
+        QUEUED,
+        /** The channel rejected the message for good, sending it again won't work. */
+        FAILED,
+        /** The channel couldn't take the message right now, it can be sent again later. */
+        RETRY,
+        /** The recipient can't be reached on the channel, for example it has no contact for it. */
+        SKIPPED
+    }
+
+    /**
+     * The recipient of the message.
+     */
+    private final Recipient recipient;
+    /**
+     * The result of the delivery.
+     */
+    private final Status status;
+    /**
+     * The reason of the failure, retry or skip, null if the message was sent.
+     */
+    private final String detail;
+
+    public static DeliveryOutcome sent(Recipient recipient) {
+        return new DeliveryOutcome(recipient, Status.SENT, null);
+    }
+
+    public static DeliveryOutcome queued(Recipient recipient) {
+        return new DeliveryOutcome(recipient, Status.QUEUED, null);
+    }
+
+    public static DeliveryOutcome failed(Recipient recipient, String detail) {
+        return new DeliveryOutcome(recipient, Status.FAILED, detail);
+    }
+
+    public static DeliveryOutcome retry(Recipient recipient, String detail) {
+        return new DeliveryOutcome(recipient, Status.RETRY, detail);
+    }
+
+    public static DeliveryOutcome skipped(Recipient recipient, String detail) {
+        return new DeliveryOutcome(recipient, Status.SKIPPED, detail);
+    }
+
+}
@@ -0,0 +1,8 @@
+package eus.klimu.channel.sender;
+
+/**
+ * Published when a Desktop notification has been saved, so the stream of this instance reads it straight away
+ * instead of waiting for the next poll.
+ */
+public class DesktopNotificationEvent {
+}
@@ -0,0 +1,40 @@
+package eus.klimu.channel.sender;
+
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+import eus.klimu.notification.domain.service.definition.DesktopEventService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Send the notifications to the desktop application. The desktop clients may be connected to any instance, so
+ * the batch is saved as a Desktop event that the stream of every instance reads, and a
+ * {@link DesktopNotificationEvent} wakes the stream of this instance.
+ */
+@Component
+@RequiredArgsConstructor
+public class DesktopSender implements ChannelSender {
+
+    private final DesktopEventService desktopEventService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    public String getChannelName() {
+        return "Desktop";
+    }
+
+    /**
+     * Publish the notification for the desktop clients of the recipients.
+     * @param batch The notification and its recipients.
+     * @return A sent outcome for every recipient.
+     */
+    @Override
+    public List<DeliveryOutcome> send(DeliveryBatch batch) {
+        desktopEventService.publish(batch);
+        eventPublisher.publishEvent(new DesktopNotificationEvent());
+        return batch.getRecipients().stream().map(DeliveryOutcome::sent).collect(Collectors.toList());
+    }
+}
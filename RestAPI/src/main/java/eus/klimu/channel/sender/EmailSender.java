@@ -0,0 +1,374 @@
+package eus.klimu.channel.sender;
+
+import eus.klimu.channel.domain.model.EmailDigest;
+import eus.klimu.channel.domain.service.definition.EmailDigestService;
+import eus.klimu.channel.sender.smtp.SmtpConnection;
+import eus.klimu.channel.sender.smtp.SmtpConnectionPool;
+import eus.klimu.channel.sender.smtp.SmtpException;
+import eus.klimu.channel.sender.smtp.SmtpMessage;
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+import eus.klimu.notification.domain.dispatch.Recipient;
+import eus.klimu.security.EmailManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Send the notifications by email to the users that have an email. The SMTP sessions are kept on a pool and
+ * every session sends many emails, pipelining the commands when the server allows it. Optionally, the
+ * notifications of a user within a time window are merged into a single digest email. The notifications waiting
+ * for a digest are kept on the database, see {@link EmailDigestService}, so they are not lost on a restart.
+ * Only enabled when a mail server is configured.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "klimu.channel.email", name = "host")
+@ManagedResource(objectName = "eus.klimu:type=EmailSender", description = "Pooled SMTP delivery of the emails")
+public class EmailSender implements ChannelSender {
+
+    private final SmtpConnectionPool pool;
+    private final String from;
+    private final int maxMessagesPerConnection;
+    /**
+     * The notifications waiting to be sent as a digest.
+     */
+    private final EmailDigestService digestService;
+    private final long digestWindowMillis;
+    private final int digestMaxUsers;
+    private final int digestMaxNotifications;
+    /**
+     * Sends the digests whose window has ended, null if the digests are disabled.
+     */
+    private final ScheduledExecutorService digestFlusher;
+
+    private final LongAdder emailsSent = new LongAdder();
+    private final LongAdder emailsFailed = new LongAdder();
+    private final LongAdder digestsSent = new LongAdder();
+    private final LongAdder notificationsDigested = new LongAdder();
+
+    /**
+     * Create a new instance of the email sender.
+     * @param digestService The managing service for the email digests.
+     * @param host The host of the mail server.
+     * @param port The port of the mail server.
+     * @param username The username of the mail account, empty if the server doesn't need authentication.
+     * @param password The password of the mail account.
+     * @param from The address the emails are sent from.
+     * @param startTls If the connection has to be upgraded to TLS before sending the emails.
+     * @param timeoutMillis The maximum time for connecting and for waiting for an answer of the server.
+     * @param maxConnections The maximum SMTP sessions open at the same time.
+     * @param maxIdleMillis The maximum time a session can stay unused on the pool.
+     * @param maxMessagesPerConnection The emails sent on a session before it's replaced by a new one.
+     * @param digestWindowMillis The time the notifications of a user are held for a digest, 0 to disable digests.
+     * @param digestMaxUsers The maximum digests sent on each flush.
+     * @param digestMaxNotifications The maximum notifications listed on a single digest.
+     * @param digestFlushMillis How often the digests whose window has ended are sent.
+     */
+    public EmailSender(
+            EmailDigestService digestService,
+            @Value("${klimu.channel.email.host}") String host,
+            @Value("${klimu.channel.email.port:25}") int port,
+            @Value("${klimu.channel.email.username:}") String username,
+            @Value("${klimu.channel.email.password:}") String password,
+            @Value("${klimu.channel.email.from:noreply@klimu.eus}") String from,
+            @Value("${klimu.channel.email.starttls:false}") boolean startTls,
+            @Value("${klimu.channel.email.timeout-ms:10000}") int timeoutMillis,
+            @Value("${klimu.channel.email.pool.max-connections:4}") int maxConnections,
+            @Value("${klimu.channel.email.pool.max-idle-ms:30000}") long maxIdleMillis,
+            @Value("${klimu.channel.email.pool.max-messages:100}") int maxMessagesPerConnection,
+            @Value("${klimu.channel.email.digest.window-ms:0}") long digestWindowMillis,
+            @Value("${klimu.channel.email.digest.max-users:1000}") int digestMaxUsers,
+            @Value("${klimu.channel.email.digest.max-notifications:50}") int digestMaxNotifications,
+            @Value("${klimu.channel.email.digest.flush-ms:1000}") long digestFlushMillis
+    ) {
+        this.from = from;
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.digestService = digestService;
+        this.digestWindowMillis = digestWindowMillis;
+        this.digestMaxUsers = digestMaxUsers;
+        this.digestMaxNotifications = digestMaxNotifications;
+        this.pool = new SmtpConnectionPool(
+                host, port, username, password, startTls, timeoutMillis,
+                maxConnections, maxIdleMillis, maxMessagesPerConnection
+        );
+
+        if (digestWindowMillis > 0) {
+            this.digestFlusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "email-digest");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.digestFlusher.scheduleWithFixedDelay(
+                    this::flush, digestFlushMillis, digestFlushMillis, TimeUnit.MILLISECONDS
+            );
+        } else {
+            this.digestFlusher = null;
+        }
+    }
+
+    @Override
+    public String getChannelName() {
+        return "Email";
+    }
+
+    /**
+     * Send the notification to every recipient of the batch with an email. If the digests are enabled the
+     * notification is saved on the digest of each recipient instead.
+     * @param batch The notification and its recipients.
+     * @return The outcome of each recipient of the batch.
+     * @throws UncheckedIOException Generated if the mail server can't be reached, so the batch is retried later.
+     */
+    @Override
+    public List<DeliveryOutcome> send(DeliveryBatch batch) {
+        List<DeliveryOutcome> outcomes = new ArrayList<>(batch.getRecipients().size());
+        List<Recipient> pending = new ArrayList<>();
+
+        for (Recipient recipient : batch.getRecipients()) {
+            if (recipient.getEmail() == null || recipient.getEmail().isEmpty()) {
+                outcomes.add(DeliveryOutcome.skipped(recipient, "The user has no email"));
+            } else if (!EmailManager.isValid(recipient.getEmail())) {
+                outcomes.add(DeliveryOutcome.skipped(recipient, "The email of the user is not valid"));
+            } else {
+                pending.add(recipient);
+            }
+        }
+        if (pending.isEmpty()) {
+            return outcomes;
+        }
+        if (digestFlusher != null) {
+            digestService.hold(batch, pending);
+            pending.forEach(recipient -> outcomes.add(DeliveryOutcome.queued(recipient)));
+            return outcomes;
+        }
+
+        String subject = subject(batch);
+        List<SmtpMessage> messages = new ArrayList<>(pending.size());
+        pending.forEach(recipient -> messages.add(
+                new SmtpMessage(from, recipient.getEmail(), subject, batch.getMessage())
+        ));
+
+        SmtpException[] failures = deliver(messages);
+        for (int i = 0; i < pending.size(); i++) {
+            if (failures[i] == null) {
+                outcomes.add(DeliveryOutcome.sent(pending.get(i)));
+            } else if (failures[i].isPermanent()) {
+                outcomes.add(DeliveryOutcome.failed(pending.get(i), failures[i].getMessage()));
+            } else {
+                // A 4xx answer, the mail server may take the email later.
+                outcomes.add(DeliveryOutcome.retry(pending.get(i), failures[i].getMessage()));
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Send a list of emails on the pooled sessions. If a session breaks, the emails left are sent on another one,
+     * as long as the broken session managed to send something or it's the first time it happens.
+     * @param messages The emails that are going to be sent.
+     * @return The answer of the server to each email it rejected, null for the emails that were sent.
+     * @throws UncheckedIOException Generated if some emails couldn't be sent because the mail server can't be
+     * reached. The emails before them were sent.
+     */
+    private SmtpException[] deliver(List<SmtpMessage> messages) {
+        SmtpException[] failures = new SmtpException[messages.size()];
+        int next = 0;
+        int failedAttempts = 0;
+
+        while (next < messages.size()) {
+            SmtpConnection connection;
+            try {
+                connection = pool.borrow();
+            } catch (IOException e) {
+                log.warn("Couldn't get an SMTP connection, {}", e.getMessage());
+                throw unreachable(failures, next, e);
+            }
+
+            int start = next;
+            int[] progress = {0};
+            List<SmtpMessage> chunk = messages.subList(start, Math.min(messages.size(), start + maxMessagesPerConnection));
+            try {
+                connection.sendAll(chunk, (index, rejection) -> {
+                    failures[start + index] = rejection;
+                    progress[0] = index + 1;
+                });
+                pool.release(connection);
+                next = start + chunk.size();
+            } catch (IOException e) {
+                pool.discard(connection);
+                next = start + progress[0];
+                failedAttempts = progress[0] > 0 ? 1 : failedAttempts + 1;
+                if (failedAttempts > 1) {
+                    log.warn("Couldn't send the emails, {}", e.getMessage());
+                    throw unreachable(failures, next, e);
+                }
+            }
+        }
+
+        count(failures, failures.length);
+        return failures;
+    }
+
+    /**
+     * Count the emails handled before the mail server became unreachable and build the exception for the rest.
+     * @param failures The answer of the server to each email it rejected.
+     * @param next The first email that wasn't sent.
+     * @param cause The error of the connection.
+     * @return The exception that has to be thrown.
+     */
+    private UncheckedIOException unreachable(SmtpException[] failures, int next, IOException cause) {
+        count(failures, next);
+        emailsFailed.add(failures.length - (long) next);
+        return new UncheckedIOException(
+                (failures.length - next) + " email(s) couldn't be sent, the mail server can't be reached", cause
+        );
+    }
+
+    private void count(SmtpException[] failures, int to) {
+        for (int i = 0; i < to; i++) {
+            if (failures[i] == null) {
+                emailsSent.increment();
+            } else {
+                emailsFailed.increment();
+            }
+        }
+    }
+
+    /**
+     * Send the digests whose window has ended, one email per user. A digest is removed once the mail server has
+     * answered it, if the server can't be reached the digests are left on the database and sent again once their
+     * claim expires.
+     */
+    private void flush() {
+        try {
+            List<EmailDigest> digests = digestService.claimDue(digestWindowMillis, digestMaxUsers, digestMaxNotifications);
+            if (digests.isEmpty()) {
+                return;
+            }
+            List<SmtpMessage> messages = new ArrayList<>(digests.size());
+            for (EmailDigest digest : digests) {
+                messages.add(toMessage(digest));
+            }
+
+            SmtpException[] failures = deliver(messages);
+            for (int i = 0; i < failures.length; i++) {
+                if (failures[i] != null) {
+                    log.warn("Couldn't send the digest of user {}: {}",
+                            digests.get(i).getRecipient().getUserId(), failures[i].getMessage());
+                }
+            }
+            digestService.complete(digests);
+            digestsSent.add(digests.size());
+            digests.forEach(digest -> notificationsDigested.add(
+                    digest.getNotifications().size() + (long) digest.getOmitted()
+            ));
+        } catch (RuntimeException e) {
+            // Keep the flusher alive, the digests are still on the database and will be sent later.
+            log.error("Couldn't send the email digests", e);
+        }
+    }
+
+    /**
+     * Build the email of a digest. A digest with a single notification is sent as a normal email.
+     * @param digest The digest.
+     * @return The email.
+     */
+    private SmtpMessage toMessage(EmailDigest digest) {
+        List<DeliveryBatch> notifications = digest.getNotifications();
+        String email = digest.getRecipient().getEmail();
+
+        if (notifications.size() == 1 && digest.getOmitted() == 0) {
+            DeliveryBatch notification = notifications.get(0);
+            return new SmtpMessage(from, email, subject(notification), notification.getMessage());
+        }
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm");
+        StringBuilder body = new StringBuilder();
+        for (DeliveryBatch notification : notifications) {
+            body.append(subject(notification));
+            if (notification.getDate() != null) {
+                body.append(" (").append(dateFormat.format(notification.getDate())).append(')');
+            }
+            body.append('\n').append(notification.getMessage()).append("\n\n");
+        }
+        if (digest.getOmitted() > 0) {
+            body.append("... y ").append(digest.getOmitted()).append(" notificaciones más.\n");
+        }
+        int total = notifications.size() + digest.getOmitted();
+        return new SmtpMessage(from, email, "Klimu: " + total + " notificaciones nuevas", body.toString());
+    }
+
+    private static String subject(DeliveryBatch batch) {
+        return batch.getTypeName() + " - " + batch.getLocation();
+    }
+
+    /**
+     * Stop sending digests and close the SMTP sessions when the application is closed. The digests waiting stay
+     * on the database and are sent by any instance once their window ends.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (digestFlusher != null) {
+            digestFlusher.shutdown();
+            try {
+                digestFlusher.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        pool.close();
+    }
+
+    @ManagedAttribute(description = "Emails accepted by the mail server")
+    public long getEmailsSent() {
+        return emailsSent.sum();
+    }
+
+    @ManagedAttribute(description = "Emails rejected by the mail server or not sent")
+    public long getEmailsFailed() {
+        return emailsFailed.sum();
+    }
+
+    @ManagedAttribute(description = "SMTP sessions opened")
+    public long getConnectionsOpened() {
+        return pool.getOpened();
+    }
+
+    @ManagedAttribute(description = "Times an idle SMTP session was reused")
+    public long getConnectionsReused() {
+        return pool.getReused();
+    }
+
+    @ManagedAttribute(description = "Open SMTP sessions not being used")
+    public int getConnectionsIdle() {
+        return pool.getIdle();
+    }
+
+    @ManagedAttribute(description = "Digest emails sent")
+    public long getDigestsSent() {
+        return digestsSent.sum();
+    }
+
+    @ManagedAttribute(description = "Notifications merged into digest emails")
+    public long getNotificationsDigested() {
+        return notificationsDigested.sum();
+    }
+
+    @ManagedAttribute(description = "Users with a digest waiting, on every instance")
+    public long getDigestsWaiting() {
+        return digestFlusher != null ? digestService.countWaiting() : 0;
+    }
+}
@@ -0,0 +1,131 @@
+package eus.klimu.channel.sender;
+
+import eus.klimu.channel.sender.telegram.TelegramBotClient;
+import eus.klimu.channel.sender.telegram.TelegramDeliveryScheduler;
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+import eus.klimu.notification.domain.dispatch.Recipient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.MBeanExporter;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Send the notifications as Telegram messages through the Bot API, to the users that have a telegram ID.
+ * The messages are handed to a {@link TelegramDeliveryScheduler}, which sends them as fast as the limits of
+ * Telegram allow. Only enabled when a bot token is configured.
+ * <p>
+ * The outbox entry of a notification is completed once its messages are queued, not once they are delivered, as
+ * a large alert takes longer to go out than the lease of the entry. The messages still queued when the application
+ * stops are given {@code klimu.channel.telegram.shutdown-ms} to be sent, if the process is killed they are lost.
+ * </p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "klimu.channel.telegram", name = "bot-token")
+public class TelegramSender implements ChannelSender {
+
+    /**
+     * Sends the queued messages respecting the limits of the Bot API.
+     */
+    private final TelegramDeliveryScheduler scheduler;
+    /**
+     * The maximum time to wait for the queued messages when the application is closed.
+     */
+    private final long shutdownMillis;
+
+    /**
+     * Create a new instance of the Telegram sender.
+     * @param botToken The token of the Telegram bot.
+     * @param apiUrl The base URL of the Telegram Bot API.
+     * @param connectTimeoutMillis The maximum time for connecting to the API.
+     * @param readTimeoutMillis The maximum time for reading an answer of the API.
+     * @param globalPerSecond The maximum messages per second for the whole bot.
+     * @param chatIntervalMillis The minimum time between two messages to the same private chat.
+     * @param groupIntervalMillis The minimum time between two messages to the same group.
+     * @param maxPending The maximum messages waiting to be sent.
+     * @param maxInFlight The amount of calls to the API that can be made at the same time.
+     * @param maxAttempts The times a message is tried before giving up.
+     * @param shutdownMillis The maximum time to wait for the queued messages when the application is closed.
+     * @param exporters The JMX exporter, if JMX is enabled.
+     */
+    public TelegramSender(
+            @Value("${klimu.channel.telegram.bot-token}") String botToken,
+            @Value("${klimu.channel.telegram.api-url:https://api.telegram.org}") String apiUrl,
+            @Value("${klimu.channel.telegram.connect-timeout-ms:5000}") int connectTimeoutMillis,
+            @Value("${klimu.channel.telegram.read-timeout-ms:10000}") int readTimeoutMillis,
+            @Value("${klimu.channel.telegram.global-per-second:30}") int globalPerSecond,
+            @Value("${klimu.channel.telegram.chat-interval-ms:1000}") long chatIntervalMillis,
+            @Value("${klimu.channel.telegram.group-interval-ms:3000}") long groupIntervalMillis,
+            @Value("${klimu.channel.telegram.max-pending:100000}") int maxPending,
+            @Value("${klimu.channel.telegram.max-in-flight:8}") int maxInFlight,
+            @Value("${klimu.channel.telegram.max-attempts:3}") int maxAttempts,
+            @Value("${klimu.channel.telegram.shutdown-ms:30000}") long shutdownMillis,
+            ObjectProvider<MBeanExporter> exporters
+    ) {
+        this.shutdownMillis = shutdownMillis;
+        this.scheduler = new TelegramDeliveryScheduler(
+                new TelegramBotClient(apiUrl, botToken, connectTimeoutMillis, readTimeoutMillis),
+                globalPerSecond, chatIntervalMillis, groupIntervalMillis, maxPending, maxInFlight, maxAttempts
+        );
+
+        MBeanExporter exporter = exporters.getIfAvailable();
+        if (exporter != null) {
+            try {
+                exporter.registerManagedResource(scheduler, ObjectName.getInstance("eus.klimu:type=TelegramScheduler"));
+            } catch (MalformedObjectNameException e) {
+                log.warn("Couldn't publish the metrics of the Telegram scheduler");
+            }
+        }
+    }
+
+    @Override
+    public String getChannelName() {
+        return "Telegram";
+    }
+
+    /**
+     * Queue the notification for every recipient of the batch with a telegram ID.
+     * @param batch The notification and its recipients.
+     * @return The outcome of each recipient of the batch.
+     * @throws ChannelSaturatedException Generated if the queue has no room for the batch, nothing is queued then.
+     */
+    @Override
+    public List<DeliveryOutcome> send(DeliveryBatch batch) {
+        String text = batch.getTypeName() + " [" + batch.getLocation() + "]\n" + batch.getMessage();
+        List<DeliveryOutcome> outcomes = new ArrayList<>(batch.getRecipients().size());
+        List<String> chatIds = new ArrayList<>(batch.getRecipients().size());
+
+        for (Recipient recipient : batch.getRecipients()) {
+            if (recipient.getTelegramId() == null) {
+                outcomes.add(DeliveryOutcome.skipped(recipient, "The user has no telegram ID"));
+            } else {
+                chatIds.add(recipient.getTelegramId());
+                outcomes.add(DeliveryOutcome.queued(recipient));
+            }
+        }
+        if (!chatIds.isEmpty() && !scheduler.enqueueAll(chatIds, text)) {
+            throw new ChannelSaturatedException("The Telegram queue is full");
+        }
+        return outcomes;
+    }
+
+    /**
+     * Send the queued messages and stop the scheduler when the application is closed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        try {
+            scheduler.shutdown(shutdownMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
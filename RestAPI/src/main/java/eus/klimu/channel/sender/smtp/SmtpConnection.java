@@ -0,0 +1,384 @@
+package eus.klimu.channel.sender.smtp;
+
+import eus.klimu.security.EmailManager;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A plain SMTP session with a mail server. Only the commands needed for sending text emails are supported.
+ */
+public class SmtpConnection implements Closeable {
+
+    private Socket socket;
+    private BufferedReader reader;
+    private Writer writer;
+    /**
+     * The extensions announced by the server on the EHLO answer, in upper case.
+     */
+    private final Set<String> extensions = new HashSet<>();
+    /**
+     * The emails accepted by the server on this session.
+     */
+    private int messagesSent;
+    /**
+     * The last time the session was used, from {@link System#nanoTime()}.
+     */
+    private long lastUsed = System.nanoTime();
+
+    /**
+     * Open a new connection with a mail server and greet it.
+     * @param host The host of the mail server.
+     * @param port The port of the mail server.
+     * @param timeoutMillis The maximum time for connecting and for waiting for an answer.
+     * @throws IOException Generated if the server could not be reached or rejected the connection.
+     */
+    public SmtpConnection(String host, int port, int timeoutMillis) throws IOException {
+        socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+        socket.setSoTimeout(timeoutMillis);
+        // Every write is a whole command or group of commands, so there is nothing to gain waiting for more data.
+        socket.setTcpNoDelay(true);
+        openStreams();
+        expect(220);
+    }
+
+    /**
+     * Identify the client and read the extensions supported by the server.
+     * @param domain The domain of the client.
+     * @throws IOException Generated if the server rejected the greeting.
+     */
+    public void ehlo(String domain) throws IOException {
+        command("EHLO " + domain);
+        extensions.clear();
+
+        String line;
+        do {
+            line = readLine();
+            if (line.length() > 4) {
+                extensions.add(line.substring(4).toUpperCase(Locale.ROOT));
+            }
+        } while (line.length() > 3 && line.charAt(3) == '-');
+        check(line, 250);
+    }
+
+    /**
+     * Check if the server announced an extension.
+     * @param extension The name of the extension, like STARTTLS or PIPELINING.
+     * @return True if the server supports the extension.
+     */
+    public boolean supports(String extension) {
+        String name = extension.toUpperCase(Locale.ROOT);
+        return extensions.stream().anyMatch(announced -> announced.equals(name) || announced.startsWith(name + " "));
+    }
+
+    /**
+     * Upgrade the connection to TLS. The client has to greet the server again afterwards.
+     * @param host The host of the mail server, checked against its certificate.
+     * @throws IOException Generated if the server doesn't support TLS.
+     */
+    public void startTls(String host) throws IOException {
+        command("STARTTLS");
+        expect(220);
+
+        SSLSocket sslSocket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                .createSocket(socket, host, socket.getPort(), true);
+        sslSocket.startHandshake();
+        socket = sslSocket;
+        openStreams();
+    }
+
+    /**
+     * Log in on the mail server with the PLAIN mechanism.
+     * @param username The username of the account.
+     * @param password The password of the account.
+     * @throws IOException Generated if the credentials were rejected.
+     */
+    public void authenticate(String username, String password) throws IOException {
+        String credentials = Base64.getEncoder().encodeToString(
+                ("\0" + username + "\0" + password).getBytes(StandardCharsets.UTF_8)
+        );
+        command("AUTH PLAIN " + credentials);
+        expect(235);
+    }
+
+    /**
+     * Send an email, waiting for the answer of every command.
+     * @param message The email that is going to be sent.
+     * @throws SmtpException Generated if the server rejected the email.
+     * @throws IOException Generated if the connection failed.
+     * @throws IllegalArgumentException Generated if any address of the email is not valid.
+     */
+    public void send(SmtpMessage message) throws IOException {
+        checkAddresses(message);
+        command("MAIL FROM:<" + message.getFrom() + ">");
+        expect(250);
+        command("RCPT TO:<" + message.getTo() + ">");
+        expect(250, 251);
+        command("DATA");
+        expect(354);
+        writer.write(message.toData());
+        writer.flush();
+        expect(250);
+        messagesSent++;
+        lastUsed = System.nanoTime();
+    }
+
+    /**
+     * Send several emails on this session. If the server supports PIPELINING the commands aren't sent one by one:
+     * the envelope of an email (MAIL, RCPT and DATA) goes on a single write, and the content of an email goes
+     * together with the envelope of the next one, so every email takes a single round trip. Otherwise the emails
+     * are sent one after the other.
+     * @param messages The emails that are going to be sent.
+     * @param listener Called with the result of each email, in order.
+     * @throws IOException Generated if the connection failed. The emails without a result weren't sent.
+     * @throws IllegalArgumentException Generated if any address is not valid, before anything is sent.
+     */
+    public void sendAll(List<SmtpMessage> messages, ResultListener listener) throws IOException {
+        // Check every email first, so an invalid one doesn't leave a pipelined session half written.
+        messages.forEach(SmtpConnection::checkAddresses);
+        if (!supports("PIPELINING")) {
+            for (int i = 0; i < messages.size(); i++) {
+                try {
+                    send(messages.get(i));
+                    listener.onResult(i, null);
+                } catch (SmtpException e) {
+                    listener.onResult(i, e);
+                    reset();
+                }
+            }
+            return;
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        writeEnvelope(messages.get(0));
+        writer.flush();
+
+        for (int i = 0; i < messages.size(); i++) {
+            SmtpException rejection = null;
+            String mailReply = readReply();
+            String rcptReply = readReply();
+            String dataReply = readReply();
+
+            if (code(mailReply) != 250) {
+                rejection = new SmtpException(code(mailReply), mailReply);
+            } else if (code(rcptReply) != 250 && code(rcptReply) != 251) {
+                rejection = new SmtpException(code(rcptReply), rcptReply);
+            } else if (code(dataReply) != 354) {
+                rejection = new SmtpException(code(dataReply), dataReply);
+            }
+
+            boolean dataAccepted = code(dataReply) == 354;
+            boolean resetNeeded = rejection != null;
+            if (dataAccepted) {
+                // If the recipient was rejected but the server still wants the content, end it straight away.
+                writer.write(rejection == null ? messages.get(i).toData() : ".\r\n");
+            }
+            if (resetNeeded) {
+                writer.write("RSET\r\n");
+            }
+            if (i + 1 < messages.size()) {
+                writeEnvelope(messages.get(i + 1));
+            }
+            writer.flush();
+
+            if (dataAccepted) {
+                String endReply = readReply();
+                if (rejection == null && code(endReply) != 250) {
+                    rejection = new SmtpException(code(endReply), endReply);
+                }
+            }
+            if (resetNeeded) {
+                check(readReply(), 250);
+            }
+            if (rejection == null) {
+                messagesSent++;
+            }
+            lastUsed = System.nanoTime();
+            listener.onResult(i, rejection);
+        }
+    }
+
+    /**
+     * Get the amount of emails accepted by the server on this session.
+     * @return The emails sent.
+     */
+    public int getMessagesSent() {
+        return messagesSent;
+    }
+
+    /**
+     * Get the last time the session was used.
+     * @return The time, from {@link System#nanoTime()}.
+     */
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Abort the email that is being sent, so the session can be used again.
+     * @throws IOException Generated if the connection failed.
+     */
+    public void reset() throws IOException {
+        command("RSET");
+        expect(250);
+    }
+
+    /**
+     * End the session and close the connection.
+     */
+    @Override
+    public void close() {
+        try {
+            command("QUIT");
+            readLine();
+        } catch (IOException e) {
+            // The connection is being closed anyway.
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing else can be done.
+        }
+    }
+
+    /**
+     * Close the connection without ending the session, for when the connection is already broken.
+     */
+    public void abort() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing else can be done.
+        }
+    }
+
+    /**
+     * Check if the connection is still open.
+     * @return True if the socket is open.
+     */
+    public boolean isOpen() {
+        return !socket.isClosed() && socket.isConnected();
+    }
+
+    /**
+     * Write a command without waiting for its answer.
+     * @param command The command, without the line end.
+     * @throws IOException Generated if the connection failed.
+     */
+    protected void command(String command) throws IOException {
+        writer.write(command);
+        writer.write("\r\n");
+        writer.flush();
+    }
+
+    /**
+     * Read the answer of a command, with all its lines.
+     * @param expected The codes that are accepted.
+     * @return The last line of the answer.
+     * @throws SmtpException Generated if the answer has an unexpected code.
+     * @throws IOException Generated if the connection failed.
+     */
+    protected String expect(int... expected) throws IOException {
+        String line = readReply();
+        check(line, expected);
+        return line;
+    }
+
+    /**
+     * Read the answer of a command, with all its lines, without checking it.
+     * @return The last line of the answer.
+     * @throws IOException Generated if the connection failed.
+     */
+    private String readReply() throws IOException {
+        String line;
+        do {
+            line = readLine();
+        } while (line.length() > 3 && line.charAt(3) == '-');
+        return line;
+    }
+
+    /**
+     * Write the envelope of an email: the sender, the recipient and the start of the content.
+     * @param message The email.
+     * @throws IOException Generated if the connection failed.
+     */
+    private void writeEnvelope(SmtpMessage message) throws IOException {
+        checkAddresses(message);
+        writer.write("MAIL FROM:<" + message.getFrom() + ">\r\n");
+        writer.write("RCPT TO:<" + message.getTo() + ">\r\n");
+        writer.write("DATA\r\n");
+    }
+
+    /**
+     * Make sure the addresses of an email can't inject commands on the session.
+     * @param message The email.
+     * @throws IllegalArgumentException Generated if any address is not valid.
+     */
+    private static void checkAddresses(SmtpMessage message) {
+        if (!EmailManager.isValid(message.getFrom()) || !EmailManager.isValid(message.getTo())) {
+            throw new IllegalArgumentException("The addresses of an email must be valid");
+        }
+    }
+
+    private static int code(String line) {
+        try {
+            return line.length() >= 3 ? Integer.parseInt(line.substring(0, 3)) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Check the code of an answer.
+     * @param line The last line of the answer.
+     * @param expected The codes that are accepted.
+     * @throws SmtpException Generated if the answer has an unexpected code.
+     */
+    private static void check(String line, int... expected) throws SmtpException {
+        int code = code(line);
+        for (int accepted : expected) {
+            if (code == accepted) {
+                return;
+            }
+        }
+        throw new SmtpException(code, line);
+    }
+
+    /**
+     * Receives the result of each email sent on a session.
+     */
+    public interface ResultListener {
+
+        /**
+         * Called when the server accepted or rejected an email.
+         * @param index The position of the email on the list.
+         * @param rejection The answer of the server if the email was rejected, null if it was accepted.
+         */
+        void onResult(int index, SmtpException rejection);
+    }
+
+    private String readLine() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            throw new EOFException("The mail server closed the connection");
+        }
+        return line;
+    }
+
+    private void openStreams() throws IOException {
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,183 @@
+package eus.klimu.channel.sender.smtp;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the SMTP sessions open between batches, so the connection, TLS handshake and login are only paid once for
+ * many emails. The sessions are given back to the pool after use and closed when they have been idle for too long
+ * or have sent too many emails.
+ */
+@Slf4j
+public class SmtpConnectionPool implements Closeable {
+
+    private static final String CLIENT_DOMAIN = "klimu.eus";
+
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final boolean startTls;
+    private final int timeoutMillis;
+    private final long maxIdleNanos;
+    private final int maxMessagesPerConnection;
+
+    /**
+     * The open sessions not being used, the most recently used first.
+     */
+    private final LinkedBlockingDeque<SmtpConnection> idle = new LinkedBlockingDeque<>();
+    /**
+     * Limits the amount of sessions open at the same time.
+     */
+    private final Semaphore permits;
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+
+    /**
+     * Create a new pool of SMTP sessions. No connection is opened until it's needed.
+     * @param host The host of the mail server.
+     * @param port The port of the mail server.
+     * @param username The username of the mail account, empty if the server doesn't need authentication.
+     * @param password The password of the mail account.
+     * @param startTls If the connections have to be upgraded to TLS.
+     * @param timeoutMillis The maximum time for connecting and for waiting for an answer of the server.
+     * @param maxConnections The maximum sessions open at the same time.
+     * @param maxIdleMillis The maximum time a session can stay unused before it's closed.
+     * @param maxMessagesPerConnection The emails sent on a session before it's replaced by a new one.
+     */
+    public SmtpConnectionPool(
+            String host, int port, String username, String password, boolean startTls, int timeoutMillis,
+            int maxConnections, long maxIdleMillis, int maxMessagesPerConnection
+    ) {
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.startTls = startTls;
+        this.timeoutMillis = timeoutMillis;
+        this.maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleMillis);
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    /**
+     * Take a session from the pool, opening a new one if there are no idle sessions.
+     * @return A session ready for sending emails. It must be given back with {@link #release(SmtpConnection)}
+     * or {@link #discard(SmtpConnection)}.
+     * @throws IOException Generated if no session was available on time or a new one could not be opened.
+     */
+    public SmtpConnection borrow() throws IOException {
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IOException("No SMTP connection available for " + host + ":" + port);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an SMTP connection");
+        }
+
+        try {
+            SmtpConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (connection.isOpen() && System.nanoTime() - connection.getLastUsed() < maxIdleNanos) {
+                    reused.increment();
+                    return connection;
+                }
+                connection.close();
+            }
+            return open();
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Give a session back to the pool after using it.
+     * @param connection The session.
+     */
+    public void release(SmtpConnection connection) {
+        if (connection.isOpen() && connection.getMessagesSent() < maxMessagesPerConnection) {
+            idle.offerFirst(connection);
+        } else {
+            connection.close();
+        }
+        permits.release();
+    }
+
+    /**
+     * Close a broken session instead of giving it back to the pool.
+     * @param connection The session.
+     */
+    public void discard(SmtpConnection connection) {
+        connection.abort();
+        permits.release();
+    }
+
+    /**
+     * Close all the idle sessions.
+     */
+    @Override
+    public void close() {
+        SmtpConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Open and prepare a new session with the mail server.
+     * @return The session, ready for sending emails.
+     * @throws IOException Generated if the server could not be reached or rejected the session.
+     */
+    private SmtpConnection open() throws IOException {
+        SmtpConnection connection = new SmtpConnection(host, port, timeoutMillis);
+        try {
+            connection.ehlo(CLIENT_DOMAIN);
+            if (startTls) {
+                connection.startTls(host);
+                connection.ehlo(CLIENT_DOMAIN);
+            }
+            if (username != null && !username.isEmpty()) {
+                connection.authenticate(username, password);
+            }
+            opened.increment();
+            log.info("Opened SMTP connection with {}:{}", host, port);
+            return connection;
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the amount of sessions opened since the start.
+     * @return The sessions opened.
+     */
+    public long getOpened() {
+        return opened.sum();
+    }
+
+    /**
+     * Get the amount of times an idle session was used again instead of opening a new one.
+     * @return The sessions reused.
+     */
+    public long getReused() {
+        return reused.sum();
+    }
+
+    /**
+     * Get the amount of open sessions not being used.
+     * @return The idle sessions.
+     */
+    public int getIdle() {
+        return idle.size();
+    }
+}
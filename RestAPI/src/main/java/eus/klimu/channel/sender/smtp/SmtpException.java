@@ -0,0 +1,35 @@
+package eus.klimu.channel.sender.smtp;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Generated when the mail server answers a command with an unexpected code.
+ */
+@Getter
+public class SmtpException extends IOException {
+
+    /**
+     * The code of the answer, or -1 if the answer couldn't be read.
+     */
+    private final int code;
+
+    /**
+     * Create a new instance of the exception.
+     * @param code The code of the answer.
+     * @param answer The answer of the server.
+     */
+    public SmtpException(int code, String answer) {
+        super(answer);
+        this.code = code;
+    }
+
+    /**
+     * Check if the error is permanent (5xx), so sending the email again won't work.
+     * @return True if the error is permanent.
+     */
+    public boolean isPermanent() {
+        return code >= 500 && code < 600;
+    }
+}
@@ -0,0 +1,68 @@
+package eus.klimu.channel.sender.smtp;
+
+import eus.klimu.security.EmailManager;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * A plain text email.
+ */
+@Getter
+public class SmtpMessage {
+
+    private final String from;
+    private final String to;
+    private final String subject;
+    private final String body;
+
+    /**
+     * Create a new email. The addresses are written on the headers as they are, so they are checked first.
+     * @param from The address the email is sent from.
+     * @param to The address the email is sent to.
+     * @param subject The subject of the email.
+     * @param body The content of the email.
+     * @throws IllegalArgumentException Generated if any address is not valid.
+     */
+    public SmtpMessage(String from, String to, String subject, String body) {
+        if (!EmailManager.isValid(from) || !EmailManager.isValid(to)) {
+            throw new IllegalArgumentException("The addresses of an email must be valid");
+        }
+        this.from = from;
+        this.to = to;
+        this.subject = subject;
+        this.body = body;
+    }
+
+    /**
+     * Build the content sent after the DATA command, with the headers, the body and the final dot.
+     * @return The content of the email, with CRLF line ends and the lines starting with a dot escaped.
+     */
+    public String toData() {
+        StringBuilder data = new StringBuilder(body.length() + 256);
+        data.append("From: <").append(from).append(">\r\n")
+                .append("To: <").append(to).append(">\r\n")
+                .append("Subject: =?UTF-8?B?")
+                .append(Base64.getEncoder().encodeToString(subject.getBytes(StandardCharsets.UTF_8)))
+                .append("?=\r\n")
+                .append("Date: ")
+                .append(new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.ENGLISH).format(new Date()))
+                .append("\r\n")
+                .append("MIME-Version: 1.0\r\n")
+                .append("Content-Type: text/plain; charset=UTF-8\r\n")
+                .append("Content-Transfer-Encoding: 8bit\r\n")
+                .append("\r\n");
+
+        for (String line : body.split("\r?\n", -1)) {
+            if (line.startsWith(".")) {
+                data.append('.');
+            }
+            data.append(line).append("\r\n");
+        }
+        return data.append(".\r\n").toString();
+    }
+}
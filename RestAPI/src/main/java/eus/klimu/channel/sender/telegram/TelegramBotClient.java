@@ -0,0 +1,117 @@
+package eus.klimu.channel.sender.telegram;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Calls the sendMessage method of the Telegram Bot API.
+ */
+public class TelegramBotClient {
+
+    /**
+     * The URL of the sendMessage method of the bot.
+     */
+    private final String sendMessageUrl;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    /**
+     * Create a new client for a bot.
+     * @param apiUrl The base URL of the Telegram Bot API.
+     * @param botToken The token of the Telegram bot.
+     * @param connectTimeoutMillis The maximum time for connecting to the API.
+     * @param readTimeoutMillis The maximum time for reading an answer of the API.
+     */
+    public TelegramBotClient(String apiUrl, String botToken, int connectTimeoutMillis, int readTimeoutMillis) {
+        this.sendMessageUrl = apiUrl + "/bot" + botToken + "/sendMessage";
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * Send a message to a chat.
+     * @param chatId The identifier of the chat.
+     * @param text The text of the message.
+     * @return The answer of the API.
+     * @throws IOException Generated if the API could not be reached.
+     */
+    public Response sendMessage(String chatId, String text) throws IOException {
+        byte[] body = new JSONObject().put("chat_id", chatId).put("text", text).toString()
+                .getBytes(StandardCharsets.UTF_8);
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(sendMessageUrl).openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+
+        try (OutputStream outputStream = connection.getOutputStream()) {
+            outputStream.write(body);
+        }
+        int status = connection.getResponseCode();
+
+        // Read the whole answer, so the connection can be reused for the next message.
+        String answer = "";
+        try (InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (inputStream != null) {
+                answer = StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8);
+            }
+        }
+        return new Response(status, retryAfter(answer), answer);
+    }
+
+    /**
+     * Read the time the API asked to wait before sending again, on a 429 answer.
+     * @param answer The body of the answer.
+     * @return The seconds to wait, 0 if the answer doesn't say it.
+     */
+    private static int retryAfter(String answer) {
+        try {
+            JSONObject parameters = new JSONObject(answer).optJSONObject("parameters");
+            return parameters != null ? parameters.optInt("retry_after", 0) : 0;
+        } catch (JSONException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * The answer of the Telegram Bot API.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Response {
+
+        /**
+         * The HTTP status of the answer.
+         */
+        private final int status;
+        /**
+         * The seconds to wait before sending again, 0 if the API didn't ask to wait.
+         */
+        private final int retryAfterSeconds;
+        /**
+         * The body of the answer.
+         */
+        private final String body;
+
+        public boolean isOk() {
+            return status == HttpURLConnection.HTTP_OK;
+        }
+
+        public boolean isThrottled() {
+            return status == 429;
+        }
+    }
+}
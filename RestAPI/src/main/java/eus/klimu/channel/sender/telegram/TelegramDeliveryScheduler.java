@@ -0,0 +1,418 @@
+package eus.klimu.channel.sender.telegram;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers the Telegram messages at the highest rate the Bot API allows. There is a global token bucket for the
+ * bot and one for each chat, and the messages waiting for the same chat are merged into a single message. A single
+ * thread decides which chat goes next and sleeps until the next token is available, while a small pool of threads
+ * makes the HTTP calls. When Telegram answers with a 429 both the chat and the whole bot wait for the time it asked.
+ * The messages are only kept in memory, so the ones still waiting are lost if the application stops abruptly.
+ */
+@Slf4j
+@ManagedResource(description = "Rate limited delivery of the Telegram messages")
+public class TelegramDeliveryScheduler {
+
+    /**
+     * The longest text Telegram accepts on a single message.
+     */
+    static final int MAX_MESSAGE_LENGTH = 4096;
+    private static final String SEPARATOR = "\n\n";
+    private static final long PURGE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final TelegramBotClient client;
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * Signaled when a chat is ready, a call finishes or the scheduler is stopped.
+     */
+    private final Condition changed = lock.newCondition();
+    /**
+     * The chats with pending messages or whose bucket is not full yet.
+     */
+    private final Map<String, Chat> chats = new HashMap<>();
+    /**
+     * The chats with messages, by the time they can get their next message.
+     */
+    private final PriorityQueue<Chat> ready = new PriorityQueue<>(Comparator.comparingLong(chat -> chat.readyAt));
+    private final TokenBucket globalBucket;
+    private final long chatNanos;
+    private final long groupNanos;
+    private final int maxPending;
+    private final int maxInFlight;
+    private final int maxAttempts;
+    private final ExecutorService callers;
+    private final Thread drainer;
+
+    private int pending;
+    private int inFlight;
+    private boolean accepting = true;
+    private boolean running = true;
+    private long lastPurge;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Create and start a new scheduler.
+     * @param client The client of the Bot API.
+     * @param globalPerSecond The maximum messages per second for the whole bot.
+     * @param chatIntervalMillis The minimum time between two messages to the same private chat.
+     * @param groupIntervalMillis The minimum time between two messages to the same group.
+     * @param maxPending The maximum messages waiting to be sent, new ones are rejected afterwards.
+     * @param maxInFlight The amount of calls to the API that can be made at the same time.
+     * @param maxAttempts The times a message is tried before giving up, when the API fails.
+     */
+    public TelegramDeliveryScheduler(
+            TelegramBotClient client, int globalPerSecond, long chatIntervalMillis, long groupIntervalMillis,
+            int maxPending, int maxInFlight, int maxAttempts
+    ) {
+        AtomicInteger threadCount = new AtomicInteger();
+        long now = System.nanoTime();
+
+        this.client = client;
+        this.globalBucket = new TokenBucket(1, TimeUnit.SECONDS.toNanos(1) / Math.max(globalPerSecond, 1), now);
+        this.chatNanos = TimeUnit.MILLISECONDS.toNanos(chatIntervalMillis);
+        this.groupNanos = TimeUnit.MILLISECONDS.toNanos(groupIntervalMillis);
+        this.maxPending = maxPending;
+        this.maxInFlight = maxInFlight;
+        this.maxAttempts = maxAttempts;
+        this.lastPurge = now;
+        this.callers = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "telegram-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.drainer = new Thread(this::drain, "telegram-scheduler");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * Queue a message for a chat. If the chat already has messages waiting, they will be sent together.
+     * @param chatId The identifier of the chat.
+     * @param text The text of the message.
+     * @return False if the message was rejected because the queue is full or the scheduler is stopping.
+     */
+    public boolean enqueue(String chatId, String text) {
+        return enqueueAll(Collections.singletonList(chatId), text);
+    }
+
+    /**
+     * Queue the same message for several chats. Either every message is queued or none of them is, so a rejected
+     * batch can be retried without sending anything twice.
+     * @param chatIds The identifiers of the chats.
+     * @param text The text of the message.
+     * @return False if the messages were rejected because the queue has no room for all of them or the scheduler
+     * is stopping.
+     */
+    public boolean enqueueAll(Collection<String> chatIds, String text) {
+        lock.lock();
+        try {
+            if (!accepting || pending + chatIds.size() > maxPending) {
+                rejected.add(chatIds.size());
+                return false;
+            }
+            long now = System.nanoTime();
+            for (String chatId : chatIds) {
+                Chat chat = chats.computeIfAbsent(chatId, id -> new Chat(
+                        id, new TokenBucket(1, id.startsWith("-") ? groupNanos : chatNanos, now)
+                ));
+                chat.messages.add(new Message(text));
+                pending++;
+                schedule(chat, now);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait for the pending messages to be sent and stop the scheduler.
+     * @param waitMillis The maximum time to wait for the pending messages.
+     * @throws InterruptedException Generated if the thread was interrupted while waiting.
+     */
+    public void shutdown(long waitMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            accepting = false;
+            long remaining = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+            while ((pending > 0 || inFlight > 0) && remaining > 0) {
+                remaining = changed.awaitNanos(remaining);
+            }
+            if (pending > 0) {
+                log.warn("Stopping the Telegram scheduler with {} message(s) not sent", pending);
+            }
+            running = false;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        drainer.join(waitMillis);
+        callers.shutdown();
+        callers.awaitTermination(waitMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Take the next chat as soon as both its bucket and the global bucket have a token, and send its messages.
+     */
+    private void drain() {
+        lock.lock();
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                purge(now);
+
+                Chat chat = ready.peek();
+                if (chat == null || inFlight >= maxInFlight) {
+                    changed.await();
+                    continue;
+                }
+                long wait = Math.max(chat.readyAt - now, globalBucket.delay(now));
+                if (wait > 0) {
+                    changed.awaitNanos(wait);
+                    continue;
+                }
+
+                ready.poll();
+                chat.queued = false;
+                chat.inFlight = true;
+                inFlight++;
+                globalBucket.take(now);
+                chat.bucket.take(now);
+
+                List<Message> taken = coalesce(chat);
+                callers.execute(() -> deliver(chat, taken));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take as many waiting messages of a chat as fit on a single Telegram message.
+     * @param chat The chat whose messages are taken.
+     * @return The messages that will be sent together.
+     */
+    private List<Message> coalesce(Chat chat) {
+        List<Message> taken = new ArrayList<>();
+        int length = 0;
+
+        while (!chat.messages.isEmpty()) {
+            int next = chat.messages.peek().text.length() + (taken.isEmpty() ? 0 : SEPARATOR.length());
+            if (!taken.isEmpty() && length + next > MAX_MESSAGE_LENGTH) {
+                break;
+            }
+            taken.add(chat.messages.poll());
+            length += next;
+        }
+        coalesced.add(taken.size() - 1L);
+        return taken;
+    }
+
+    /**
+     * Send the messages taken for a chat and decide what to do with them depending on the answer.
+     * @param chat The chat the messages are sent to.
+     * @param taken The messages, sent together as a single message.
+     */
+    private void deliver(Chat chat, List<Message> taken) {
+        StringBuilder text = new StringBuilder();
+        for (Message message : taken) {
+            if (text.length() > 0) {
+                text.append(SEPARATOR);
+            }
+            text.append(message.text);
+        }
+        if (text.length() > MAX_MESSAGE_LENGTH) {
+            text.setLength(MAX_MESSAGE_LENGTH);
+        }
+
+        TelegramBotClient.Response response = null;
+        IOException error = null;
+        try {
+            requests.increment();
+            response = client.sendMessage(chat.chatId, text.toString());
+        } catch (IOException e) {
+            error = e;
+        }
+
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            chat.inFlight = false;
+            inFlight--;
+
+            if (response != null && response.isOk()) {
+                delivered.add(taken.size());
+                pending -= taken.size();
+            } else if (response != null && response.isThrottled()) {
+                // Telegram asked to wait, the messages go back to the front of the chat without counting an attempt.
+                // The limit that was broken may be the one of the whole bot, so every chat waits.
+                throttled.increment();
+                long until = now + TimeUnit.SECONDS.toNanos(Math.max(1, response.getRetryAfterSeconds()));
+                chat.bucket.pauseUntil(until);
+                globalBucket.pauseUntil(until);
+                for (int i = taken.size() - 1; i >= 0; i--) {
+                    chat.messages.addFirst(taken.get(i));
+                }
+            } else {
+                boolean retryable = error != null || response.getStatus() >= 500;
+                String reason = error != null ? error.getMessage() : response.getBody();
+
+                for (int i = taken.size() - 1; i >= 0; i--) {
+                    Message message = taken.get(i);
+                    if (retryable && ++message.attempts < maxAttempts) {
+                        chat.messages.addFirst(message);
+                    } else {
+                        failed.increment();
+                        pending--;
+                    }
+                }
+                if (retryable) {
+                    chat.bucket.pauseUntil(now + TimeUnit.SECONDS.toNanos(taken.get(0).attempts));
+                }
+                log.warn("Couldn't send a Telegram message to chat {}: {}", chat.chatId, reason);
+            }
+            schedule(chat, now);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Put a chat on the ready queue if it has messages and is not already there or being sent.
+     * @param chat The chat.
+     * @param now The current time.
+     */
+    private void schedule(Chat chat, long now) {
+        if (!chat.queued && !chat.inFlight && !chat.messages.isEmpty()) {
+            chat.readyAt = now + chat.bucket.delay(now);
+            chat.queued = true;
+            ready.add(chat);
+            changed.signalAll();
+        }
+    }
+
+    /**
+     * Forget the chats without messages whose bucket is already full.
+     * @param now The current time.
+     */
+    private void purge(long now) {
+        if (now - lastPurge >= PURGE_INTERVAL_NANOS) {
+            chats.values().removeIf(chat ->
+                    chat.messages.isEmpty() && !chat.queued && !chat.inFlight && chat.bucket.isFull(now)
+            );
+            lastPurge = now;
+        }
+    }
+
+    @ManagedAttribute(description = "Messages waiting to be sent")
+    public int getPending() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @ManagedAttribute(description = "Chats with messages waiting to be sent")
+    public int getReadyChats() {
+        lock.lock();
+        try {
+            return ready.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @ManagedAttribute(description = "Calls to the Bot API currently being made")
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @ManagedAttribute(description = "Messages delivered")
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    @ManagedAttribute(description = "Calls made to the Bot API")
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @ManagedAttribute(description = "Messages merged into a previous message of the same chat")
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    @ManagedAttribute(description = "Calls answered with 429 Too Many Requests")
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    @ManagedAttribute(description = "Messages that couldn't be delivered")
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @ManagedAttribute(description = "Messages rejected because the queue was full")
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * A chat and its waiting messages. Only used while holding the lock of the scheduler.
+     */
+    private static final class Chat {
+
+        private final String chatId;
+        private final TokenBucket bucket;
+        private final Deque<Message> messages = new ArrayDeque<>();
+        private long readyAt;
+        private boolean queued;
+        private boolean inFlight;
+
+        private Chat(String chatId, TokenBucket bucket) {
+            this.chatId = chatId;
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * A message waiting to be sent.
+     */
+    private static final class Message {
+
+        private final String text;
+        private int attempts;
+
+        private Message(String text) {
+            this.text = text;
+        }
+    }
+}
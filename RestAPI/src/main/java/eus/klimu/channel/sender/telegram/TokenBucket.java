@@ -0,0 +1,67 @@
+package eus.klimu.channel.sender.telegram;
+
+/**
+ * A token bucket kept as the time the bucket will be full again, so it doesn't need a refill thread and takes a
+ * single long per bucket. It's not thread safe, the scheduler only uses it while holding its lock.
+ */
+class TokenBucket {
+
+    /**
+     * The time it takes to get a new token.
+     */
+    private final long nanosPerToken;
+    /**
+     * How far ahead of the current time the bucket can be, which is the burst allowed.
+     */
+    private final long burstNanos;
+    /**
+     * The time when all the taken tokens will have been given back.
+     */
+    private long fullAt;
+
+    /**
+     * Create a new full bucket.
+     * @param capacity The maximum amount of tokens that can be taken at once.
+     * @param nanosPerToken The time it takes to get a new token.
+     * @param now The current time, from {@link System#nanoTime()}.
+     */
+    TokenBucket(int capacity, long nanosPerToken, long now) {
+        this.nanosPerToken = nanosPerToken;
+        this.burstNanos = (Math.max(capacity, 1) - 1) * nanosPerToken;
+        this.fullAt = now;
+    }
+
+    /**
+     * Get the time until a token is available.
+     * @param now The current time.
+     * @return The nanoseconds to wait, 0 if a token is available right now.
+     */
+    long delay(long now) {
+        return Math.max(0, fullAt - burstNanos - now);
+    }
+
+    /**
+     * Take a token. The caller must have checked that one was available.
+     * @param now The current time.
+     */
+    void take(long now) {
+        fullAt = Math.max(fullAt, now) + nanosPerToken;
+    }
+
+    /**
+     * Don't give any token until some time has passed, for when the server asked to slow down.
+     * @param until The time when tokens can be taken again.
+     */
+    void pauseUntil(long until) {
+        fullAt = Math.max(fullAt, until + burstNanos);
+    }
+
+    /**
+     * Check if the bucket is full, so it can be forgotten.
+     * @param now The current time.
+     * @return True if no token has been taken recently.
+     */
+    boolean isFull(long now) {
+        return fullAt <= now;
+    }
+}
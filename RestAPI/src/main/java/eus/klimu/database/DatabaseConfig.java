@@ -0,0 +1,34 @@
+package eus.klimu.database;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+
+import javax.sql.DataSource;
+
+/**
+ * Configuration of the database schema that Hibernate doesn't take care of.
+ */
+@Configuration
+public class DatabaseConfig {
+
+    /**
+     * Apply the schema migrations at startup, once Hibernate has created the tables.
+     * @param dataSource The connection with the database.
+     * @param location The classpath folder of the migrations.
+     * @param lockTimeoutSeconds The maximum time to wait for another instance that is migrating.
+     * @return The schema migrator.
+     */
+    @Bean(initMethod = "migrate")
+    @DependsOn("entityManagerFactory")
+    @ConditionalOnProperty(prefix = "klimu.database.migrations", name = "enabled", matchIfMissing = true)
+    public SchemaMigrator schemaMigrator(
+            DataSource dataSource,
+            @Value("${klimu.database.migrations.location:db/migration}") String location,
+            @Value("${klimu.database.migrations.lock-timeout-seconds:60}") int lockTimeoutSeconds
+    ) {
+        return new SchemaMigrator(dataSource, location, lockTimeoutSeconds);
+    }
+}
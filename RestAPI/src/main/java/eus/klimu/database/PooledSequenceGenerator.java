@@ -0,0 +1,44 @@
+package eus.klimu.database;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A pooled-lo generator with a sequence per entity, named as the generator. MySQL has no sequences, so each one
+ * is a table with a single next_val row, and every instance reserves a block of identification numbers at a
+ * time: the inserts don't wait on a shared row and Hibernate can send them in JDBC batches.
+ *
+ * <p>The size of the blocks is read from the Hibernate settings, spring.jpa.properties on Spring:
+ * klimu.id.{sequence}.increment-size for a single sequence, or klimu.id.increment-size for all of them.</p>
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    /**
+     * The size of the blocks if none is configured.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        String sequence = params.getProperty(SEQUENCE_PARAM, params.getProperty(IdentifierGenerator.GENERATOR_NAME));
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        Object incrementSize = settings.get("klimu.id." + sequence + ".increment-size");
+        if (incrementSize == null) {
+            incrementSize = settings.get("klimu.id.increment-size");
+        }
+
+        params.setProperty(SEQUENCE_PARAM, sequence);
+        params.setProperty(
+                INCREMENT_PARAM, incrementSize != null ? incrementSize.toString() : String.valueOf(DEFAULT_BLOCK_SIZE)
+        );
+        params.setProperty(OPT_PARAM, "pooled-lo");
+        super.configure(type, params, serviceRegistry);
+    }
+}
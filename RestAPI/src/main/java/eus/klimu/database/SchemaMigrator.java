@@ -0,0 +1,225 @@
+package eus.klimu.database;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the versioned SQL migrations of the schema, for the changes Hibernate doesn't do on its own, like the
+ * secondary indexes. The migrations are the classpath files named V{version}__{description}.sql, applied in order
+ * of version and recorded on the schema_migration table, so each one runs once. A database lock is held while
+ * migrating, so only one instance applies them when several start at the same time.
+ */
+@Slf4j
+public class SchemaMigrator {
+
+    private static final Pattern MIGRATION_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final String LOCK_NAME = "klimu_schema_migration";
+
+    private final DataSource dataSource;
+    private final String location;
+    private final int lockTimeoutSeconds;
+
+    /**
+     * Create a new schema migrator.
+     * @param dataSource The connection with the database.
+     * @param location The classpath folder of the migrations.
+     * @param lockTimeoutSeconds The maximum time to wait for another instance that is migrating.
+     */
+    public SchemaMigrator(DataSource dataSource, String location, int lockTimeoutSeconds) {
+        this.dataSource = dataSource;
+        this.location = location;
+        this.lockTimeoutSeconds = lockTimeoutSeconds;
+    }
+
+    /**
+     * Apply the migrations that haven't been applied yet.
+     * @return The amount of migrations applied.
+     * @throws SQLException Generated if a migration fails or the lock could not be taken.
+     */
+    public int migrate() throws SQLException {
+        List<Migration> migrations = findMigrations();
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            lock(connection);
+            try {
+                createHistoryTable(connection);
+                Map<Integer, String> applied = findApplied(connection);
+                int count = 0;
+
+                for (Migration migration : migrations) {
+                    String checksum = applied.get(migration.version);
+                    if (checksum == null) {
+                        apply(connection, migration);
+                        count++;
+                    } else if (!checksum.equals(migration.checksum)) {
+                        log.warn("Migration V{} has changed since it was applied", migration.version);
+                    }
+                }
+                return count;
+            } finally {
+                unlock(connection);
+            }
+        }
+    }
+
+    /**
+     * Run the statements of a migration and record it. MySQL commits every schema change on its own, so a failed
+     * migration is not recorded and has to be written so it can run again.
+     * @param connection The connection holding the lock.
+     * @param migration The migration.
+     * @throws SQLException Generated if a statement fails.
+     */
+    private void apply(Connection connection, Migration migration) throws SQLException {
+        long start = System.currentTimeMillis();
+        log.info("Applying migration V{} ({})", migration.version, migration.description);
+
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : migration.statements) {
+                statement.execute(sql);
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO schema_migration (version, description, checksum, installed_at, execution_ms) " +
+                "VALUES (?, ?, ?, ?, ?)"
+        )) {
+            insert.setInt(1, migration.version);
+            insert.setString(2, migration.description);
+            insert.setString(3, migration.checksum);
+            insert.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+            insert.setLong(5, System.currentTimeMillis() - start);
+            insert.executeUpdate();
+        }
+    }
+
+    private void createHistoryTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(
+                    "CREATE TABLE IF NOT EXISTS schema_migration (" +
+                    "version INT NOT NULL PRIMARY KEY, " +
+                    "description VARCHAR(200) NOT NULL, " +
+                    "checksum CHAR(32) NOT NULL, " +
+                    "installed_at DATETIME NOT NULL, " +
+                    "execution_ms BIGINT NOT NULL)"
+            );
+        }
+    }
+
+    private Map<Integer, String> findApplied(Connection connection) throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version, checksum FROM schema_migration")) {
+            while (resultSet.next()) {
+                applied.put(resultSet.getInt(1), resultSet.getString(2));
+            }
+        }
+        return applied;
+    }
+
+    private void lock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, LOCK_NAME);
+            statement.setInt(2, lockTimeoutSeconds);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next() || resultSet.getInt(1) != 1) {
+                    throw new SQLException("Couldn't take the schema migration lock");
+                }
+            }
+        }
+    }
+
+    private void unlock(Connection connection) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            statement.setString(1, LOCK_NAME);
+            statement.executeQuery().close();
+        } catch (SQLException e) {
+            log.warn("Couldn't release the schema migration lock: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Read the migrations from the classpath.
+     * @return The migrations, in order of version.
+     * @throws SQLException Generated if a migration could not be read or two have the same version.
+     */
+    private List<Migration> findMigrations() throws SQLException {
+        Map<Integer, Migration> migrations = new TreeMap<>();
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources("classpath*:" + location + "/V*.sql");
+            for (Resource resource : resources) {
+                Matcher matcher = MIGRATION_NAME.matcher(Objects.requireNonNull(resource.getFilename()));
+                if (!matcher.matches()) {
+                    continue;
+                }
+                byte[] content = StreamUtils.copyToByteArray(resource.getInputStream());
+                Migration migration = new Migration(
+                        Integer.parseInt(matcher.group(1)), matcher.group(2).replace('_', ' '),
+                        DigestUtils.md5DigestAsHex(content), split(new String(content, StandardCharsets.UTF_8))
+                );
+                if (migrations.put(migration.version, migration) != null) {
+                    throw new SQLException("Two migrations with version " + migration.version);
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Couldn't read the migrations from " + location, e);
+        }
+        return new ArrayList<>(migrations.values());
+    }
+
+    /**
+     * Split a migration into statements. The statements end with a semicolon at the end of a line, and the lines
+     * starting with -- are comments.
+     * @param script The content of the migration.
+     * @return The statements of the migration.
+     */
+    static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+
+        for (String line : script.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            current.append(current.length() > 0 ? "\n" : "").append(line);
+            if (trimmed.endsWith(";")) {
+                current.setLength(current.length() - (line.length() - line.lastIndexOf(';')));
+                statements.add(current.toString().trim());
+                current.setLength(0);
+            }
+        }
+        if (current.toString().trim().length() > 0) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    /**
+     * A migration read from the classpath.
+     */
+    private static final class Migration {
+
+        private final int version;
+        private final String description;
+        private final String checksum;
+        private final List<String> statements;
+
+        private Migration(int version, String description, String checksum, List<String> statements) {
+            this.version = version;
+            this.description = description;
+            this.checksum = checksum;
+            this.statements = statements;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package eus.klimu.database;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Reserves blocks of identification numbers from the table of a pooled-lo generator, the same table Hibernate
+ * reads for the entity. MySQL has no sequences, so the table has a single next_val row with the first number
+ * not reserved yet; a reservation moves it forward by the size of the block, so the numbers reserved here and
+ * the ones reserved by Hibernate never overlap.
+ */
+public class TableSequence {
+
+    private final DataSource dataSource;
+    private final String reserveSql;
+
+    /**
+     * Create a new table sequence.
+     * @param dataSource The connection with the database.
+     * @param table The name of the table of the generator, like notification_seq.
+     */
+    public TableSequence(DataSource dataSource, String table) {
+        this.dataSource = dataSource;
+        this.reserveSql = "UPDATE " + table + " SET next_val = LAST_INSERT_ID(next_val + ?)";
+    }
+
+    /**
+     * Reserve a block of consecutive identification numbers. The reservation uses its own connection and is
+     * committed straight away, so the row is not locked while the caller's transaction lasts.
+     * @param count The amount of identification numbers.
+     * @return The first identification number of the block.
+     * @throws SQLException Generated if the table could not be updated.
+     */
+    public long reserve(int count) throws SQLException {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Can't reserve " + count + " identification numbers");
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            try (PreparedStatement update = connection.prepareStatement(reserveSql)) {
+                update.setLong(1, count);
+                if (update.executeUpdate() != 1) {
+                    throw new SQLException("The sequence table must have a single row");
+                }
+            }
+            // LAST_INSERT_ID is kept per connection, so it's the value this update has written.
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT LAST_INSERT_ID()")) {
+                resultSet.next();
+                return resultSet.getLong(1) - count;
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package eus.klimu.location.api;
 import eus.klimu.location.domain.model.Location;
 import eus.klimu.location.domain.model.LocationDTO;
 import eus.klimu.location.domain.service.definition.LocationService;
+import eus.klimu.pagination.KeysetPagination;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -11,6 +12,8 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
@@ -29,6 +32,10 @@ public class LocationController {
      * A class that allows modifying the different locations.
      */
     private final LocationService locationService;
+    /**
+     * Reads the lists by pages.
+     */
+    private final KeysetPagination keysetPagination;
 
     /**
      * <p>Get a location by its ID.</p>
@@ -135,7 +142,8 @@ public class LocationController {
     }
 
     /**
-     * <p>Get all the different locations from the database.</p>
+     * <p>Get all the Locations from the database. They are read by batches and written as they are read, so the
+     * memory used doesn't depend on the amount of locations.</p>
      *
      * <p><a href="https://klimu.eus/RestAPI/location/all">https://klimu.eus/RestAPI/location/all</a></p>
      *
@@ -144,14 +152,42 @@ public class LocationController {
      *     <li>Requires: Access and Refresh tokens as headers.</li>
      * </ul>
      *
-     * @return A 200 ok with all the different locations.
+     * @param response The response the locations are written to.
+     * @throws IOException Generated if the response could not be written.
+     */
+    @GetMapping(
+            value = "/all",
+            params = {"!after", "!limit"},
+            produces = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public void getAllLocations(HttpServletResponse response) throws IOException {
+        keysetPagination.stream(response, locationService::getLocationsAfter, Location::getId);
+    }
+
+    /**
+     * <p>Get a page of the Locations from the database, in order of their ID. The ID to continue from is sent on
+     * the X-Next-Cursor header, and it's missing on the last page.</p>
+     *
+     * <p><a href="https://klimu.eus/RestAPI/location/all?after={cursor}&limit={limit}">https://klimu.eus/RestAPI/location/all?after={cursor}&limit={limit}</a></p>
+     *
+     * <ul>
+     *     <li>Produces: application/json</li>
+     *     <li>Requires: Access and Refresh tokens as headers.</li>
+     * </ul>
+     *
+     * @param after The ID of the last location of the previous page, none for the first page.
+     * @param limit The maximum amount of locations on the page, up to 1000.
+     * @return A 200 ok with the page or a 400 bad request if the parameters are not valid.
      */
     @GetMapping(
             value = "/all",
             produces = {MediaType.APPLICATION_JSON_VALUE}
     )
-    public ResponseEntity<List<Location>> getAllLocations() {
-        return ResponseEntity.ok().body(locationService.getAllLocations());
+    public ResponseEntity<List<Location>> getAllLocations(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "500") int limit
+    ) {
+        return keysetPagination.page(locationService::getLocationsAfter, Location::getId, after, limit);
     }
 
     /**
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -23,7 +24,8 @@ public class Location {
      * The identification number of the location.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "location_seq")
+    @GenericGenerator(name = "location_seq", strategy = "eus.klimu.database.PooledSequenceGenerator")
     private Long id;
     /**
      * The city of the location.
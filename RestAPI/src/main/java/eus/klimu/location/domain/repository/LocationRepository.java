@@ -1,8 +1,11 @@
 package eus.klimu.location.domain.repository;
 
 import eus.klimu.location.domain.model.Location;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
+
 /**
  * Access to the database for the locations.
  * Extends from a JpaRepository.
@@ -38,4 +41,12 @@ public interface LocationRepository extends JpaRepository<Location, Long> {
      */
     Location findByCityAndCountry(String city, String country);
 
+    /**
+     * Find the locations after an identification number, in order of their identification number.
+     * @param id The identification number of the last location already read.
+     * @param pageable The maximum amount of locations.
+     * @return A list with the locations after that identification number.
+     */
+    List<Location> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
 }
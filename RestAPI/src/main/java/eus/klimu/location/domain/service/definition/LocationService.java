@@ -2,6 +2,7 @@ package eus.klimu.location.domain.service.definition;
 
 import eus.klimu.location.domain.model.Location;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -28,6 +29,13 @@ public interface LocationService {
      */
     Location getLocationById(long id);
 
+    /**
+     * Get the locations with some IDs.
+     * @param ids The IDs of the locations.
+     * @return A list with the locations found.
+     */
+    List<Location> getLocationsById(Collection<Long> ids);
+
     /**
      * Get a location based on its city.
      * @param city The city of the location.
@@ -77,4 +85,12 @@ public interface LocationService {
      */
     void deleteLocation(Location location);
 
+    /**
+     * Get a page of the locations, in order of their identification number.
+     * @param after The identification number of the last location already read.
+     * @param limit The maximum amount of locations.
+     * @return A list with the locations after that identification number.
+     */
+    List<Location> getLocationsAfter(long after, int limit);
+
 }
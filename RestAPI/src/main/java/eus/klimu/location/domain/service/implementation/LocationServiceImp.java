@@ -5,9 +5,11 @@ import eus.klimu.location.domain.repository.LocationRepository;
 import eus.klimu.location.domain.service.definition.LocationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -47,6 +49,17 @@ public class LocationServiceImp implements LocationService {
         return locationRepository.findById(id);
     }
 
+    /**
+     * Get the locations with some IDs from the database, with a single query.
+     * @param ids The IDs of the locations.
+     * @return A list with the locations found.
+     */
+    @Override
+    public List<Location> getLocationsById(Collection<Long> ids) {
+        log.info("Fetching {} locations by id", ids.size());
+        return locationRepository.findAllById(ids);
+    }
+
     /**
      * Get a location from the database, making use of its city.
      * @param city The city of the location.
@@ -133,4 +146,16 @@ public class LocationServiceImp implements LocationService {
         log.info("Deleting location with id={}", location.getId());
         locationRepository.delete(location);
     }
+
+    /**
+     * Get a page of the locations from the database, in order of their identification number.
+     * @param after The identification number of the last location already read.
+     * @param limit The maximum amount of locations.
+     * @return A list with the locations after that identification number.
+     */
+    @Override
+    public List<Location> getLocationsAfter(long after, int limit) {
+        log.info("Fetching {} locations after id={}", limit, after);
+        return locationRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, limit));
+    }
 }
@@ -9,6 +9,7 @@ import eus.klimu.notification.domain.model.NotificationType;
 import eus.klimu.notification.domain.model.NotificationTypeDTO;
 import eus.klimu.notification.domain.service.definition.LocalizedNotificationService;
 import eus.klimu.notification.domain.service.definition.NotificationTypeService;
+import eus.klimu.pagination.KeysetPagination;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -17,6 +18,8 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URI;
 import java.util.List;
 
@@ -42,6 +45,10 @@ public class LocalizedNotificationController {
      * A class that allows modifying the locations.
      */
     private final LocationService locationService;
+    /**
+     * Reads the lists by pages.
+     */
+    private final KeysetPagination keysetPagination;
 
     /**
      * <p>Get a localized notification based on it's ID.</p>
@@ -102,7 +109,8 @@ public class LocalizedNotificationController {
     }
 
     /**
-     * <p>Get all the localized notifications from the database.</p>
+     * <p>Get all the Localized Notifications from the database. They are read by batches and written as they are read, so the
+     * memory used doesn't depend on the amount of localized notifications.</p>
      *
      * <p><a href="https://klimu.eus/RestAPI/localized-notification/all">https://klimu.eus/RestAPI/localized-notification/all</a></p>
      *
@@ -111,11 +119,42 @@ public class LocalizedNotificationController {
      *     <li>Requires: Access and Refresh tokens as headers.</li>
      * </ul>
      *
-     * @return A 200 ok with the channel as a JSON if found or a 400 bad request if it wasn't.
+     * @param response The response the localized notifications are written to.
+     * @throws IOException Generated if the response could not be written.
+     */
+    @GetMapping(
+            value = "/all",
+            params = {"!after", "!limit"},
+            produces = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public void getLocalizedNotifications(HttpServletResponse response) throws IOException {
+        keysetPagination.stream(response, localizedNotificationService::getLocalizedNotificationsAfter, LocalizedNotification::getId);
+    }
+
+    /**
+     * <p>Get a page of the Localized Notifications from the database, in order of their ID. The ID to continue from is sent on
+     * the X-Next-Cursor header, and it's missing on the last page.</p>
+     *
+     * <p><a href="https://klimu.eus/RestAPI/localized-notification/all?after={cursor}&limit={limit}">https://klimu.eus/RestAPI/localized-notification/all?after={cursor}&limit={limit}</a></p>
+     *
+     * <ul>
+     *     <li>Produces: application/json</li>
+     *     <li>Requires: Access and Refresh tokens as headers.</li>
+     * </ul>
+     *
+     * @param after The ID of the last localized notification of the previous page, none for the first page.
+     * @param limit The maximum amount of localized notifications on the page, up to 1000.
+     * @return A 200 ok with the page or a 400 bad request if the parameters are not valid.
      */
-    @GetMapping(value = "/all", produces = {MediaType.APPLICATION_JSON_VALUE})
-    public ResponseEntity<List<LocalizedNotification>> getLocalizedNotifications() {
-        return ResponseEntity.ok().body(localizedNotificationService.getAllLocalizedNotifications());
+    @GetMapping(
+            value = "/all",
+            produces = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public ResponseEntity<List<LocalizedNotification>> getLocalizedNotifications(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "500") int limit
+    ) {
+        return keysetPagination.page(localizedNotificationService::getLocalizedNotificationsAfter, LocalizedNotification::getId, after, limit);
     }
 
     /**
@@ -1,23 +1,38 @@
 package eus.klimu.notification.api;
 
-import eus.klimu.location.domain.model.Location;
-import eus.klimu.location.domain.model.LocationDTO;
 import eus.klimu.location.domain.service.definition.LocationService;
+import eus.klimu.notification.domain.cache.LatestNotifications;
+import eus.klimu.notification.domain.changes.ChangeFeed;
+import eus.klimu.notification.domain.export.ExportFormat;
+import eus.klimu.notification.domain.export.NotificationExporter;
+import eus.klimu.notification.domain.ingest.NotificationIngest;
 import eus.klimu.notification.domain.model.*;
 import eus.klimu.notification.domain.service.definition.NotificationService;
 import eus.klimu.notification.domain.service.definition.NotificationTypeService;
+import eus.klimu.notification.domain.stream.NotificationStream;
+import eus.klimu.pagination.CacheableResponses;
+import eus.klimu.pagination.KeysetPagination;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
-import java.util.ArrayList;
+import java.security.Principal;
+import java.sql.SQLException;
 import java.util.Date;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Create, update, delete and get information for the Notifications. They represent the different notifications
@@ -41,6 +56,34 @@ public class NotificationController {
      * A class that allows modifying the locations.
      */
     private final LocationService locationService;
+    /**
+     * The stream of Desktop notifications for the connected clients.
+     */
+    private final NotificationStream notificationStream;
+    /**
+     * The feed of changes on the notifications.
+     */
+    private final ChangeFeed changeFeed;
+    /**
+     * The latest notifications, kept in memory.
+     */
+    private final LatestNotifications latestNotifications;
+    /**
+     * Reads the lists by pages.
+     */
+    private final KeysetPagination keysetPagination;
+    /**
+     * Exports the notifications straight from the database.
+     */
+    private final NotificationExporter notificationExporter;
+    /**
+     * Saves the big lists of notifications with JDBC batches.
+     */
+    private final NotificationIngest notificationIngest;
+    /**
+     * Builds the responses that can be kept by the clients.
+     */
+    private final CacheableResponses cacheableResponses;
 
     /**
      * <p>Get a notification based on its ID.</p>
@@ -68,180 +111,273 @@ public class NotificationController {
     }
 
     /**
-     * <p>Get a list of notifications based on a location.</p>
+     * <p>Search the notifications, filtering them by location, type, danger level and date. The filters of the
+     * same kind are combined with an or, and the different kinds with an and. The notifications are sent by
+     * pages in order of date, and the cursor of the next page is sent on the X-Next-Cursor header. The responses
+     * have an ETag and can be kept by the client for a short time.</p>
      *
-     * <p><a href="https://klimu.eus/RestAPI/notification/location">https://klimu.eus/RestAPI/notification/location</a></p>
+     * <p><a href="https://klimu.eus/RestAPI/notification/search">https://klimu.eus/RestAPI/notification/search</a></p>
      *
      * <ul>
-     *     <li>Consumes: application/json, application/xml</li>
-     *     <li>Produces: application/json, application/xml</li>
+     *     <li>Produces: application/json</li>
      *     <li>Requires: Access and Refresh tokens as headers.</li>
      * </ul>
      *
-     * @param location The location of the notification to look for.
-     * @return A 200 ok if the notifications were found or a 400 bad request if it wasn't.
+     * @param locationIds The IDs of the locations the notifications must be from.
+     * @param typeIds The IDs of the notification types the notifications must be of.
+     * @param severities The danger levels of the notification types, like Warning or Dangerous.
+     * @param from The minimum date of the notifications, as yyyy-MM-dd,HH:mm:ss.
+     * @param to The maximum date of the notifications, excluded, as yyyy-MM-dd,HH:mm:ss.
+     * @param sort The order of the notifications by date, asc or desc.
+     * @param cursor The cursor returned with the previous page, none for the first page.
+     * @param limit The maximum amount of notifications on the page, up to 500.
+     * @param ifNoneMatch The ETag of the page the client already has.
+     * @return A 200 ok with the notifications, a 304 not modified if the client already has them or a 400 bad
+     * request if the parameters are not valid.
      */
     @GetMapping(
-            value = "/location",
-            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE},
+            value = "/search",
             produces = {MediaType.APPLICATION_JSON_VALUE}
     )
-    public ResponseEntity<List<Notification>> getNotifications(@RequestBody LocationDTO location) {
-        if (location != null) {
-            return ResponseEntity.ok().body(
-                    notificationService.getAllNotifications(Location.generateLocation(location)));
-        } else {
+    public ResponseEntity<byte[]> searchNotifications(
+            @RequestParam(value = "location", required = false) List<Long> locationIds,
+            @RequestParam(value = "type", required = false) List<Long> typeIds,
+            @RequestParam(value = "severity", required = false) List<String> severities,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd,HH:mm:ss") Date from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd,HH:mm:ss") Date to,
+            @RequestParam(defaultValue = "desc") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        NotificationCursor position = cursor != null ? NotificationCursor.decode(cursor) : null;
+        boolean validSort = "asc".equalsIgnoreCase(sort) || "desc".equalsIgnoreCase(sort);
+
+        if (!validSort || (cursor != null && position == null) || limit <= 0 || limit > 500
+                || (from != null && to != null && !from.before(to))) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
+        List<Notification> notifications = notificationService.searchNotifications(new NotificationSearch(
+                locationIds, typeIds, severities, from, to, "asc".equalsIgnoreCase(sort), position, limit
+        ));
+
+        String nextCursor = notifications.size() == limit
+                ? NotificationCursor.of(notifications.get(notifications.size() - 1)).encode()
+                : null;
+        return cacheableResponses.page(notifications, nextCursor, ifNoneMatch);
     }
 
     /**
-     * <p>Get a list of notifications based on its type.</p>
+     * <p>Get all the Notifications from the database. They are read by batches and written as they are read, so the
+     * memory used doesn't depend on the amount of notifications.</p>
      *
-     * <p><a href="https://klimu.eus/RestAPI/notification/type">https://klimu.eus/RestAPI/notification/type</a></p>
+     * <p><a href="https://klimu.eus/RestAPI/notification/all">https://klimu.eus/RestAPI/notification/all</a></p>
      *
      * <ul>
-     *     <li>Consumes: application/json, application/xml</li>
-     *     <li>Produces: application/json, application/xml</li>
+     *     <li>Produces: application/json</li>
      *     <li>Requires: Access and Refresh tokens as headers.</li>
      * </ul>
      *
-     * @param notificationType The type of the notification to look for.
-     * @return A 200 ok if the notifications were found or a 400 bad request if it wasn't.
+     * @param response The response the notifications are written to.
+     * @throws IOException Generated if the response could not be written.
      */
     @GetMapping(
-            value = "/type",
-            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE},
+            value = "/all",
+            params = {"!after", "!limit"},
             produces = {MediaType.APPLICATION_JSON_VALUE}
     )
-    public ResponseEntity<List<Notification>> getNotifications(@RequestBody NotificationTypeDTO notificationType) {
-        if (notificationType != null) {
-            return ResponseEntity.ok().body(
-                    notificationService.getAllNotifications(NotificationType.generateNotificationType(notificationType)));
-        } else {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
-        }
+    public void getNotifications(HttpServletResponse response) throws IOException {
+        keysetPagination.stream(response, notificationService::getNotificationsAfter, Notification::getId);
     }
 
     /**
-     * <p>Get a list of notifications for a specific date and a location.</p>
+     * <p>Get a page of the Notifications from the database, in order of their ID. The ID to continue from is sent on
+     * the X-Next-Cursor header, and it's missing on the last page.</p>
      *
-     * <p><a href="https://klimu.eus/RestAPI/notification/date/location">https://klimu.eus/RestAPI/notification/date/location</a></p>
+     * <p><a href="https://klimu.eus/RestAPI/notification/all?after={cursor}&limit={limit}">https://klimu.eus/RestAPI/notification/all?after={cursor}&limit={limit}</a></p>
      *
      * <ul>
-     *     <li>Consumes: application/json, application/xml</li>
-     *     <li>Produces: application/json, application/xml</li>
+     *     <li>Produces: application/json</li>
      *     <li>Requires: Access and Refresh tokens as headers.</li>
      * </ul>
      *
-     * @param location The location the notifications must be from.
-     * @param startDate The date the notifications must be higher from.
-     * @param endDate The date the notification must be lower from.
-     * @return A 200 ok if the notifications were found or a 400 bad request if it wasn't.
+     * @param after The ID of the last notification of the previous page, none for the first page.
+     * @param limit The maximum amount of notifications on the page, up to 1000.
+     * @return A 200 ok with the page or a 400 bad request if the parameters are not valid.
      */
     @GetMapping(
-            value = "/date/location",
-            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE},
+            value = "/all",
             produces = {MediaType.APPLICATION_JSON_VALUE}
     )
     public ResponseEntity<List<Notification>> getNotifications(
-            @RequestBody LocationDTO location,
-            @RequestBody Date startDate,
-            @RequestBody Date endDate
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "500") int limit
     ) {
-        DatePeriod datePeriod = null;
-
-        if (startDate != null && endDate != null) {
-            datePeriod = new DatePeriod(startDate, endDate);
-        }
-        if (location != null && datePeriod != null && datePeriod.check()) {
-            return ResponseEntity.ok().body(notificationService.getNotificationsByDateBetween(
-                    Location.generateLocation(location), datePeriod.getStartDate(), datePeriod.getEndDate()
-            ));
-        } else {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
-        }
+        return keysetPagination.page(notificationService::getNotificationsAfter, Notification::getId, after, limit);
     }
 
     /**
-     * <p>Get a list of notifications for a specific date and type.</p>
+     * <p>Get the last 50 notifications stored on the database. They are kept in memory and sent already
+     * serialized.</p>
      *
-     * <p><a href="https://klimu.eus/RestAPI/notification/date/type">https://klimu.eus/RestAPI/notification/date/type</a></p>
+     * <p><a href="https://klimu.eus/RestAPI/notification/all/limited">https://klimu.eus/RestAPI/notification/all/limited</a></p>
      *
      * <ul>
-     *     <li>Consumes: application/json, application/xml</li>
-     *     <li>Produces: application/json, application/xml</li>
+     *     <li>Produces: application/json</li>
      *     <li>Requires: Access and Refresh tokens as headers.</li>
      * </ul>
      *
-     * @param notificationType The type the notifications must be from.
-     * @param startDate The date the notifications must be higher from.
-     * @param endDate The date the notification must be lower from.
      * @return A 200 ok if the notifications were found or a 400 bad request if it wasn't.
      */
     @GetMapping(
-            value = "/date/type",
-            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE},
+            value = "/all/limited",
             produces = {MediaType.APPLICATION_JSON_VALUE}
     )
-    public ResponseEntity<List<Notification>> getNotifications(
-            @RequestBody NotificationTypeDTO notificationType,
-            @RequestBody Date startDate,
-            @RequestBody Date endDate
-    ) {
-        DatePeriod datePeriod = null;
+    public ResponseEntity<byte[]> getNotificationsLimited() {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(latestNotifications.getJson());
+    }
 
-        if (startDate != null && endDate != null) {
-            datePeriod = new DatePeriod(startDate, endDate);
+    /**
+     * <p>Open a stream of Server-Sent Events with the new notifications the user is subscribed to on the
+     * Desktop channel. A heartbeat comment is sent periodically, and a client that reconnects with the
+     * Last-Event-ID header gets the notifications it missed, or a resync event if they are too old.</p>
+     *
+     * <p><a href="https://klimu.eus/RestAPI/notification/stream">https://klimu.eus/RestAPI/notification/stream</a></p>
+     *
+     * <ul>
+     *     <li>Produces: text/event-stream</li>
+     *     <li>Requires: Access and Refresh tokens as headers.</li>
+     * </ul>
+     *
+     * @param principal The authenticated user.
+     * @param lastEventId The ID of the last event received, when reconnecting.
+     * @return A 200 ok with the stream, or a 503 service unavailable if there are too many connections.
+     */
+    @GetMapping(
+            value = "/stream",
+            produces = {MediaType.TEXT_EVENT_STREAM_VALUE}
+    )
+    public ResponseEntity<SseEmitter> streamNotifications(
+            Principal principal,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId
+    ) {
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
-        if (notificationType != null && datePeriod != null && datePeriod.check()) {
-            return ResponseEntity.ok().body(notificationService.getNotificationsByDateBetween(
-                    NotificationType.generateNotificationType(notificationType),
-                    datePeriod.getStartDate(), datePeriod.getEndDate()
-            ));
+        SseEmitter emitter = notificationStream.connect(principal.getName(), lastEventId);
+        if (emitter != null) {
+            // Tell the proxies not to buffer the events.
+            return ResponseEntity.ok().header("X-Accel-Buffering", "no").body(emitter);
         } else {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         }
     }
 
     /**
-     * <p>Get all the notifications stored on the database.</p>
+     * <p>Get the notifications created, updated or deleted after a cursor, instead of fetching the last
+     * notifications again. Without a cursor, only the current cursor is returned. If there are no changes yet,
+     * the request waits up to the given seconds for them before answering with an empty list.</p>
      *
-     * <p><a href="https://klimu.eus/RestAPI/notification/all">https://klimu.eus/RestAPI/notification/all</a></p>
+     * <p><a href="https://klimu.eus/RestAPI/notification/changes">https://klimu.eus/RestAPI/notification/changes</a></p>
      *
      * <ul>
      *     <li>Produces: application/json</li>
      *     <li>Requires: Access and Refresh tokens as headers.</li>
      * </ul>
      *
-     * @return A 200 ok if the notifications were found or a 400 bad request if it wasn't.
+     * @param since The cursor returned by the previous request.
+     * @param limit The maximum amount of changes, up to 1000.
+     * @param wait The maximum seconds to wait for changes, up to 30.
+     * @return A 200 ok with the changes and the next cursor, a 400 bad request if the parameters are not valid
+     * or a 410 gone if the changes after the cursor are no longer kept.
      */
     @GetMapping(
-            value = "/all",
+            value = "/changes",
             produces = {MediaType.APPLICATION_JSON_VALUE}
     )
-    public ResponseEntity<List<Notification>> getNotifications() {
-        return ResponseEntity.ok().body(notificationService.getAllNotifications());
+    public DeferredResult<ResponseEntity<ChangeFeedDTO>> getChanges(
+            @RequestParam(required = false) Long since,
+            @RequestParam(defaultValue = "500") int limit,
+            @RequestParam(defaultValue = "0") int wait
+    ) {
+        if ((since != null && since < 0) || limit <= 0 || limit > 1000 || wait < 0 || wait > 30) {
+            DeferredResult<ResponseEntity<ChangeFeedDTO>> result = new DeferredResult<>();
+            result.setResult(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+            return result;
+        }
+        return changeFeed.poll(since, limit, wait * 1000L);
     }
 
     /**
-     * <p>Get the last 50 notifications stored on the database.</p>
+     * <p>Export the notifications as NDJSON or CSV, in order of date. The notifications are written as they are
+     * read from the database, so the export starts straight away and its size is not limited by the memory. The
+     * export is compressed with gzip if the client accepts it.</p>
      *
-     * <p><a href="https://klimu.eus/RestAPI/notification/all/limited">https://klimu.eus/RestAPI/notification/all/limited</a></p>
+     * <p><a href="https://klimu.eus/RestAPI/notification/export">https://klimu.eus/RestAPI/notification/export</a></p>
      *
      * <ul>
-     *     <li>Produces: application/json</li>
+     *     <li>Produces: application/x-ndjson, text/csv</li>
      *     <li>Requires: Access and Refresh tokens as headers.</li>
      * </ul>
      *
-     * @return A 200 ok if the notifications were found or a 400 bad request if it wasn't.
+     * @param format The format of the export, ndjson or csv.
+     * @param from The minimum date of the notifications, as yyyy-MM-dd,HH:mm:ss.
+     * @param to The maximum date of the notifications, excluded, as yyyy-MM-dd,HH:mm:ss.
+     * @param types The names of the notification types, all of them if there are none.
+     * @param acceptEncoding The encodings accepted by the client.
+     * @param response The response the notifications are written to.
+     * @throws IOException Generated if the response could not be written.
      */
-    @GetMapping(
-            value = "/all/limited",
-            produces = {MediaType.APPLICATION_JSON_VALUE}
-    )
-    public ResponseEntity<List<Notification>> getNotificationsLimited() {
-        return ResponseEntity.ok().body(notificationService.getAllNotificationsLimited());
+    @GetMapping(value = "/export")
+    public void exportNotifications(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd,HH:mm:ss") Date from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd,HH:mm:ss") Date to,
+            @RequestParam(value = "type", required = false) List<String> types,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse response
+    ) throws IOException {
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+        if (from != null && to != null && !from.before(to)) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+        if (!notificationExporter.tryAcquire()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+
+        try {
+            boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(exportFormat.getContentType() + ";charset=UTF-8");
+            response.setHeader(
+                    HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"notifications." + exportFormat.getExtension() + "\""
+            );
+            if (gzip) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+
+            OutputStream output = response.getOutputStream();
+            if (gzip) {
+                try (GZIPOutputStream compressed = new GZIPOutputStream(output, 64 * 1024)) {
+                    notificationExporter.export(exportFormat, from, to, types, compressed);
+                }
+            } else {
+                notificationExporter.export(exportFormat, from, to, types, output);
+                output.flush();
+            }
+        } finally {
+            notificationExporter.release();
+        }
     }
 
     /**
@@ -276,7 +412,8 @@ public class NotificationController {
     }
 
     /**
-     * <p>Save an X amount of notifications on the database.</p>
+     * <p>Save an X amount of notifications on the database. The types and locations are read with one query for
+     * the whole list and the notifications are written with JDBC batches, so big lists can be sent at once.</p>
      *
      * <p><a href="https://klimu.eus/RestAPI/notification/create/all">https://klimu.eus/RestAPI/notification/create/all</a></p>
      *
@@ -287,23 +424,25 @@ public class NotificationController {
      * </ul>
      *
      * @param notifications The notification that is going to be stored.
-     * @return A 200 ok if the notifications were created or a 400 bad request if it wasn't.
+     * @return A 201 created if the notifications were created or a 400 bad request if any of them is not valid.
+     * @throws SQLException Generated if the identification numbers could not be reserved.
      */
     @PostMapping(
             value = "/create/all",
             consumes = {MediaType.APPLICATION_JSON_VALUE},
             produces = {MediaType.APPLICATION_JSON_VALUE}
     )
-    public ResponseEntity<List<Notification>> createAllNotifications(@RequestBody List<NotificationDTO> notifications) {
+    public ResponseEntity<List<Notification>> createAllNotifications(
+            @RequestBody List<NotificationDTO> notifications
+    ) throws SQLException {
         if (notifications != null && !notifications.isEmpty()) {
-            List<Notification> persistentNotifications = new ArrayList<>();
-            notifications.forEach(n -> persistentNotifications.add(Notification.generateNotification(
-                    n, notificationTypeService, locationService
-            )));
-
-            return ResponseEntity.created(
-                    URI.create(ServletUriComponentsBuilder.fromCurrentContextPath().path("/notification/create/all").toUriString())
-            ).body(notificationService.addAllNotifications(persistentNotifications));
+            try {
+                return ResponseEntity.created(
+                        URI.create(ServletUriComponentsBuilder.fromCurrentContextPath().path("/notification/create/all").toUriString())
+                ).body(notificationIngest.ingest(notifications));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            }
         } else {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
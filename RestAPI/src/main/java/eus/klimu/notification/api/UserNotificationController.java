@@ -8,6 +8,7 @@ import eus.klimu.notification.domain.model.*;
 import eus.klimu.notification.domain.service.definition.LocalizedNotificationService;
 import eus.klimu.notification.domain.service.definition.NotificationTypeService;
 import eus.klimu.notification.domain.service.definition.UserNotificationService;
+import eus.klimu.pagination.KeysetPagination;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -15,6 +16,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -48,6 +51,10 @@ public class UserNotificationController {
      * A class that allows modifying the localized notifications.
      */
     private final LocalizedNotificationService localizedNotificationService;
+    /**
+     * Reads the lists by pages.
+     */
+    private final KeysetPagination keysetPagination;
 
     /**
      * <p>Get a user notification based on its ID.</p>
@@ -72,7 +79,8 @@ public class UserNotificationController {
     }
 
     /**
-     * <p>Get all the user notifications from the database.</p>
+     * <p>Get all the User Notifications from the database. They are read by batches and written as they are read, so the
+     * memory used doesn't depend on the amount of user notifications.</p>
      *
      * <p><a href="https://klimu.eus/RestAPI/user-notification/all">https://klimu.eus/RestAPI/user-notification/all</a></p>
      *
@@ -81,11 +89,42 @@ public class UserNotificationController {
      *     <li>Requires: Access and Refresh tokens as headers.</li>
      * </ul>
      *
-     * @return A 200 ok if the User Notifications were found or a 400 bad request if it wasn't.
+     * @param response The response the user notifications are written to.
+     * @throws IOException Generated if the response could not be written.
      */
-    @GetMapping(value = "/all", produces = {MediaType.APPLICATION_JSON_VALUE})
-    public ResponseEntity<List<UserNotification>> getUserNotifications() {
-        return ResponseEntity.ok().body(userNotificationService.getUserNotifications());
+    @GetMapping(
+            value = "/all",
+            params = {"!after", "!limit"},
+            produces = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public void getUserNotifications(HttpServletResponse response) throws IOException {
+        keysetPagination.stream(response, userNotificationService::getUserNotificationsAfter, UserNotification::getId);
+    }
+
+    /**
+     * <p>Get a page of the User Notifications from the database, in order of their ID. The ID to continue from is sent on
+     * the X-Next-Cursor header, and it's missing on the last page.</p>
+     *
+     * <p><a href="https://klimu.eus/RestAPI/user-notification/all?after={cursor}&limit={limit}">https://klimu.eus/RestAPI/user-notification/all?after={cursor}&limit={limit}</a></p>
+     *
+     * <ul>
+     *     <li>Produces: application/json</li>
+     *     <li>Requires: Access and Refresh tokens as headers.</li>
+     * </ul>
+     *
+     * @param after The ID of the last user notification of the previous page, none for the first page.
+     * @param limit The maximum amount of user notifications on the page, up to 1000.
+     * @return A 200 ok with the page or a 400 bad request if the parameters are not valid.
+     */
+    @GetMapping(
+            value = "/all",
+            produces = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public ResponseEntity<List<UserNotification>> getUserNotifications(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "500") int limit
+    ) {
+        return keysetPagination.page(userNotificationService::getUserNotificationsAfter, UserNotification::getId, after, limit);
     }
 
     /**
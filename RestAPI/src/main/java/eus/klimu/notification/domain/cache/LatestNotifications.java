@@ -0,0 +1,264 @@
+package eus.klimu.notification.domain.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eus.klimu.notification.domain.model.Notification;
+import eus.klimu.notification.domain.repository.NotificationRepository;
+import eus.klimu.notification.domain.service.definition.NotificationChangeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the latest notifications in memory, so they are served without going to the database. The notifications
+ * are held on an immutable snapshot that is replaced on every change, so the readers never wait. The snapshot
+ * is loaded at startup, updated once the changes of this instance are committed and loaded again when the
+ * change feed shows changes done on other instances.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "eus.klimu:type=LatestNotifications", description = "Latest notifications in memory")
+public class LatestNotifications {
+
+    /**
+     * The newest notifications first, the ones without a date at the end.
+     */
+    private static final Comparator<Notification> NEWEST_FIRST = Comparator
+            .comparing(Notification::getDate, Comparator.nullsFirst(Comparator.<Date>naturalOrder()))
+            .thenComparing(Notification::getId, Comparator.nullsFirst(Comparator.<Long>naturalOrder()))
+            .reversed();
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationChangeService changeService;
+    private final ObjectMapper objectMapper;
+    private final int size;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(new Notification[0]));
+    /**
+     * The cursor of the change feed when the snapshot was last loaded.
+     */
+    private volatile long loadedCursor = -1;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder serializations = new LongAdder();
+
+    /**
+     * Create a new instance of the latest notifications.
+     * @param notificationRepository The connection with the notification table on the database.
+     * @param changeService The service of the notification changes, for detecting changes of other instances.
+     * @param objectMapper Serializes the notifications.
+     * @param size The amount of notifications kept.
+     */
+    public LatestNotifications(
+            NotificationRepository notificationRepository, NotificationChangeService changeService,
+            ObjectMapper objectMapper, @Value("${klimu.notification.latest.size:50}") int size
+    ) {
+        this.notificationRepository = notificationRepository;
+        this.changeService = changeService;
+        this.objectMapper = objectMapper;
+        this.size = size;
+    }
+
+    /**
+     * Get the latest notifications.
+     * @return The latest notifications, the newest first.
+     */
+    public List<Notification> getNotifications() {
+        Snapshot current = currentSnapshot();
+        hits.increment();
+        return Collections.unmodifiableList(Arrays.asList(current.notifications));
+    }
+
+    /**
+     * Get the latest notifications as JSON. The JSON is built once for every version of the snapshot.
+     * @return The JSON of the latest notifications, the newest first.
+     */
+    public byte[] getJson() {
+        Snapshot current = currentSnapshot();
+        hits.increment();
+
+        byte[] json = current.json;
+        if (json == null) {
+            // Two readers may build it at the same time, but both get the same bytes.
+            try {
+                json = objectMapper.writeValueAsBytes(current.notifications);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+            current.json = json;
+            serializations.increment();
+        }
+        return json;
+    }
+
+    /**
+     * Add or replace the saved notifications, once their transaction is committed.
+     * @param notifications The notifications saved.
+     */
+    public void saved(Collection<Notification> notifications) {
+        afterCommit(() -> snapshot.updateAndGet(current -> current.with(notifications, size)));
+    }
+
+    /**
+     * Remove a deleted notification, once its transaction is committed.
+     * @param id The identification number of the deleted notification.
+     */
+    public void deleted(long id) {
+        afterCommit(() -> snapshot.updateAndGet(current -> current.without(id)));
+    }
+
+    /**
+     * Load the notifications when the application starts.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        reload();
+    }
+
+    /**
+     * Load the notifications again if they have changed since the last load, which also covers the changes done
+     * on other instances and the notifications removed from the snapshot.
+     */
+    @Scheduled(
+            initialDelayString = "${klimu.notification.latest.refresh-ms:5000}",
+            fixedDelayString = "${klimu.notification.latest.refresh-ms:5000}"
+    )
+    public void refresh() {
+        try {
+            if (changeService.getLastCursor() != loadedCursor) {
+                reload();
+            }
+        } catch (RuntimeException e) {
+            log.error("Couldn't refresh the latest notifications", e);
+        }
+    }
+
+    /**
+     * Load the latest notifications from the database.
+     */
+    private synchronized void reload() {
+        // Read before the notifications, so a change done in between is loaded on the next refresh.
+        long cursor = changeService.getLastCursor();
+        List<Notification> latest = notificationRepository.findAll(
+                PageRequest.of(0, size, Sort.by(Sort.Order.desc("date"), Sort.Order.desc("id")))
+        ).getContent();
+
+        snapshot.set(new Snapshot(latest.toArray(new Notification[0])));
+        loadedCursor = cursor;
+        reloads.increment();
+        log.info("Loaded the latest {} notifications", latest.size());
+    }
+
+    private Snapshot currentSnapshot() {
+        if (loadedCursor < 0) {
+            reload();
+        }
+        return snapshot.get();
+    }
+
+    /**
+     * Run an update once the current transaction is committed, or straight away without a transaction.
+     * @param update The update of the snapshot.
+     */
+    private static void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    @ManagedAttribute(description = "Requests served from memory")
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @ManagedAttribute(description = "Loads from the database")
+    public long getReloads() {
+        return reloads.sum();
+    }
+
+    @ManagedAttribute(description = "Times the JSON was built")
+    public long getSerializations() {
+        return serializations.sum();
+    }
+
+    @ManagedAttribute(description = "Notifications in memory")
+    public int getSize() {
+        return snapshot.get().notifications.length;
+    }
+
+    /**
+     * An immutable version of the latest notifications. The JSON is built the first time it's requested.
+     */
+    private static final class Snapshot {
+
+        private final Notification[] notifications;
+        private volatile byte[] json;
+
+        private Snapshot(Notification[] notifications) {
+            this.notifications = notifications;
+        }
+
+        /**
+         * Get a new snapshot with some notifications added or replaced.
+         * @param saved The notifications saved.
+         * @param size The amount of notifications kept.
+         * @return The new snapshot.
+         */
+        private Snapshot with(Collection<Notification> saved, int size) {
+            Set<Long> ids = new HashSet<>();
+            saved.forEach(notification -> ids.add(notification.getId()));
+
+            List<Notification> merged = new ArrayList<>(notifications.length + saved.size());
+            for (Notification notification : notifications) {
+                if (!ids.contains(notification.getId())) {
+                    merged.add(notification);
+                }
+            }
+            merged.addAll(saved);
+            merged.sort(NEWEST_FIRST);
+
+            if (merged.size() > size) {
+                merged = merged.subList(0, size);
+            }
+            return new Snapshot(merged.toArray(new Notification[0]));
+        }
+
+        /**
+         * Get a new snapshot without a notification. The snapshot stays one notification short until the next
+         * load from the database.
+         * @param id The identification number of the removed notification.
+         * @return The new snapshot, or this one if the notification wasn't on it.
+         */
+        private Snapshot without(long id) {
+            for (int i = 0; i < notifications.length; i++) {
+                if (notifications[i].getId() != null && notifications[i].getId() == id) {
+                    Notification[] remaining = new Notification[notifications.length - 1];
+                    System.arraycopy(notifications, 0, remaining, 0, i);
+                    System.arraycopy(notifications, i + 1, remaining, i, remaining.length - i);
+                    return new Snapshot(remaining);
+                }
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package eus.klimu.notification.domain.changes;
+
+import eus.klimu.notification.domain.model.ChangeFeedDTO;
+import eus.klimu.notification.domain.service.definition.NotificationChangeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers the change feed, holding the requests that have no changes yet until a change arrives or their wait
+ * ends. The held requests don't take a server thread. They are checked when a change is committed on this
+ * instance and, while there are requests waiting, every poll interval, for the changes done on other instances.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "eus.klimu:type=ChangeFeed", description = "Notification change feed")
+public class ChangeFeed {
+
+    private final NotificationChangeService changeService;
+    private final long maxWaitMillis;
+    private final int maxWaiters;
+    private final long retentionMillis;
+    /**
+     * The requests waiting for changes.
+     */
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    /**
+     * Checks the waiting requests, outside the threads that commit the changes.
+     */
+    private final ExecutorService checker;
+    private final AtomicBoolean checkPending = new AtomicBoolean();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder emptyRequests = new LongAdder();
+    private final LongAdder woken = new LongAdder();
+
+    /**
+     * Create a new instance of the change feed.
+     * @param changeService The service of the notification changes.
+     * @param maxWaitMillis The maximum time a request can wait for changes.
+     * @param maxWaiters The maximum requests waiting at the same time, the next ones are answered straight away.
+     * @param retentionDays The days the changes are kept.
+     */
+    public ChangeFeed(
+            NotificationChangeService changeService,
+            @Value("${klimu.notification.changes.max-wait-ms:30000}") long maxWaitMillis,
+            @Value("${klimu.notification.changes.max-waiters:10000}") int maxWaiters,
+            @Value("${klimu.notification.changes.retention-days:7}") int retentionDays
+    ) {
+        this.changeService = changeService;
+        this.maxWaitMillis = maxWaitMillis;
+        this.maxWaiters = maxWaiters;
+        this.retentionMillis = retentionDays * 24L * 60 * 60 * 1000;
+        this.checker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the changes after a cursor, waiting for them if there are none yet.
+     * @param since The cursor of the last change already seen, null to start from the last change.
+     * @param limit The maximum amount of changes.
+     * @param waitMillis The maximum time to wait for changes, 0 to answer straight away.
+     * @return The result, set when there are changes or the wait ends.
+     */
+    public DeferredResult<ResponseEntity<ChangeFeedDTO>> poll(Long since, int limit, long waitMillis) {
+        long wait = Math.min(Math.max(waitMillis, 0), maxWaitMillis);
+        DeferredResult<ResponseEntity<ChangeFeedDTO>> result = new DeferredResult<>(wait + 5000L);
+        requests.increment();
+
+        if (since == null) {
+            result.setResult(ResponseEntity.ok(new ChangeFeedDTO(changeService.getLastCursor(), Collections.emptyList())));
+            return result;
+        }
+        if (changeService.isExpired(since)) {
+            result.setResult(ResponseEntity.status(HttpStatus.GONE).build());
+            return result;
+        }
+
+        ChangeFeedDTO changes = changeService.getChanges(since, limit);
+        if (!changes.getChanges().isEmpty() || wait == 0 || waiting.get() >= maxWaiters) {
+            if (changes.getChanges().isEmpty()) {
+                emptyRequests.increment();
+            }
+            result.setResult(ResponseEntity.ok(changes));
+            return result;
+        }
+
+        Waiter waiter = new Waiter(since, limit, System.currentTimeMillis() + wait, result);
+        result.onCompletion(() -> {
+            if (waiters.remove(waiter)) {
+                waiting.decrementAndGet();
+            }
+        });
+        result.onTimeout(() -> result.setResult(ResponseEntity.ok(new ChangeFeedDTO(since, Collections.emptyList()))));
+        waiters.add(waiter);
+        waiting.incrementAndGet();
+        return result;
+    }
+
+    /**
+     * Check the waiting requests once the changes done on this instance are committed.
+     * @param event The event of the changes.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNotificationChanged(NotificationChangedEvent event) {
+        if (!waiters.isEmpty() && checkPending.compareAndSet(false, true)) {
+            checker.execute(this::check);
+        }
+    }
+
+    /**
+     * Check the waiting requests periodically, for the changes done on other instances and the waits that ended.
+     */
+    @Scheduled(fixedDelayString = "${klimu.notification.changes.poll-ms:1000}")
+    public void checkWaiters() {
+        if (!waiters.isEmpty() && checkPending.compareAndSet(false, true)) {
+            checker.execute(this::check);
+        }
+    }
+
+    /**
+     * Remove the old changes.
+     */
+    @Scheduled(fixedDelayString = "${klimu.notification.changes.purge-interval-ms:3600000}")
+    public void purge() {
+        changeService.purge(retentionMillis);
+    }
+
+    /**
+     * Answer the waiting requests that have changes now, reading the changes once per cursor.
+     */
+    private void check() {
+        checkPending.set(false);
+        try {
+            long lastCursor = changeService.getLastCursor();
+            long now = System.currentTimeMillis();
+            Map<String, ChangeFeedDTO> pages = new HashMap<>();
+
+            for (Waiter waiter : waiters) {
+                if (now >= waiter.deadline) {
+                    waiter.result.setResult(ResponseEntity.ok(new ChangeFeedDTO(waiter.since, Collections.emptyList())));
+                } else if (waiter.since < lastCursor) {
+                    ChangeFeedDTO changes = pages.computeIfAbsent(
+                            waiter.since + ":" + waiter.limit, key -> changeService.getChanges(waiter.since, waiter.limit)
+                    );
+                    if (!changes.getChanges().isEmpty()) {
+                        woken.increment();
+                        waiter.result.setResult(ResponseEntity.ok(changes));
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Couldn't check the change feed", e);
+        }
+    }
+
+    /**
+     * Stop the checker when the application is closed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        checker.shutdown();
+    }
+
+    @ManagedAttribute(description = "Requests waiting for changes")
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    @ManagedAttribute(description = "Requests to the change feed")
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @ManagedAttribute(description = "Requests answered straight away without changes")
+    public long getEmptyRequests() {
+        return emptyRequests.sum();
+    }
+
+    @ManagedAttribute(description = "Waiting requests answered because of a change")
+    public long getWoken() {
+        return woken.sum();
+    }
+
+    /**
+     * A request waiting for changes.
+     */
+    private static final class Waiter {
+
+        private final long since;
+        private final int limit;
+        private final long deadline;
+        private final DeferredResult<ResponseEntity<ChangeFeedDTO>> result;
+
+        private Waiter(long since, int limit, long deadline, DeferredResult<ResponseEntity<ChangeFeedDTO>> result) {
+            this.since = since;
+            this.limit = limit;
+            this.deadline = deadline;
+            this.result = result;
+        }
+    }
+}
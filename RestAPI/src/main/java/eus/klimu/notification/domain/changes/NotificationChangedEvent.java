@@ -0,0 +1,8 @@
+package eus.klimu.notification.domain.changes;
+
+/**
+ * Published when notifications are created, updated or deleted, so the clients waiting on the change feed get
+ * the changes as soon as the transaction commits.
+ */
+public class NotificationChangedEvent {
+}
@@ -0,0 +1,49 @@
+package eus.klimu.notification.domain.dispatch;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A notification that has to be sent to a group of recipients through a single channel.
+ */
+@Getter
+@AllArgsConstructor
+public class DeliveryBatch {
+
+    /**
+     * The identification number of the notification.
+     */
+    private final Long notificationId;
+    /**
+     * The message of the notification.
+     */
+    private final String message;
+    /**
+     * The date when the notification was created.
+     */
+    private final Date date;
+    /**
+     * The name of the notification type.
+     */
+    private final String typeName;
+    /**
+     * The location of the notification, as text.
+     */
+    private final String location;
+    /**
+     * The identification number of the channel the batch is going to be sent on.
+     */
+    private final Long channelId;
+    /**
+     * The name of the channel the batch is going to be sent on.
+     */
+    private final String channelName;
+    /**
+     * The users that have to receive the notification.
+     */
+    private final List<Recipient> recipients;
+
+}
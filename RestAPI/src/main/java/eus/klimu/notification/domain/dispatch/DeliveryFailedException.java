@@ -0,0 +1,35 @@
+package eus.klimu.notification.domain.dispatch;
+
+import java.util.List;
+
+/**
+ * Generated when a channel couldn't take the notification for some of its recipients. The delivery should be
+ * retried later, only for those recipients.
+ */
+public class DeliveryFailedException extends RuntimeException {
+
+    /**
+     * The users the notification has to be sent to again.
+     */
+    private final List<Long> recipients;
+
+    /**
+     * Create a new instance of the exception.
+     * @param msg The reason why the delivery failed.
+     * @param recipients The users the notification has to be sent to again.
+     * @param cause The error of the channel, null if it only deferred some recipients.
+     */
+    public DeliveryFailedException(String msg, List<Long> recipients, Throwable cause) {
+        super(msg, cause);
+        this.recipients = recipients;
+    }
+
+    /**
+     * Get the users the notification has to be sent to again.
+     * @return The identification numbers of the users.
+     */
+    public List<Long> getRecipients() {
+        return recipients;
+    }
+
+}
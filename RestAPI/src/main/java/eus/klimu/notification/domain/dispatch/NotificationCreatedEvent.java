@@ -0,0 +1,22 @@
+package eus.klimu.notification.domain.dispatch;
+
+import eus.klimu.notification.domain.model.Notification;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collection;
+
+/**
+ * Published when new notifications are saved, so the outbox workers pick them up as soon as the transaction
+ * commits instead of waiting for their next poll.
+ */
+@Getter
+@RequiredArgsConstructor
+public class NotificationCreatedEvent {
+
+    /**
+     * The notifications that have been saved.
+     */
+    private final Collection<Notification> notifications;
+
+}
@@ -0,0 +1,320 @@
+package eus.klimu.notification.domain.dispatch;
+
+import eus.klimu.channel.sender.ChannelBulkhead;
+import eus.klimu.channel.sender.ChannelSenderRegistry;
+import eus.klimu.channel.sender.DeliveryOutcome;
+import eus.klimu.notification.domain.index.CompactBitmap;
+import eus.klimu.notification.domain.index.SubscriptionIndex;
+import eus.klimu.notification.domain.model.Notification;
+import eus.klimu.users.domain.model.SubscriberDTO;
+import eus.klimu.users.domain.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Send the notifications to the users subscribed to them on a channel. The recipients are taken from the
+ * subscription index, their contact information is loaded in chunks, in parallel, on a fork/join pool, and each
+ * chunk is handed to the sender of the channel as a delivery batch. The deliveries come from the notification
+ * outbox, see {@link OutboxDrainer}.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "eus.klimu:type=NotificationDispatcher", description = "Notification fan-out")
+public class NotificationDispatcher {
+
+    /**
+     * The users subscribed to each location, type and channel.
+     */
+    private final SubscriptionIndex subscriptionIndex;
+    /**
+     * The connection with the AppUser table on the database.
+     */
+    private final UserRepository userRepository;
+    /**
+     * The senders of each channel, each one on its own bulkhead.
+     */
+    private final ChannelSenderRegistry senders;
+    /**
+     * The pool that resolves and sends the batches.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * The maximum amount of recipients of a delivery batch.
+     */
+    private final int batchSize;
+
+    private final LongAdder notifications = new LongAdder();
+    private final LongAdder recipients = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder unrouted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+
+    /**
+     * Create a new instance of the notification dispatcher.
+     * @param subscriptionIndex The index of the subscriptions.
+     * @param userRepository The connection with the AppUser table on the database.
+     * @param senders The senders of the channels.
+     * @param parallelism The amount of threads of the pool, 0 to use one per processor.
+     * @param batchSize The maximum amount of recipients of a delivery batch.
+     */
+    public NotificationDispatcher(
+            SubscriptionIndex subscriptionIndex, UserRepository userRepository,
+            ChannelSenderRegistry senders,
+            @Value("${klimu.notification.dispatch.parallelism:0}") int parallelism,
+            @Value("${klimu.notification.dispatch.batch-size:500}") int batchSize
+    ) {
+        this.subscriptionIndex = subscriptionIndex;
+        this.userRepository = userRepository;
+        this.batchSize = batchSize;
+        this.senders = senders;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Resolve the recipients of a notification on a channel and hand them to the sender of the channel.
+     * @param notification The notification that is going to be sent.
+     * @param channelId The identification number of the channel.
+     * @param channelName The name of the channel.
+     * @return The amount of recipients the notification was handed over for.
+     * @throws DeliveryFailedException Generated if the notification has to be sent again to some recipients.
+     */
+    public int dispatch(Notification notification, long channelId, String channelName) {
+        return dispatch(notification, channelId, channelName, null);
+    }
+
+    /**
+     * Resolve the recipients of a notification on a channel and hand them to the sender of the channel.
+     * Every batch is sent even if some of them fail. The recipients the channel rejected for good are only
+     * counted, while the ones it couldn't take right now, or whose batch couldn't be handed over, are returned
+     * on an exception, so the next attempt is only sent to them.
+     * @param notification The notification that is going to be sent.
+     * @param channelId The identification number of the channel.
+     * @param channelName The name of the channel.
+     * @param userIds The users the notification is sent to, null to send it to every subscriber.
+     * @return The amount of recipients the notification was handed over for.
+     * @throws DeliveryFailedException Generated if the notification has to be sent again to some recipients.
+     */
+    public int dispatch(Notification notification, long channelId, String channelName, Collection<Long> userIds) {
+        ChannelBulkhead sender = senders.get(channelName);
+        long locationId = notification.getLocation().getId();
+        long typeId = notification.getType().getId();
+        Progress progress = new Progress();
+        int sent = 0;
+
+        if (userIds != null) {
+            // A retry, only for the recipients the previous attempts couldn't reach.
+            if (sender == null) {
+                unrouted.add(userIds.size());
+            } else if (!userIds.isEmpty()) {
+                long[] ids = userIds.stream().mapToLong(Long::longValue).toArray();
+                sent = pool.invoke(new ResolveTask(
+                        notification, channelId, channelName, sender, progress, ids, 0, ids.length
+                ));
+            }
+        } else if (subscriptionIndex.isReady()) {
+            CompactBitmap users = subscriptionIndex.getSubscribers(locationId, typeId, channelId);
+            if (sender == null) {
+                unrouted.add(users.cardinality());
+            } else if (!users.isEmpty()) {
+                sent = pool.invoke(new ResolveTask(
+                        notification, channelId, channelName, sender, progress, toIds(users), 0, users.cardinality()
+                ));
+            }
+        } else {
+            // The index is still being built, go to the database.
+            List<Recipient> channelRecipients = new ArrayList<>();
+            for (SubscriberDTO subscriber : userRepository.findSubscribers(locationId, typeId)) {
+                if (subscriber.getChannelId() == channelId) {
+                    channelRecipients.add(new Recipient(
+                            subscriber.getId(), subscriber.getUsername(), subscriber.getEmail(),
+                            subscriber.getNumber(), subscriber.getTelegramId()
+                    ));
+                }
+            }
+            if (sender == null) {
+                unrouted.add(channelRecipients.size());
+            } else {
+                for (int from = 0; from < channelRecipients.size(); from += batchSize) {
+                    send(sender, notification, channelId, channelName, progress,
+                            channelRecipients.subList(from, Math.min(channelRecipients.size(), from + batchSize)));
+                }
+                sent = channelRecipients.size();
+            }
+        }
+
+        notifications.increment();
+        if (!progress.pending.isEmpty()) {
+            List<Long> pending = new ArrayList<>(progress.pending);
+            Collections.sort(pending);
+            throw new DeliveryFailedException(
+                    String.format("Channel %s couldn't take notification %d for %d of %d recipient(s)",
+                            channelName, notification.getId(), pending.size(), sent),
+                    pending, progress.error.get()
+            );
+        }
+        log.info("Notification with id={} dispatched to {} recipient(s) on {}", notification.getId(), sent, channelName);
+        return sent;
+    }
+
+    /**
+     * Hand a batch to the sender of its channel and wait for it to be sent. If the batch can't be handed over,
+     * all of its recipients are left for the next attempt.
+     * @param sender The sender of the channel.
+     * @param notification The notification that is going to be sent.
+     * @param channelId The identification number of the channel.
+     * @param channelName The name of the channel.
+     * @param progress The recipients that have to be sent the notification again.
+     * @param batchRecipients The recipients of the batch.
+     */
+    private void send(ChannelBulkhead sender, Notification notification, Long channelId, String channelName,
+                      Progress progress, List<Recipient> batchRecipients) {
+        List<DeliveryOutcome> outcomes;
+        try {
+            outcomes = sender.send(new DeliveryBatch(
+                    notification.getId(), notification.getMessage(), notification.getDate(),
+                    notification.getType().getName(), notification.getLocation().toString(),
+                    channelId, channelName, Collections.unmodifiableList(new ArrayList<>(batchRecipients))
+            ));
+        } catch (RuntimeException e) {
+            log.warn("A batch of notification with id={} couldn't be handed to {}: {}",
+                    notification.getId(), channelName, e.getMessage());
+            progress.error.compareAndSet(null, e);
+            batchRecipients.forEach(recipient -> progress.pending.add(recipient.getUserId()));
+            retried.add(batchRecipients.size());
+            return;
+        }
+        batches.increment();
+        recipients.add(batchRecipients.size());
+        for (DeliveryOutcome outcome : outcomes) {
+            if (outcome.getStatus() == DeliveryOutcome.Status.FAILED) {
+                failed.increment();
+                log.warn("Notification with id={} couldn't be sent to user {} on {}: {}", notification.getId(),
+                        outcome.getRecipient().getUserId(), channelName, outcome.getDetail());
+            } else if (outcome.getStatus() == DeliveryOutcome.Status.RETRY) {
+                retried.increment();
+                progress.pending.add(outcome.getRecipient().getUserId());
+            }
+        }
+    }
+
+    private static long[] toIds(CompactBitmap users) {
+        long[] ids = new long[users.cardinality()];
+        int[] position = { 0 };
+        users.forEach(id -> ids[position[0]++] = id);
+        return ids;
+    }
+
+    /**
+     * Stop the pool when the application is closed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @ManagedAttribute(description = "Notifications dispatched on a channel")
+    public long getNotifications() {
+        return notifications.sum();
+    }
+
+    @ManagedAttribute(description = "Recipients handed to the channel senders")
+    public long getRecipients() {
+        return recipients.sum();
+    }
+
+    @ManagedAttribute(description = "Delivery batches handed to the channel senders")
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    @ManagedAttribute(description = "Recipients on channels without a sender")
+    public long getUnrouted() {
+        return unrouted.sum();
+    }
+
+    @ManagedAttribute(description = "Recipients rejected for good by the channel senders")
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @ManagedAttribute(description = "Recipients left for a later attempt")
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    @ManagedAttribute(description = "Resolution tasks waiting on the pool")
+    public long getQueuedTasks() {
+        return pool.getQueuedTaskCount() + pool.getQueuedSubmissionCount();
+    }
+
+    /**
+     * Load the contact information of a range of recipients and send it, splitting the range in halves
+     * until it fits in a single batch.
+     */
+    private final class ResolveTask extends RecursiveTask<Integer> {
+
+        private final transient Notification notification;
+        private final Long channelId;
+        private final String channelName;
+        private final transient ChannelBulkhead sender;
+        private final transient Progress progress;
+        private final long[] userIds;
+        private final int from;
+        private final int to;
+
+        private ResolveTask(Notification notification, Long channelId, String channelName, ChannelBulkhead sender,
+                            Progress progress, long[] userIds, int from, int to) {
+            this.notification = notification;
+            this.channelId = channelId;
+            this.channelName = channelName;
+            this.sender = sender;
+            this.progress = progress;
+            this.userIds = userIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= batchSize) {
+                List<Long> ids = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    ids.add(userIds[i]);
+                }
+                List<Recipient> batchRecipients = userRepository.findRecipients(ids);
+                if (!batchRecipients.isEmpty()) {
+                    send(sender, notification, channelId, channelName, progress, batchRecipients);
+                }
+                return batchRecipients.size();
+            }
+            int middle = (from + to) >>> 1;
+            ResolveTask left = new ResolveTask(
+                    notification, channelId, channelName, sender, progress, userIds, from, middle);
+            ResolveTask right = new ResolveTask(
+                    notification, channelId, channelName, sender, progress, userIds, middle, to);
+            left.fork();
+            return right.compute() + left.join();
+        }
+    }
+
+    /**
+     * The recipients of a dispatch that have to be sent the notification again, filled by the batches in parallel.
+     */
+    private static final class Progress {
+
+        private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+        private final AtomicReference<RuntimeException> error = new AtomicReference<>();
+    }
+}
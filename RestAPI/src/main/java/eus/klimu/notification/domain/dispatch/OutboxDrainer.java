@@ -0,0 +1,323 @@
+package eus.klimu.notification.domain.dispatch;
+
+import eus.klimu.channel.domain.model.Channel;
+import eus.klimu.channel.domain.service.definition.ChannelService;
+import eus.klimu.notification.domain.model.Notification;
+import eus.klimu.notification.domain.model.NotificationOutbox;
+import eus.klimu.notification.domain.service.definition.NotificationOutboxService;
+import eus.klimu.notification.domain.service.definition.NotificationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A pool of workers that drain the notification outbox. Each worker claims a batch of entries, hands every entry
+ * to the dispatcher and then removes it from the outbox or schedules a retry for the recipients that weren't
+ * reached, as long as its claim hasn't expired meanwhile. The entries are claimed with SKIP LOCKED, so any amount of workers, on any amount of instances of the
+ * application, can drain the same outbox.
+ * When the application stops the workers finish the batch they are sending before exiting.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "eus.klimu:type=OutboxDrainer", description = "Notification outbox workers")
+public class OutboxDrainer {
+
+    /**
+     * The managing service for the notification outbox.
+     */
+    private final NotificationOutboxService outboxService;
+    /**
+     * The managing service for the notifications.
+     */
+    private final NotificationService notificationService;
+    /**
+     * The managing service for the channels.
+     */
+    private final ChannelService channelService;
+    /**
+     * Resolves the recipients and hands them to the channel senders.
+     */
+    private final NotificationDispatcher dispatcher;
+
+    private final int workers;
+    private final int batchSize;
+    private final long leaseMillis;
+    private final long pollMillis;
+    private final long shutdownMillis;
+    private final long deadRetentionMillis;
+    /**
+     * The identifier of this instance, used for the claims of its workers.
+     */
+    private final String instanceId;
+
+    private final ExecutorService executor;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeUp = lock.newCondition();
+    private volatile boolean running;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder claimed = new LongAdder();
+    private final LongAdder lostClaims = new LongAdder();
+    private final LongAdder totalLatencyMillis = new LongAdder();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+    /**
+     * Create a new instance of the outbox drainer.
+     * @param outboxService The managing service for the notification outbox.
+     * @param notificationService The managing service for the notifications.
+     * @param channelService The managing service for the channels.
+     * @param dispatcher Resolves the recipients and hands them to the channel senders.
+     * @param workers The amount of workers.
+     * @param batchSize The amount of entries a worker claims at once.
+     * @param leaseMillis The time a worker has for sending a batch before others can claim it.
+     * @param pollMillis The time a worker waits when the outbox is empty.
+     * @param shutdownMillis The time the workers have for finishing their batches when the application stops.
+     * @param deadRetentionDays The days the dead entries are kept after their last attempt.
+     */
+    public OutboxDrainer(
+            NotificationOutboxService outboxService, NotificationService notificationService,
+            ChannelService channelService, NotificationDispatcher dispatcher,
+            @Value("${klimu.notification.outbox.workers:4}") int workers,
+            @Value("${klimu.notification.outbox.batch-size:20}") int batchSize,
+            @Value("${klimu.notification.outbox.lease-ms:60000}") long leaseMillis,
+            @Value("${klimu.notification.outbox.poll-ms:1000}") long pollMillis,
+            @Value("${klimu.notification.outbox.shutdown-ms:30000}") long shutdownMillis,
+            @Value("${klimu.notification.outbox.dead-retention-days:30}") int deadRetentionDays
+    ) {
+        this.outboxService = outboxService;
+        this.notificationService = notificationService;
+        this.channelService = channelService;
+        this.dispatcher = dispatcher;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.leaseMillis = leaseMillis;
+        this.pollMillis = pollMillis;
+        this.shutdownMillis = shutdownMillis;
+        this.deadRetentionMillis = deadRetentionDays * 24L * 60 * 60 * 1000;
+        this.instanceId = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "outbox-drainer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start the workers once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            String workerId = instanceId + "#" + i;
+            executor.execute(() -> work(workerId));
+        }
+        log.info("Started {} outbox worker(s) as {}", workers, instanceId);
+    }
+
+    /**
+     * Wake up the workers once new notifications have been committed.
+     * @param event The notifications that have been saved.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onNotificationCreated(NotificationCreatedEvent event) {
+        lock.lock();
+        try {
+            wakeUp.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Make the entries whose lease expired pending again, so the workers claim them with the rest.
+     */
+    @Scheduled(fixedDelayString = "${klimu.notification.outbox.reclaim-interval-ms:10000}")
+    public void reclaimExpired() {
+        outboxService.reclaimExpired();
+    }
+
+    /**
+     * Remove the dead entries once they have been kept long enough for being looked into.
+     */
+    @Scheduled(fixedDelayString = "${klimu.notification.outbox.purge-interval-ms:3600000}")
+    public void purgeDead() {
+        outboxService.purgeDead(deadRetentionMillis);
+    }
+
+    /**
+     * The loop of a worker: claim a batch, send it, and wait if there was nothing to claim.
+     * @param workerId The identifier of the worker.
+     */
+    private void work(String workerId) {
+        while (running) {
+            int sent = 0;
+            try {
+                sent = drain(workerId);
+            } catch (RuntimeException e) {
+                log.error("Outbox worker {} couldn't claim a batch", workerId, e);
+            }
+            if (sent == 0 && running) {
+                lock.lock();
+                try {
+                    wakeUp.await(pollMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Claim a batch of entries and send each one of them.
+     * @param workerId The identifier of the worker.
+     * @return The amount of entries claimed.
+     */
+    private int drain(String workerId) {
+        List<NotificationOutbox> entries = outboxService.claim(workerId, batchSize, leaseMillis);
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        claimed.add(entries.size());
+
+        Map<Long, String> channelNames = new HashMap<>();
+        for (Channel channel : channelService.getAllChannels()) {
+            channelNames.put(channel.getId(), channel.getName());
+        }
+
+        for (NotificationOutbox entry : entries) {
+            try {
+                Notification notification = notificationService.getNotificationById(entry.getNotificationId());
+                if (notification != null && channelNames.containsKey(entry.getChannelId())) {
+                    dispatcher.dispatch(notification, entry.getChannelId(), channelNames.get(entry.getChannelId()),
+                            entry.getPendingRecipients());
+                }
+            } catch (RuntimeException e) {
+                failed.increment();
+                log.warn("Delivery of notification {} on channel {} failed: {}",
+                        entry.getNotificationId(), entry.getChannelId(), e.getMessage());
+                boolean released = e instanceof DeliveryFailedException
+                        ? outboxService.fail(entry, e.toString(), ((DeliveryFailedException) e).getRecipients())
+                        : outboxService.fail(entry, e.toString());
+                if (!released) {
+                    lostClaim(workerId, entry);
+                }
+                continue;
+            }
+
+            if (outboxService.complete(entry)) {
+                delivered.increment();
+                long latency = System.currentTimeMillis() - entry.getCreatedAt().getTime();
+                totalLatencyMillis.add(latency);
+                maxLatencyMillis.accumulateAndGet(latency, Math::max);
+            } else {
+                lostClaim(workerId, entry);
+            }
+        }
+        return entries.size();
+    }
+
+    /**
+     * Log an entry whose lease expired while it was being sent. The worker that claimed it since decides
+     * what happens to it.
+     * @param workerId The identifier of the worker that lost the claim.
+     * @param entry The entry that was being sent.
+     */
+    private void lostClaim(String workerId, NotificationOutbox entry) {
+        lostClaims.increment();
+        log.warn("Outbox worker {} lost the claim of notification {} on channel {}, another worker owns it now",
+                workerId, entry.getNotificationId(), entry.getChannelId());
+    }
+
+    /**
+     * Stop the workers, letting them finish the batch they are sending.
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        lock.lock();
+        try {
+            wakeUp.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("The outbox workers didn't finish on time, their entries will be claimed again later");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    @ManagedAttribute(description = "Outbox entries claimed by the workers of this instance")
+    public long getClaimed() {
+        return claimed.sum();
+    }
+
+    @ManagedAttribute(description = "Outbox entries delivered by the workers of this instance")
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    @ManagedAttribute(description = "Failed delivery attempts on this instance")
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    @ManagedAttribute(description = "Outbox entries whose lease expired before the worker finished them")
+    public long getLostClaims() {
+        return lostClaims.sum();
+    }
+
+    @ManagedAttribute(description = "Outbox entries waiting to be sent, on every instance")
+    public long getPending() {
+        return outboxService.countPending();
+    }
+
+    @ManagedAttribute(description = "Outbox entries that won't be retried, on every instance")
+    public long getDead() {
+        return outboxService.countDead();
+    }
+
+    @ManagedAttribute(description = "Average time from the notification insert to its delivery, in milliseconds")
+    public double getAverageLatencyMillis() {
+        long count = delivered.sum();
+        return count == 0 ? 0 : totalLatencyMillis.sum() / (double) count;
+    }
+
+    @ManagedAttribute(description = "Longest time from the notification insert to its delivery, in milliseconds")
+    public long getMaxLatencyMillis() {
+        return maxLatencyMillis.get();
+    }
+}
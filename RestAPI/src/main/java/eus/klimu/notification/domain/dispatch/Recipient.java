@@ -0,0 +1,36 @@
+package eus.klimu.notification.domain.dispatch;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.Serializable;
+
+/**
+ * The contact information of a user that has to receive a notification.
+ */
+@Getter
+@AllArgsConstructor
+public class Recipient implements Serializable {
+
+    /**
+     * The identification number of the AppUser.
+     */
+    private final Long userId;
+    /**
+     * The username of the AppUser.
+     */
+    private final String username;
+    /**
+     * The email of the AppUser.
+     */
+    private final String email;
+    /**
+     * The telephone number of the AppUser.
+     */
+    private final String number;
+    /**
+     * The telegram ID of the AppUser.
+     */
+    private final String telegramId;
+
+}
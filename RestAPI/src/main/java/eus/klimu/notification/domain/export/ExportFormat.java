@@ -0,0 +1,31 @@
+package eus.klimu.notification.domain.export;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The formats the notifications can be exported in.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ExportFormat {
+
+    /**
+     * A JSON object per line.
+     */
+    NDJSON("application/x-ndjson", "ndjson"),
+    /**
+     * Comma separated values, with a header line.
+     */
+    CSV("text/csv", "csv");
+
+    /**
+     * The content type of the export.
+     */
+    private final String contentType;
+    /**
+     * The extension of the exported file.
+     */
+    private final String extension;
+
+}
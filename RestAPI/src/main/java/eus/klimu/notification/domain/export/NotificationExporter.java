@@ -0,0 +1,313 @@
+package eus.klimu.notification.domain.export;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Exports the notifications straight from a forward-only result set, writing every row as soon as it's read. The
+ * rows are never held in memory, so the memory used is the same for any amount of notifications and the first
+ * rows are sent before the query has finished.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "eus.klimu:type=NotificationExporter", description = "Notification exports")
+public class NotificationExporter {
+
+    private static final String DATE_FORMAT = "yyyy-MM-dd,HH:mm:ss";
+    private static final String[] CSV_HEADER = {
+            "id", "date", "message", "type_id", "type", "location_id", "city", "country"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    /**
+     * Limits the exports running at the same time, as each one holds a database connection while it lasts.
+     */
+    private final Semaphore permits;
+    private final int maxConcurrent;
+
+    private final LongAdder exports = new LongAdder();
+    private final LongAdder rowsExported = new LongAdder();
+    private final LongAdder rejectedExports = new LongAdder();
+
+    /**
+     * Create a new instance of the notification exporter.
+     * @param dataSource The connection with the database.
+     * @param fetchSize The rows fetched at a time, Integer.MIN_VALUE makes MySQL send the rows one by one.
+     * @param maxConcurrent The maximum exports running at the same time.
+     */
+    public NotificationExporter(
+            DataSource dataSource,
+            @Value("${klimu.notification.export.fetch-size:-2147483648}") int fetchSize,
+            @Value("${klimu.notification.export.max-concurrent:2}") int maxConcurrent
+    ) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.permits = new Semaphore(maxConcurrent);
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    /**
+     * Take a place for a new export.
+     * @return False if there are too many exports running.
+     */
+    public boolean tryAcquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        rejectedExports.increment();
+        return false;
+    }
+
+    /**
+     * Give back the place of a finished export.
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * Write the notifications that match the filters, in order of date.
+     * @param format The format of the export.
+     * @param from The minimum date of the notifications, null for no minimum.
+     * @param to The maximum date of the notifications, excluded, null for no maximum.
+     * @param types The names of the notification types, empty for all of them.
+     * @param output Where the notifications are written. It's not closed.
+     * @return The amount of notifications written.
+     */
+    public long export(ExportFormat format, Date from, Date to, Collection<String> types, OutputStream output) {
+        long start = System.currentTimeMillis();
+        List<Object> parameters = new ArrayList<>();
+        String sql = buildQuery(from, to, types, parameters);
+        RowWriter writer = format == ExportFormat.CSV ? new CsvWriter(output) : new JsonWriter(output);
+
+        long rows = jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(
+                            sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY
+                    );
+                    for (int i = 0; i < parameters.size(); i++) {
+                        statement.setObject(i + 1, parameters.get(i));
+                    }
+                    return statement;
+                },
+                resultSet -> {
+                    long count = 0;
+                    try {
+                        writer.start();
+                        while (resultSet.next()) {
+                            writer.write(resultSet);
+                            count++;
+                        }
+                        writer.finish();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return count;
+                }
+        );
+
+        exports.increment();
+        rowsExported.add(rows);
+        log.info("Exported {} notifications as {} in {} ms", rows, format, System.currentTimeMillis() - start);
+        return rows;
+    }
+
+    private static String buildQuery(Date from, Date to, Collection<String> types, List<Object> parameters) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT n.id, n.date, n.message, t.id, t.name, l.id, l.city, l.country " +
+                "FROM notification n " +
+                "LEFT JOIN notification_type t ON t.id = n.notification_type_id " +
+                "LEFT JOIN location l ON l.id = n.location_id WHERE 1 = 1"
+        );
+        if (from != null) {
+            sql.append(" AND n.date >= ?");
+            parameters.add(new Timestamp(from.getTime()));
+        }
+        if (to != null) {
+            sql.append(" AND n.date < ?");
+            parameters.add(new Timestamp(to.getTime()));
+        }
+        if (types != null && !types.isEmpty()) {
+            StringJoiner placeholders = new StringJoiner(", ", " AND t.name IN (", ")");
+            for (String type : types) {
+                placeholders.add("?");
+                parameters.add(type);
+            }
+            sql.append(placeholders);
+        }
+        // Ordered as the date index, so the rows are read in order without sorting the table first.
+        return sql.append(" ORDER BY n.date, n.id").toString();
+    }
+
+    @ManagedAttribute(description = "Exports finished")
+    public long getExports() {
+        return exports.sum();
+    }
+
+    @ManagedAttribute(description = "Notifications exported")
+    public long getRowsExported() {
+        return rowsExported.sum();
+    }
+
+    @ManagedAttribute(description = "Exports rejected because too many were running")
+    public long getRejectedExports() {
+        return rejectedExports.sum();
+    }
+
+    @ManagedAttribute(description = "Exports running")
+    public int getActiveExports() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * Writes the rows of the export in a format.
+     */
+    private interface RowWriter {
+
+        void start() throws IOException;
+
+        void write(ResultSet row) throws SQLException, IOException;
+
+        void finish() throws IOException;
+
+    }
+
+    /**
+     * Writes a JSON object per line.
+     */
+    private final class JsonWriter implements RowWriter {
+
+        private final JsonGenerator generator;
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+
+        private JsonWriter(OutputStream output) {
+            try {
+                this.generator = jsonFactory.createGenerator(output)
+                        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                        .setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void start() {
+            // Nothing before the first row.
+        }
+
+        @Override
+        public void write(ResultSet row) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", row.getLong(1));
+            Timestamp date = row.getTimestamp(2);
+            if (date != null) {
+                generator.writeStringField("date", dateFormat.format(date));
+            }
+            writeString("message", row.getString(3));
+            writeLong("typeId", row, 4);
+            writeString("type", row.getString(5));
+            writeLong("locationId", row, 6);
+            writeString("city", row.getString(7));
+            writeString("country", row.getString(8));
+            generator.writeEndObject();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.writeRaw('\n');
+            generator.flush();
+        }
+
+        private void writeString(String name, String value) throws IOException {
+            if (value != null) {
+                generator.writeStringField(name, value);
+            }
+        }
+
+        private void writeLong(String name, ResultSet row, int column) throws SQLException, IOException {
+            long value = row.getLong(column);
+            if (!row.wasNull()) {
+                generator.writeNumberField(name, value);
+            }
+        }
+    }
+
+    /**
+     * Writes the rows as comma separated values, quoting the values that need it.
+     */
+    private static final class CsvWriter implements RowWriter {
+
+        private final Writer writer;
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+
+        private CsvWriter(OutputStream output) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), 16 * 1024);
+        }
+
+        @Override
+        public void start() throws IOException {
+            writeLine(CSV_HEADER);
+        }
+
+        @Override
+        public void write(ResultSet row) throws SQLException, IOException {
+            Timestamp date = row.getTimestamp(2);
+            writeLine(new String[]{
+                    row.getString(1), date != null ? dateFormat.format(date) : null, row.getString(3),
+                    row.getString(4), row.getString(5), row.getString(6), row.getString(7), row.getString(8)
+            });
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        private void writeLine(String[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeValue(values[i]);
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeValue(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+            } else {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package eus.klimu.notification.domain.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable, compressed set of non-negative integers, following the layout of a roaring bitmap. The values are
+ * split in chunks by their upper 16 bits, and each chunk is stored either as a sorted array (sparse chunks) or as a
+ * bitmap of 65536 bits (dense chunks). Adding or removing a value copies only the chunk that changes, so a bitmap
+ * can be safely shared between threads while it's being updated.
+ */
+public final class CompactBitmap {
+
+    /**
+     * A chunk with more values than this is stored as a bitmap.
+     */
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    public static final CompactBitmap EMPTY = new CompactBitmap(new char[0], new Object[0]);
+
+    /**
+     * The upper 16 bits of each chunk, sorted.
+     */
+    private final char[] keys;
+    /**
+     * The chunks, either a sorted char[] or a long[] bitmap.
+     */
+    private final Object[] chunks;
+
+    private CompactBitmap(char[] keys, Object[] chunks) {
+        this.keys = keys;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Generate a bitmap from a list of values.
+     * @param values The values, in any order and possibly repeated.
+     * @param length The amount of values of the array that are going to be used.
+     * @return A bitmap with those values.
+     */
+    public static CompactBitmap of(int[] values, int length) {
+        int[] sorted = Arrays.copyOf(values, length);
+        Arrays.sort(sorted);
+
+        char[] keys = new char[length];
+        Object[] chunks = new Object[length];
+        int count = 0;
+        int start = 0;
+
+        while (start < length) {
+            checkValue(sorted[start]);
+            char key = (char) (sorted[start] >>> 16);
+            int end = start;
+            while (end < length && (sorted[end] >>> 16) == key) {
+                end++;
+            }
+
+            char[] lows = new char[end - start];
+            int size = 0;
+            for (int i = start; i < end; i++) {
+                char low = (char) sorted[i];
+                if (size == 0 || lows[size - 1] != low) {
+                    lows[size++] = low;
+                }
+            }
+            keys[count] = key;
+            chunks[count++] = size > ARRAY_LIMIT ? toBitmap(lows, size) : Arrays.copyOf(lows, size);
+            start = end;
+        }
+        return new CompactBitmap(Arrays.copyOf(keys, count), Arrays.copyOf(chunks, count));
+    }
+
+    /**
+     * Check if the bitmap contains a value.
+     * @param value The value that is being checked.
+     * @return True if the value is on the bitmap.
+     */
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, (char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+        Object chunk = chunks[index];
+        char low = (char) value;
+
+        if (chunk instanceof char[]) {
+            return Arrays.binarySearch((char[]) chunk, low) >= 0;
+        }
+        return (((long[]) chunk)[low >>> 6] & (1L << low)) != 0;
+    }
+
+    /**
+     * Generate a new bitmap with a value added.
+     * @param value The value that is going to be added.
+     * @return A bitmap with the value, this same bitmap if the value was already there.
+     */
+    public CompactBitmap with(int value) {
+        checkValue(value);
+        char key = (char) (value >>> 16);
+        char low = (char) value;
+        int index = Arrays.binarySearch(keys, key);
+
+        if (index < 0) {
+            int position = -index - 1;
+            return new CompactBitmap(insert(keys, position, key), insert(chunks, position, new char[] { low }));
+        }
+
+        Object chunk = chunks[index];
+        Object updated;
+        if (chunk instanceof char[]) {
+            char[] lows = (char[]) chunk;
+            int position = Arrays.binarySearch(lows, low);
+            if (position >= 0) {
+                return this;
+            }
+            char[] inserted = insert(lows, -position - 1, low);
+            updated = inserted.length > ARRAY_LIMIT ? toBitmap(inserted, inserted.length) : inserted;
+        } else {
+            long[] words = (long[]) chunk;
+            if ((words[low >>> 6] & (1L << low)) != 0) {
+                return this;
+            }
+            long[] copy = words.clone();
+            copy[low >>> 6] |= 1L << low;
+            updated = copy;
+        }
+        Object[] newChunks = chunks.clone();
+        newChunks[index] = updated;
+        return new CompactBitmap(keys, newChunks);
+    }
+
+    /**
+     * Generate a new bitmap without a value.
+     * @param value The value that is going to be removed.
+     * @return A bitmap without the value, this same bitmap if the value wasn't there.
+     */
+    public CompactBitmap without(int value) {
+        if (!contains(value)) {
+            return this;
+        }
+        int index = Arrays.binarySearch(keys, (char) (value >>> 16));
+        char low = (char) value;
+        Object chunk = chunks[index];
+        Object updated;
+
+        if (chunk instanceof char[]) {
+            char[] lows = (char[]) chunk;
+            if (lows.length == 1) {
+                return new CompactBitmap(remove(keys, index), remove(chunks, index));
+            }
+            updated = remove(lows, Arrays.binarySearch(lows, low));
+        } else {
+            long[] copy = ((long[]) chunk).clone();
+            copy[low >>> 6] &= ~(1L << low);
+            updated = cardinality(copy) <= ARRAY_LIMIT ? toArray(copy) : copy;
+        }
+        Object[] newChunks = chunks.clone();
+        newChunks[index] = updated;
+        return new CompactBitmap(keys, newChunks);
+    }
+
+    /**
+     * Count the values of the bitmap.
+     * @return The amount of values.
+     */
+    public int cardinality() {
+        int total = 0;
+        for (Object chunk : chunks) {
+            total += chunk instanceof char[] ? ((char[]) chunk).length : cardinality((long[]) chunk);
+        }
+        return total;
+    }
+
+    /**
+     * Check if the bitmap has no values.
+     * @return True if the bitmap is empty.
+     */
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Run an action for every value, in ascending order.
+     * @param action The action that is going to run.
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            int high = keys[i] << 16;
+            Object chunk = chunks[i];
+
+            if (chunk instanceof char[]) {
+                for (char low : (char[]) chunk) {
+                    action.accept(high | low);
+                }
+            } else {
+                long[] words = (long[]) chunk;
+                for (int w = 0; w < words.length; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        action.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get all the values of the bitmap.
+     * @return A sorted array with the values.
+     */
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int[] position = { 0 };
+        forEach(value -> values[position[0]++] = value);
+        return values;
+    }
+
+    /**
+     * Estimate the memory used by the bitmap.
+     * @return The approximate size of the bitmap in bytes.
+     */
+    public long sizeInBytes() {
+        long size = 16L + keys.length * 2L + chunks.length * 8L;
+        for (Object chunk : chunks) {
+            size += chunk instanceof char[] ? 16L + ((char[]) chunk).length * 2L : 16L + BITMAP_WORDS * 8L;
+        }
+        return size;
+    }
+
+    private static void checkValue(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Only non-negative values can be stored, got " + value);
+        }
+    }
+
+    private static long[] toBitmap(char[] lows, int size) {
+        long[] words = new long[BITMAP_WORDS];
+        for (int i = 0; i < size; i++) {
+            words[lows[i] >>> 6] |= 1L << lows[i];
+        }
+        return words;
+    }
+
+    private static char[] toArray(long[] words) {
+        char[] lows = new char[cardinality(words)];
+        int size = 0;
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                lows[size++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return lows;
+    }
+
+    private static int cardinality(long[] words) {
+        int total = 0;
+        for (long word : words) {
+            total += Long.bitCount(word);
+        }
+        return total;
+    }
+
+    private static char[] insert(char[] array, int position, char value) {
+        char[] result = new char[array.length + 1];
+        System.arraycopy(array, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(array, position, result, position + 1, array.length - position);
+        return result;
+    }
+
+    private static Object[] insert(Object[] array, int position, Object value) {
+        Object[] result = new Object[array.length + 1];
+        System.arraycopy(array, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(array, position, result, position + 1, array.length - position);
+        return result;
+    }
+
+    private static char[] remove(char[] array, int position) {
+        char[] result = new char[array.length - 1];
+        System.arraycopy(array, 0, result, 0, position);
+        System.arraycopy(array, position + 1, result, position, array.length - position - 1);
+        return result;
+    }
+
+    private static Object[] remove(Object[] array, int position) {
+        Object[] result = new Object[array.length - 1];
+        System.arraycopy(array, 0, result, 0, position);
+        System.arraycopy(array, position + 1, result, position, array.length - position - 1);
+        return result;
+    }
+}
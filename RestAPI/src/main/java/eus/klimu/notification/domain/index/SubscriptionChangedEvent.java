@@ -0,0 +1,21 @@
+package eus.klimu.notification.domain.index;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collection;
+
+/**
+ * Published when the subscriptions of some users may have changed, so the subscription index reloads them
+ * once the transaction commits.
+ */
+@Getter
+@RequiredArgsConstructor
+public class SubscriptionChangedEvent {
+
+    /**
+     * The identification numbers of the AppUsers whose subscriptions changed.
+     */
+    private final Collection<Long> userIds;
+
+}
@@ -0,0 +1,318 @@
+package eus.klimu.notification.domain.index;
+
+import eus.klimu.users.domain.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.transaction.Transactional;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory reverse index of the subscriptions. For each location and notification type it keeps, per channel,
+ * a compressed bitmap with the identification numbers of the subscribed users, so the recipients of a notification
+ * can be found without querying the database. The index is built when the application starts and each user is
+ * reloaded after a transaction that changes its subscriptions commits. Those events are only published on the
+ * instance that made the change, so the whole index is also rebuilt from the database periodically: the changes
+ * made through other instances reach this one after the resync interval at the latest.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "eus.klimu:type=SubscriptionIndex", description = "Reverse index of the subscriptions")
+public class SubscriptionIndex {
+
+    /**
+     * The subscribers, by location and type and then by channel. The inner maps are never modified, they are
+     * replaced, so they can be read without locking.
+     */
+    private final Map<Topic, Map<Long, CompactBitmap>> subscribers = new ConcurrentHashMap<>();
+    /**
+     * The subscriptions of each user, used for updating the index when the user changes.
+     */
+    private final Map<Integer, Set<Subscription>> subscriptionsByUser = new ConcurrentHashMap<>();
+    /**
+     * The connection with the AppUser table on the database.
+     */
+    private final UserRepository userRepository;
+    /**
+     * True once the index has been built.
+     */
+    private volatile boolean ready;
+
+    private final LongAdder resyncs = new LongAdder();
+    private volatile long lastBuildAt;
+
+    /**
+     * Create a new instance of the subscription index.
+     * @param userRepository The connection with the AppUser table on the database.
+     */
+    public SubscriptionIndex(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * Check if the index has been built.
+     * @return True if the index can be used.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Get the users subscribed to a notification type on a location, by channel.
+     * @param locationId The identification number of the location.
+     * @param typeId The identification number of the notification type.
+     * @return The subscribed users by channel identification number.
+     */
+    public Map<Long, CompactBitmap> getSubscribers(long locationId, long typeId) {
+        return subscribers.getOrDefault(new Topic(locationId, typeId), Collections.emptyMap());
+    }
+
+    /**
+     * Get the users subscribed to a notification type on a location, for a single channel.
+     * @param locationId The identification number of the location.
+     * @param typeId The identification number of the notification type.
+     * @param channelId The identification number of the channel.
+     * @return The subscribed users.
+     */
+    public CompactBitmap getSubscribers(long locationId, long typeId, long channelId) {
+        return getSubscribers(locationId, typeId).getOrDefault(channelId, CompactBitmap.EMPTY);
+    }
+
+    /**
+     * Build the index from the database once the application has started. The new bitmaps replace the old ones
+     * topic by topic, so the readers never see a topic without subscribers while the index is being rebuilt.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @ManagedOperation(description = "Rebuild the index from the database")
+    public synchronized void build() {
+        long start = System.currentTimeMillis();
+        List<SubscriptionRow> rows = userRepository.findAllSubscriptions();
+
+        // Group the users of each topic and channel before building the bitmaps.
+        Map<Subscription, UserIds> values = new HashMap<>();
+        Map<Integer, Set<Subscription>> byUser = new HashMap<>();
+
+        for (SubscriptionRow row : rows) {
+            Subscription subscription = new Subscription(
+                    new Topic(row.getLocationId(), row.getTypeId()), row.getChannelId()
+            );
+            int userId = Math.toIntExact(row.getUserId());
+
+            values.computeIfAbsent(subscription, key -> new UserIds()).add(userId);
+            byUser.computeIfAbsent(userId, key -> new HashSet<>()).add(subscription);
+        }
+
+        Map<Topic, Map<Long, CompactBitmap>> bitmaps = new HashMap<>();
+        values.forEach((subscription, users) -> bitmaps
+                .computeIfAbsent(subscription.topic, key -> new HashMap<>())
+                .put(subscription.channelId, CompactBitmap.of(users.values, users.size)));
+
+        bitmaps.forEach((topic, channels) -> subscribers.put(topic, Collections.unmodifiableMap(channels)));
+        subscribers.keySet().retainAll(bitmaps.keySet());
+        subscriptionsByUser.putAll(byUser);
+        subscriptionsByUser.keySet().retainAll(byUser.keySet());
+        ready = true;
+        lastBuildAt = System.currentTimeMillis();
+        log.info("Built the subscription index with {} subscription(s) in {} ms",
+                rows.size(), lastBuildAt - start);
+    }
+
+    /**
+     * Rebuild the index periodically, picking up the subscriptions changed through other instances of the
+     * application and any event this instance missed.
+     */
+    @Scheduled(
+            fixedDelayString = "${klimu.notification.index.resync-interval-ms:300000}",
+            initialDelayString = "${klimu.notification.index.resync-interval-ms:300000}"
+    )
+    public void resync() {
+        if (!ready) {
+            // Not built yet, the application is still starting.
+            return;
+        }
+        build();
+        resyncs.increment();
+    }
+
+    /**
+     * Reload the subscriptions of the users that changed, once the transaction that changed them commits.
+     * @param event The users whose subscriptions changed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(Transactional.TxType.REQUIRES_NEW)
+    public synchronized void onSubscriptionChanged(SubscriptionChangedEvent event) {
+        if (!ready) {
+            // The changes will be loaded when the index is built.
+            return;
+        }
+        event.getUserIds().forEach(this::reload);
+    }
+
+    /**
+     * Reload the subscriptions of a user and update the bitmaps that changed.
+     * @param userId The identification number of the AppUser.
+     */
+    private void reload(Long userId) {
+        int id = Math.toIntExact(userId);
+        Set<Subscription> current = new HashSet<>();
+        userRepository.findSubscriptionsOfUser(userId).forEach(row -> current.add(
+                new Subscription(new Topic(row.getLocationId(), row.getTypeId()), row.getChannelId())
+        ));
+        Set<Subscription> previous = subscriptionsByUser.getOrDefault(id, Collections.emptySet());
+
+        previous.stream().filter(subscription -> !current.contains(subscription))
+                .forEach(subscription -> update(subscription, id, false));
+        current.stream().filter(subscription -> !previous.contains(subscription))
+                .forEach(subscription -> update(subscription, id, true));
+
+        if (current.isEmpty()) {
+            subscriptionsByUser.remove(id);
+        } else {
+            subscriptionsByUser.put(id, current);
+        }
+    }
+
+    /**
+     * Add or remove a user from the bitmap of a subscription.
+     * @param subscription The topic and channel of the subscription.
+     * @param userId The identification number of the AppUser.
+     * @param subscribed True to add the user, false to remove it.
+     */
+    private void update(Subscription subscription, int userId, boolean subscribed) {
+        Map<Long, CompactBitmap> channels = new HashMap<>(
+                subscribers.getOrDefault(subscription.topic, Collections.emptyMap())
+        );
+        CompactBitmap bitmap = channels.getOrDefault(subscription.channelId, CompactBitmap.EMPTY);
+        bitmap = subscribed ? bitmap.with(userId) : bitmap.without(userId);
+
+        if (bitmap.isEmpty()) {
+            channels.remove(subscription.channelId);
+        } else {
+            channels.put(subscription.channelId, bitmap);
+        }
+
+        if (channels.isEmpty()) {
+            subscribers.remove(subscription.topic);
+        } else {
+            subscribers.put(subscription.topic, Collections.unmodifiableMap(channels));
+        }
+    }
+
+    @ManagedAttribute(description = "Periodic rebuilds of the index")
+    public long getResyncs() {
+        return resyncs.sum();
+    }
+
+    @ManagedAttribute(description = "Milliseconds since the index was last built from the database")
+    public long getMillisSinceBuild() {
+        return ready ? System.currentTimeMillis() - lastBuildAt : -1;
+    }
+
+    @ManagedAttribute(description = "Locations and notification types with subscribers")
+    public int getTopics() {
+        return subscribers.size();
+    }
+
+    @ManagedAttribute(description = "Users with at least one subscription")
+    public int getUsers() {
+        return subscriptionsByUser.size();
+    }
+
+    @ManagedAttribute(description = "Approximate size of the bitmaps in bytes")
+    public long getMemoryBytes() {
+        long total = 0;
+        for (Map<Long, CompactBitmap> channels : subscribers.values()) {
+            for (CompactBitmap bitmap : channels.values()) {
+                total += bitmap.sizeInBytes();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * A growable list of user identification numbers, used while building the index.
+     */
+    private static final class UserIds {
+
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int userId) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = userId;
+        }
+    }
+
+    /**
+     * A location and a notification type.
+     */
+    private static final class Topic {
+
+        private final long locationId;
+        private final long typeId;
+
+        private Topic(long locationId, long typeId) {
+            this.locationId = locationId;
+            this.typeId = typeId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Topic)) {
+                return false;
+            }
+            Topic topic = (Topic) o;
+            return locationId == topic.locationId && typeId == topic.typeId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(locationId * 31 + typeId);
+        }
+    }
+
+    /**
+     * A topic on a channel.
+     */
+    private static final class Subscription {
+
+        private final Topic topic;
+        private final long channelId;
+
+        private Subscription(Topic topic, long channelId) {
+            this.topic = topic;
+            this.channelId = channelId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Subscription)) {
+                return false;
+            }
+            Subscription subscription = (Subscription) o;
+            return channelId == subscription.channelId && topic.equals(subscription.topic);
+        }
+
+        @Override
+        public int hashCode() {
+            return topic.hashCode() * 31 + Long.hashCode(channelId);
+        }
+    }
+}
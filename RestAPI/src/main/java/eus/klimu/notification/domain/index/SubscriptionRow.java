@@ -0,0 +1,31 @@
+package eus.klimu.notification.domain.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * A single subscription of a user: the user wants to receive the notifications of a type,
+ * for a location, on a channel.
+ */
+@Getter
+@AllArgsConstructor
+public class SubscriptionRow {
+
+    /**
+     * The identification number of the AppUser.
+     */
+    private final Long userId;
+    /**
+     * The identification number of the location.
+     */
+    private final Long locationId;
+    /**
+     * The identification number of the notification type.
+     */
+    private final Long typeId;
+    /**
+     * The identification number of the channel.
+     */
+    private final Long channelId;
+
+}
@@ -0,0 +1,238 @@
+package eus.klimu.notification.domain.ingest;
+
+import eus.klimu.channel.domain.model.Channel;
+import eus.klimu.channel.domain.service.definition.ChannelService;
+import eus.klimu.database.TableSequence;
+import eus.klimu.location.domain.model.Location;
+import eus.klimu.location.domain.service.definition.LocationService;
+import eus.klimu.notification.domain.cache.LatestNotifications;
+import eus.klimu.notification.domain.changes.NotificationChangedEvent;
+import eus.klimu.notification.domain.dispatch.NotificationCreatedEvent;
+import eus.klimu.notification.domain.model.*;
+import eus.klimu.notification.domain.service.definition.NotificationTypeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Saves big lists of notifications. The types and locations of the whole list are read with one query each, the
+ * identification numbers are reserved as a single block and the notifications, their outbox entries and their
+ * changes are written with JDBC batches, instead of going through the entity manager row by row.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "eus.klimu:type=NotificationIngest", description = "Bulk notification ingest")
+public class NotificationIngest {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd,HH:mm:ss");
+
+    private static final String INSERT_NOTIFICATION =
+            "INSERT INTO notification (id, date, message, notification_type_id, location_id) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_OUTBOX =
+            "INSERT INTO notification_outbox (id, notification_id, channel_id, status, attempts, next_attempt_at, " +
+            "created_at) VALUES (?, ?, ?, ?, 0, ?, ?)";
+    private static final String INSERT_CHANGE =
+            "INSERT INTO notification_change (notification_id, operation, changed_at) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TableSequence notificationSequence;
+    private final TableSequence outboxSequence;
+    private final NotificationTypeService notificationTypeService;
+    private final LocationService locationService;
+    private final ChannelService channelService;
+    private final LatestNotifications latestNotifications;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+
+    private final LongAdder ingests = new LongAdder();
+    private final LongAdder notificationsIngested = new LongAdder();
+    private final LongAdder ingestMillis = new LongAdder();
+
+    /**
+     * Create a new instance of the notification ingest.
+     * @param dataSource The connection with the database.
+     * @param transactionTemplate Runs the inserts on a single transaction.
+     * @param notificationTypeService The managing service for the notification types.
+     * @param locationService The managing service for the locations.
+     * @param channelService The managing service for the channels.
+     * @param latestNotifications The latest notifications, kept in memory.
+     * @param eventPublisher Tells the outbox workers and the change feed about the new notifications.
+     * @param batchSize The rows sent to the database on each JDBC batch.
+     */
+    public NotificationIngest(
+            DataSource dataSource, TransactionTemplate transactionTemplate,
+            NotificationTypeService notificationTypeService, LocationService locationService,
+            ChannelService channelService, LatestNotifications latestNotifications,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${klimu.notification.ingest.batch-size:1000}") int batchSize
+    ) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = transactionTemplate;
+        this.notificationSequence = new TableSequence(dataSource, "notification_seq");
+        this.outboxSequence = new TableSequence(dataSource, "notification_outbox_seq");
+        this.notificationTypeService = notificationTypeService;
+        this.locationService = locationService;
+        this.channelService = channelService;
+        this.latestNotifications = latestNotifications;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Save a list of notifications on a single transaction. Nothing is saved if any of them is not valid.
+     * @param notificationDTOs The notifications that are going to be saved.
+     * @return The notifications after being saved, in the same order.
+     * @throws IllegalArgumentException Generated if a notification has a wrong date, type or location.
+     * @throws SQLException Generated if the identification numbers could not be reserved.
+     */
+    public List<Notification> ingest(List<NotificationDTO> notificationDTOs) throws SQLException {
+        long start = System.currentTimeMillis();
+        List<Notification> notifications = resolve(notificationDTOs);
+        List<Channel> channels = channelService.getAllChannels();
+
+        // Reserved before the transaction, so the sequence rows are not locked until the inserts commit.
+        long firstId = notificationSequence.reserve(notifications.size());
+        long firstOutboxId = channels.isEmpty() ? 0 : outboxSequence.reserve(notifications.size() * channels.size());
+        for (int i = 0; i < notifications.size(); i++) {
+            notifications.get(i).setId(firstId + i);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            insertNotifications(notifications);
+            insertOutboxEntries(notifications, channels, firstOutboxId, now);
+            insertChanges(notifications, now);
+
+            latestNotifications.saved(notifications);
+            eventPublisher.publishEvent(new NotificationCreatedEvent(notifications));
+            eventPublisher.publishEvent(new NotificationChangedEvent());
+        });
+
+        long elapsed = System.currentTimeMillis() - start;
+        ingests.increment();
+        notificationsIngested.add(notifications.size());
+        ingestMillis.add(elapsed);
+        log.info("Saved {} notifications in {} ms", notifications.size(), elapsed);
+        return notifications;
+    }
+
+    /**
+     * Transform the notification Data Transfer Objects into notifications, reading all the types and locations
+     * they reference at once.
+     * @param notificationDTOs The notification Data Transfer Objects.
+     * @return The notifications, without identification number.
+     */
+    private List<Notification> resolve(List<NotificationDTO> notificationDTOs) {
+        Set<Long> typeIds = new HashSet<>();
+        Set<Long> locationIds = new HashSet<>();
+        for (NotificationDTO notificationDTO : notificationDTOs) {
+            if (notificationDTO == null || notificationDTO.getNotificationTypeId() == null
+                    || notificationDTO.getLocationId() == null || notificationDTO.getDate() == null) {
+                throw new IllegalArgumentException("The notifications need a date, a type and a location");
+            }
+            typeIds.add(notificationDTO.getNotificationTypeId());
+            locationIds.add(notificationDTO.getLocationId());
+        }
+        Map<Long, NotificationType> types = notificationTypeService.getNotificationTypes(typeIds).stream()
+                .collect(Collectors.toMap(NotificationType::getId, Function.identity()));
+        Map<Long, Location> locations = locationService.getLocationsById(locationIds).stream()
+                .collect(Collectors.toMap(Location::getId, Function.identity()));
+
+        List<Notification> notifications = new ArrayList<>(notificationDTOs.size());
+        for (NotificationDTO notificationDTO : notificationDTOs) {
+            NotificationType type = types.get(notificationDTO.getNotificationTypeId());
+            Location location = locations.get(notificationDTO.getLocationId());
+            if (type == null || location == null) {
+                throw new IllegalArgumentException("Unknown notification type " + notificationDTO.getNotificationTypeId()
+                        + " or location " + notificationDTO.getLocationId());
+            }
+            notifications.add(new Notification(
+                    null, notificationDTO.getMessage(), parseDate(notificationDTO.getDate()), type, location
+            ));
+        }
+        return notifications;
+    }
+
+    private static Date parseDate(String date) {
+        try {
+            return Date.from(LocalDateTime.parse(date, DATE_FORMAT).atZone(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Wrong date " + date, e);
+        }
+    }
+
+    private void insertNotifications(List<Notification> notifications) {
+        jdbcTemplate.batchUpdate(INSERT_NOTIFICATION, notifications, batchSize, (statement, notification) -> {
+            statement.setLong(1, notification.getId());
+            statement.setTimestamp(2, new Timestamp(notification.getDate().getTime()));
+            statement.setString(3, notification.getMessage());
+            statement.setLong(4, notification.getType().getId());
+            statement.setLong(5, notification.getLocation().getId());
+        });
+    }
+
+    private void insertOutboxEntries(
+            List<Notification> notifications, List<Channel> channels, long firstOutboxId, Timestamp now
+    ) {
+        if (channels.isEmpty()) {
+            return;
+        }
+        List<long[]> entries = new ArrayList<>(notifications.size() * channels.size());
+        long id = firstOutboxId;
+        for (Notification notification : notifications) {
+            for (Channel channel : channels) {
+                entries.add(new long[]{id++, notification.getId(), channel.getId()});
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_OUTBOX, entries, batchSize, (statement, entry) -> {
+            statement.setLong(1, entry[0]);
+            statement.setLong(2, entry[1]);
+            statement.setLong(3, entry[2]);
+            statement.setString(4, OutboxStatus.PENDING.name());
+            statement.setTimestamp(5, now);
+            statement.setTimestamp(6, now);
+        });
+    }
+
+    private void insertChanges(List<Notification> notifications, Timestamp now) {
+        jdbcTemplate.batchUpdate(INSERT_CHANGE, notifications, batchSize, (statement, notification) -> {
+            statement.setLong(1, notification.getId());
+            statement.setString(2, ChangeOperation.CREATED.name());
+            statement.setTimestamp(3, now);
+        });
+    }
+
+    @ManagedAttribute(description = "Bulk ingests finished")
+    public long getIngests() {
+        return ingests.sum();
+    }
+
+    @ManagedAttribute(description = "Notifications saved by the bulk ingests")
+    public long getNotificationsIngested() {
+        return notificationsIngested.sum();
+    }
+
+    @ManagedAttribute(description = "Notifications saved per second, on average")
+    public double getNotificationsPerSecond() {
+        long millis = ingestMillis.sum();
+        return millis > 0 ? notificationsIngested.sum() * 1000.0 / millis : 0;
+    }
+}
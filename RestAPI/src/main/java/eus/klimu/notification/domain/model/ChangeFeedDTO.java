@@ -0,0 +1,24 @@
+package eus.klimu.notification.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * A page of the change feed.
+ */
+@Getter
+@AllArgsConstructor
+public class ChangeFeedDTO {
+
+    /**
+     * The cursor to ask for the next changes with.
+     */
+    private final Long cursor;
+    /**
+     * The changes after the requested cursor, at most one per notification.
+     */
+    private final List<NotificationChangeDTO> changes;
+
+}
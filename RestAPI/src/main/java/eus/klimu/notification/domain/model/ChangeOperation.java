@@ -0,0 +1,10 @@
+package eus.klimu.notification.domain.model;
+
+/**
+ * The operations that can be done on a notification, as seen by the change feed.
+ */
+public enum ChangeOperation {
+    CREATED,
+    UPDATED,
+    DELETED
+}
@@ -0,0 +1,47 @@
+package eus.klimu.notification.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A Desktop notification waiting to be pushed to the connected clients. Every instance reads the events from this
+ * table, so a client gets its notifications whichever instance it's connected to, and the identification number
+ * of the event is the same on all of them.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "desktop_event")
+@Table(indexes = @Index(name = "idx_desktop_event_created_at", columnList = "createdAt"))
+public class DesktopEvent {
+
+    /**
+     * The identification number of the event, given by the database in increasing order.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    /**
+     * The notification, as it's sent to the clients.
+     */
+    @Column(nullable = false, length = 2048)
+    private String payload;
+    /**
+     * The usernames of the recipients, one per line.
+     */
+    @Lob
+    @Column(nullable = false)
+    private String usernames;
+    /**
+     * The moment the event was saved.
+     */
+    @Column(nullable = false)
+    private Date createdAt;
+
+}
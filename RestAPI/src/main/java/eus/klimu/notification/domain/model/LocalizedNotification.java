@@ -8,6 +8,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -15,7 +16,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * A notification type for a specific location.
+ * A notification type for a specific location. There is a single one for each location and type, kept by a
+ * unique index created on the schema migrations.
  */
 @Getter
 @Setter
@@ -29,7 +31,8 @@ public class LocalizedNotification {
      * The identification number of the localized notification.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "localized_notification_seq")
+    @GenericGenerator(name = "localized_notification_seq", strategy = "eus.klimu.database.PooledSequenceGenerator")
     private Long id;
     /**
      * The notification type of the localized notification.
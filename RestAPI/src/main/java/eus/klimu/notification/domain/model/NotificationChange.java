@@ -0,0 +1,46 @@
+package eus.klimu.notification.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A change done to a notification. The changes are written on the same transaction as the notification and
+ * their identification number grows with every change, so it's used as the cursor of the change feed.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "notification_change")
+@Table(indexes = @Index(name = "idx_notification_change_changed_at", columnList = "changedAt"))
+public class NotificationChange {
+
+    /**
+     * The identification number of the change, given by the database in increasing order.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    /**
+     * The identification number of the notification that changed.
+     */
+    @Column(nullable = false)
+    private Long notificationId;
+    /**
+     * The operation done on the notification.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ChangeOperation operation;
+    /**
+     * The moment of the change.
+     */
+    @Column(nullable = false)
+    private Date changedAt;
+
+}
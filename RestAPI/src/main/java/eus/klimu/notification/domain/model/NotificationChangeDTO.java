@@ -0,0 +1,41 @@
+package eus.klimu.notification.domain.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+
+/**
+ * A change of the change feed. Deleted notifications only carry their identification number, the rest carry
+ * the current state of the notification, with the type and the location as identification numbers.
+ */
+@Getter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NotificationChangeDTO {
+
+    /**
+     * The cursor of the change.
+     */
+    private final Long cursor;
+    /**
+     * The identification number of the notification that changed.
+     */
+    private final Long id;
+    /**
+     * The operation done on the notification.
+     */
+    private final ChangeOperation operation;
+    /**
+     * The moment of the change, only used for ordering the feed.
+     */
+    @JsonIgnore
+    private final Date changedAt;
+    private final String message;
+    private final Date date;
+    private final Long typeId;
+    private final Long locationId;
+
+}
@@ -0,0 +1,61 @@
+package eus.klimu.notification.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * The position of a notification on a search ordered by date, sent to the clients as an opaque text.
+ * The identification number breaks the ties between notifications with the same date.
+ */
+@Getter
+@AllArgsConstructor
+public class NotificationCursor {
+
+    /**
+     * The date of the notification.
+     */
+    private Date date;
+    /**
+     * The identification number of the notification.
+     */
+    private long id;
+
+    /**
+     * Get the cursor of a notification.
+     * @param notification The notification.
+     * @return The cursor positioned on that notification.
+     */
+    public static NotificationCursor of(Notification notification) {
+        return new NotificationCursor(notification.getDate(), notification.getId());
+    }
+
+    /**
+     * Read a cursor sent by a client.
+     * @param value The cursor as text.
+     * @return The cursor, or null if the text is not a valid cursor.
+     */
+    public static NotificationCursor decode(String value) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 2) {
+                return null;
+            }
+            return new NotificationCursor(new Date(Long.parseLong(parts[0])), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write the cursor as text for the clients.
+     * @return The cursor as text.
+     */
+    public String encode() {
+        String value = date.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
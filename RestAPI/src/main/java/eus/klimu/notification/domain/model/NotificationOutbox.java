@@ -0,0 +1,105 @@
+package eus.klimu.notification.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+
+import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The delivery of a notification through a channel that hasn't been completed yet. The entries are written on
+ * the same transaction as the notification, so a notification is never lost if the application stops before
+ * sending it, and they are removed once the notification has been handed to the sender of the channel. If only some
+ * recipients have to be retried, the entry keeps them, so the next attempt doesn't reach the rest again.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "notification_outbox")
+@Table(indexes = {
+        @Index(name = "idx_notification_outbox_status_next", columnList = "status, nextAttemptAt"),
+        @Index(name = "idx_notification_outbox_status_lease", columnList = "status, lockedUntil")
+})
+public class NotificationOutbox {
+
+    /**
+     * The identification number of the entry.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_outbox_seq")
+    @GenericGenerator(name = "notification_outbox_seq", strategy = "eus.klimu.database.PooledSequenceGenerator")
+    private Long id;
+    /**
+     * The identification number of the notification that is going to be sent.
+     */
+    @Column(nullable = false)
+    private Long notificationId;
+    /**
+     * The identification number of the channel the notification is going to be sent on.
+     */
+    @Column(nullable = false)
+    private Long channelId;
+    /**
+     * The state of the entry.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private OutboxStatus status;
+    /**
+     * The amount of times the delivery has been tried.
+     */
+    private int attempts;
+    /**
+     * The moment after which the entry can be claimed.
+     */
+    @Column(nullable = false)
+    private Date nextAttemptAt;
+    /**
+     * The worker that claimed the entry.
+     */
+    private String lockedBy;
+    /**
+     * The moment the claim of the worker expires, after that another worker can claim the entry.
+     */
+    private Date lockedUntil;
+    /**
+     * The error of the last failed attempt.
+     */
+    @Column(length = 1024)
+    private String lastError;
+    /**
+     * The moment the entry was created.
+     */
+    @Column(nullable = false)
+    private Date createdAt;
+    /**
+     * The users the notification still has to be sent to, separated by commas, null to send it to every
+     * subscriber of the channel.
+     */
+    @Lob
+    private String recipients;
+
+    /**
+     * Get the users the notification still has to be sent to.
+     * @return The identification numbers of the users, null to send it to every subscriber of the channel.
+     */
+    public List<Long> getPendingRecipients() {
+        if (recipients == null) {
+            return null;
+        }
+        List<Long> userIds = new ArrayList<>();
+        for (String userId : recipients.split(",")) {
+            if (!userId.isEmpty()) {
+                userIds.add(Long.parseLong(userId));
+            }
+        }
+        return userIds;
+    }
+
+}
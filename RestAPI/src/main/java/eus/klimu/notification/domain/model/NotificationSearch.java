@@ -0,0 +1,49 @@
+package eus.klimu.notification.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * The filters, order and position of a notification search. Every filter is optional.
+ */
+@Getter
+@AllArgsConstructor
+public class NotificationSearch {
+
+    /**
+     * The identification numbers of the locations the notifications must be from.
+     */
+    private Collection<Long> locationIds;
+    /**
+     * The identification numbers of the notification types the notifications must be of.
+     */
+    private Collection<Long> typeIds;
+    /**
+     * The danger levels of the notification types, like Warning or Dangerous.
+     */
+    private Collection<String> severities;
+    /**
+     * The minimum date of the notifications.
+     */
+    private Date from;
+    /**
+     * The maximum date of the notifications, excluded.
+     */
+    private Date to;
+    /**
+     * If the oldest notifications go first.
+     */
+    private boolean ascending;
+    /**
+     * The position of the last notification of the previous page, null for the first page.
+     */
+    private NotificationCursor cursor;
+    /**
+     * The maximum amount of notifications on the page.
+     */
+    private int limit;
+
+}
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -20,7 +21,8 @@ public class NotificationType {
      * The identification number of the notification type.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_type_seq")
+    @GenericGenerator(name = "notification_type_seq", strategy = "eus.klimu.database.PooledSequenceGenerator")
     private Long id;
     /**
      * The name of the notification type.
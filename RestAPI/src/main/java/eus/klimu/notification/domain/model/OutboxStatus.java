@@ -0,0 +1,21 @@
+package eus.klimu.notification.domain.model;
+
+/**
+ * The state of an entry of the notification outbox.
+ */
+public enum OutboxStatus {
+
+    /**
+     * Waiting to be sent, or to be retried after a failure.
+     */
+    PENDING,
+    /**
+     * Claimed by a worker, which is sending it.
+     */
+    IN_PROGRESS,
+    /**
+     * Failed too many times, it won't be retried.
+     */
+    DEAD
+
+}
@@ -0,0 +1,44 @@
+package eus.klimu.notification.domain.repository;
+
+import eus.klimu.notification.domain.model.DesktopEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Access to the database for the Desktop notification events.
+ * Extends from a JpaRepository.
+ */
+public interface DesktopEventRepository extends JpaRepository<DesktopEvent, Long> {
+
+    /**
+     * Get the events after an identification number.
+     * @param since The identification number of the last event already read.
+     * @param pageable The maximum amount of events.
+     * @return A list with the events, ordered by their identification number.
+     */
+    @Query("SELECT e FROM desktop_event e WHERE e.id > :since ORDER BY e.id")
+    List<DesktopEvent> findEventsAfter(@Param("since") long since, Pageable pageable);
+
+    /**
+     * Get the identification number of the last event.
+     * @return The highest identification number, or null if there are no events.
+     */
+    @Query("SELECT MAX(e.id) FROM desktop_event e")
+    Long findLastId();
+
+    /**
+     * Delete the events older than a date.
+     * @param date The date the events must be older than.
+     * @return The amount of events deleted.
+     */
+    @Modifying
+    @Query("DELETE FROM desktop_event e WHERE e.createdAt < :date")
+    int deleteOlderThan(@Param("date") Date date);
+
+}
@@ -3,7 +3,11 @@ package eus.klimu.notification.domain.repository;
 import eus.klimu.location.domain.model.Location;
 import eus.klimu.notification.domain.model.LocalizedNotification;
 import eus.klimu.notification.domain.model.NotificationType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -36,4 +40,22 @@ public interface LocalizedNotificationRepository extends JpaRepository<Localized
      */
     Optional<LocalizedNotification> getByLocationAndType(Location location, NotificationType notificationType);
 
+    /**
+     * Find the localized notifications after an identification number, in order of their identification number.
+     * @param id The identification number of the last localized notification already read.
+     * @param pageable The maximum amount of localized notifications.
+     * @return A list with the localized notifications after that identification number.
+     */
+    @EntityGraph(attributePaths = {"type", "location"})
+    List<LocalizedNotification> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
+    /**
+     * Get the identification numbers of the users subscribed to a localized notification.
+     * @param localizedNotificationId The identification number of the localized notification.
+     * @return A list with the identification numbers of the users.
+     */
+    @Query("SELECT DISTINCT u.id FROM app_user u JOIN u.notifications un JOIN un.notifications ln " +
+            "WHERE ln.id = :localizedNotificationId")
+    List<Long> findSubscriberIds(@Param("localizedNotificationId") long localizedNotificationId);
+
 }
@@ -0,0 +1,58 @@
+package eus.klimu.notification.domain.repository;
+
+import eus.klimu.notification.domain.model.NotificationChange;
+import eus.klimu.notification.domain.model.NotificationChangeDTO;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Access to the database for the notification changes.
+ * Extends from a JpaRepository.
+ */
+public interface NotificationChangeRepository extends JpaRepository<NotificationChange, Long> {
+
+    /**
+     * Get the changes after a cursor, with the current state of the notifications that still exist.
+     * @param since The cursor of the last change already seen.
+     * @param pageable The maximum amount of changes.
+     * @return A list with the changes, ordered by their cursor.
+     */
+    @Query("SELECT new eus.klimu.notification.domain.model.NotificationChangeDTO(" +
+            "c.id, c.notificationId, c.operation, c.changedAt, n.message, n.date, t.id, l.id) " +
+            "FROM notification_change c " +
+            "LEFT JOIN Notification n ON n.id = c.notificationId " +
+            "LEFT JOIN n.type t " +
+            "LEFT JOIN n.location l " +
+            "WHERE c.id > :since ORDER BY c.id")
+    List<NotificationChangeDTO> findChangesAfter(@Param("since") long since, Pageable pageable);
+
+    /**
+     * Get the cursor of the last change.
+     * @return The highest identification number, or null if there are no changes.
+     */
+    @Query("SELECT MAX(c.id) FROM notification_change c")
+    Long findLastId();
+
+    /**
+     * Get the cursor of the oldest change kept.
+     * @return The lowest identification number, or null if there are no changes.
+     */
+    @Query("SELECT MIN(c.id) FROM notification_change c")
+    Long findFirstId();
+
+    /**
+     * Delete the changes older than a date.
+     * @param date The date the changes must be older than.
+     * @return The amount of changes deleted.
+     */
+    @Modifying
+    @Query("DELETE FROM notification_change c WHERE c.changedAt < :date")
+    int deleteOlderThan(@Param("date") Date date);
+
+}
@@ -0,0 +1,89 @@
+package eus.klimu.notification.domain.repository;
+
+import eus.klimu.notification.domain.model.NotificationOutbox;
+import eus.klimu.notification.domain.model.OutboxStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Access to the database for the notification outbox.
+ * Extends from a JpaRepository.
+ */
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutbox, Long> {
+
+    /**
+     * Lock the pending entries whose next attempt is due, skipping the ones locked by other workers. The entries
+     * are read in the order of the status index, so only the rows returned are examined and locked.
+     * @param now The current time.
+     * @param limit The maximum amount of entries.
+     * @return A list with the locked entries.
+     */
+    @Query(value = "SELECT * FROM notification_outbox " +
+            "WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+            "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<NotificationOutbox> lockReady(@Param("now") Date now, @Param("limit") int limit);
+
+    /**
+     * Make the entries whose worker didn't finish on time pending again, so other workers can claim them.
+     * @param now The current time.
+     * @return The amount of entries released.
+     */
+    @Modifying
+    @Query("UPDATE notification_outbox o SET o.status = eus.klimu.notification.domain.model.OutboxStatus.PENDING, " +
+            "o.lockedBy = NULL, o.lockedUntil = NULL " +
+            "WHERE o.status = eus.klimu.notification.domain.model.OutboxStatus.IN_PROGRESS AND o.lockedUntil < :now")
+    int releaseExpired(@Param("now") Date now);
+
+    /**
+     * Delete an entry if it's still claimed by a worker.
+     * @param id The identification number of the entry.
+     * @param workerId The identifier of the worker that claimed it.
+     * @return The amount of deleted entries, 0 if another worker has claimed it since.
+     */
+    @Modifying
+    @Query("DELETE FROM notification_outbox o WHERE o.id = :id AND o.lockedBy = :workerId")
+    int deleteClaimed(@Param("id") long id, @Param("workerId") String workerId);
+
+    /**
+     * Release an entry that is still claimed by a worker, with the status of its next attempt.
+     * @param id The identification number of the entry.
+     * @param workerId The identifier of the worker that claimed it.
+     * @param status The new status of the entry.
+     * @param nextAttemptAt The time of the next attempt.
+     * @param lastError The reason of the last failure.
+     * @param recipients The users the notification still has to be sent to, null for every subscriber.
+     * @return The amount of updated entries, 0 if another worker has claimed it since.
+     */
+    @Modifying
+    @Query("UPDATE notification_outbox o SET o.status = :status, o.nextAttemptAt = :nextAttemptAt, " +
+            "o.lastError = :lastError, o.recipients = :recipients, o.lockedBy = NULL, o.lockedUntil = NULL " +
+            "WHERE o.id = :id AND o.lockedBy = :workerId")
+    int releaseClaimed(
+            @Param("id") long id, @Param("workerId") String workerId, @Param("status") OutboxStatus status,
+            @Param("nextAttemptAt") Date nextAttemptAt, @Param("lastError") String lastError,
+            @Param("recipients") String recipients
+    );
+
+    /**
+     * Delete the dead entries whose last attempt is older than a date.
+     * @param date The date of the oldest last attempt that is kept.
+     * @return The amount of deleted entries.
+     */
+    @Modifying
+    @Query("DELETE FROM notification_outbox o " +
+            "WHERE o.status = eus.klimu.notification.domain.model.OutboxStatus.DEAD AND o.nextAttemptAt < :date")
+    int deleteDeadBefore(@Param("date") Date date);
+
+    /**
+     * Count the entries with a status.
+     * @param status The status of the entries.
+     * @return The amount of entries with that status.
+     */
+    long countByStatus(OutboxStatus status);
+
+}
@@ -0,0 +1,23 @@
+package eus.klimu.notification.domain.repository;
+
+import eus.klimu.notification.domain.model.Notification;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Access to the database for the notification search.
+ */
+public interface NotificationSearchRepository {
+
+    /**
+     * Find the first notifications that match some filters, in order of date, with their type and location.
+     * Unlike a page of Spring Data, the total amount of notifications is not counted.
+     * @param specification The filters of the notifications.
+     * @param ascending If the oldest notifications go first.
+     * @param limit The maximum amount of notifications.
+     * @return A list with the notifications found.
+     */
+    List<Notification> search(Specification<Notification> specification, boolean ascending, int limit);
+
+}
@@ -0,0 +1,47 @@
+package eus.klimu.notification.domain.repository;
+
+import eus.klimu.notification.domain.model.Notification;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.*;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The implementation of the notification search, building a single Criteria query from the filters.
+ */
+public class NotificationSearchRepositoryImpl implements NotificationSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Find the first notifications that match some filters, in order of date, with their type and location.
+     * @param specification The filters of the notifications.
+     * @param ascending If the oldest notifications go first.
+     * @param limit The maximum amount of notifications.
+     * @return A list with the notifications found.
+     */
+    @Override
+    public List<Notification> search(Specification<Notification> specification, boolean ascending, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Notification> query = builder.createQuery(Notification.class);
+        Root<Notification> root = query.from(Notification.class);
+
+        // Read with the notifications, instead of a query for every type and location.
+        root.fetch("type", JoinType.LEFT);
+        root.fetch("location", JoinType.LEFT);
+
+        Predicate predicate = specification != null ? specification.toPredicate(root, query, builder) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root).orderBy(ascending
+                ? Arrays.asList(builder.asc(root.get("date")), builder.asc(root.get("id")))
+                : Arrays.asList(builder.desc(root.get("date")), builder.desc(root.get("id"))));
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
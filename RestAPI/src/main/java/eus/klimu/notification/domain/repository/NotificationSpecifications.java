@@ -0,0 +1,121 @@
+package eus.klimu.notification.domain.repository;
+
+import eus.klimu.notification.domain.model.Notification;
+import eus.klimu.notification.domain.model.NotificationCursor;
+import eus.klimu.notification.domain.model.NotificationSearch;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.Path;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * The filters of the notification search, combined into a single query. The filters on the location, the type
+ * and the date use the columns of the notification table, so they are resolved with its indexes.
+ */
+public final class NotificationSpecifications {
+
+    private NotificationSpecifications() {
+    }
+
+    /**
+     * Combine all the filters of a search.
+     * @param search The search.
+     * @return The filters of the search, including the position of the page.
+     */
+    public static Specification<Notification> of(NotificationSearch search) {
+        return Specification.where(locationIn(search.getLocationIds()))
+                .and(typeIn(search.getTypeIds()))
+                .and(severityIn(search.getSeverities()))
+                .and(dateFrom(search.getFrom()))
+                .and(dateTo(search.getTo()))
+                .and(after(search.getCursor(), search.isAscending()));
+    }
+
+    /**
+     * Notifications from some locations.
+     * @param locationIds The identification numbers of the locations, null or empty for any location.
+     * @return The filter, or null if there is nothing to filter.
+     */
+    public static Specification<Notification> locationIn(Collection<Long> locationIds) {
+        if (locationIds == null || locationIds.isEmpty()) {
+            return null;
+        }
+        return (root, query, builder) -> root.get("location").get("id").in(locationIds);
+    }
+
+    /**
+     * Notifications of some types.
+     * @param typeIds The identification numbers of the notification types, null or empty for any type.
+     * @return The filter, or null if there is nothing to filter.
+     */
+    public static Specification<Notification> typeIn(Collection<Long> typeIds) {
+        if (typeIds == null || typeIds.isEmpty()) {
+            return null;
+        }
+        return (root, query, builder) -> root.get("type").get("id").in(typeIds);
+    }
+
+    /**
+     * Notifications whose type has some danger levels.
+     * @param severities The danger levels, null or empty for any level.
+     * @return The filter, or null if there is nothing to filter.
+     */
+    public static Specification<Notification> severityIn(Collection<String> severities) {
+        if (severities == null || severities.isEmpty()) {
+            return null;
+        }
+        return (root, query, builder) -> root.join("type").get("type").in(severities);
+    }
+
+    /**
+     * Notifications from a date.
+     * @param from The minimum date, included.
+     * @return The filter, or null if there is nothing to filter.
+     */
+    public static Specification<Notification> dateFrom(Date from) {
+        if (from == null) {
+            return null;
+        }
+        return (root, query, builder) -> builder.greaterThanOrEqualTo(root.get("date"), from);
+    }
+
+    /**
+     * Notifications before a date.
+     * @param to The maximum date, excluded.
+     * @return The filter, or null if there is nothing to filter.
+     */
+    public static Specification<Notification> dateTo(Date to) {
+        if (to == null) {
+            return null;
+        }
+        return (root, query, builder) -> builder.lessThan(root.get("date"), to);
+    }
+
+    /**
+     * Notifications after the position of a cursor, in the order of the search.
+     * @param cursor The position of the last notification of the previous page.
+     * @param ascending If the oldest notifications go first.
+     * @return The filter, or null if it's the first page.
+     */
+    public static Specification<Notification> after(NotificationCursor cursor, boolean ascending) {
+        if (cursor == null) {
+            return null;
+        }
+        return (root, query, builder) -> {
+            Path<Date> date = root.get("date");
+            Path<Long> id = root.get("id");
+            if (ascending) {
+                return builder.or(
+                        builder.greaterThan(date, cursor.getDate()),
+                        builder.and(builder.equal(date, cursor.getDate()), builder.greaterThan(id, cursor.getId()))
+                );
+            } else {
+                return builder.or(
+                        builder.lessThan(date, cursor.getDate()),
+                        builder.and(builder.equal(date, cursor.getDate()), builder.lessThan(id, cursor.getId()))
+                );
+            }
+        };
+    }
+}
@@ -3,7 +3,10 @@ package eus.klimu.notification.domain.repository;
 import eus.klimu.channel.domain.model.Channel;
 import eus.klimu.notification.domain.model.LocalizedNotification;
 import eus.klimu.notification.domain.model.UserNotification;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -28,4 +31,20 @@ public interface UserNotificationRepository extends JpaRepository<UserNotificati
      */
     List<UserNotification> getAllByNotifications(LocalizedNotification notification);
 
+    /**
+     * Get the identification numbers of the users that have a user notification.
+     * @param userNotificationId The identification number of the user notification.
+     * @return A list with the identification numbers of the users.
+     */
+    @Query("SELECT u.id FROM app_user u JOIN u.notifications un WHERE un.id = :userNotificationId")
+    List<Long> findUserIds(@Param("userNotificationId") long userNotificationId);
+
+    /**
+     * Find the user notifications after an identification number, in order of their identification number.
+     * @param id The identification number of the last user notification already read.
+     * @param pageable The maximum amount of user notifications.
+     * @return A list with the user notifications after that identification number.
+     */
+    List<UserNotification> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
 }
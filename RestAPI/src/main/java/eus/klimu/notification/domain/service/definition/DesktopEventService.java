@@ -0,0 +1,41 @@
+package eus.klimu.notification.domain.service.definition;
+
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+import eus.klimu.notification.domain.model.DesktopEvent;
+
+import java.util.List;
+
+/**
+ * Definition of the different functions available for the Desktop notification events.
+ */
+public interface DesktopEventService {
+
+    /**
+     * Save a Desktop notification for the clients of its recipients, on every instance.
+     * @param batch The notification and its recipients.
+     * @return The saved event.
+     */
+    DesktopEvent publish(DeliveryBatch batch);
+
+    /**
+     * Get the events after an identification number.
+     * @param since The identification number of the last event already read.
+     * @param limit The maximum amount of events.
+     * @return The events, ordered by their identification number.
+     */
+    List<DesktopEvent> getEventsAfter(long since, int limit);
+
+    /**
+     * Get the identification number of the last event.
+     * @return The identification number of the last event, 0 if there are no events.
+     */
+    long getLastId();
+
+    /**
+     * Remove the old events.
+     * @param retentionMillis The time the events are kept.
+     * @return The amount of events removed.
+     */
+    int purge(long retentionMillis);
+
+}
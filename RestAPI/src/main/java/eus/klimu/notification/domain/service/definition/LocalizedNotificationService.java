@@ -73,4 +73,12 @@ public interface LocalizedNotificationService {
      */
     void deleteLocalizedNotification(LocalizedNotification localizedNotification);
 
+    /**
+     * Get a page of the localized notifications, in order of their identification number.
+     * @param after The identification number of the last localized notification already read.
+     * @param limit The maximum amount of localized notifications.
+     * @return A list with the localized notifications after that identification number.
+     */
+    List<LocalizedNotification> getLocalizedNotificationsAfter(long after, int limit);
+
 }
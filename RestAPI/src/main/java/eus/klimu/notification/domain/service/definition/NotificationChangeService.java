@@ -0,0 +1,48 @@
+package eus.klimu.notification.domain.service.definition;
+
+import eus.klimu.notification.domain.model.ChangeFeedDTO;
+import eus.klimu.notification.domain.model.ChangeOperation;
+
+import java.util.Collection;
+
+/**
+ * Definition of the different functions available for the notification changes.
+ */
+public interface NotificationChangeService {
+
+    /**
+     * Save a change of some notifications, on the transaction of the change.
+     * @param notificationIds The identification numbers of the notifications that changed.
+     * @param operation The operation done on the notifications.
+     */
+    void record(Collection<Long> notificationIds, ChangeOperation operation);
+
+    /**
+     * Get the changes after a cursor, at most one per notification.
+     * @param since The cursor of the last change already seen.
+     * @param limit The maximum amount of changes read.
+     * @return The changes and the cursor to continue from.
+     */
+    ChangeFeedDTO getChanges(long since, int limit);
+
+    /**
+     * Get the cursor of the last change.
+     * @return The cursor of the last change, 0 if there are no changes.
+     */
+    long getLastCursor();
+
+    /**
+     * Check if the changes after a cursor are no longer kept.
+     * @param since The cursor of the last change already seen.
+     * @return True if some changes after the cursor have been removed.
+     */
+    boolean isExpired(long since);
+
+    /**
+     * Remove the old changes.
+     * @param retentionMillis The time the changes are kept.
+     * @return The amount of changes removed.
+     */
+    int purge(long retentionMillis);
+
+}
@@ -0,0 +1,80 @@
+package eus.klimu.notification.domain.service.definition;
+
+import eus.klimu.notification.domain.model.Notification;
+import eus.klimu.notification.domain.model.NotificationOutbox;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Definition of the different functions available for the notification outbox.
+ */
+public interface NotificationOutboxService {
+
+    /**
+     * Add the deliveries of a notification to the outbox, one per channel.
+     * @param notification The notification that is going to be sent.
+     */
+    void enqueue(Notification notification);
+
+    /**
+     * Claim a batch of entries for a worker.
+     * @param workerId The identifier of the worker.
+     * @param batchSize The maximum amount of entries.
+     * @param leaseMillis The time the worker has for sending the entries before others can claim them.
+     * @return A list with the claimed entries.
+     */
+    List<NotificationOutbox> claim(String workerId, int batchSize, long leaseMillis);
+
+    /**
+     * Make the entries whose worker didn't finish on time pending again.
+     * @return The amount of entries released.
+     */
+    int reclaimExpired();
+
+    /**
+     * Remove an entry that has been sent, if the worker still holds its claim.
+     * @param entry The entry that has been sent.
+     * @return False if the claim expired and another worker has claimed the entry since.
+     */
+    boolean complete(NotificationOutbox entry);
+
+    /**
+     * Save a failed attempt of an entry, scheduling a new attempt or marking it as dead, if the worker
+     * still holds its claim.
+     * @param entry The entry that failed.
+     * @param error The reason of the failure.
+     * @return False if the claim expired and another worker has claimed the entry since.
+     */
+    boolean fail(NotificationOutbox entry, String error);
+
+    /**
+     * Save a failed attempt of an entry that reached some of its recipients, so the next attempt is only sent
+     * to the rest, if the worker still holds its claim.
+     * @param entry The entry that failed.
+     * @param error The reason of the failure.
+     * @param recipients The users the notification still has to be sent to.
+     * @return False if the claim expired and another worker has claimed the entry since.
+     */
+    boolean fail(NotificationOutbox entry, String error, Collection<Long> recipients);
+
+    /**
+     * Count the entries waiting to be sent.
+     * @return The amount of pending entries.
+     */
+    long countPending();
+
+    /**
+     * Count the entries that won't be retried.
+     * @return The amount of dead entries.
+     */
+    long countDead();
+
+    /**
+     * Remove the dead entries that failed long ago.
+     * @param retentionMillis The time the dead entries are kept after their last attempt.
+     * @return The amount of entries removed.
+     */
+    int purgeDead(long retentionMillis);
+
+}
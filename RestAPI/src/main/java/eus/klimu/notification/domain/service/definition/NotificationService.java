@@ -1,10 +1,8 @@
 package eus.klimu.notification.domain.service.definition;
 
-import eus.klimu.location.domain.model.Location;
 import eus.klimu.notification.domain.model.Notification;
-import eus.klimu.notification.domain.model.NotificationType;
+import eus.klimu.notification.domain.model.NotificationSearch;
 
-import java.util.Date;
 import java.util.List;
 
 /**
@@ -19,20 +17,6 @@ public interface NotificationService {
      */
     Notification getNotificationById(long id);
 
-    /**
-     * Get all the notifications from a specific location.
-     * @param location The location the notifications must be from.
-     * @return A list with all the notifications from that location.
-     */
-    List<Notification> getAllNotifications(Location location);
-
-    /**
-     * Get all the notification of a specific type.
-     * @param type The notification type the notifications must be of.
-     * @return A list with all the notifications of that type.
-     */
-    List<Notification> getAllNotifications(NotificationType type);
-
     /**
      * Get all the notifications.
      * @return A list with all the notifications.
@@ -46,22 +30,11 @@ public interface NotificationService {
     List<Notification> getAllNotificationsLimited();
 
     /**
-     * Get all the notifications from a location between two dates.
-     * @param location The location the notifications must be from.
-     * @param startDate The starting date for the notifications.
-     * @param endDate The final date of the notifications.
-     * @return A list with all the notifications from that location between those dates.
+     * Search the notifications that match some filters, in order of date.
+     * @param search The filters, order and position of the search.
+     * @return A list with the notifications found, at most the limit of the search.
      */
-    List<Notification> getNotificationsByDateBetween(Location location, Date startDate, Date endDate);
-
-    /**
-     * Get all the notifications of a notification type between two dates.
-     * @param type The notification type the notifications must be of.
-     * @param startDate The starting date for the notifications.
-     * @param endDate The final date of the notifications.
-     * @return A list with all the notifications of a notification type between two dates.
-     */
-    List<Notification> getNotificationsByDateBetween(NotificationType type, Date startDate, Date endDate);
+    List<Notification> searchNotifications(NotificationSearch search);
 
     /**
      * Save a new notification.
@@ -90,4 +63,12 @@ public interface NotificationService {
      */
     void deleteNotification(Notification notification);
 
+    /**
+     * Get a page of the notifications, in order of their identification number.
+     * @param after The identification number of the last notification already read.
+     * @param limit The maximum amount of notifications.
+     * @return A list with the notifications after that identification number.
+     */
+    List<Notification> getNotificationsAfter(long after, int limit);
+
 }
@@ -2,6 +2,7 @@ package eus.klimu.notification.domain.service.definition;
 
 import eus.klimu.notification.domain.model.NotificationType;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -22,6 +23,13 @@ public interface NotificationTypeService {
      */
     NotificationType getNotificationType(long id);
 
+    /**
+     * Get the notification types with some identification numbers.
+     * @param ids The identification numbers of the notification types.
+     * @return A list with the notification types found.
+     */
+    List<NotificationType> getNotificationTypes(Collection<Long> ids);
+
     /**
      * Get a notification type based on its name.
      * @param name The name of the notification type.
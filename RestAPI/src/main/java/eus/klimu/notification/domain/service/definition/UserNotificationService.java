@@ -65,4 +65,12 @@ public interface UserNotificationService {
      */
     void deleteUserNotifications(UserNotification userNotification);
 
+    /**
+     * Get a page of the user notifications, in order of their identification number.
+     * @param after The identification number of the last user notification already read.
+     * @param limit The maximum amount of user notifications.
+     * @return A list with the user notifications after that identification number.
+     */
+    List<UserNotification> getUserNotificationsAfter(long after, int limit);
+
 }
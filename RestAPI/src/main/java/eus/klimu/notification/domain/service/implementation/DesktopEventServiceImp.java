@@ -0,0 +1,101 @@
+package eus.klimu.notification.domain.service.implementation;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+import eus.klimu.notification.domain.dispatch.Recipient;
+import eus.klimu.notification.domain.model.DesktopEvent;
+import eus.klimu.notification.domain.repository.DesktopEventRepository;
+import eus.klimu.notification.domain.service.definition.DesktopEventService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The implementation of the Desktop event service. The notification is serialized once for all its recipients
+ * and saved on the desktop_event table, where the stream of every instance reads it.
+ */
+@Slf4j
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class DesktopEventServiceImp implements DesktopEventService {
+
+    /**
+     * The connection with the Desktop event table on the database.
+     */
+    private final DesktopEventRepository eventRepository;
+    /**
+     * Serializes the notifications.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Save a Desktop notification for the clients of its recipients, on every instance.
+     * @param batch The notification and its recipients.
+     * @return The saved event.
+     */
+    @Override
+    public DesktopEvent publish(DeliveryBatch batch) {
+        String usernames = batch.getRecipients().stream()
+                .map(Recipient::getUsername).distinct().collect(Collectors.joining("\n"));
+        return eventRepository.save(new DesktopEvent(null, serialize(batch), usernames, new Date()));
+    }
+
+    /**
+     * Get the events after an identification number.
+     * @param since The identification number of the last event already read.
+     * @param limit The maximum amount of events.
+     * @return The events, ordered by their identification number.
+     */
+    @Override
+    public List<DesktopEvent> getEventsAfter(long since, int limit) {
+        return eventRepository.findEventsAfter(since, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Get the identification number of the last event.
+     * @return The identification number of the last event, 0 if there are no events.
+     */
+    @Override
+    public long getLastId() {
+        Long lastId = eventRepository.findLastId();
+        return lastId != null ? lastId : 0;
+    }
+
+    /**
+     * Remove the old events.
+     * @param retentionMillis The time the events are kept.
+     * @return The amount of events removed.
+     */
+    @Override
+    public int purge(long retentionMillis) {
+        int removed = eventRepository.deleteOlderThan(new Date(System.currentTimeMillis() - retentionMillis));
+        log.info("Removed {} desktop event(s) from the database", removed);
+        return removed;
+    }
+
+    /**
+     * Serialize a notification once for all its recipients.
+     * @param batch The notification.
+     * @return The JSON of the notification.
+     */
+    private String serialize(DeliveryBatch batch) {
+        Map<String, Object> notification = new LinkedHashMap<>();
+        notification.put("id", batch.getNotificationId());
+        notification.put("message", batch.getMessage());
+        notification.put("date", batch.getDate());
+        notification.put("type", batch.getTypeName());
+        notification.put("location", batch.getLocation());
+        try {
+            return objectMapper.writeValueAsString(notification);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package eus.klimu.notification.domain.service.implementation;
 
 import eus.klimu.location.domain.model.Location;
+import eus.klimu.notification.domain.index.SubscriptionChangedEvent;
 import eus.klimu.notification.domain.model.LocalizedNotification;
 import eus.klimu.notification.domain.model.NotificationType;
 import eus.klimu.notification.domain.repository.LocalizedNotificationRepository;
 import eus.klimu.notification.domain.service.definition.LocalizedNotificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
@@ -27,6 +30,10 @@ public class LocalizedNotificationServiceImp implements LocalizedNotificationSer
      * The connection with the localized notification table on the database.
      */
     private final LocalizedNotificationRepository localizedNotificationRepository;
+    /**
+     * Tells the subscription index about the users whose subscriptions moved or disappeared.
+     */
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Get a localized notification based on its identification number from the database.
@@ -117,14 +124,19 @@ public class LocalizedNotificationServiceImp implements LocalizedNotificationSer
     }
 
     /**
-     * Update a localized notification on the database.
+     * Update a localized notification on the database. A new location or type moves its subscribers to
+     * another topic, so the subscription index reloads them.
      * @param localizedNotification The localized notification that is going to be updated.
      * @return The localized notification after being updated on the database.
      */
     @Override
     public LocalizedNotification updateLocalizedNotification(LocalizedNotification localizedNotification) {
         log.info("Updating localized notification with id={}", localizedNotification.getId());
-        return localizedNotificationRepository.save(localizedNotification);
+        LocalizedNotification updated = localizedNotificationRepository.save(localizedNotification);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(
+                localizedNotificationRepository.findSubscriberIds(updated.getId())
+        ));
+        return updated;
     }
 
     /**
@@ -134,6 +146,20 @@ public class LocalizedNotificationServiceImp implements LocalizedNotificationSer
     @Override
     public void deleteLocalizedNotification(LocalizedNotification localizedNotification) {
         log.info("Deleting notification with id={}", localizedNotification.getId());
+        List<Long> userIds = localizedNotificationRepository.findSubscriberIds(localizedNotification.getId());
         localizedNotificationRepository.delete(localizedNotification);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(userIds));
+    }
+
+    /**
+     * Get a page of the localized notifications from the database, in order of their identification number.
+     * @param after The identification number of the last localized notification already read.
+     * @param limit The maximum amount of localized notifications.
+     * @return A list with the localized notifications after that identification number.
+     */
+    @Override
+    public List<LocalizedNotification> getLocalizedNotificationsAfter(long after, int limit) {
+        log.info("Fetching {} localized notifications after id={}", limit, after);
+        return localizedNotificationRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, limit));
     }
 }
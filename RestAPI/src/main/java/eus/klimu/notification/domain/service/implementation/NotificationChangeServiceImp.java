@@ -0,0 +1,149 @@
+package eus.klimu.notification.domain.service.implementation;
+
+import eus.klimu.notification.domain.changes.NotificationChangedEvent;
+import eus.klimu.notification.domain.model.ChangeFeedDTO;
+import eus.klimu.notification.domain.model.ChangeOperation;
+import eus.klimu.notification.domain.model.NotificationChange;
+import eus.klimu.notification.domain.model.NotificationChangeDTO;
+import eus.klimu.notification.domain.repository.NotificationChangeRepository;
+import eus.klimu.notification.domain.service.definition.NotificationChangeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The implementation of the notification change service. It interacts with the different notification changes
+ * using a notification change repository, modifying directly on the database.
+ */
+@Slf4j
+@Service
+@Transactional
+public class NotificationChangeServiceImp implements NotificationChangeService {
+
+    /**
+     * The connection with the notification change table on the database.
+     */
+    private final NotificationChangeRepository changeRepository;
+    /**
+     * Wakes up the clients waiting for changes once the changes are committed.
+     */
+    private final ApplicationEventPublisher eventPublisher;
+    /**
+     * The time a gap on the cursors is waited for, in case it belongs to a transaction that hasn't committed yet.
+     */
+    private final long settleMillis;
+    /**
+     * When this instance first found each gap, by the first cursor missing.
+     */
+    private final Map<Long, Long> gapsSeenAt = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new instance of the notification change service.
+     * @param changeRepository The connection with the notification change table on the database.
+     * @param eventPublisher Publishes the changes to the waiting clients.
+     * @param settleMillis The time a gap on the cursors is waited for.
+     */
+    public NotificationChangeServiceImp(
+            NotificationChangeRepository changeRepository, ApplicationEventPublisher eventPublisher,
+            @Value("${klimu.notification.changes.settle-ms:10000}") long settleMillis
+    ) {
+        this.changeRepository = changeRepository;
+        this.eventPublisher = eventPublisher;
+        this.settleMillis = settleMillis;
+    }
+
+    /**
+     * Save a change of some notifications, on the transaction of the change.
+     * @param notificationIds The identification numbers of the notifications that changed.
+     * @param operation The operation done on the notifications.
+     */
+    @Override
+    public void record(Collection<Long> notificationIds, ChangeOperation operation) {
+        Date now = new Date();
+        List<NotificationChange> changes = new ArrayList<>(notificationIds.size());
+        notificationIds.forEach(id -> changes.add(new NotificationChange(null, id, operation, now)));
+        changeRepository.saveAll(changes);
+        eventPublisher.publishEvent(new NotificationChangedEvent());
+    }
+
+    /**
+     * Get the changes after a cursor, at most one per notification. The cursors are given by the database when
+     * the changes are inserted, not when they are committed, so a gap may belong to a transaction that is still
+     * running: the page stops before a gap until the settle time has passed since this instance first found it,
+     * and then it's considered a rollback. The time of the change after the gap isn't used, since a transaction
+     * may take its cursor long before another one commits a later change.
+     * @param since The cursor of the last change already seen.
+     * @param limit The maximum amount of changes read.
+     * @return The changes and the cursor to continue from.
+     */
+    @Override
+    public ChangeFeedDTO getChanges(long since, int limit) {
+        List<NotificationChangeDTO> rows = changeRepository.findChangesAfter(since, PageRequest.of(0, limit));
+        long now = System.currentTimeMillis();
+        long cursor = since;
+        Map<Long, NotificationChangeDTO> latest = new LinkedHashMap<>();
+
+        for (NotificationChangeDTO row : rows) {
+            if (row.getCursor() != cursor + 1 && !isSettled(cursor + 1, now)) {
+                break;
+            }
+            // Only the last change of each notification is kept, in the position of that change.
+            latest.remove(row.getId());
+            latest.put(row.getId(), row);
+            cursor = row.getCursor();
+        }
+        return new ChangeFeedDTO(cursor, new ArrayList<>(latest.values()));
+    }
+
+    /**
+     * Get the cursor of the last change.
+     * @return The cursor of the last change, 0 if there are no changes.
+     */
+    @Override
+    public long getLastCursor() {
+        Long lastId = changeRepository.findLastId();
+        return lastId != null ? lastId : 0;
+    }
+
+    /**
+     * Check if the changes after a cursor are no longer kept.
+     * @param since The cursor of the last change already seen.
+     * @return True if some changes after the cursor have been removed.
+     */
+    @Override
+    public boolean isExpired(long since) {
+        Long firstId = changeRepository.findFirstId();
+        return since > 0 && firstId != null && since < firstId - 1;
+    }
+
+    /**
+     * Remove the old changes.
+     * @param retentionMillis The time the changes are kept.
+     * @return The amount of changes removed.
+     */
+    @Override
+    public int purge(long retentionMillis) {
+        int removed = changeRepository.deleteOlderThan(new Date(System.currentTimeMillis() - retentionMillis));
+        log.info("Removed {} notification change(s) from the database", removed);
+        // The gaps before the oldest change kept are no longer read.
+        Long firstId = changeRepository.findFirstId();
+        gapsSeenAt.keySet().removeIf(gap -> firstId == null || gap < firstId);
+        return removed;
+    }
+
+    /**
+     * Check if a gap has been waited for long enough.
+     * @param gap The first cursor missing.
+     * @param now The current time.
+     * @return True if the settle time has passed since this instance first found the gap.
+     */
+    private boolean isSettled(long gap, long now) {
+        return now - gapsSeenAt.computeIfAbsent(gap, key -> now) >= settleMillis;
+    }
+}
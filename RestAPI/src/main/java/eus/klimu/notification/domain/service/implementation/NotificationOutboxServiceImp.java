@@ -0,0 +1,220 @@
+package eus.klimu.notification.domain.service.implementation;
+
+import eus.klimu.channel.domain.service.definition.ChannelService;
+import eus.klimu.notification.domain.model.Notification;
+import eus.klimu.notification.domain.model.NotificationOutbox;
+import eus.klimu.notification.domain.model.OutboxStatus;
+import eus.klimu.notification.domain.repository.NotificationOutboxRepository;
+import eus.klimu.notification.domain.service.definition.NotificationOutboxService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * The implementation of the notification outbox service. It interacts with the outbox entries
+ * using a notification outbox repository, modifying directly on the database.
+ */
+@Slf4j
+@Service
+@Transactional
+public class NotificationOutboxServiceImp implements NotificationOutboxService {
+
+    private static final int MAX_ERROR_LENGTH = 1024;
+
+    /**
+     * The connection with the notification outbox table on the database.
+     */
+    private final NotificationOutboxRepository outboxRepository;
+    /**
+     * The managing service for the channels.
+     */
+    private final ChannelService channelService;
+    /**
+     * The amount of attempts before an entry is marked as dead.
+     */
+    private final int maxAttempts;
+    /**
+     * The wait after the first failure, doubled on each failure.
+     */
+    private final long initialBackoffMillis;
+    /**
+     * The maximum wait between two attempts.
+     */
+    private final long maxBackoffMillis;
+
+    /**
+     * Create a new instance of the notification outbox service.
+     * @param outboxRepository The connection with the notification outbox table on the database.
+     * @param channelService The managing service for the channels.
+     * @param maxAttempts The amount of attempts before an entry is marked as dead.
+     * @param initialBackoffMillis The wait after the first failure, doubled on each failure.
+     * @param maxBackoffMillis The maximum wait between two attempts.
+     */
+    public NotificationOutboxServiceImp(
+            NotificationOutboxRepository outboxRepository, ChannelService channelService,
+            @Value("${klimu.notification.outbox.max-attempts:8}") int maxAttempts,
+            @Value("${klimu.notification.outbox.initial-backoff-ms:1000}") long initialBackoffMillis,
+            @Value("${klimu.notification.outbox.max-backoff-ms:600000}") long maxBackoffMillis
+    ) {
+        this.outboxRepository = outboxRepository;
+        this.channelService = channelService;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Add the deliveries of a notification to the outbox, one per channel. Must run on the same transaction
+     * as the insert of the notification.
+     * @param notification The notification that is going to be sent.
+     */
+    @Override
+    public void enqueue(Notification notification) {
+        Date now = new Date();
+        List<NotificationOutbox> entries = new ArrayList<>();
+        channelService.getAllChannels().forEach(channel -> entries.add(new NotificationOutbox(
+                null, notification.getId(), channel.getId(), OutboxStatus.PENDING, 0, now, null, null, null, now, null
+        )));
+        outboxRepository.saveAll(entries);
+    }
+
+    /**
+     * Claim a batch of entries for a worker, locking them with SKIP LOCKED so several workers, even on different
+     * instances of the application, never claim the same entry.
+     * @param workerId The identifier of the worker.
+     * @param batchSize The maximum amount of entries.
+     * @param leaseMillis The time the worker has for sending the entries before others can claim them.
+     * @return A list with the claimed entries.
+     */
+    @Override
+    public List<NotificationOutbox> claim(String workerId, int batchSize, long leaseMillis) {
+        Date now = new Date();
+        Date lockedUntil = new Date(now.getTime() + leaseMillis);
+        List<NotificationOutbox> entries = outboxRepository.lockReady(now, batchSize);
+
+        entries.forEach(entry -> {
+            entry.setStatus(OutboxStatus.IN_PROGRESS);
+            entry.setLockedBy(workerId);
+            entry.setLockedUntil(lockedUntil);
+            entry.setAttempts(entry.getAttempts() + 1);
+        });
+        return outboxRepository.saveAll(entries);
+    }
+
+    /**
+     * Make the entries whose worker didn't finish on time pending again, so they are claimed by
+     * {@link #claim} with the rest. Kept apart from the claim, so the claim only reads the pending entries.
+     * @return The amount of entries released.
+     */
+    @Override
+    public int reclaimExpired() {
+        int released = outboxRepository.releaseExpired(new Date());
+        if (released > 0) {
+            log.warn("Released {} expired outbox lease(s), their entries are pending again", released);
+        }
+        return released;
+    }
+
+    /**
+     * Remove an entry that has been sent. The entry is only removed if the worker still holds its claim, if the
+     * lease expired while it was being sent, the worker that claimed it since owns it now.
+     * @param entry The entry that has been sent, as it was claimed.
+     * @return False if another worker has claimed the entry since.
+     */
+    @Override
+    public boolean complete(NotificationOutbox entry) {
+        return outboxRepository.deleteClaimed(entry.getId(), entry.getLockedBy()) > 0;
+    }
+
+    /**
+     * Save a failed attempt of an entry. The next attempt waits twice as long as the previous one, with some
+     * jitter so the entries that failed together are not retried together. As with {@link #complete}, nothing
+     * is saved if the worker no longer holds the claim of the entry.
+     * The entry keeps the recipients it had.
+     * @param entry The entry that failed, as it was claimed.
+     * @param error The reason of the failure.
+     * @return False if another worker has claimed the entry since.
+     */
+    @Override
+    public boolean fail(NotificationOutbox entry, String error) {
+        return release(entry, error, entry.getRecipients());
+    }
+
+    /**
+     * Save a failed attempt of an entry that reached some of its recipients, as {@link #fail(NotificationOutbox,
+     * String)} does, keeping only the recipients that have to be sent the notification again.
+     * @param entry The entry that failed, as it was claimed.
+     * @param error The reason of the failure.
+     * @param recipients The users the notification still has to be sent to.
+     * @return False if another worker has claimed the entry since.
+     */
+    @Override
+    public boolean fail(NotificationOutbox entry, String error, Collection<Long> recipients) {
+        return release(entry, error, recipients.stream().map(String::valueOf).collect(Collectors.joining(",")));
+    }
+
+    private boolean release(NotificationOutbox entry, String error, String recipients) {
+        OutboxStatus status;
+        Date nextAttemptAt = entry.getNextAttemptAt();
+
+        if (entry.getAttempts() >= maxAttempts) {
+            status = OutboxStatus.DEAD;
+        } else {
+            long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(30, entry.getAttempts() - 1));
+            backoff += (long) (backoff * 0.2 * ThreadLocalRandom.current().nextDouble());
+            status = OutboxStatus.PENDING;
+            nextAttemptAt = new Date(System.currentTimeMillis() + backoff);
+        }
+
+        boolean released = outboxRepository.releaseClaimed(
+                entry.getId(), entry.getLockedBy(), status, nextAttemptAt,
+                error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error,
+                recipients
+        ) > 0;
+        if (released && status == OutboxStatus.DEAD) {
+            log.error("Delivery of notification {} on channel {} failed {} times, giving up",
+                    entry.getNotificationId(), entry.getChannelId(), entry.getAttempts());
+        }
+        return released;
+    }
+
+    /**
+     * Count the entries waiting to be sent.
+     * @return The amount of pending entries.
+     */
+    @Override
+    public long countPending() {
+        return outboxRepository.countByStatus(OutboxStatus.PENDING);
+    }
+
+    /**
+     * Count the entries that won't be retried.
+     * @return The amount of dead entries.
+     */
+    @Override
+    public long countDead() {
+        return outboxRepository.countByStatus(OutboxStatus.DEAD);
+    }
+
+    /**
+     * Remove the dead entries that failed long ago.
+     * @param retentionMillis The time the dead entries are kept after their last attempt.
+     * @return The amount of entries removed.
+     */
+    @Override
+    public int purgeDead(long retentionMillis) {
+        int removed = outboxRepository.deleteDeadBefore(new Date(System.currentTimeMillis() - retentionMillis));
+        if (removed > 0) {
+            log.info("Removed {} dead outbox row(s) from the database", removed);
+        }
+        return removed;
+    }
+}
@@ -1,17 +1,25 @@
 package eus.klimu.notification.domain.service.implementation;
 
-import eus.klimu.location.domain.model.Location;
+import eus.klimu.notification.domain.cache.LatestNotifications;
+import eus.klimu.notification.domain.dispatch.NotificationCreatedEvent;
+import eus.klimu.notification.domain.model.ChangeOperation;
 import eus.klimu.notification.domain.model.Notification;
-import eus.klimu.notification.domain.model.NotificationType;
+import eus.klimu.notification.domain.model.NotificationSearch;
 import eus.klimu.notification.domain.repository.NotificationRepository;
+import eus.klimu.notification.domain.repository.NotificationSpecifications;
+import eus.klimu.notification.domain.service.definition.NotificationChangeService;
+import eus.klimu.notification.domain.service.definition.NotificationOutboxService;
 import eus.klimu.notification.domain.service.definition.NotificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
-import java.util.Date;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * The implementation of the notification service. It interacts with the different notifications
@@ -27,6 +35,22 @@ public class NotificationServiceImp implements NotificationService {
      * The connection with the notification table on the database.
      */
     private final NotificationRepository notificationRepository;
+    /**
+     * Stores the deliveries of the new notifications on the same transaction.
+     */
+    private final NotificationOutboxService outboxService;
+    /**
+     * Records the changes of the notifications for the change feed, on the same transaction.
+     */
+    private final NotificationChangeService changeService;
+    /**
+     * The latest notifications, kept in memory.
+     */
+    private final LatestNotifications latestNotifications;
+    /**
+     * Wakes up the outbox workers once the new notifications are committed.
+     */
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Get a notification based on its identification number from the database.
@@ -39,28 +63,6 @@ public class NotificationServiceImp implements NotificationService {
         return notificationRepository.findById(id).orElse(null);
     }
 
-    /**
-     * Get all the notifications from a specific location form the database.
-     * @param location The location the notifications must be from.
-     * @return A list with all the notifications from that location from the database.
-     */
-    @Override
-    public List<Notification> getAllNotifications(Location location) {
-        log.info("Fetching all notifications for location={}", location);
-        return notificationRepository.getAllByLocation(location);
-    }
-
-    /**
-     * Get all the notification of a specific type from the database.
-     * @param type The notification type the notifications must be of.
-     * @return A list with all the notifications of that type from the database.
-     */
-    @Override
-    public List<Notification> getAllNotifications(NotificationType type) {
-        log.info("Fetching all notifications of type={}", type);
-        return notificationRepository.getAllByType(type);
-    }
-
     /**
      * Get all the notifications form the database.
      * @return A list with all the notifications from the database.
@@ -72,43 +74,29 @@ public class NotificationServiceImp implements NotificationService {
     }
 
     /**
-     * Get the last 50 notifications from the database.
-     * @return A list with the last 50 notifications from the database.
+     * Get the last 50 notifications, kept in memory without going to the database.
+     * @return A list with the last 50 notifications.
      */
     @Override
     public List<Notification> getAllNotificationsLimited() {
-        log.info("Fetching last 50 notifications");
-        return notificationRepository.findFirst50ByOrderByDateDesc();
-    }
-
-    /**
-     * Get all the notifications from a location between two dates from the database.
-     * @param location The location the notifications must be from.
-     * @param startDate The starting date for the notifications.
-     * @param endDate The final date of the notifications.
-     * @return A list with all the notifications from that location between those dates from the database.
-     */
-    @Override
-    public List<Notification> getNotificationsByDateBetween(Location location, Date startDate, Date endDate) {
-        log.info("Fetching all notifications for location={} between {} and {}", location, startDate, endDate);
-        return notificationRepository.getAllByLocationAndDateBetween(location, startDate, endDate);
+        return latestNotifications.getNotifications();
     }
 
     /**
-     * Get all the notifications of a notification type between two dates form the database.
-     * @param type The notification type the notifications must be of.
-     * @param startDate The starting date for the notifications.
-     * @param endDate The final date of the notifications.
-     * @return A list with all the notifications of a notification type between two dates from the database.
+     * Search the notifications that match some filters on the database, in order of date.
+     * @param search The filters, order and position of the search.
+     * @return A list with the notifications found, at most the limit of the search.
      */
     @Override
-    public List<Notification> getNotificationsByDateBetween(NotificationType type, Date startDate, Date endDate) {
-        log.info("Fetching all notifications of type={} between {} and {}", type, startDate, endDate);
-        return notificationRepository.getAllByTypeAndDateBetween(type, startDate, endDate);
+    public List<Notification> searchNotifications(NotificationSearch search) {
+        log.info("Searching {} notifications", search.getLimit());
+        return notificationRepository.search(
+                NotificationSpecifications.of(search), search.isAscending(), search.getLimit()
+        );
     }
 
     /**
-     * Save a new notification on the database.
+     * Save a new notification on the database, together with its deliveries on the outbox.
      * @param notification The notification that is going to be saved.
      * @return The notification after being saved on the database, with a new ID.
      */
@@ -118,18 +106,31 @@ public class NotificationServiceImp implements NotificationService {
                 "Saving notification {} on the database", notification.getType().getName() +
                 " (" + notification.getLocation() + ")[" + notification.getDate() + "]"
         );
-        return notificationRepository.save(notification);
+        Notification savedNotification = notificationRepository.save(notification);
+        outboxService.enqueue(savedNotification);
+        changeService.record(Collections.singletonList(savedNotification.getId()), ChangeOperation.CREATED);
+        latestNotifications.saved(Collections.singletonList(savedNotification));
+        eventPublisher.publishEvent(new NotificationCreatedEvent(Collections.singletonList(savedNotification)));
+        return savedNotification;
     }
 
     /**
-     * Save a list of new notifications on the database.
+     * Save a list of new notifications on the database, together with their deliveries on the outbox.
      * @param notifications The list of notifications that are going to be saved.
      * @return The list of notifications after being saved on the database, each with a new ID.
      */
     @Override
     public List<Notification> addAllNotifications(List<Notification> notifications) {
         log.info("Saving {} new notifications", notifications.size());
-        return notificationRepository.saveAll(notifications);
+        List<Notification> savedNotifications = notificationRepository.saveAll(notifications);
+        savedNotifications.forEach(outboxService::enqueue);
+        changeService.record(
+                savedNotifications.stream().map(Notification::getId).collect(Collectors.toList()),
+                ChangeOperation.CREATED
+        );
+        latestNotifications.saved(savedNotifications);
+        eventPublisher.publishEvent(new NotificationCreatedEvent(savedNotifications));
+        return savedNotifications;
     }
 
     /**
@@ -140,7 +141,10 @@ public class NotificationServiceImp implements NotificationService {
     @Override
     public Notification updateNotification(Notification notification) {
         log.info("Updating notification with id={}", notification.getId());
-        return notificationRepository.save(notification);
+        Notification updatedNotification = notificationRepository.save(notification);
+        changeService.record(Collections.singletonList(updatedNotification.getId()), ChangeOperation.UPDATED);
+        latestNotifications.saved(Collections.singletonList(updatedNotification));
+        return updatedNotification;
     }
 
     /**
@@ -151,5 +155,19 @@ public class NotificationServiceImp implements NotificationService {
     public void deleteNotification(Notification notification) {
         log.info("Deleting notification with id={}", notification.getId());
         notificationRepository.delete(notification);
+        changeService.record(Collections.singletonList(notification.getId()), ChangeOperation.DELETED);
+        latestNotifications.deleted(notification.getId());
+    }
+
+    /**
+     * Get a page of the notifications from the database, in order of their identification number.
+     * @param after The identification number of the last notification already read.
+     * @param limit The maximum amount of notifications.
+     * @return A list with the notifications after that identification number.
+     */
+    @Override
+    public List<Notification> getNotificationsAfter(long after, int limit) {
+        log.info("Fetching {} notifications after id={}", limit, after);
+        return notificationRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, limit));
     }
 }
@@ -8,6 +8,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -47,6 +48,17 @@ public class NotificationTypeServiceImp implements NotificationTypeService {
         return notificationTypeRepository.findById(id).orElse(null);
     }
 
+    /**
+     * Get the notification types with some identification numbers from the database, with a single query.
+     * @param ids The identification numbers of the notification types.
+     * @return A list with the notification types found.
+     */
+    @Override
+    public List<NotificationType> getNotificationTypes(Collection<Long> ids) {
+        log.info("Fetching {} notification types by id", ids.size());
+        return notificationTypeRepository.findAllById(ids);
+    }
+
     /**
      * Get a notification type based on its name from the database.
      * @param name The name of the notification type.
@@ -1,12 +1,15 @@
 package eus.klimu.notification.domain.service.implementation;
 
 import eus.klimu.channel.domain.model.Channel;
+import eus.klimu.notification.domain.index.SubscriptionChangedEvent;
 import eus.klimu.notification.domain.model.LocalizedNotification;
 import eus.klimu.notification.domain.model.UserNotification;
 import eus.klimu.notification.domain.repository.UserNotificationRepository;
 import eus.klimu.notification.domain.service.definition.UserNotificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
@@ -26,6 +29,10 @@ public class UserNotificationServiceImp implements UserNotificationService {
      * The connection with the user notification table on the database.
      */
     private final UserNotificationRepository userNotificationRepository;
+    /**
+     * Notifies the subscription index about the users whose subscriptions changed.
+     */
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
      * Get a user notification based on its identification number from the database.
@@ -100,7 +107,11 @@ public class UserNotificationServiceImp implements UserNotificationService {
     @Override
     public UserNotification updateUserNotification(UserNotification userNotification) {
         log.info("Updating user notification with id={}", userNotification.getId());
-        return userNotificationRepository.save(userNotification);
+        UserNotification updated = userNotificationRepository.save(userNotification);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(
+                userNotificationRepository.findUserIds(updated.getId())
+        ));
+        return updated;
     }
 
     /**
@@ -110,6 +121,20 @@ public class UserNotificationServiceImp implements UserNotificationService {
     @Override
     public void deleteUserNotifications(UserNotification userNotification) {
         log.info("Deleting user notification with id={}", userNotification.getId());
+        List<Long> userIds = userNotificationRepository.findUserIds(userNotification.getId());
         userNotificationRepository.delete(userNotification);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(userIds));
+    }
+
+    /**
+     * Get a page of the user notifications from the database, in order of their identification number.
+     * @param after The identification number of the last user notification already read.
+     * @param limit The maximum amount of user notifications.
+     * @return A list with the user notifications after that identification number.
+     */
+    @Override
+    public List<UserNotification> getUserNotificationsAfter(long after, int limit) {
+        log.info("Fetching {} user notifications after id={}", limit, after);
+        return userNotificationRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, limit));
     }
 }
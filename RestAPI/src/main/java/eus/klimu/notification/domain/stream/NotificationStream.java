@@ -0,0 +1,444 @@
+package eus.klimu.notification.domain.stream;
+
+import eus.klimu.channel.sender.DesktopNotificationEvent;
+import eus.klimu.notification.domain.model.DesktopEvent;
+import eus.klimu.notification.domain.service.definition.DesktopEventService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes the Desktop notifications to the connected clients as Server-Sent Events. The connections are
+ * asynchronous, so an idle client doesn't take a server thread. The notifications are read from the desktop_event
+ * table, which every instance polls, so a client gets them whichever instance it's connected to, and the event
+ * identifiers are the ones given by the database. The last events are kept on a ring, so a client that reconnects
+ * with the Last-Event-ID header, to this or any other instance, gets the events it missed.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "eus.klimu:type=NotificationStream", description = "Desktop notification stream")
+public class NotificationStream {
+
+    private static final String NOTIFICATION_EVENT = "notification";
+    /**
+     * Sent when the events missed by a client are no longer on the ring, so it has to fetch the notifications again.
+     */
+    private static final String RESYNC_EVENT = "resync";
+    /**
+     * The maximum events read from the database on every poll.
+     */
+    private static final int POLL_SIZE = 500;
+
+    private final DesktopEventService desktopEventService;
+    private final long timeoutMillis;
+    private final int bufferSize;
+    private final int maxConnections;
+    private final int maxPerUser;
+    private final long settleMillis;
+    private final long retentionMillis;
+    private final ExecutorService writers;
+    /**
+     * Reads the events saved on this instance, outside the threads that send them.
+     */
+    private final ExecutorService poller;
+    private final AtomicBoolean pollPending = new AtomicBoolean();
+
+    /**
+     * The open connections, by username. Guarded by the lock of the ring.
+     */
+    private final Map<String, List<StreamConnection>> connections = new HashMap<>();
+    /**
+     * The last events, in the order they were published.
+     */
+    private final StreamEvent[] ring;
+    private int ringHead;
+    private int ringSize;
+    private int connectionCount;
+    /**
+     * The identifier of the last event read from the database, -1 until the first poll.
+     */
+    private long lastEventId = -1;
+    /**
+     * When the poll first found a gap after the last event, 0 if there is none. The identifiers are given when
+     * the events are inserted, not when they are committed, so a gap is waited for in case its transaction is
+     * still running. Only one poll runs at a time, guarded by the poller.
+     */
+    private long gapSeenAt;
+
+    private final LongAdder eventsPublished = new LongAdder();
+    private final LongAdder eventsReplayed = new LongAdder();
+    private final LongAdder slowDisconnects = new LongAdder();
+    private final LongAdder rejectedConnections = new LongAdder();
+    private final LongAdder skippedEvents = new LongAdder();
+
+    /**
+     * Create a new instance of the notification stream.
+     * @param desktopEventService The service of the Desktop events.
+     * @param timeoutMillis The time a connection is kept open before the client has to reconnect.
+     * @param bufferSize The maximum events waiting to be written to a client before it's disconnected.
+     * @param replaySize The amount of events kept for the clients that reconnect.
+     * @param maxConnections The maximum open connections.
+     * @param maxPerUser The maximum open connections of a single user.
+     * @param writerThreads The threads that write the events to the clients.
+     * @param settleMillis The time a gap between the events is waited for before skipping it.
+     * @param retentionMillis The time the events are kept on the database.
+     */
+    public NotificationStream(
+            DesktopEventService desktopEventService,
+            @Value("${klimu.notification.stream.timeout-ms:1800000}") long timeoutMillis,
+            @Value("${klimu.notification.stream.buffer-size:64}") int bufferSize,
+            @Value("${klimu.notification.stream.replay-size:1024}") int replaySize,
+            @Value("${klimu.notification.stream.max-connections:20000}") int maxConnections,
+            @Value("${klimu.notification.stream.max-per-user:5}") int maxPerUser,
+            @Value("${klimu.notification.stream.writer-threads:4}") int writerThreads,
+            @Value("${klimu.notification.stream.settle-ms:10000}") long settleMillis,
+            @Value("${klimu.notification.stream.retention-ms:3600000}") long retentionMillis
+    ) {
+        AtomicInteger threadCount = new AtomicInteger();
+
+        this.desktopEventService = desktopEventService;
+        this.timeoutMillis = timeoutMillis;
+        this.bufferSize = bufferSize;
+        this.maxConnections = maxConnections;
+        this.maxPerUser = maxPerUser;
+        this.settleMillis = settleMillis;
+        this.retentionMillis = retentionMillis;
+        this.ring = new StreamEvent[replaySize];
+        this.writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "notification-stream-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.poller = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-stream-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Open a new stream for a user.
+     * @param username The username of the connected user.
+     * @param lastEventId The value of the Last-Event-ID header, null on the first connection.
+     * @return The asynchronous response, or null if there are too many connections.
+     */
+    public SseEmitter connect(String username, String lastEventId) {
+        SseEmitter emitter = createEmitter();
+
+        synchronized (ring) {
+            List<StreamConnection> userConnections = connections.getOrDefault(username, Collections.emptyList());
+            if (connectionCount >= maxConnections || userConnections.size() >= maxPerUser) {
+                rejectedConnections.increment();
+                log.warn("Rejecting stream connection of user {}, too many connections", username);
+                return null;
+            }
+            log.info("User {} connected to the notification stream", username);
+
+            StreamConnection connection = new StreamConnection(username, emitter, bufferSize, writers, () -> remove(username));
+            connections.computeIfAbsent(username, key -> new ArrayList<>(1)).add(connection);
+            connectionCount++;
+
+            emitter.onCompletion(connection::closed);
+            emitter.onTimeout(connection::closed);
+            emitter.onError(error -> connection.closed());
+
+            // Registered and replayed under the same lock as the publication, so no event is lost or repeated.
+            connection.offer(SseEmitter.event().comment("connected"));
+            if (lastEventId != null) {
+                replay(connection, lastEventId);
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * Read the Desktop notification saved on this instance without waiting for the next poll.
+     * @param event The event of the saved notification.
+     */
+    @EventListener
+    public void onDesktopNotification(DesktopNotificationEvent event) {
+        if (pollPending.compareAndSet(false, true)) {
+            try {
+                poller.execute(() -> {
+                    pollPending.set(false);
+                    poll();
+                });
+            } catch (RejectedExecutionException e) {
+                pollPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Read the Desktop notifications saved by any instance, push them to the connected recipients and keep them
+     * on the ring. A gap between the events is waited for, from the moment this instance first saw it, for the
+     * settle time, and skipped after that as a rolled back transaction.
+     */
+    @Scheduled(fixedDelayString = "${klimu.notification.stream.poll-ms:500}")
+    public void poll() {
+        synchronized (poller) {
+            try {
+                if (lastEventId < 0) {
+                    start();
+                }
+                List<DesktopEvent> events = desktopEventService.getEventsAfter(lastEventId, POLL_SIZE);
+                long now = System.currentTimeMillis();
+                List<StreamEvent> read = new ArrayList<>(events.size());
+                long cursor = lastEventId;
+
+                for (DesktopEvent event : events) {
+                    if (event.getId() != cursor + 1) {
+                        if (gapSeenAt == 0) {
+                            gapSeenAt = now;
+                        }
+                        if (now - gapSeenAt < settleMillis) {
+                            break;
+                        }
+                        log.warn("Skipping desktop events {} to {}, not committed after {} ms",
+                                cursor + 1, event.getId() - 1, settleMillis);
+                        skippedEvents.add(event.getId() - cursor - 1);
+                    }
+                    gapSeenAt = 0;
+                    read.add(toStreamEvent(event));
+                    cursor = event.getId();
+                }
+                if (!read.isEmpty()) {
+                    publish(read);
+                }
+            } catch (RuntimeException e) {
+                log.error("Couldn't read the desktop events", e);
+            }
+        }
+    }
+
+    /**
+     * Remove the old events from the database.
+     */
+    @Scheduled(fixedDelayString = "${klimu.notification.stream.purge-interval-ms:3600000}")
+    public void purge() {
+        desktopEventService.purge(retentionMillis);
+    }
+
+    /**
+     * Send a heartbeat to every client, so the proxies don't close the idle connections and the dead clients
+     * are detected.
+     */
+    @Scheduled(fixedDelayString = "${klimu.notification.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        List<StreamConnection> all = new ArrayList<>();
+        synchronized (ring) {
+            connections.values().forEach(all::addAll);
+        }
+        for (StreamConnection connection : all) {
+            if (!connection.offer(SseEmitter.event().comment("heartbeat"))) {
+                slowDisconnects.increment();
+            }
+        }
+    }
+
+    /**
+     * Close every connection when the application is closed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        List<StreamConnection> all = new ArrayList<>();
+        synchronized (ring) {
+            connections.values().forEach(all::addAll);
+        }
+        all.forEach(StreamConnection::close);
+        poller.shutdown();
+        writers.shutdown();
+    }
+
+    /**
+     * Create the asynchronous response of a new connection.
+     * @return The asynchronous response.
+     */
+    SseEmitter createEmitter() {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    /**
+     * Start reading after the last event, filling the ring with the last events so the clients that were
+     * connected to another instance can still get the events they missed.
+     */
+    private void start() {
+        long last = desktopEventService.getLastId();
+        List<StreamEvent> recent = new ArrayList<>();
+        desktopEventService.getEventsAfter(Math.max(last - ring.length, 0), ring.length).stream()
+                .filter(event -> event.getId() <= last)
+                .forEach(event -> recent.add(toStreamEvent(event)));
+
+        synchronized (ring) {
+            recent.forEach(this::keep);
+            lastEventId = last;
+        }
+    }
+
+    /**
+     * Keep some events on the ring and push them to the connections of their recipients.
+     * @param events The events, in order.
+     */
+    private void publish(List<StreamEvent> events) {
+        synchronized (ring) {
+            for (StreamEvent streamEvent : events) {
+                keep(streamEvent);
+                lastEventId = streamEvent.id;
+                for (String username : streamEvent.usernames) {
+                    List<StreamConnection> userConnections = connections.get(username);
+                    if (userConnections != null) {
+                        // A slow connection is removed from the list while delivering, so iterate over a copy.
+                        new ArrayList<>(userConnections).forEach(connection -> deliver(connection, streamEvent));
+                    }
+                }
+            }
+        }
+        eventsPublished.add(events.size());
+    }
+
+    /**
+     * Add an event to the ring, replacing the oldest one when it's full. Called with the lock of the ring.
+     * @param streamEvent The event.
+     */
+    private void keep(StreamEvent streamEvent) {
+        ring[(ringHead + ringSize) % ring.length] = streamEvent;
+        if (ringSize < ring.length) {
+            ringSize++;
+        } else {
+            ringHead = (ringHead + 1) % ring.length;
+        }
+    }
+
+    private static StreamEvent toStreamEvent(DesktopEvent event) {
+        return new StreamEvent(
+                event.getId(), event.getPayload(), new HashSet<>(Arrays.asList(event.getUsernames().split("\n")))
+        );
+    }
+
+    /**
+     * Queue the events a reconnecting client missed.
+     * @param connection The connection of the client.
+     * @param lastEventId The last event the client received.
+     */
+    private void replay(StreamConnection connection, String lastEventId) {
+        long lastSeen;
+        try {
+            lastSeen = Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return;
+        }
+        // Another instance may have read further, the events up to the one seen are not sent again.
+        connection.setLastEventId(lastSeen);
+        if (lastSeen >= this.lastEventId) {
+            return;
+        }
+
+        StreamEvent oldest = ringSize > 0 ? ring[ringHead] : null;
+        if (oldest == null || lastSeen < oldest.id - 1) {
+            connection.setLastEventId(this.lastEventId);
+            connection.offer(SseEmitter.event().id(String.valueOf(this.lastEventId)).name(RESYNC_EVENT).data(""));
+            return;
+        }
+        for (int i = 0; i < ringSize; i++) {
+            StreamEvent streamEvent = ring[(ringHead + i) % ring.length];
+            if (streamEvent.id > lastSeen && streamEvent.usernames.contains(connection.getUsername())) {
+                deliver(connection, streamEvent);
+                eventsReplayed.increment();
+            }
+        }
+    }
+
+    private void deliver(StreamConnection connection, StreamEvent streamEvent) {
+        if (streamEvent.id <= connection.getLastEventId()) {
+            return;
+        }
+        connection.setLastEventId(streamEvent.id);
+        boolean queued = connection.offer(SseEmitter.event()
+                .id(String.valueOf(streamEvent.id))
+                .name(NOTIFICATION_EVENT)
+                .data(streamEvent.payload));
+        if (!queued) {
+            slowDisconnects.increment();
+        }
+    }
+
+    /**
+     * Forget a closed connection.
+     * @param username The username of the connection.
+     */
+    private void remove(String username) {
+        synchronized (ring) {
+            List<StreamConnection> userConnections = connections.get(username);
+            if (userConnections != null) {
+                int before = userConnections.size();
+                userConnections.removeIf(StreamConnection::isClosed);
+                connectionCount -= before - userConnections.size();
+                if (userConnections.isEmpty()) {
+                    connections.remove(username);
+                }
+            }
+        }
+    }
+
+    @ManagedAttribute(description = "Open connections")
+    public int getConnections() {
+        synchronized (ring) {
+            return connectionCount;
+        }
+    }
+
+    @ManagedAttribute(description = "Events pushed to the clients")
+    public long getEventsPublished() {
+        return eventsPublished.sum();
+    }
+
+    @ManagedAttribute(description = "Events sent again to reconnecting clients")
+    public long getEventsReplayed() {
+        return eventsReplayed.sum();
+    }
+
+    @ManagedAttribute(description = "Clients disconnected because they couldn't keep up")
+    public long getSlowDisconnects() {
+        return slowDisconnects.sum();
+    }
+
+    @ManagedAttribute(description = "Connections rejected because of the connection limits")
+    public long getRejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    @ManagedAttribute(description = "Event identifiers skipped because they were never committed")
+    public long getSkippedEvents() {
+        return skippedEvents.sum();
+    }
+
+    /**
+     * An event kept on the ring.
+     */
+    private static final class StreamEvent {
+
+        private final long id;
+        private final String payload;
+        private final Set<String> usernames;
+
+        private StreamEvent(long id, String payload, Set<String> usernames) {
+            this.id = id;
+            this.payload = payload;
+            this.usernames = usernames;
+        }
+    }
+}
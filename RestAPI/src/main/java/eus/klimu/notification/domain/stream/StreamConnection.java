@@ -0,0 +1,142 @@
+package eus.klimu.notification.domain.stream;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A desktop client connected to the notification stream. The events are never written by the thread that
+ * publishes them: they go to a bounded buffer, drained by a shared writer pool, and a client whose buffer fills
+ * up is disconnected, so a slow client can't hold back the others.
+ */
+@Slf4j
+class StreamConnection {
+
+    /**
+     * The username of the connected user.
+     */
+    @Getter
+    private final String username;
+    /**
+     * The asynchronous response of the connection.
+     */
+    @Getter
+    private final SseEmitter emitter;
+    /**
+     * The identifier of the last event queued for the client, so an event is never sent twice. Guarded by the
+     * lock of the stream.
+     */
+    @Getter
+    @Setter
+    private long lastEventId;
+    private final ArrayBlockingQueue<SseEmitter.SseEventBuilder> buffer;
+    private final Executor writers;
+    private final Runnable onClose;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Create a new connection.
+     * @param username The username of the connected user.
+     * @param emitter The asynchronous response of the connection.
+     * @param bufferSize The maximum events waiting to be written before the client is disconnected.
+     * @param writers The pool that writes the events.
+     * @param onClose Called once when the connection is closed.
+     */
+    StreamConnection(String username, SseEmitter emitter, int bufferSize, Executor writers, Runnable onClose) {
+        this.username = username;
+        this.emitter = emitter;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.writers = writers;
+        this.onClose = onClose;
+    }
+
+    /**
+     * Queue an event for the client, without waiting.
+     * @param event The event.
+     * @return False if the buffer was full and the client has been disconnected.
+     */
+    boolean offer(SseEmitter.SseEventBuilder event) {
+        if (closed.get()) {
+            return false;
+        }
+        if (!buffer.offer(event)) {
+            log.warn("Disconnecting slow stream client {}", username);
+            close();
+            return false;
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    /**
+     * End the response and forget the connection.
+     */
+    void close() {
+        if (closed.compareAndSet(false, true)) {
+            buffer.clear();
+            onClose.run();
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                // The response was already finished.
+            }
+        }
+    }
+
+    /**
+     * Mark the connection as closed when the container already finished the response.
+     */
+    void closed() {
+        if (closed.compareAndSet(false, true)) {
+            buffer.clear();
+            onClose.run();
+        }
+    }
+
+    boolean isClosed() {
+        return closed.get();
+    }
+
+    int getBuffered() {
+        return buffer.size();
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            try {
+                writers.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                close();
+            }
+        }
+    }
+
+    /**
+     * Write the buffered events. Only one drain runs at a time for a connection.
+     */
+    private void drain() {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while (!closed.get() && (event = buffer.poll()) != null) {
+                emitter.send(event);
+            }
+        } catch (IOException | IllegalStateException e) {
+            closed();
+        } finally {
+            draining.set(false);
+        }
+        // An event may have arrived after the last poll and before the flag was cleared.
+        if (!closed.get() && !buffer.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+}
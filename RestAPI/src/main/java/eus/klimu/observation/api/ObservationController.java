@@ -0,0 +1,90 @@
+package eus.klimu.observation.api;
+
+import eus.klimu.location.domain.model.Location;
+import eus.klimu.location.domain.service.definition.LocationService;
+import eus.klimu.observation.domain.ingest.ObservationIngest;
+import eus.klimu.observation.domain.model.Observation;
+import eus.klimu.observation.domain.model.ObservationDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+
+import java.util.*;
+
+/**
+ * Receives the observations measured by the sensors and the weather services. They are queued and written to the
+ * database in the background, so the clients can send thousands of them per second.
+ */
+@Controller
+@RequestMapping("/observation")
+@RequiredArgsConstructor
+public class ObservationController {
+
+    /**
+     * Queues the observations and writes them in the background.
+     */
+    private final ObservationIngest observationIngest;
+    /**
+     * A class that allows modifying the locations.
+     */
+    private final LocationService locationService;
+
+    /**
+     * <p>Queue a batch of observations. The response is sent as soon as the observations are queued, before they
+     * are written to the database. When the queue is full the batch is rejected, and the client should wait the
+     * seconds of the Retry-After header before sending it again.</p>
+     *
+     * <p><a href="https://klimu.eus/RestAPI/observation/ingest">https://klimu.eus/RestAPI/observation/ingest</a></p>
+     *
+     * <ul>
+     *     <li>Consumes: application/json</li>
+     *     <li>Requires: Access and Refresh tokens as headers.</li>
+     * </ul>
+     *
+     * @param observations The observations that are going to be stored.
+     * @return A 202 accepted if the observations were queued, a 400 bad request if any of them is not valid, a
+     * 413 payload too large if the batch doesn't fit on the queue or a 429 too many requests if the queue is full.
+     */
+    @PostMapping(
+            value = "/ingest",
+            consumes = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public ResponseEntity<Void> ingestObservations(@RequestBody List<ObservationDTO> observations) {
+        if (observations == null || observations.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        if (observations.size() > observationIngest.getQueueCapacity()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+
+        Date receivedAt = new Date();
+        List<Observation> persistentObservations = new ArrayList<>(observations.size());
+        Set<Long> locationIds = new HashSet<>();
+        for (ObservationDTO observationDTO : observations) {
+            Observation observation = Observation.generateObservation(observationDTO, receivedAt);
+            if (observation == null) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+            }
+            persistentObservations.add(observation);
+            locationIds.add(observation.getLocationId());
+        }
+        List<Location> locations = locationService.getLocationsById(locationIds);
+        if (locations.size() != locationIds.size()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+
+        if (observationIngest.offer(persistentObservations)) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+        } else {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(observationIngest.getRetryAfterSeconds()))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package eus.klimu.observation.domain.ingest;
+
+import eus.klimu.database.TableSequence;
+import eus.klimu.observation.domain.model.Observation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Receives the observations on a bounded queue in memory and writes them in the background. The requests only
+ * wait for the observations to be queued, and are rejected when the queue is full so the clients slow down
+ * instead of the memory running out. Each writer takes as many observations as are waiting, up to a batch, and
+ * commits them together with JDBC batches: the more observations arrive, the bigger and fewer the commits.
+ *
+ * <p>The queue is not persistent: the observations waiting when the application stops are written before it
+ * exits, but they are lost if it's killed.</p>
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "eus.klimu:type=ObservationIngest", description = "Observation ingest queue")
+public class ObservationIngest {
+
+    private static final String INSERT_OBSERVATION =
+            "INSERT INTO observation (id, location_id, variable, value, unit, observed_at, received_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    /**
+     * Added to the pending observations when the application stops, so no batch fits in the capacity any more.
+     */
+    private static final int CLOSED = 1 << 30;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TableSequence observationSequence;
+
+    private final int capacity;
+    private final int writers;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final int maxAttempts;
+    private final long shutdownMillis;
+    private final int retryAfterSeconds;
+
+    private final LinkedBlockingQueue<Observation> queue = new LinkedBlockingQueue<>();
+    /**
+     * The observations accepted and not written yet, queued or being committed, bounded by the capacity. Once
+     * the application stops it also has the {@link #CLOSED} bit, so the offers are rejected by the same check.
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ExecutorService executor;
+    private volatile boolean running;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder rejectedRequests = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicInteger maxCommitSize = new AtomicInteger();
+    private final LongAdder totalLagMillis = new LongAdder();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    /**
+     * Create a new instance of the observation ingest.
+     * @param dataSource The connection with the database.
+     * @param transactionTemplate Runs the inserts of a batch on a single transaction.
+     * @param capacity The maximum amount of observations accepted and not written yet.
+     * @param writers The amount of background writers.
+     * @param batchSize The maximum amount of observations committed together.
+     * @param lingerMillis The time a writer waits for more observations when the batch is not full.
+     * @param maxAttempts The attempts for writing a batch before its observations are dropped.
+     * @param shutdownMillis The time the writers have for emptying the queue when the application stops.
+     * @param retryAfterSeconds The time the clients are told to wait when the queue is full.
+     */
+    public ObservationIngest(
+            DataSource dataSource, TransactionTemplate transactionTemplate,
+            @Value("${klimu.observation.queue-capacity:100000}") int capacity,
+            @Value("${klimu.observation.writers:2}") int writers,
+            @Value("${klimu.observation.batch-size:2000}") int batchSize,
+            @Value("${klimu.observation.linger-ms:10}") long lingerMillis,
+            @Value("${klimu.observation.max-attempts:3}") int maxAttempts,
+            @Value("${klimu.observation.shutdown-ms:30000}") long shutdownMillis,
+            @Value("${klimu.observation.retry-after-seconds:1}") int retryAfterSeconds
+    ) {
+        if (capacity >= CLOSED) {
+            throw new IllegalArgumentException("The capacity of the observation queue must be less than " + CLOSED);
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = transactionTemplate;
+        this.observationSequence = new TableSequence(dataSource, "observation_seq");
+        this.capacity = capacity;
+        this.writers = writers;
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.maxAttempts = maxAttempts;
+        this.shutdownMillis = shutdownMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(writers, runnable -> {
+            Thread thread = new Thread(runnable, "observation-writer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start the writers once the application has started. The observations accepted before are kept on the queue.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        for (int i = 0; i < writers; i++) {
+            executor.execute(this::write);
+        }
+        log.info("Started {} observation writer(s)", writers);
+    }
+
+    /**
+     * Queue a batch of observations. The batch is accepted or rejected as a whole.
+     * @param observations The observations received.
+     * @return False if there is no room for the whole batch, or the application is stopping.
+     */
+    public boolean offer(Collection<Observation> observations) {
+        int count = observations.size();
+        while (true) {
+            int current = pending.get();
+            if (count > capacity - current) {
+                // The queue is full, or the application is stopping.
+                break;
+            }
+            if (pending.compareAndSet(current, current + count)) {
+                queue.addAll(observations);
+                accepted.add(count);
+                return true;
+            }
+        }
+        rejected.add(count);
+        rejectedRequests.increment();
+        return false;
+    }
+
+    /**
+     * The loop of a writer: take the observations waiting, up to a batch, and commit them. When the application
+     * stops the writers keep going until every observation accepted has been written, including the ones of an
+     * offer that is still adding them to the queue.
+     */
+    private void write() {
+        List<Observation> batch = new ArrayList<>(batchSize);
+        while (running || getQueueDepth() > 0) {
+            try {
+                Observation first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                fill(batch);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // Stopped before emptying the queue, nothing else is going to write what is left on it.
+                queue.drainTo(batch);
+                if (!batch.isEmpty()) {
+                    dropped.add(batch.size());
+                    log.error("Dropped {} observations, the writer was stopped before writing them", batch.size());
+                }
+                return;
+            } finally {
+                pending.addAndGet(-batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Add the observations waiting to the batch, waiting the linger time for more if it's not full.
+     * @param batch The batch, with at least one observation.
+     * @throws InterruptedException Generated if the writer is stopped while waiting.
+     */
+    private void fill(List<Observation> batch) throws InterruptedException {
+        queue.drainTo(batch, batchSize - batch.size());
+        long deadline = System.currentTimeMillis() + lingerMillis;
+        while (batch.size() < batchSize && running) {
+            long remaining = deadline - System.currentTimeMillis();
+            Observation next = remaining > 0 ? queue.poll(remaining, TimeUnit.MILLISECONDS) : null;
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    /**
+     * Write a batch of observations on a single transaction, trying again if it fails.
+     * @param batch The observations.
+     * @throws InterruptedException Generated if the writer is stopped while waiting for a new attempt.
+     */
+    private void commit(List<Observation> batch) throws InterruptedException {
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            try {
+                long firstId = observationSequence.reserve(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).setId(firstId + i);
+                }
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                        INSERT_OBSERVATION, batch, batch.size(), (statement, observation) -> {
+                            statement.setLong(1, observation.getId());
+                            statement.setLong(2, observation.getLocationId());
+                            statement.setString(3, observation.getVariable());
+                            statement.setDouble(4, observation.getValue());
+                            statement.setString(5, observation.getUnit());
+                            statement.setTimestamp(6, new Timestamp(observation.getObservedAt().getTime()));
+                            statement.setTimestamp(7, new Timestamp(observation.getReceivedAt().getTime()));
+                        }
+                ));
+                recordCommit(batch);
+                return;
+            } catch (SQLException | RuntimeException e) {
+                log.warn("Attempt {} of writing {} observations failed: {}", attempt, batch.size(), e.getMessage());
+                if (attempt < maxAttempts) {
+                    Thread.sleep(100L << attempt);
+                }
+            }
+        }
+        dropped.add(batch.size());
+        log.error("Dropped {} observations after {} failed attempts", batch.size(), maxAttempts);
+    }
+
+    private void recordCommit(List<Observation> batch) {
+        long now = System.currentTimeMillis();
+        long lag = 0;
+        long maxLag = 0;
+        for (Observation observation : batch) {
+            long observationLag = now - observation.getReceivedAt().getTime();
+            lag += observationLag;
+            maxLag = Math.max(maxLag, observationLag);
+        }
+        committed.add(batch.size());
+        commits.increment();
+        totalLagMillis.add(lag);
+        maxLagMillis.accumulateAndGet(maxLag, Math::max);
+        maxCommitSize.accumulateAndGet(batch.size(), Math::max);
+    }
+
+    /**
+     * Stop accepting observations and let the writers empty the queue.
+     */
+    @PreDestroy
+    public void shutdown() {
+        pending.updateAndGet(current -> current | CLOSED);
+        if (!running) {
+            // The writers never started, start them so the observations accepted are written.
+            start();
+        }
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownMillis, TimeUnit.MILLISECONDS)) {
+                log.warn("The observation writers didn't finish on time, {} observations are lost", getQueueDepth());
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Get the time the clients should wait before sending again a rejected batch.
+     * @return The time in seconds.
+     */
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @ManagedAttribute(description = "Observations accepted and not written yet")
+    public int getQueueDepth() {
+        return pending.get() & ~CLOSED;
+    }
+
+    @ManagedAttribute(description = "Maximum observations accepted and not written yet")
+    public int getQueueCapacity() {
+        return capacity;
+    }
+
+    @ManagedAttribute(description = "Observations accepted")
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    @ManagedAttribute(description = "Observations rejected because the queue was full")
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @ManagedAttribute(description = "Requests rejected because the queue was full")
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+
+    @ManagedAttribute(description = "Observations written")
+    public long getCommitted() {
+        return committed.sum();
+    }
+
+    @ManagedAttribute(description = "Observations dropped after failing to write them, or when the writers were stopped")
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    @ManagedAttribute(description = "Transactions committed by the writers")
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    @ManagedAttribute(description = "Average observations per commit")
+    public double getAverageCommitSize() {
+        long count = commits.sum();
+        return count == 0 ? 0 : committed.sum() / (double) count;
+    }
+
+    @ManagedAttribute(description = "Most observations on a single commit")
+    public int getMaxCommitSize() {
+        return maxCommitSize.get();
+    }
+
+    @ManagedAttribute(description = "Average time from receiving an observation to its commit, in milliseconds")
+    public double getAverageLagMillis() {
+        long count = committed.sum();
+        return count == 0 ? 0 : totalLagMillis.sum() / (double) count;
+    }
+
+    @ManagedAttribute(description = "Longest time from receiving an observation to its commit, in milliseconds")
+    public long getMaxLagMillis() {
+        return maxLagMillis.get();
+    }
+}
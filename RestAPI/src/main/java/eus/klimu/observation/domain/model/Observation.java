@@ -0,0 +1,92 @@
+package eus.klimu.observation.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * A raw value measured by a sensor or a weather service on a location, like a temperature or a wind speed.
+ * The observations are received in big amounts and written by batches, so they keep the identification number
+ * of the location instead of a relation with it.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "observation")
+public class Observation {
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd,HH:mm:ss");
+
+    /**
+     * The identification number of the observation.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "observation_seq")
+    @GenericGenerator(name = "observation_seq", strategy = "eus.klimu.database.PooledSequenceGenerator")
+    private Long id;
+    /**
+     * The identification number of the location the observation was measured on.
+     */
+    @Column(nullable = false)
+    private Long locationId;
+    /**
+     * What has been measured, like temperature or wind_speed.
+     */
+    @Column(nullable = false, length = 64)
+    private String variable;
+    /**
+     * The value measured.
+     */
+    private double value;
+    /**
+     * The unit of the value, like C or km/h.
+     */
+    @Column(length = 16)
+    private String unit;
+    /**
+     * The date when the observation was measured.
+     */
+    @Column(nullable = false)
+    private Date observedAt;
+    /**
+     * The moment the observation was received by the application.
+     */
+    @Column(nullable = false)
+    private Date receivedAt;
+
+    /**
+     * Transform an observation Data Transfer Object into an observation.
+     * @param observationDTO The observation Data Transfer Object.
+     * @param receivedAt The moment the observation was received.
+     * @return The observation Data Transfer Object as an observation, or null if it's not valid.
+     */
+    public static Observation generateObservation(ObservationDTO observationDTO, Date receivedAt) {
+        if (observationDTO == null || observationDTO.getLocationId() == null || observationDTO.getValue() == null
+                || observationDTO.getVariable() == null || observationDTO.getVariable().isEmpty()
+                || observationDTO.getVariable().length() > 64 || observationDTO.getDate() == null
+                || (observationDTO.getUnit() != null && observationDTO.getUnit().length() > 16)) {
+            return null;
+        }
+        try {
+            Date observedAt = Date.from(LocalDateTime.parse(observationDTO.getDate(), DATE_FORMAT)
+                    .atZone(ZoneId.systemDefault()).toInstant());
+            return new Observation(
+                    null, observationDTO.getLocationId(), observationDTO.getVariable(), observationDTO.getValue(),
+                    observationDTO.getUnit(), observedAt, receivedAt
+            );
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+}
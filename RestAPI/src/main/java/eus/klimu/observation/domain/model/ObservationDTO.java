@@ -0,0 +1,38 @@
+package eus.klimu.observation.domain.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * The Data Transfer Object for the observation object.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class ObservationDTO implements Serializable {
+
+    /**
+     * The identification number of the location the observation was measured on.
+     */
+    private Long locationId;
+    /**
+     * What has been measured, like temperature or wind_speed.
+     */
+    private String variable;
+    /**
+     * The value measured.
+     */
+    private Double value;
+    /**
+     * The unit of the value, like C or km/h.
+     */
+    private String unit;
+    /**
+     * The date when the observation was measured, as yyyy-MM-dd,HH:mm:ss.
+     */
+    private String date;
+
+}
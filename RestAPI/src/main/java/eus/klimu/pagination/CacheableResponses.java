@@ -0,0 +1,72 @@
+package eus.klimu.pagination;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eus.klimu.security.TokenManagement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the JSON responses that can be kept by the clients. Every response has an ETag with the digest of its
+ * content, so a client that already has the content gets a 304 not modified without a body. The responses are
+ * only for the user that asked for them, so they are private and vary with the tokens, and a shared cache never
+ * serves them to another user.
+ */
+@Component
+public class CacheableResponses {
+
+    private final ObjectMapper objectMapper;
+    private final CacheControl cacheControl;
+
+    /**
+     * Create a new instance of the cacheable responses.
+     * @param objectMapper Serializes the content of the responses.
+     * @param maxAgeSeconds The time the responses can be kept without asking again.
+     */
+    public CacheableResponses(
+            ObjectMapper objectMapper,
+            @Value("${klimu.pagination.cache-max-age-seconds:30}") long maxAgeSeconds
+    ) {
+        this.objectMapper = objectMapper;
+        this.cacheControl = CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePrivate();
+    }
+
+    /**
+     * Build a cacheable response for a page of a list.
+     * @param content The content of the response.
+     * @param nextCursor The cursor of the next page, null if it's the last page.
+     * @param ifNoneMatch The value of the If-None-Match header of the request.
+     * @return A 200 ok with the content, or a 304 not modified if the client already has it.
+     */
+    public ResponseEntity<byte[]> page(Object content, String nextCursor, String ifNoneMatch) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(content);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        String eTag = "\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+
+        ResponseEntity.BodyBuilder response;
+        if (ifNoneMatch != null && (ifNoneMatch.contains(eTag) || ifNoneMatch.trim().equals("*"))) {
+            response = ResponseEntity.status(HttpStatus.NOT_MODIFIED);
+            json = null;
+        } else {
+            response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        }
+        response.eTag(eTag).cacheControl(cacheControl)
+                .header(HttpHeaders.VARY, TokenManagement.ACCESS_TOKEN, TokenManagement.REFRESH_TOKEN);
+        if (nextCursor != null) {
+            response.header(KeysetPagination.NEXT_CURSOR_HEADER, nextCursor);
+        }
+        return response.body(json);
+    }
+}
@@ -0,0 +1,108 @@
+package eus.klimu.pagination;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * Reads the lists of the API by pages, in order of the identification number. Every page continues from the
+ * identification number of the last element of the previous one, so reading a page costs the same wherever it is
+ * on the table, and the whole table is never held in memory.
+ */
+@Component
+public class KeysetPagination {
+
+    /**
+     * The header with the cursor of the next page, only sent when there may be more elements.
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final ObjectMapper objectMapper;
+    private final int maxLimit;
+    private final int streamBatchSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Create a new instance of the keyset pagination.
+     * @param objectMapper Serializes the elements of the streams.
+     * @param maxLimit The maximum amount of elements on a page.
+     * @param streamBatchSize The amount of elements read at a time for a stream.
+     */
+    public KeysetPagination(
+            ObjectMapper objectMapper,
+            @Value("${klimu.pagination.max-limit:1000}") int maxLimit,
+            @Value("${klimu.pagination.stream-batch-size:500}") int streamBatchSize
+    ) {
+        this.objectMapper = objectMapper;
+        this.maxLimit = maxLimit;
+        this.streamBatchSize = streamBatchSize;
+    }
+
+    /**
+     * Get a page of elements, with the cursor of the next page on the {@value #NEXT_CURSOR_HEADER} header.
+     * @param query The query of the elements.
+     * @param id Gets the identification number of an element.
+     * @param after The cursor of the page, null for the first page.
+     * @param limit The maximum amount of elements on the page.
+     * @param <T> The type of the elements.
+     * @return A 200 ok with the page or a 400 bad request if the cursor or the limit are not valid.
+     */
+    public <T> ResponseEntity<List<T>> page(KeysetQuery<T> query, ToLongFunction<T> id, Long after, int limit) {
+        if ((after != null && after < 0) || limit <= 0 || limit > maxLimit) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        List<T> page = query.find(after != null ? after : 0, limit);
+
+        if (page.size() < limit) {
+            return ResponseEntity.ok().body(page);
+        } else {
+            long nextCursor = id.applyAsLong(page.get(page.size() - 1));
+            return ResponseEntity.ok().header(NEXT_CURSOR_HEADER, String.valueOf(nextCursor)).body(page);
+        }
+    }
+
+    /**
+     * Write all the elements as a JSON array, reading them by batches. Every batch is written and removed from the
+     * persistence context before reading the next one, so the memory used doesn't grow with the table.
+     * @param response The response the elements are written to.
+     * @param query The query of the elements.
+     * @param id Gets the identification number of an element.
+     * @param <T> The type of the elements.
+     * @throws IOException Generated if the response could not be written.
+     */
+    public <T> void stream(HttpServletResponse response, KeysetQuery<T> query, ToLongFunction<T> id) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            long after = 0;
+            List<T> batch;
+            do {
+                batch = query.find(after, streamBatchSize);
+                for (T element : batch) {
+                    objectMapper.writeValue(generator, element);
+                }
+                if (!batch.isEmpty()) {
+                    after = id.applyAsLong(batch.get(batch.size() - 1));
+                }
+                generator.flush();
+                entityManager.clear();
+            } while (batch.size() == streamBatchSize);
+            generator.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package eus.klimu.pagination;
+
+import java.util.List;
+
+/**
+ * Reads a page of elements in order of their identification number.
+ * @param <T> The type of the elements.
+ */
+@FunctionalInterface
+public interface KeysetQuery<T> {
+
+    /**
+     * Get the elements after an identification number.
+     * @param after The identification number of the last element already read, 0 to start from the first one.
+     * @param limit The maximum amount of elements.
+     * @return The elements, in order of their identification number.
+     */
+    List<T> find(long after, int limit);
+
+}
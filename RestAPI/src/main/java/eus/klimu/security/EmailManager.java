@@ -0,0 +1,49 @@
+package eus.klimu.security;
+
+/**
+ * Manage the AppUser emails, making sure they can be used as the address of an email. An address with a line
+ * break or angle brackets could inject commands and headers on the SMTP session it's sent on.
+ */
+public class EmailManager {
+
+    /**
+     * The maximum amount of characters of an address, as allowed on the SMTP commands.
+     */
+    private static final int MAX_CHARACTERS = 254;
+
+    private EmailManager() {}
+
+    /**
+     * Check if an email can be used as an address. An empty email is valid, the user just doesn't receive emails.
+     * @param email The email that is being checked.
+     * @return OK if the email is valid, or a message explaining why it's not.
+     */
+    public static String check(String email) {
+        if (email == null || email.isEmpty()) {
+            return "OK";
+        }
+        if (email.length() > MAX_CHARACTERS) {
+            return "El email es demasiado largo.";
+        }
+        for (int i = 0; i < email.length(); i++) {
+            char c = email.charAt(i);
+            if (c <= ' ' || c == 0x7F || c == '<' || c == '>') {
+                return "El email no puede tener espacios, saltos de linea ni los caracteres < y >.";
+            }
+        }
+        int at = email.lastIndexOf('@');
+        if (at <= 0 || at == email.length() - 1 || email.indexOf('@') != at) {
+            return "El email debe tener la forma usuario@dominio.";
+        }
+        return "OK";
+    }
+
+    /**
+     * Check if an email can be written on an SMTP command or header.
+     * @param email The email that is being checked.
+     * @return True if the email is not empty and valid.
+     */
+    public static boolean isValid(String email) {
+        return email != null && !email.isEmpty() && check(email).equals("OK");
+    }
+}
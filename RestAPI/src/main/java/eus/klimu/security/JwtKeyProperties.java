@@ -0,0 +1,56 @@
+package eus.klimu.security;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The configuration of the keys used for signing and verifying the JSON Web Tokens. More than one key can be
+ * loaded at the same time, so the tokens signed with an old key are still valid while the keys are being rotated.
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "klimu.security.jwt")
+public class JwtKeyProperties {
+
+    /**
+     * The identifier of the key that is going to be used for signing new tokens.
+     */
+    private String activeKey;
+    /**
+     * All the keys that are accepted when verifying a token.
+     */
+    private List<Key> keys = new ArrayList<>();
+
+    /**
+     * A key pair, identified by the kid header of the tokens.
+     */
+    @Getter
+    @Setter
+    public static class Key {
+
+        /**
+         * The identifier of the key, sent on the kid header of the token.
+         */
+        private String id;
+        /**
+         * The signing algorithm of the key, RS256 or ES256.
+         */
+        private String algorithm = "RS256";
+        /**
+         * The PEM encoded public key (X.509).
+         */
+        private Resource publicKey;
+        /**
+         * The PEM encoded private key (PKCS#8). Keys without a private key can only verify tokens.
+         */
+        private Resource privateKey;
+
+    }
+}
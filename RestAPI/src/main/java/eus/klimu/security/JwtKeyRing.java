@@ -0,0 +1,136 @@
+package eus.klimu.security;
+
+import com.auth0.jwt.interfaces.JWTVerifier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.*;
+
+/**
+ * All the keys the application accepts for the JSON Web Tokens. New tokens are signed with the active key,
+ * while any key on the ring can verify a token, based on the kid header of the token.
+ */
+@Slf4j
+@Component
+public class JwtKeyRing {
+
+    /**
+     * The keys, stored by their identifier.
+     */
+    private final Map<String, SigningKey> keys = new LinkedHashMap<>();
+    /**
+     * The key used for signing new tokens.
+     */
+    private final SigningKey activeKey;
+
+    /**
+     * Load the keys from the configuration. If no key has been configured a temporary RSA key is generated,
+     * which means the tokens won't survive a restart and won't be shared between instances.
+     * @param properties The configuration of the keys.
+     * @throws GeneralSecurityException Generated if a key could not be read.
+     * @throws IOException Generated if a key file could not be read.
+     */
+    public JwtKeyRing(JwtKeyProperties properties) throws GeneralSecurityException, IOException {
+        for (JwtKeyProperties.Key key : properties.getKeys()) {
+            keys.put(key.getId(), loadKey(key));
+            log.info("Loaded {} key {} for the JSON Web Tokens", key.getAlgorithm(), key.getId());
+        }
+
+        if (keys.isEmpty()) {
+            log.warn("No keys configured for the JSON Web Tokens, generating a temporary RSA key");
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            KeyPair keyPair = generator.generateKeyPair();
+
+            SigningKey key = new SigningKey(
+                    UUID.randomUUID().toString(), SigningKey.RS256, keyPair.getPublic(), keyPair.getPrivate()
+            );
+            keys.put(key.getId(), key);
+            activeKey = key;
+        } else {
+            activeKey = keys.get(properties.getActiveKey());
+            if (activeKey == null || !activeKey.isSigning()) {
+                throw new IllegalStateException(
+                        "The active key " + properties.getActiveKey() + " must be configured with a private key"
+                );
+            }
+        }
+    }
+
+    /**
+     * Get the key used for signing new tokens.
+     * @return The active signing key.
+     */
+    public SigningKey getActiveKey() {
+        return activeKey;
+    }
+
+    /**
+     * Get the verifier for the tokens signed with a key.
+     * @param keyId The identifier of the key, from the kid header of the token.
+     * @return The verifier for that key, or null if the key is unknown.
+     */
+    public JWTVerifier getVerifier(String keyId) {
+        SigningKey key = keyId != null ? keys.get(keyId) : null;
+        return key != null ? key.getVerifier() : null;
+    }
+
+    /**
+     * Get all the public keys as a JSON Web Key Set.
+     * @return The JSON Web Key Set.
+     */
+    public Map<String, Object> toJwks() {
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        keys.values().forEach(key -> jwks.add(key.toJwk()));
+        return Collections.singletonMap("keys", jwks);
+    }
+
+    /**
+     * Load a key pair from its PEM files.
+     * @param key The configuration of the key.
+     * @return The signing key.
+     * @throws GeneralSecurityException Generated if a key could not be read.
+     * @throws IOException Generated if a key file could not be read.
+     */
+    private static SigningKey loadKey(JwtKeyProperties.Key key) throws GeneralSecurityException, IOException {
+        if (key.getId() == null || key.getPublicKey() == null) {
+            throw new IllegalStateException("Every JSON Web Token key needs an id and a public key");
+        }
+        KeyFactory keyFactory = KeyFactory.getInstance(SigningKey.ES256.equals(key.getAlgorithm()) ? "EC" : "RSA");
+
+        PublicKey publicKey = keyFactory.generatePublic(new X509EncodedKeySpec(readPem(key.getPublicKey())));
+        PrivateKey privateKey = null;
+        if (key.getPrivateKey() != null) {
+            privateKey = keyFactory.generatePrivate(new PKCS8EncodedKeySpec(readPem(key.getPrivateKey())));
+        }
+        return new SigningKey(key.getId(), key.getAlgorithm(), publicKey, privateKey);
+    }
+
+    /**
+     * Read the content of a PEM file.
+     * @param resource The PEM file.
+     * @return The decoded content of the file.
+     * @throws IOException Generated if the file could not be read.
+     */
+    private static byte[] readPem(Resource resource) throws IOException {
+        try (InputStream inputStream = resource.getInputStream()) {
+            String pem = StreamUtils.copyToString(inputStream, StandardCharsets.US_ASCII)
+                    .replaceAll("-----[A-Z ]+-----", "")
+                    .replaceAll("\\s", "");
+            return Base64.getDecoder().decode(pem);
+        }
+    }
+}
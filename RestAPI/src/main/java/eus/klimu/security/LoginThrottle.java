@@ -0,0 +1,204 @@
+package eus.klimu.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limit the login attempts per username and per remote address with token buckets, so the password of a user
+ * isn't checked when there have been too many attempts in a short period of time. The buckets are split between
+ * a fixed amount of stripes, each one with its own lock and a bounded LRU map, so the memory stays bounded no matter
+ * how many different usernames or addresses try to log in. A bucket evicted by the LRU starts full again.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "eus.klimu:type=LoginThrottle", description = "Login attempts throttling")
+public class LoginThrottle {
+
+    private static final String USERNAME_PREFIX = "u:";
+    private static final String ADDRESS_PREFIX = "ip:";
+
+    /**
+     * The stripes holding the buckets, the stripe of a key is chosen by its hash.
+     */
+    private final Stripe[] stripes;
+    /**
+     * The amount of attempts a key can do in a row.
+     */
+    private final double usernameCapacity;
+    private final double addressCapacity;
+    /**
+     * The tokens added to each bucket per nanosecond.
+     */
+    private final double usernameRefill;
+    private final double addressRefill;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    /**
+     * Create a new instance of the login throttle.
+     * @param stripes The amount of stripes, rounded up to a power of two.
+     * @param maxKeys The maximum amount of keys kept in memory, split between the stripes.
+     * @param usernameCapacity The amount of attempts a username can do in a row.
+     * @param usernameRefillPerMinute The attempts a username recovers every minute.
+     * @param addressCapacity The amount of attempts an address can do in a row.
+     * @param addressRefillPerMinute The attempts an address recovers every minute.
+     */
+    public LoginThrottle(
+            @Value("${klimu.security.login-throttle.stripes:64}") int stripes,
+            @Value("${klimu.security.login-throttle.max-keys:100000}") int maxKeys,
+            @Value("${klimu.security.login-throttle.username.capacity:5}") int usernameCapacity,
+            @Value("${klimu.security.login-throttle.username.refill-per-minute:5}") int usernameRefillPerMinute,
+            @Value("${klimu.security.login-throttle.address.capacity:20}") int addressCapacity,
+            @Value("${klimu.security.login-throttle.address.refill-per-minute:20}") int addressRefillPerMinute
+    ) {
+        int stripeCount = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        int keysPerStripe = Math.max(1, maxKeys / stripeCount);
+
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe(keysPerStripe);
+        }
+        this.usernameCapacity = usernameCapacity;
+        this.addressCapacity = addressCapacity;
+        this.usernameRefill = usernameRefillPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.addressRefill = addressRefillPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+    }
+
+    /**
+     * Take a login attempt from the buckets of the username and the address.
+     * @param username The username trying to log in, may be null.
+     * @param address The remote address of the request.
+     * @throws LoginThrottledException Generated if there are no attempts left for the username or the address.
+     */
+    public void acquire(String username, String address) {
+        long now = System.nanoTime();
+        long waitNanos = 0;
+
+        if (address != null) {
+            waitNanos = take(ADDRESS_PREFIX + address, addressCapacity, addressRefill, now);
+        }
+        if (waitNanos == 0 && username != null) {
+            waitNanos = take(USERNAME_PREFIX + username, usernameCapacity, usernameRefill, now);
+        }
+
+        if (waitNanos > 0) {
+            throttled.increment();
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+            log.warn("Too many login attempts for user {} from {}", username, address);
+            throw new LoginThrottledException("Too many login attempts, try again later", retryAfter);
+        }
+        allowed.increment();
+    }
+
+    /**
+     * Forget the attempts of a username after a successful login.
+     * @param username The username that logged in.
+     */
+    public void reset(String username) {
+        String key = USERNAME_PREFIX + username;
+        Stripe stripe = stripeOf(key);
+        synchronized (stripe) {
+            stripe.buckets.remove(key);
+        }
+    }
+
+    /**
+     * Take a token from the bucket of a key.
+     * @param key The key of the bucket.
+     * @param capacity The capacity of the bucket.
+     * @param refill The tokens added per nanosecond.
+     * @param now The current time in nanoseconds.
+     * @return 0 if a token was taken or the nanoseconds until the next token is available.
+     */
+    private long take(String key, double capacity, double refill, long now) {
+        Stripe stripe = stripeOf(key);
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(capacity, now);
+                stripe.buckets.put(key, bucket);
+            } else {
+                bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.updated) * refill);
+                bucket.updated = now;
+            }
+
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - bucket.tokens) / refill);
+        }
+    }
+
+    /**
+     * Get the stripe of a key.
+     * @param key The key of the bucket.
+     * @return The stripe where the bucket of the key is stored.
+     */
+    private Stripe stripeOf(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return stripes[hash & (stripes.length - 1)];
+    }
+
+    @ManagedAttribute(description = "Login attempts allowed")
+    public long getAllowed() {
+        return allowed.sum();
+    }
+
+    @ManagedAttribute(description = "Login attempts rejected before checking the password")
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    @ManagedAttribute(description = "Buckets currently kept in memory")
+    public int getTrackedKeys() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.buckets.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * A set of buckets sharing a lock, evicting the least recently used bucket when full.
+     */
+    private static final class Stripe {
+
+        private final Map<String, Bucket> buckets;
+
+        private Stripe(int maxKeys) {
+            this.buckets = new LinkedHashMap<String, Bucket>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    return size() > maxKeys;
+                }
+            };
+        }
+    }
+
+    /**
+     * The remaining attempts of a key and the last time they were updated.
+     */
+    private static final class Bucket {
+
+        private double tokens;
+        private long updated;
+
+        private Bucket(double tokens, long updated) {
+            this.tokens = tokens;
+            this.updated = updated;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package eus.klimu.security;
+
+import lombok.Getter;
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Generated when a login attempt is rejected because the username or the address have done too many attempts.
+ * The request should be answered with a 429 too many requests, without checking the password.
+ */
+@Getter
+public class LoginThrottledException extends AuthenticationException {
+
+    /**
+     * The seconds the client should wait before trying again.
+     */
+    private final long retryAfterSeconds;
+
+    /**
+     * Create a new instance of the exception.
+     * @param msg The reason why the attempt was rejected.
+     * @param retryAfterSeconds The seconds the client should wait before trying again.
+     */
+    public LoginThrottledException(String msg, long retryAfterSeconds) {
+        super(msg);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+}
@@ -0,0 +1,240 @@
+package eus.klimu.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Password encoder that runs BCrypt on a dedicated, bounded executor instead of on the request threads. When the
+ * executor and its queue are full the password is rejected straight away with a {@link PasswordHashingRejectedException},
+ * so a burst of logins can't take every worker of the server. The cost of BCrypt is calibrated at startup to match a
+ * target latency on the machine the application is running on.
+ */
+@Slf4j
+@Primary
+@Component
+@ManagedResource(objectName = "eus.klimu:type=PasswordHasher", description = "Bounded BCrypt password hashing")
+public class PasswordHasher implements PasswordEncoder {
+
+    /**
+     * The executor that hashes and checks the passwords.
+     */
+    private final ThreadPoolExecutor executor;
+    /**
+     * The BCrypt encoder, with the calibrated cost.
+     */
+    private final BCryptPasswordEncoder encoder;
+    /**
+     * The cost (log rounds) chosen for BCrypt.
+     */
+    private final int strength;
+    /**
+     * The maximum time a request waits for its password to be hashed.
+     */
+    private final long timeoutMillis;
+
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Create a new instance of the password hasher.
+     * @param threads The amount of threads hashing passwords, 0 to use one per processor.
+     * @param queueSize The amount of passwords that can wait for a thread before new ones are rejected.
+     * @param timeoutMillis The maximum time a request waits for its password to be hashed.
+     * @param targetLatencyMillis The time a single hash should take, used for choosing the cost of BCrypt.
+     * @param minStrength The minimum cost allowed for BCrypt.
+     * @param maxStrength The maximum cost allowed for BCrypt.
+     */
+    public PasswordHasher(
+            @Value("${klimu.security.password.threads:0}") int threads,
+            @Value("${klimu.security.password.queue-size:64}") int queueSize,
+            @Value("${klimu.security.password.timeout-ms:5000}") long timeoutMillis,
+            @Value("${klimu.security.password.target-latency-ms:250}") long targetLatencyMillis,
+            @Value("${klimu.security.password.min-strength:10}") int minStrength,
+            @Value("${klimu.security.password.max-strength:14}") int maxStrength
+    ) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+
+        this.timeoutMillis = timeoutMillis;
+        this.strength = calibrate(targetLatencyMillis, minStrength, maxStrength);
+        this.encoder = new BCryptPasswordEncoder(strength);
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hasher-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        log.info("Hashing passwords with BCrypt cost {} on {} thread(s)", strength, poolSize);
+    }
+
+    /**
+     * Hash a password.
+     * @param rawPassword The password that is going to be hashed.
+     * @return The BCrypt hash of the password.
+     * @throws PasswordHashingRejectedException Generated if there is no capacity left for hashing the password.
+     */
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return execute(() -> encoder.encode(rawPassword));
+    }
+
+    /**
+     * Check if a password matches a hash.
+     * @param rawPassword The password that is being checked.
+     * @param encodedPassword The BCrypt hash the password is checked against.
+     * @return True if the password matches the hash.
+     * @throws PasswordHashingRejectedException Generated if there is no capacity left for checking the password.
+     */
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(() -> encoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Check if a hash was generated with a lower cost than the current one.
+     * @param encodedPassword The BCrypt hash.
+     * @return True if the password should be hashed again.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return encoder.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Run an operation on the executor and wait for its result.
+     * @param operation The hashing operation.
+     * @param <T> The type of the result.
+     * @return The result of the operation.
+     */
+    private <T> T execute(Callable<T> operation) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long start = System.nanoTime();
+                try {
+                    return operation.call();
+                } finally {
+                    record(System.nanoTime() - start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("Password hashing queue is full, rejecting the request");
+            throw new PasswordHashingRejectedException("The server is busy, try again later");
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejected.increment();
+            throw new PasswordHashingRejectedException("The password could not be checked in time, try again later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PasswordHashingRejectedException("The password check was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Save the duration of an operation.
+     * @param nanos The duration of the operation in nanoseconds.
+     */
+    private void record(long nanos) {
+        operations.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Choose the highest BCrypt cost whose hashing time stays under the target latency. Each extra round doubles
+     * the time, so only the minimum cost needs to be measured.
+     * @param targetLatencyMillis The time a single hash should take.
+     * @param minStrength The minimum cost allowed.
+     * @param maxStrength The maximum cost allowed.
+     * @return The chosen cost.
+     */
+    private static int calibrate(long targetLatencyMillis, int minStrength, int maxStrength) {
+        BCryptPasswordEncoder calibrationEncoder = new BCryptPasswordEncoder(minStrength);
+        calibrationEncoder.encode("calibration");
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            calibrationEncoder.encode("calibration");
+        }
+        double millis = (System.nanoTime() - start) / 3 / 1_000_000.0;
+
+        int chosen = minStrength;
+        while (chosen < maxStrength && millis * 2 <= targetLatencyMillis) {
+            millis *= 2;
+            chosen++;
+        }
+        log.info("BCrypt calibration: cost {} takes around {} ms", chosen, Math.round(millis));
+        return chosen;
+    }
+
+    /**
+     * Stop the executor when the application is closed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @ManagedAttribute(description = "BCrypt cost chosen at startup")
+    public int getStrength() {
+        return strength;
+    }
+
+    @ManagedAttribute(description = "Passwords waiting for a hashing thread")
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    @ManagedAttribute(description = "Threads currently hashing passwords")
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @ManagedAttribute(description = "Passwords hashed or checked")
+    public long getOperations() {
+        return operations.sum();
+    }
+
+    @ManagedAttribute(description = "Passwords rejected because the executor was full")
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @ManagedAttribute(description = "Average time of a hash in milliseconds")
+    public double getAverageDurationMillis() {
+        long count = operations.sum();
+        return count == 0 ? 0 : totalNanos.sum() / (double) count / 1_000_000.0;
+    }
+
+    @ManagedAttribute(description = "Longest time of a hash in milliseconds")
+    public double getMaxDurationMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+}
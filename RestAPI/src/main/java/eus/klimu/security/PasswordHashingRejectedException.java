@@ -0,0 +1,19 @@
+package eus.klimu.security;
+
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+
+/**
+ * Generated when a password could not be hashed or checked because the password hashing executor is full.
+ * The request should be answered with a 503 service unavailable, so the client tries again later.
+ */
+public class PasswordHashingRejectedException extends InternalAuthenticationServiceException {
+
+    /**
+     * Create a new instance of the exception.
+     * @param msg The reason why the password was not hashed.
+     */
+    public PasswordHashingRejectedException(String msg) {
+        super(msg);
+    }
+
+}
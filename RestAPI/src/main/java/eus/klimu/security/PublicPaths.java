@@ -0,0 +1,151 @@
+package eus.klimu.security;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The paths of the application that can be accessed without being authenticated. The patterns are used by the
+ * security configuration and are compiled into a trie of path segments, so the authorization filter can check
+ * if a path is public with a single lookup, without parsing any token.
+ * <ul>
+ *     <li>A pattern ending with <b>/**</b> matches the path itself and everything below it.</li>
+ *     <li>Any other pattern only matches the exact path, with or without a trailing slash, as Spring MVC
+ *     routes both to the same handler.</li>
+ * </ul>
+ * The restricted patterns, always ending with <b>/**</b>, are paths below a public pattern that still require
+ * authentication, together with everything below them.
+ */
+public class PublicPaths {
+
+    /**
+     * The public paths, as ant patterns.
+     */
+    private static final String[] PATTERNS = {
+            "/login/**", "/access/**", "/role/name/**", "/github-webhook/**",
+            "/channel/all", "/user-notification/create", "/user/create"
+    };
+    /**
+     * The paths below a public pattern that require authentication anyway, as ant patterns.
+     */
+    private static final String[] RESTRICTED = { "/access/auth/batch/**" };
+    private static final String WILDCARD = "**";
+
+    /**
+     * The root of the trie, representing the path "/".
+     */
+    private static final Node ROOT = compile(PATTERNS, RESTRICTED);
+
+    private PublicPaths() {}
+
+    /**
+     * Get the public paths as ant patterns, with the trailing slash variant of each exact pattern, so the
+     * security configuration matches the same paths as {@link #isPublic}.
+     * @return A copy of the public patterns.
+     */
+    public static String[] getPatterns() {
+        List<String> patterns = new ArrayList<>(PATTERNS.length * 2);
+        for (String pattern : PATTERNS) {
+            patterns.add(pattern);
+            if (!pattern.endsWith("/" + WILDCARD)) {
+                patterns.add(pattern + "/");
+            }
+        }
+        return patterns.toArray(new String[0]);
+    }
+
+    /**
+     * Get the paths below a public pattern that require authentication, they must be checked before the public ones.
+     * @return A copy of the restricted patterns.
+     */
+    public static String[] getRestricted() {
+        return RESTRICTED.clone();
+    }
+
+    /**
+     * Check if a path can be accessed without being authenticated.
+     * @param path The servlet path of the request.
+     * @return True if the path is public.
+     */
+    public static boolean isPublic(String path) {
+        if (path == null || path.isEmpty() || path.charAt(0) != '/') {
+            return false;
+        }
+        Node node = ROOT;
+        boolean belowWildcard = false;
+        int start = 1;
+        int length = path.length();
+
+        while (start < length) {
+            belowWildcard |= node.wildcard;
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            node = node.children.get(path.substring(start, end));
+            if (node == null) {
+                return belowWildcard;
+            }
+            if (node.restricted) {
+                return false;
+            }
+            start = end + 1;
+        }
+        return node.exact || node.wildcard || belowWildcard;
+    }
+
+    /**
+     * Compile the ant patterns into a trie of path segments.
+     * @param patterns The public patterns.
+     * @param restricted The restricted patterns.
+     * @return The root of the trie.
+     */
+    private static Node compile(String[] patterns, String[] restricted) {
+        Node root = new Node();
+        for (String pattern : patterns) {
+            Node node = root;
+            for (String segment : pattern.substring(1).split("/")) {
+                if (WILDCARD.equals(segment)) {
+                    node.wildcard = true;
+                    break;
+                }
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+            if (!pattern.endsWith("/" + WILDCARD)) {
+                node.exact = true;
+            }
+        }
+        for (String pattern : restricted) {
+            Node node = root;
+            for (String segment : pattern.substring(1).split("/")) {
+                if (WILDCARD.equals(segment)) {
+                    break;
+                }
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+            node.restricted = true;
+        }
+        return root;
+    }
+
+    /**
+     * A segment of a public path.
+     */
+    private static final class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        /**
+         * True if a pattern ends on this segment.
+         */
+        private boolean exact;
+        /**
+         * True if everything below this segment is public.
+         */
+        private boolean wildcard;
+        /**
+         * True if this segment and everything below it require authentication, even below a wildcard.
+         */
+        private boolean restricted;
+    }
+}
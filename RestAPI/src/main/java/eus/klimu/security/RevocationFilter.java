@@ -0,0 +1,182 @@
+package eus.klimu.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory bloom filter of the revoked token identifiers. It answers "not revoked" without any database
+ * access, and only a possible hit needs to be checked on the revocation table. The filter is split in time slices
+ * by the expiration of the tokens: once every token of a slice has expired the whole slice is dropped, so the
+ * filter never needs to be rebuilt and its false positive rate doesn't grow over time.
+ */
+@Component
+@ManagedResource(objectName = "eus.klimu:type=RevocationFilter", description = "Bloom filter of revoked tokens")
+public class RevocationFilter {
+
+    /**
+     * The filters, stored by the start of their time slice in milliseconds.
+     */
+    private final ConcurrentNavigableMap<Long, Bloom> slices = new ConcurrentSkipListMap<>();
+    /**
+     * The width of a time slice in milliseconds.
+     */
+    private final long sliceMillis;
+    /**
+     * The amount of bits of each slice.
+     */
+    private final int bits;
+    /**
+     * The amount of hash functions.
+     */
+    private final int hashes;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder possibleHits = new LongAdder();
+
+    /**
+     * Create a new instance of the revocation filter.
+     * @param sliceMinutes The width of each time slice, in minutes.
+     * @param expectedPerSlice The amount of revoked tokens expected on a single slice.
+     * @param falsePositiveRate The false positive rate wanted for a slice with the expected amount of tokens.
+     */
+    public RevocationFilter(
+            @Value("${klimu.security.revocation.slice-minutes:60}") long sliceMinutes,
+            @Value("${klimu.security.revocation.expected-per-slice:10000}") int expectedPerSlice,
+            @Value("${klimu.security.revocation.false-positive-rate:0.01}") double falsePositiveRate
+    ) {
+        double ln2 = Math.log(2);
+        this.sliceMillis = TimeUnit.MINUTES.toMillis(sliceMinutes);
+        this.bits = (int) Math.max(64, Math.ceil(-expectedPerSlice * Math.log(falsePositiveRate) / (ln2 * ln2)));
+        this.hashes = (int) Math.max(1, Math.round((double) bits / expectedPerSlice * ln2));
+    }
+
+    /**
+     * Add a revoked token to the filter.
+     * @param tokenId The identifier of the token.
+     * @param expiresAt The moment the token expires, in milliseconds since the epoch.
+     */
+    public void add(String tokenId, long expiresAt) {
+        long slice = expiresAt - Math.floorMod(expiresAt, sliceMillis);
+        Bloom bloom = slices.computeIfAbsent(slice, key -> new Bloom(bits));
+
+        long hash = hash(tokenId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashes; i++) {
+            bloom.set(Math.floorMod(h1 + i * h2, bits));
+        }
+    }
+
+    /**
+     * Check if a token might have been revoked.
+     * @param tokenId The identifier of the token.
+     * @return False if the token has not been revoked, true if it might have been.
+     */
+    public boolean mightContain(String tokenId) {
+        lookups.increment();
+        long hash = hash(tokenId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+
+        for (Bloom bloom : slices.values()) {
+            boolean found = true;
+            for (int i = 0; i < hashes && found; i++) {
+                found = bloom.get(Math.floorMod(h1 + i * h2, bits));
+            }
+            if (found) {
+                possibleHits.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drop the slices whose tokens have all expired.
+     * @param now The current time in milliseconds since the epoch.
+     */
+    public void expire(long now) {
+        slices.headMap(now - sliceMillis, true).clear();
+    }
+
+    /**
+     * Drop every slice.
+     */
+    public void clear() {
+        slices.clear();
+    }
+
+    /**
+     * A 64-bit FNV-1a hash of the identifier, mixed so both halves can be used as independent hashes.
+     * @param tokenId The identifier of the token.
+     * @return The hash of the identifier.
+     */
+    private static long hash(String tokenId) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : tokenId.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @ManagedAttribute(description = "Time slices currently kept in memory")
+    public int getSlices() {
+        return slices.size();
+    }
+
+    @ManagedAttribute(description = "Tokens checked against the filter")
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    @ManagedAttribute(description = "Tokens that had to be checked on the database")
+    public long getPossibleHits() {
+        return possibleHits.sum();
+    }
+
+    @ManagedAttribute(description = "Size of the filter in bytes")
+    public long getMemoryBytes() {
+        return (long) slices.size() * (bits / 8);
+    }
+
+    /**
+     * A fixed size set of bits, safe for concurrent use.
+     */
+    private static final class Bloom {
+
+        private final AtomicLongArray words;
+
+        private Bloom(int bits) {
+            this.words = new AtomicLongArray((bits + 63) >>> 6);
+        }
+
+        private void set(int bit) {
+            int index = bit >>> 6;
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = words.get(index);
+                if ((word & mask) != 0) {
+                    return;
+                }
+            } while (!words.compareAndSet(index, word, word | mask));
+        }
+
+        private boolean get(int bit) {
+            return (words.get(bit >>> 6) & (1L << bit)) != 0;
+        }
+    }
+}
@@ -12,7 +12,6 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 /**
@@ -33,9 +32,18 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     /**
      * Password Encoder for the users, it uses a hashing system to transform the password into a hash
      * to avoid saving the password as plain text. BCrypt uses a random salt by default, and it is stored
-     * together with the hash. This allows us to encode the password with both a hash and salt.
+     * together with the hash. This allows us to encode the password with both a hash and salt. The hashes
+     * are computed on a bounded executor, away from the request threads.
      */
-    private final BCryptPasswordEncoder bCryptPasswordEncoder = new BCryptPasswordEncoder();
+    private final PasswordHasher passwordHasher;
+    /**
+     * Generate and verify the tokens of the users, shared by both security filters.
+     */
+    private final TokenManagement tokenManagement;
+    /**
+     * Limit the login attempts per username and address, before checking the password.
+     */
+    private final LoginThrottle loginThrottle;
 
     /**
      * Configure the userDetailsService and the password encoder.
@@ -44,7 +52,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
      */
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userDetailsService).passwordEncoder(bCryptPasswordEncoder);
+        auth.userDetailsService(userDetailsService).passwordEncoder(passwordHasher);
     }
 
     /**
@@ -54,7 +62,9 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
      */
     @Override
     protected void configure(HttpSecurity http) throws Exception {
-        AuthenticationFilter authenticationFilter = new AuthenticationFilter(authenticationManagerBean());
+        AuthenticationFilter authenticationFilter = new AuthenticationFilter(
+                authenticationManagerBean(), tokenManagement, loginThrottle
+        );
         authenticationFilter.setFilterProcessesUrl("/login");
 
         // Disable default configuration.
@@ -63,9 +73,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
         // ACL list.
         http.authorizeRequests()
-                .antMatchers(
-                        "/login/**", "/access/**", "/role/name/**", "/github-webhook/**",
-                        "/channel/all", "/user-notification/create", "/user/create").permitAll()
+                .antMatchers(PublicPaths.getRestricted()).authenticated()
+                .antMatchers(PublicPaths.getPatterns()).permitAll()
                 .anyRequest().authenticated()
             .and()
                 .formLogin().loginProcessingUrl("/login").permitAll()
@@ -74,7 +83,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
         // Add filters.
         http.addFilter(authenticationFilter);
-        http.addFilterBefore(new AuthorizationFilter(), UsernamePasswordAuthenticationFilter.class);
+        http.addFilterBefore(new AuthorizationFilter(tokenManagement), UsernamePasswordAuthenticationFilter.class);
     }
 
     /**
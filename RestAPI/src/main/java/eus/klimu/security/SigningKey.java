@@ -0,0 +1,120 @@
+package eus.klimu.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.JWTVerifier;
+import lombok.Getter;
+
+import java.math.BigInteger;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A key used for signing or verifying the JSON Web Tokens, identified by the kid header of the tokens.
+ */
+@Getter
+public class SigningKey {
+
+    public static final String RS256 = "RS256";
+    public static final String ES256 = "ES256";
+
+    /**
+     * The identifier of the key.
+     */
+    private final String id;
+    /**
+     * The name of the algorithm, as it appears on the alg header.
+     */
+    private final String algorithmName;
+    /**
+     * The public key, published on the JWKS endpoint.
+     */
+    private final PublicKey publicKey;
+    /**
+     * The algorithm used for signing and verifying the tokens.
+     */
+    private final Algorithm algorithm;
+    /**
+     * The verifier for the tokens signed with this key.
+     */
+    private final JWTVerifier verifier;
+    /**
+     * True if the key has a private key and can sign new tokens.
+     */
+    private final boolean signing;
+
+    /**
+     * Create a new signing key.
+     * @param id The identifier of the key.
+     * @param algorithmName The name of the algorithm, RS256 or ES256.
+     * @param publicKey The public key.
+     * @param privateKey The private key, or null if the key can only verify tokens.
+     */
+    public SigningKey(String id, String algorithmName, PublicKey publicKey, PrivateKey privateKey) {
+        this.id = id;
+        this.algorithmName = algorithmName;
+        this.publicKey = publicKey;
+        this.signing = privateKey != null;
+
+        if (RS256.equals(algorithmName)) {
+            algorithm = Algorithm.RSA256((RSAPublicKey) publicKey, (RSAPrivateKey) privateKey);
+        } else if (ES256.equals(algorithmName)) {
+            algorithm = Algorithm.ECDSA256((ECPublicKey) publicKey, (ECPrivateKey) privateKey);
+        } else {
+            throw new IllegalArgumentException("Unsupported signing algorithm " + algorithmName);
+        }
+        verifier = JWT.require(algorithm).build();
+    }
+
+    /**
+     * Transform the public key into a JSON Web Key.
+     * @return The public key as a JSON Web Key.
+     */
+    public Map<String, Object> toJwk() {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        jwk.put("kid", id);
+        jwk.put("use", "sig");
+        jwk.put("alg", algorithmName);
+
+        if (publicKey instanceof RSAPublicKey) {
+            RSAPublicKey rsaKey = (RSAPublicKey) publicKey;
+            jwk.put("kty", "RSA");
+            jwk.put("n", encode(rsaKey.getModulus(), 0));
+            jwk.put("e", encode(rsaKey.getPublicExponent(), 0));
+        } else {
+            ECPublicKey ecKey = (ECPublicKey) publicKey;
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("x", encode(ecKey.getW().getAffineX(), 32));
+            jwk.put("y", encode(ecKey.getW().getAffineY(), 32));
+        }
+        return jwk;
+    }
+
+    /**
+     * Encode a number as an unsigned big-endian base64url string.
+     * @param number The number that is going to be encoded.
+     * @param length The length in bytes of the value, or 0 to use the minimum length.
+     * @return The encoded number.
+     */
+    private static String encode(BigInteger number, int length) {
+        byte[] bytes = number.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        if (length > bytes.length) {
+            byte[] padded = new byte[length];
+            System.arraycopy(bytes, 0, padded, length - bytes.length, bytes.length);
+            bytes = padded;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
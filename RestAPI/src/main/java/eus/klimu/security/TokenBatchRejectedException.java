@@ -0,0 +1,17 @@
+package eus.klimu.security;
+
+/**
+ * Generated when a batch of tokens could not be verified because the verification executor is full or the batch
+ * took too long. The request should be answered with a 503 service unavailable, so the client tries again later.
+ */
+public class TokenBatchRejectedException extends RuntimeException {
+
+    /**
+     * Create a new instance of the exception.
+     * @param msg The reason why the batch was not verified.
+     */
+    public TokenBatchRejectedException(String msg) {
+        super(msg);
+    }
+
+}
@@ -0,0 +1,160 @@
+package eus.klimu.security;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Verifies batches of tokens on a small executor of its own, so the batches can't take the threads of the common
+ * fork/join pool or the request threads. A batch is split in chunks verified in parallel, and the executor has a
+ * bounded queue: when it's full the batch is rejected as a whole instead of waiting.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "eus.klimu:type=TokenBatchVerifier", description = "Bounded token batch verification")
+public class TokenBatchVerifier {
+
+    /**
+     * The executor that verifies the chunks of the batches.
+     */
+    private final ThreadPoolExecutor executor;
+    private final TokenManagement tokenManagement;
+    /**
+     * The amount of tokens verified by a single task.
+     */
+    private final int chunkSize;
+    /**
+     * The maximum time a request waits for its batch to be verified.
+     */
+    private final long timeoutMillis;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Create a new instance of the token batch verifier.
+     * @param tokenManagement Verifies each token.
+     * @param threads The amount of threads verifying tokens.
+     * @param queueSize The amount of chunks that can wait for a thread before new batches are rejected.
+     * @param chunkSize The amount of tokens verified by a single task.
+     * @param timeoutMillis The maximum time a request waits for its batch to be verified.
+     */
+    public TokenBatchVerifier(
+            TokenManagement tokenManagement,
+            @Value("${klimu.access.batch.threads:2}") int threads,
+            @Value("${klimu.access.batch.queue-size:32}") int queueSize,
+            @Value("${klimu.access.batch.chunk-size:25}") int chunkSize,
+            @Value("${klimu.access.batch.timeout-ms:2000}") long timeoutMillis
+    ) {
+        AtomicInteger threadCount = new AtomicInteger();
+
+        this.tokenManagement = tokenManagement;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.timeoutMillis = timeoutMillis;
+        this.executor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "token-batch-verifier-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * Verify a batch of tokens.
+     * @param batch The JWT tokens, with or without the signature name.
+     * @return The verified tokens on the same positions they had on the batch, null for the invalid ones.
+     * @throws TokenBatchRejectedException Generated if there is no capacity left or the batch took too long.
+     */
+    public List<VerifiedToken> verify(List<String> batch) {
+        List<Future<List<VerifiedToken>>> futures = new ArrayList<>();
+        try {
+            for (int start = 0; start < batch.size(); start += chunkSize) {
+                List<String> chunk = batch.subList(start, Math.min(batch.size(), start + chunkSize));
+                futures.add(executor.submit(() -> verifyChunk(chunk)));
+            }
+        } catch (RejectedExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            rejected.increment();
+            log.warn("Token verification queue is full, rejecting a batch of {} token(s)", batch.size());
+            throw new TokenBatchRejectedException("The server is busy, try again later");
+        }
+
+        List<VerifiedToken> verified = new ArrayList<>(batch.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            for (Future<List<VerifiedToken>> future : futures) {
+                verified.addAll(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+        } catch (TimeoutException e) {
+            futures.forEach(future -> future.cancel(true));
+            rejected.increment();
+            throw new TokenBatchRejectedException("The tokens could not be verified in time, try again later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new TokenBatchRejectedException("The token verification was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        batches.increment();
+        tokens.add(batch.size());
+        return verified;
+    }
+
+    private List<VerifiedToken> verifyChunk(List<String> chunk) {
+        List<VerifiedToken> verified = new ArrayList<>(chunk.size());
+        for (String token : chunk) {
+            try {
+                verified.add(token != null ? tokenManagement.introspect(token) : null);
+            } catch (JWTVerificationException e) {
+                verified.add(null);
+            }
+        }
+        return verified;
+    }
+
+    /**
+     * Stop the executor, the batches still waiting are not verified.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @ManagedAttribute(description = "Batches of tokens verified")
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    @ManagedAttribute(description = "Tokens verified on batches")
+    public long getTokens() {
+        return tokens.sum();
+    }
+
+    @ManagedAttribute(description = "Batches rejected because the executor was full or too slow")
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @ManagedAttribute(description = "Chunks waiting for a thread")
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+}
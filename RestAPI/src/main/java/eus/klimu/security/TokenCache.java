@@ -0,0 +1,189 @@
+package eus.klimu.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the tokens that have already been verified. The tokens are stored by their SHA-256 digest,
+ * so the raw tokens are never kept in memory, and each entry is dropped once the token expires.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "eus.klimu:type=TokenCache", description = "Cache of verified JSON Web Tokens")
+public class TokenCache {
+
+    /**
+     * The digest used for generating the keys of the cache. MessageDigest is not thread safe,
+     * so each thread keeps its own instance.
+     */
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    /**
+     * The maximum amount of tokens that can be stored at the same time.
+     */
+    private final int maxSize;
+    /**
+     * The verified tokens, stored by the digest of the token.
+     */
+    private final Map<Key, VerifiedToken> tokens = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a new instance of the token cache.
+     * @param maxSize The maximum amount of tokens that can be stored at the same time.
+     */
+    public TokenCache(@Value("${klimu.security.token-cache.max-size:10000}") int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get a verified token from the cache.
+     * @param token The raw JWT token, without the signature name.
+     * @return The verified token if it was cached and has not expired, otherwise null.
+     */
+    public VerifiedToken get(String token) {
+        Key key = Key.of(token);
+        VerifiedToken verifiedToken = tokens.get(key);
+
+        if (verifiedToken == null) {
+            misses.increment();
+            return null;
+        }
+        if (verifiedToken.isExpired(System.currentTimeMillis())) {
+            tokens.remove(key, verifiedToken);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return verifiedToken;
+    }
+
+    /**
+     * Save a verified token on the cache.
+     * @param token The raw JWT token, without the signature name.
+     * @param verifiedToken The result of verifying the token.
+     */
+    public void put(String token, VerifiedToken verifiedToken) {
+        if (tokens.size() >= maxSize) {
+            evict();
+        }
+        tokens.put(Key.of(token), verifiedToken);
+    }
+
+    /**
+     * Remove a token from the cache.
+     * @param token The raw JWT token, without the signature name.
+     */
+    public void remove(String token) {
+        tokens.remove(Key.of(token));
+    }
+
+    /**
+     * Make room on the cache. The expired tokens are removed first and, if the cache is still full, a tenth of the
+     * remaining entries are dropped.
+     */
+    private synchronized void evict() {
+        if (tokens.size() < maxSize) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int before = tokens.size();
+        tokens.values().removeIf(verifiedToken -> verifiedToken.isExpired(now));
+
+        Iterator<Key> iterator = tokens.keySet().iterator();
+        int target = maxSize - Math.max(1, maxSize / 10);
+        while (tokens.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        evictions.add((long) before - tokens.size());
+        log.debug("Evicted {} tokens from the token cache", before - tokens.size());
+    }
+
+    @ManagedAttribute(description = "Amount of tokens served from the cache")
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @ManagedAttribute(description = "Amount of tokens that had to be verified")
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @ManagedAttribute(description = "Amount of tokens removed to keep the cache bounded")
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @ManagedAttribute(description = "Amount of tokens currently cached")
+    public int getSize() {
+        return tokens.size();
+    }
+
+    @ManagedOperation(description = "Remove all the tokens from the cache")
+    public void clear() {
+        tokens.clear();
+    }
+
+    /**
+     * The SHA-256 digest of a token, stored as four longs.
+     */
+    private static final class Key {
+
+        private final long a;
+        private final long b;
+        private final long c;
+        private final long d;
+
+        private Key(ByteBuffer digest) {
+            this.a = digest.getLong();
+            this.b = digest.getLong();
+            this.c = digest.getLong();
+            this.d = digest.getLong();
+        }
+
+        private static Key of(String token) {
+            MessageDigest digest = DIGEST.get();
+            return new Key(ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.US_ASCII))));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return a == key.a && b == key.b && c == key.c && d == key.d;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (a ^ (a >>> 32));
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package eus.klimu.security;
 
 import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.auth0.jwt.interfaces.JWTVerifier;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import eus.klimu.users.domain.service.definition.RevokedTokenService;
 import lombok.extern.slf4j.Slf4j;
 import org.json.JSONObject;
 import org.springframework.http.MediaType;
@@ -13,16 +13,19 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.User;
+import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
-import static java.util.Arrays.stream;
-
+/**
+ * Generate and verify the JSON Web Tokens of the application. A single instance is shared by the whole
+ * application, and the tokens that have already been verified are kept on a cache until they expire.
+ */
 @Slf4j
+@Component
 public class TokenManagement {
 
     /**
@@ -52,37 +55,52 @@ public class TokenManagement {
      */
     public static final String REFRESH_TOKEN = "refreshToken";
     /**
-     * The algorithm of token encryption.
+     * The keys used for signing and verifying the tokens.
+     */
+    private final JwtKeyRing keyRing;
+    /**
+     * The tokens that have already been verified.
+     */
+    private final TokenCache tokenCache;
+    /**
+     * The tokens that can no longer be used.
      */
-    private final Algorithm algorithm;
+    private final RevokedTokenService revokedTokenService;
     /**
-     * The JSON Web Token Verifier.
+     * Writes the JSON responses.
      */
-    private final JWTVerifier verifier;
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
      * Create a new instance of a token management.
+     * @param keyRing The keys used for signing and verifying the tokens.
+     * @param tokenCache The cache for the tokens that have already been verified.
+     * @param revokedTokenService The service of the revoked tokens.
      */
-    public TokenManagement() {
-        algorithm = Algorithm.HMAC256("klimu-secret".getBytes(StandardCharsets.UTF_8));
-        verifier = JWT.require(algorithm).build();
+    public TokenManagement(JwtKeyRing keyRing, TokenCache tokenCache, RevokedTokenService revokedTokenService) {
+        this.keyRing = keyRing;
+        this.tokenCache = tokenCache;
+        this.revokedTokenService = revokedTokenService;
     }
 
     /**
-     * Generate a token from a user.
+     * Generate a token from a user. Each token gets a unique identifier (jti claim), so it can be revoked.
      * @param user The user the token is going to be generated from.
      * @param requestURL The URL that requested the token.
      * @param durationTime The duration of the token.
      * @return A new JWT token.
      */
     public String generateToken(User user, String requestURL, int durationTime) {
+        SigningKey signingKey = keyRing.getActiveKey();
         return JWT.create()
+                .withKeyId(signingKey.getId())
+                .withJWTId(UUID.randomUUID().toString())
                 .withSubject(user.getUsername())
                 .withExpiresAt(new Date(System.currentTimeMillis() + durationTime))
                 .withIssuer(requestURL)
                 .withClaim(ROLES, user.getAuthorities().stream()
                         .map(GrantedAuthority::getAuthority).collect(Collectors.toList()))
-                .sign(algorithm);
+                .sign(signingKey.getAlgorithm());
     }
 
     /**
@@ -101,7 +119,7 @@ public class TokenManagement {
         response.setStatus(HttpServletResponse.SC_CREATED);
         response.setContentType(MediaType.APPLICATION_JSON_VALUE);
 
-        new ObjectMapper().writeValue(response.getOutputStream(), responseBody);
+        objectMapper.writeValue(response.getOutputStream(), responseBody);
         log.info("The user has been authenticated, their tokens have been generated");
         response.flushBuffer();
     }
@@ -113,11 +131,23 @@ public class TokenManagement {
      * @throws IOException Generated if any operation failed.
      */
     public void setErrorOnResponse(String errorMsg, HttpServletResponse response) throws IOException {
+        setErrorOnResponse(errorMsg, HttpServletResponse.SC_FORBIDDEN, response);
+    }
+
+    /**
+     * Set an error message on the response with a specific status.
+     * @param errorMsg The error message.
+     * @param status The HTTP status of the response.
+     * @param response The HttpServletResponse from the server.
+     * @throws IOException Generated if any operation failed.
+     */
+    public void setErrorOnResponse(String errorMsg, int status, HttpServletResponse response) throws IOException {
         Map<String, String> error = new HashMap<>();
         error.put("errorMsg", errorMsg);
 
-        response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-        new ObjectMapper().writeValue(response.getOutputStream(), error);
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), error);
         response.flushBuffer();
     }
 
@@ -128,18 +158,7 @@ public class TokenManagement {
      * @throws JWTVerificationException Generated if the token could not be verified.
      */
     public UsernamePasswordAuthenticationToken getUsernamePasswordToken(String authToken) throws JWTVerificationException {
-        String token = authToken.substring(TOKEN_SIGNATURE_NAME.length());
-        DecodedJWT decodedJWT = verifier.verify(token);
-
-        String username = decodedJWT.getSubject();
-        String[] roles = decodedJWT.getClaim(ROLES).asArray(String.class);
-
-        Collection<SimpleGrantedAuthority> authorities = new ArrayList<>();
-        stream(roles).forEach(role -> authorities.add(new SimpleGrantedAuthority(role)));
-
-        return new UsernamePasswordAuthenticationToken(
-                username, null, authorities
-        );
+        return verify(authToken.substring(TOKEN_SIGNATURE_NAME.length())).toAuthentication();
     }
 
     /**
@@ -149,16 +168,86 @@ public class TokenManagement {
      * @throws JWTVerificationException Generated if the token could not be verified.
      */
     public User getUserFromToken(String authToken) throws JWTVerificationException {
-        String token = authToken.substring(TOKEN_SIGNATURE_NAME.length());
-        DecodedJWT decodedJWT = verifier.verify(token);
+        VerifiedToken verifiedToken = verify(authToken.substring(TOKEN_SIGNATURE_NAME.length()));
+        return new User(verifiedToken.getUsername(), "null", verifiedToken.getAuthorities());
+    }
 
-        String username = decodedJWT.getSubject();
-        Collection<String> roles = decodedJWT.getClaim(ROLES).asList(String.class);
+    /**
+     * Verify a token and get its claims.
+     * @param authToken The JWT token, with or without the signature name.
+     * @return The verified token.
+     * @throws JWTVerificationException Generated if the token could not be verified.
+     */
+    public VerifiedToken introspect(String authToken) throws JWTVerificationException {
+        if (authToken.startsWith(TOKEN_SIGNATURE_NAME)) {
+            authToken = authToken.substring(TOKEN_SIGNATURE_NAME.length());
+        }
+        return verify(authToken);
+    }
 
-        Collection<SimpleGrantedAuthority> authorities = new ArrayList<>();
-        roles.forEach(role -> authorities.add(new SimpleGrantedAuthority(role)));
+    /**
+     * Revoke a token, so it can no longer be used even if it hasn't expired.
+     * @param authToken The JWT token, with the signature name.
+     * @return False if the token had already been revoked, which means the token has been used twice.
+     * @throws JWTVerificationException Generated if the token could not be verified.
+     */
+    public boolean revokeToken(String authToken) throws JWTVerificationException {
+        String token = authToken.substring(TOKEN_SIGNATURE_NAME.length());
+        VerifiedToken verifiedToken = verify(token);
+
+        if (verifiedToken.getTokenId() == null) {
+            throw new JWTVerificationException("The token can't be revoked");
+        }
+        boolean revoked = revokedTokenService.revoke(
+                verifiedToken.getTokenId(), verifiedToken.getUsername(), new Date(verifiedToken.getExpiresAt())
+        );
+        tokenCache.remove(token);
+        return revoked;
+    }
 
-        return new User(username, "null", authorities);
+    /**
+     * Verify a token, using the cache if the token has already been verified. The revoked tokens are
+     * rejected even if they are on the cache.
+     * @param token The JWT token, without the signature name.
+     * @return The verified token.
+     * @throws JWTVerificationException Generated if the token could not be verified.
+     */
+    private VerifiedToken verify(String token) throws JWTVerificationException {
+        VerifiedToken verifiedToken = tokenCache.get(token);
+
+        if (verifiedToken == null) {
+            // Choose the key from the kid header before checking the signature.
+            DecodedJWT decodedJWT = JWT.decode(token);
+            JWTVerifier verifier = keyRing.getVerifier(decodedJWT.getKeyId());
+
+            if (verifier == null) {
+                throw new JWTVerificationException("The token was not signed with a known key");
+            }
+            verifier.verify(decodedJWT);
+
+            String username = decodedJWT.getSubject();
+            List<String> roles = decodedJWT.getClaim(ROLES).asList(String.class);
+
+            Collection<GrantedAuthority> authorities = new ArrayList<>();
+            if (roles != null) {
+                roles.forEach(role -> authorities.add(new SimpleGrantedAuthority(role)));
+            }
+            Date expiresAt = decodedJWT.getExpiresAt();
+            verifiedToken = new VerifiedToken(
+                    username, decodedJWT.getId(), Collections.unmodifiableCollection(authorities),
+                    expiresAt != null ? expiresAt.getTime() : System.currentTimeMillis()
+            );
+            if (expiresAt != null) {
+                // Tokens without an expiration date are never cached.
+                tokenCache.put(token, verifiedToken);
+            }
+        }
+
+        if (verifiedToken.getTokenId() != null && revokedTokenService.isRevoked(verifiedToken.getTokenId())) {
+            tokenCache.remove(token);
+            throw new JWTVerificationException("The token has been revoked");
+        }
+        return verifiedToken;
     }
 
 }
@@ -0,0 +1,196 @@
+package eus.klimu.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of the users loaded for the login, so the database is only queried once per user until the
+ * user or its roles change. The authorities are interned by role name, so every user with the same role shares
+ * the same authority instance.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "eus.klimu:type=UserDetailsCache", description = "Cache of the users loaded for the login")
+public class UserDetailsCache {
+
+    /**
+     * The authorities, one instance per role name.
+     */
+    private final Map<String, GrantedAuthority> authorities = new ConcurrentHashMap<>();
+    /**
+     * The cached users, stored by their username.
+     */
+    private final Map<String, Entry> users = new ConcurrentHashMap<>();
+    /**
+     * The maximum amount of users that can be stored at the same time.
+     */
+    private final int maxSize;
+    /**
+     * The time a user is kept on the cache, in milliseconds.
+     */
+    private final long ttlMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Create a new instance of the user details cache.
+     * @param maxSize The maximum amount of users that can be stored at the same time.
+     * @param ttlSeconds The time a user is kept on the cache, in seconds.
+     */
+    public UserDetailsCache(
+            @Value("${klimu.security.user-cache.max-size:10000}") int maxSize,
+            @Value("${klimu.security.user-cache.ttl-seconds:600}") long ttlSeconds
+    ) {
+        this.maxSize = maxSize;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+    }
+
+    /**
+     * Get the authority of a role.
+     * @param roleName The name of the role.
+     * @return The shared authority for that role.
+     */
+    public GrantedAuthority authority(String roleName) {
+        return authorities.computeIfAbsent(roleName, SimpleGrantedAuthority::new);
+    }
+
+    /**
+     * Get a user from the cache, loading it if it's not cached. A new UserDetails instance is returned
+     * every time, as Spring Security erases the credentials of the user after the login.
+     * @param username The username of the user.
+     * @param loader Loads the user from the database if it's not cached.
+     * @return The details of the user.
+     */
+    public UserDetails get(String username, Supplier<UserDetails> loader) {
+        long now = System.currentTimeMillis();
+        Entry entry = users.get(username);
+
+        if (entry != null && now < entry.expiresAt) {
+            hits.increment();
+        } else {
+            misses.increment();
+            UserDetails user = loader.get();
+            List<GrantedAuthority> userAuthorities = new ArrayList<>();
+            user.getAuthorities().forEach(authority -> userAuthorities.add(authority(authority.getAuthority())));
+
+            entry = new Entry(user.getPassword(), Collections.unmodifiableList(userAuthorities), now + ttlMillis);
+            if (users.size() >= maxSize) {
+                evict(now);
+            }
+            users.put(username, entry);
+        }
+        return new User(username, entry.password, entry.authorities);
+    }
+
+    /**
+     * Remove a user from the cache. If there is a transaction running the user is removed again after the
+     * commit, so a login during the transaction can't cache the old version of the user.
+     * @param username The username of the user.
+     */
+    public void invalidate(String username) {
+        if (username == null) {
+            return;
+        }
+        invalidations.increment();
+        users.remove(username);
+        afterCommit(() -> users.remove(username));
+    }
+
+    /**
+     * Remove every user from the cache, used when a role changes.
+     */
+    @ManagedOperation(description = "Remove all the users from the cache")
+    public void invalidateAll() {
+        invalidations.increment();
+        users.clear();
+        afterCommit(users::clear);
+    }
+
+    /**
+     * Run an action after the current transaction commits, if there is one.
+     * @param action The action that is going to run.
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Make room on the cache. The expired users are removed first and, if the cache is still full, a tenth of the
+     * remaining entries are dropped.
+     * @param now The current time in milliseconds since the epoch.
+     */
+    private synchronized void evict(long now) {
+        if (users.size() < maxSize) {
+            return;
+        }
+        users.values().removeIf(entry -> now >= entry.expiresAt);
+
+        Iterator<String> iterator = users.keySet().iterator();
+        int target = maxSize - Math.max(1, maxSize / 10);
+        while (users.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    @ManagedAttribute(description = "Amount of logins served from the cache")
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @ManagedAttribute(description = "Amount of logins that had to query the database")
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @ManagedAttribute(description = "Amount of times a user was removed because it changed")
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    @ManagedAttribute(description = "Amount of users currently cached")
+    public int getSize() {
+        return users.size();
+    }
+
+    /**
+     * The cached information of a user.
+     */
+    private static final class Entry {
+
+        private final String password;
+        private final List<GrantedAuthority> authorities;
+        private final long expiresAt;
+
+        private Entry(String password, List<GrantedAuthority> authorities, long expiresAt) {
+            this.password = password;
+            this.authorities = authorities;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
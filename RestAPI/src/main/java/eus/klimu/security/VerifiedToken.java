@@ -0,0 +1,53 @@
+package eus.klimu.security;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * The result of verifying a JSON Web Token. It keeps the claims the application needs, so they can be reused
+ * while the token is still valid. It's shared by every request with the same token, so it's immutable.
+ */
+@Getter
+@RequiredArgsConstructor
+public class VerifiedToken {
+
+    /**
+     * The username the token was generated for.
+     */
+    private final String username;
+    /**
+     * The identifier of the token, from the jti claim. Null for tokens generated without one.
+     */
+    private final String tokenId;
+    /**
+     * The authorities of the user, generated from the roles claim.
+     */
+    private final Collection<GrantedAuthority> authorities;
+    /**
+     * The moment the token expires, in milliseconds since the epoch.
+     */
+    private final long expiresAt;
+
+    /**
+     * Build the authentication token for Spring Security. A new one is built for each request, as Spring
+     * Security changes it while the request is handled.
+     * @return The authentication token of the user.
+     */
+    public UsernamePasswordAuthenticationToken toAuthentication() {
+        return new UsernamePasswordAuthenticationToken(username, null, authorities);
+    }
+
+    /**
+     * Check if the token has expired.
+     * @param now The current time in milliseconds since the epoch.
+     * @return True if the token is no longer valid at that time.
+     */
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+}
@@ -1,7 +1,12 @@
 package eus.klimu.security.filter;
 
+import eus.klimu.security.LoginThrottle;
+import eus.klimu.security.LoginThrottledException;
+import eus.klimu.security.PasswordHashingRejectedException;
 import eus.klimu.security.TokenManagement;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -26,13 +31,26 @@ public class AuthenticationFilter extends UsernamePasswordAuthenticationFilter {
      * Manager of the authentication of the users.
      */
     private final AuthenticationManager authenticationManager;
+    /**
+     * Generates the tokens of the authenticated users.
+     */
+    private final TokenManagement tokenManagement;
+    /**
+     * Limits the login attempts per username and address.
+     */
+    private final LoginThrottle loginThrottle;
 
     /**
      * Create a new instance of an AuthenticationFilter.
      * @param authenticationManager The manager of the authentication of the user.
+     * @param tokenManagement The shared token management of the application.
+     * @param loginThrottle The limit of login attempts per username and address.
      */
-    public AuthenticationFilter(AuthenticationManager authenticationManager) {
+    public AuthenticationFilter(AuthenticationManager authenticationManager, TokenManagement tokenManagement,
+                                LoginThrottle loginThrottle) {
         this.authenticationManager = authenticationManager;
+        this.tokenManagement = tokenManagement;
+        this.loginThrottle = loginThrottle;
     }
 
     /**
@@ -55,6 +73,9 @@ public class AuthenticationFilter extends UsernamePasswordAuthenticationFilter {
             log.error("Username or password were null, authentication won't be possible");
         }
 
+        // Reject the attempt before checking the password if there have been too many attempts.
+        loginThrottle.acquire(username, request.getRemoteAddr());
+
         // Create an authentication token for the user.
         UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
                 username, password
@@ -75,7 +96,7 @@ public class AuthenticationFilter extends UsernamePasswordAuthenticationFilter {
     protected void successfulAuthentication(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
                                             Authentication authentication) throws IOException, ServletException {
         User user = (User) authentication.getPrincipal();
-        TokenManagement tokenManagement = new TokenManagement();
+        loginThrottle.reset(user.getUsername());
 
         // Generate access and refresh tokens.
         String accessToken = tokenManagement.generateToken(
@@ -99,7 +120,21 @@ public class AuthenticationFilter extends UsernamePasswordAuthenticationFilter {
     @Override
     protected void unsuccessfulAuthentication(HttpServletRequest request, HttpServletResponse response,
                                               AuthenticationException failed) throws IOException, ServletException {
-        TokenManagement tokenManagement = new TokenManagement();
+        if (failed instanceof LoginThrottledException) {
+            // Too many attempts for this username or address.
+            response.setHeader(HttpHeaders.RETRY_AFTER,
+                    String.valueOf(((LoginThrottledException) failed).getRetryAfterSeconds()));
+            tokenManagement.setErrorOnResponse(failed.getMessage(), HttpStatus.TOO_MANY_REQUESTS.value(), response);
+            return;
+        }
+        if (failed instanceof PasswordHashingRejectedException) {
+            // The server is too busy to check the password, the client should try again later.
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            tokenManagement.setErrorOnResponse(
+                    failed.getMessage(), HttpServletResponse.SC_SERVICE_UNAVAILABLE, response
+            );
+            return;
+        }
         tokenManagement.setErrorOnResponse("You don't have permission to access this path", response);
     }
 }
@@ -1,5 +1,6 @@
 package eus.klimu.security.filter;
 
+import eus.klimu.security.PublicPaths;
 import eus.klimu.security.TokenManagement;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -18,6 +19,19 @@ import java.io.IOException;
 @Slf4j
 public class AuthorizationFilter extends OncePerRequestFilter {
 
+    /**
+     * Verifies the tokens of the requests.
+     */
+    private final TokenManagement tokenManagement;
+
+    /**
+     * Create a new instance of an AuthorizationFilter.
+     * @param tokenManagement The shared token management of the application.
+     */
+    public AuthorizationFilter(TokenManagement tokenManagement) {
+        this.tokenManagement = tokenManagement;
+    }
+
     /**
      * Filter each request to the server, allowing or denying access if needed.
      * @param request The HttpServletRequest to the server.
@@ -29,16 +43,8 @@ public class AuthorizationFilter extends OncePerRequestFilter {
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
-        if (
-                !request.getServletPath().startsWith("/login") &&
-                !request.getServletPath().startsWith("/role/name/") &&
-                !request.getServletPath().equals("/channel/all") &&
-                !request.getServletPath().equals("/user/create") &&
-                !request.getServletPath().equals("/user-notification/create") &&
-                !request.getServletPath().startsWith("/github-webhook")
-        ) {
-            TokenManagement tokenManagement = new TokenManagement();
-
+        // Public paths don't need any token.
+        if (!PublicPaths.isPublic(request.getServletPath())) {
             // Check the access token.
             String accessToken = request.getHeader(TokenManagement.ACCESS_TOKEN);
 
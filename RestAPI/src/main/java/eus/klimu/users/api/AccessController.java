@@ -2,11 +2,18 @@ package eus.klimu.users.api;
 
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.google.gson.Gson;
+import eus.klimu.security.JwtKeyRing;
+import eus.klimu.security.TokenBatchRejectedException;
+import eus.klimu.security.TokenBatchVerifier;
 import eus.klimu.security.TokenManagement;
+import eus.klimu.security.VerifiedToken;
+import eus.klimu.users.domain.model.TokenIntrospectionDTO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.stereotype.Controller;
@@ -16,7 +23,10 @@ import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import javax.servlet.http.HttpServletRequest;
 import java.net.URI;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Manage the user access to the server, providing _Json Web Tokens_ to those users that have already been
@@ -29,6 +39,24 @@ import java.util.Map;
 public class AccessController {
 
     private final Gson gson;
+    /**
+     * A class that allows managing the authorization tokens of the user.
+     */
+    private final TokenManagement tokenManagement;
+    /**
+     * The keys used for signing and verifying the tokens.
+     */
+    private final JwtKeyRing keyRing;
+    /**
+     * Verifies the batches of tokens on its own bounded executor.
+     */
+    private final TokenBatchVerifier tokenBatchVerifier;
+
+    /**
+     * The maximum amount of tokens that can be verified on a single request.
+     */
+    @Value("${klimu.access.batch.max-size:100}")
+    private int maxBatchSize;
 
     /**
      * <p>Get a UsernamePasswordToken from a JWT token. Transforms the UsernamePasswordToken into a JSON string.</p>
@@ -46,7 +74,6 @@ public class AccessController {
      */
     @GetMapping(value = "/auth/{token}")
     public ResponseEntity<String> getUsernamePasswordToken(@PathVariable String token) {
-        TokenManagement tokenManagement = new TokenManagement();
         log.info("Authenticating token");
 
         if (token != null) {
@@ -60,9 +87,67 @@ public class AccessController {
         }
     }
 
+    /**
+     * <p>Verify a list of tokens on a single request. The tokens are verified in parallel on a bounded executor and
+     * the result of each token is returned on the same position it had on the request, with its subject, roles and
+     * expiration date if the token is valid.</p>
+     *
+     * <ul>
+     *     <li>Consumes: application/json</li>
+     *     <li>Produces: application/json</li>
+     *     <li>Requires: Access and Refresh tokens as headers.</li>
+     * </ul>
+     *
+     * <p><a href='https://klimu.eus/RestAPI/access/auth/batch'>https://klimu.eus/RestAPI/access/auth/batch</a></p>
+     *
+     * @param tokens The list of JWT tokens, with or without the signature name.
+     * @return A 200 ok with the result of each token. If the list is empty or too big, returns a 400 bad request,
+     * and if the server is too busy, a 503 service unavailable.
+     */
+    @PostMapping(
+            value = "/auth/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public ResponseEntity<List<TokenIntrospectionDTO>> introspectTokens(@RequestBody List<String> tokens) {
+        if (tokens == null || tokens.isEmpty() || tokens.size() > maxBatchSize) {
+            log.error("A batch of tokens must have between 1 and {} tokens", maxBatchSize);
+            return ResponseEntity.badRequest().build();
+        }
+        log.info("Authenticating {} token(s)", tokens.size());
+
+        try {
+            return ResponseEntity.ok().body(tokenBatchVerifier.verify(tokens).stream()
+                    .map(this::introspection)
+                    .collect(Collectors.toList()));
+        } catch (TokenBatchRejectedException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        }
+    }
+
+    /**
+     * Transform the result of verifying a token of a batch.
+     * @param verifiedToken The verified token, or null if the token is not valid.
+     * @return The result of verifying the token.
+     */
+    private TokenIntrospectionDTO introspection(VerifiedToken verifiedToken) {
+        if (verifiedToken == null) {
+            return TokenIntrospectionDTO.inactive();
+        }
+        return new TokenIntrospectionDTO(
+                true, verifiedToken.getUsername(),
+                verifiedToken.getAuthorities().stream()
+                        .map(GrantedAuthority::getAuthority).collect(Collectors.toList()),
+                TimeUnit.MILLISECONDS.toSeconds(verifiedToken.getExpiresAt())
+        );
+    }
+
     /**
      * <p>Get a new pack of tokens (accessToken and refreshToken) from the server as a JSON. Requires a request body
-     * with an access and a refresh token. One of the tokens need to not be expired for it to work.</p>
+     * with an access and a refresh token. One of the tokens need to not be expired for it to work. When the tokens
+     * are refreshed with the refresh token, the old refresh token is revoked and can't be used again.</p>
      *
      * <ul>
      *     <li>Produces: application/json</li>
@@ -77,7 +162,6 @@ public class AccessController {
     @GetMapping(value = "/refresh")
     public ResponseEntity<Map<String, String>> refreshTokens(HttpServletRequest request) {
         log.info("Trying to refresh tokens");
-        TokenManagement tokenManagement = new TokenManagement();
         Map<String, String> tokens = new HashMap<>();
 
         tokens.put(TokenManagement.ACCESS_TOKEN, request.getHeader(TokenManagement.ACCESS_TOKEN));
@@ -98,8 +182,17 @@ public class AccessController {
                     UsernamePasswordAuthenticationToken authToken = tokenManagement.getUsernamePasswordToken(refreshToken);
                     SecurityContextHolder.getContext().setAuthentication(authToken);
 
-                    // Refresh the tokens.
+                    // Rotate the tokens, the refresh token can only be used once.
                     User user = tokenManagement.getUserFromToken(refreshToken);
+                    if (!tokenManagement.revokeToken(refreshToken)) {
+                        // Another request has already rotated this refresh token, it's being replayed.
+                        tokens.remove(TokenManagement.ACCESS_TOKEN);
+                        tokens.remove(TokenManagement.REFRESH_TOKEN);
+                        tokens.put("errorMsg", "The refresh token has already been used");
+
+                        log.warn("The refresh token of user {} has been used twice", user.getUsername());
+                        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(tokens);
+                    }
                     tokens.put(
                             TokenManagement.ACCESS_TOKEN,
                             tokenManagement.generateToken(user, request.getRequestURL().toString(), TokenManagement.ACCESS_TIME)
@@ -130,6 +223,57 @@ public class AccessController {
         return ResponseEntity.ok().body(tokens);
     }
 
+    /**
+     * <p>Revoke the access and refresh tokens of the user, so they can no longer be used even if they haven't
+     * expired. Used when the user logs out.</p>
+     *
+     * <ul>
+     *     <li>Requires: Access and Refresh tokens as headers.</li>
+     * </ul>
+     *
+     * <p><a href='https://klimu.eus/RestAPI/access/revoke'>https://klimu.eus/RestAPI/access/revoke</a></p>
+     *
+     * @param request The HttpServletRequest made to the server.
+     * @return A 200 ok if at least one of the tokens was revoked, if not, a 400 bad request.
+     */
+    @PostMapping(value = "/revoke")
+    public ResponseEntity<Object> revokeTokens(HttpServletRequest request) {
+        log.info("Revoking tokens");
+        boolean revoked = false;
+
+        for (String header : new String[] { TokenManagement.ACCESS_TOKEN, TokenManagement.REFRESH_TOKEN }) {
+            String token = request.getHeader(header);
+            if (token != null && token.startsWith(TokenManagement.TOKEN_SIGNATURE_NAME)) {
+                try {
+                    tokenManagement.revokeToken(token);
+                    revoked = true;
+                } catch (JWTVerificationException e) {
+                    log.warn("The {} could not be revoked: {}", header, e.getMessage());
+                }
+            }
+        }
+        return revoked ? ResponseEntity.ok().build() : ResponseEntity.badRequest().build();
+    }
+
+    /**
+     * <p>Get the public keys used for signing the tokens as a JSON Web Key Set. Other services can use them for
+     * verifying the tokens locally, without calling the server.</p>
+     *
+     * <ul>
+     *     <li>Produces: application/json</li>
+     * </ul>
+     *
+     * <p><a href='https://klimu.eus/RestAPI/access/jwks'>https://klimu.eus/RestAPI/access/jwks</a></p>
+     *
+     * @return A 200 ok with the JSON Web Key Set.
+     */
+    @GetMapping(value = "/jwks", produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<Map<String, Object>> getJsonWebKeySet() {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.maxAge(5, TimeUnit.MINUTES).cachePublic())
+                .body(keyRing.toJwks());
+    }
+
     /**
      * <p>Obtains an error message as a JSON with a DENIED type of response.</p>
      *
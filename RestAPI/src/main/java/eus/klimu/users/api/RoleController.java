@@ -1,5 +1,6 @@
 package eus.klimu.users.api;
 
+import eus.klimu.pagination.KeysetPagination;
 import eus.klimu.users.domain.model.Role;
 import eus.klimu.users.domain.model.RoleDTO;
 import eus.klimu.users.domain.service.definition.RoleService;
@@ -11,6 +12,8 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URI;
 import java.util.List;
 
@@ -28,6 +31,10 @@ public class RoleController {
      * A class that allows modifying the roles.
      */
     private final RoleService roleService;
+    /**
+     * Reads the lists by pages.
+     */
+    private final KeysetPagination keysetPagination;
 
     /**
      * <p>Get a role based on its ID.</p>
@@ -81,7 +88,8 @@ public class RoleController {
     }
 
     /**
-     * <p>Get all the roles.</p>
+     * <p>Get all the Roles from the database. They are read by batches and written as they are read, so the
+     * memory used doesn't depend on the amount of roles.</p>
      *
      * <p><a href="https://klimu.eus/RestAPI/role/all">https://klimu.eus/RestAPI/role/all</a></p>
      *
@@ -90,14 +98,42 @@ public class RoleController {
      *     <li>Requires: Access and Refresh tokens as headers.</li>
      * </ul>
      *
-     * @return A 200 ok if the roles were found or a 400 bad request if it wasn't.
+     * @param response The response the roles are written to.
+     * @throws IOException Generated if the response could not be written.
+     */
+    @GetMapping(
+            value = "/all",
+            params = {"!after", "!limit"},
+            produces = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public void getAllRoles(HttpServletResponse response) throws IOException {
+        keysetPagination.stream(response, roleService::getRolesAfter, Role::getId);
+    }
+
+    /**
+     * <p>Get a page of the Roles from the database, in order of their ID. The ID to continue from is sent on
+     * the X-Next-Cursor header, and it's missing on the last page.</p>
+     *
+     * <p><a href="https://klimu.eus/RestAPI/role/all?after={cursor}&limit={limit}">https://klimu.eus/RestAPI/role/all?after={cursor}&limit={limit}</a></p>
+     *
+     * <ul>
+     *     <li>Produces: application/json, application/xml</li>
+     *     <li>Requires: Access and Refresh tokens as headers.</li>
+     * </ul>
+     *
+     * @param after The ID of the last role of the previous page, none for the first page.
+     * @param limit The maximum amount of roles on the page, up to 1000.
+     * @return A 200 ok with the page or a 400 bad request if the parameters are not valid.
      */
     @GetMapping(
             value = "/all",
             produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_XML_VALUE}
     )
-    public ResponseEntity<List<Role>> getAllRoles() {
-        return ResponseEntity.ok().body(roleService.getAllRoles());
+    public ResponseEntity<List<Role>> getAllRoles(
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "500") int limit
+    ) {
+        return keysetPagination.page(roleService::getRolesAfter, Role::getId, after, limit);
     }
 
     /**
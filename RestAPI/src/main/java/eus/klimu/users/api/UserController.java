@@ -10,12 +10,15 @@ import eus.klimu.notification.domain.model.NotificationType;
 import eus.klimu.notification.domain.service.definition.LocalizedNotificationService;
 import eus.klimu.notification.domain.service.definition.NotificationTypeService;
 import eus.klimu.notification.domain.service.definition.UserNotificationService;
+import eus.klimu.security.PasswordHashingRejectedException;
 import eus.klimu.security.TokenManagement;
 import eus.klimu.users.domain.model.AppUser;
 import eus.klimu.users.domain.model.AppUserDTO;
+import eus.klimu.users.domain.model.SubscriberDTO;
 import eus.klimu.users.domain.service.definition.RoleService;
 import eus.klimu.users.domain.service.definition.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -24,7 +27,6 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.URI;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -73,7 +75,7 @@ public class UserController {
     /**
      * A class that allows managing the authorization tokens of the user.
      */
-    private final TokenManagement tokenManagement = new TokenManagement();
+    private final TokenManagement tokenManagement;
 
     /**
      * <p>Fetch an AppUser based on its ID.</p>
@@ -174,7 +176,8 @@ public class UserController {
     }
 
     /**
-     * <p>Get a list of AppUsers that have a localized notification configured.</p>
+     * <p>Get a list of AppUsers that have a localized notification configured, together with the channel they
+     * want to receive it on. A user subscribed on more than one channel appears once per channel.</p>
      *
      * <p><a href="https://klimu.eus/RestAPI/user/{locationId}/{typeId}">https://klimu.eus/RestAPI/user/{locationId}/{typeId}</a></p>
      *
@@ -185,26 +188,14 @@ public class UserController {
      *
      * @param locationId The ID of the location that is going to be used on the query.
      * @param typeId The ID of the notification type that is going to be used on the query.
-     * @return A 200 ok if the AppUsers were found or a 400 bad request if it wasn't.
+     * @return A 200 ok with the subscribers of the localized notification.
      */
     @GetMapping(value = "/{locationId}/{typeId}", produces = {MediaType.APPLICATION_JSON_VALUE})
-    public ResponseEntity<List<AppUser>> getUsersWithNotifications(
+    public ResponseEntity<List<SubscriberDTO>> getUsersWithNotifications(
             @PathVariable Long locationId,
             @PathVariable Long typeId
     ) {
-        List<AppUser> users = userService.findAll();
-        LocalizedNotification ln = localizedNotificationService.getLocalizedNotification(
-                locationService.getLocationById(locationId),
-                notificationTypeService.getNotificationType(typeId)
-        );
-
-        List<AppUser> notifiedUsers = new ArrayList<>();
-        users.forEach(user -> user.getNotifications().forEach(userNotification -> {
-            if (!notifiedUsers.contains(user) && userNotification.getNotifications().contains(ln)) {
-                notifiedUsers.add(user);
-            }
-        }));
-        return ResponseEntity.ok().body(notifiedUsers);
+        return ResponseEntity.ok().body(userService.getSubscribers(locationId, typeId));
     }
 
     /**
@@ -231,7 +222,11 @@ public class UserController {
         String msg = userService.checkUser(newUser);
 
         if (msg.equals("OK")) {
-            newUser = userService.saveUser(newUser);
+            try {
+                newUser = userService.saveUser(newUser);
+            } catch (PasswordHashingRejectedException e) {
+                return serviceUnavailable(e);
+            }
             return ResponseEntity.created(
                     // Specify where has the object been created.
                     URI.create(ServletUriComponentsBuilder.fromCurrentContextPath().path("/user/create").toUriString())
@@ -270,9 +265,13 @@ public class UserController {
                         .header(ERROR_HEADER, user.getUsername() + " => " + msg).build();
             }
         }
-        return ResponseEntity.created(
-                URI.create(ServletUriComponentsBuilder.fromCurrentContextPath().path("/user/create/all").toUriString())
-        ).body(userService.saveAllUsers(users));
+        try {
+            return ResponseEntity.created(
+                    URI.create(ServletUriComponentsBuilder.fromCurrentContextPath().path("/user/create/all").toUriString())
+            ).body(userService.saveAllUsers(users));
+        } catch (PasswordHashingRejectedException e) {
+            return serviceUnavailable(e);
+        }
     }
 
     /**
@@ -471,4 +470,17 @@ public class UserController {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
     }
+
+    /**
+     * Generate a 503 service unavailable response, used when the server is too busy to hash the passwords.
+     * @param e The exception generated while hashing the password.
+     * @param <T> The type of the response body.
+     * @return A 503 service unavailable with a Retry-After header.
+     */
+    private <T> ResponseEntity<T> serviceUnavailable(PasswordHashingRejectedException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .header(ERROR_HEADER, e.getMessage())
+                .build();
+    }
 }
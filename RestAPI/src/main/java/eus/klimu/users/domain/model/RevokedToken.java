@@ -0,0 +1,54 @@
+package eus.klimu.users.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A JSON Web Token that can no longer be used, identified by its jti claim. The entry is only needed
+ * until the token expires, after that the token is rejected anyway.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity(name = "revoked_token")
+@Table(indexes = {
+        @Index(name = "idx_revoked_token_revoked_at", columnList = "revokedAt"),
+        @Index(name = "idx_revoked_token_expires_at", columnList = "expiresAt")
+})
+public class RevokedToken {
+
+    /**
+     * The identification number of the revoked token.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "revoked_token_seq")
+    @GenericGenerator(name = "revoked_token_seq", strategy = "eus.klimu.database.PooledSequenceGenerator")
+    private Long id;
+    /**
+     * The identifier of the token, from the jti claim.
+     */
+    @Column(unique = true, nullable = false)
+    private String tokenId;
+    /**
+     * The username the token was generated for.
+     */
+    private String username;
+    /**
+     * The moment the token expires.
+     */
+    @Column(nullable = false)
+    private Date expiresAt;
+    /**
+     * The moment the token was revoked.
+     */
+    @Column(nullable = false)
+    private Date revokedAt;
+
+}
@@ -0,0 +1,60 @@
+package eus.klimu.users.domain.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+
+/**
+ * The Data Transfer Object for a user subscribed to a localized notification, with the contact information
+ * of the user and the channel the notification has to be sent on. A user subscribed on more than one channel
+ * appears once per channel.
+ */
+@Getter
+@Setter
+@XmlRootElement
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubscriberDTO implements Serializable {
+
+    /**
+     * The identification number of the AppUser.
+     */
+    private Long id;
+    /**
+     * The username of the AppUser.
+     */
+    private String username;
+    /**
+     * The name of the AppUser.
+     */
+    private String name;
+    /**
+     * The surname of the AppUser.
+     */
+    private String surname;
+    /**
+     * The email of the AppUser.
+     */
+    private String email;
+    /**
+     * The telephone number of the AppUser.
+     */
+    private String number;
+    /**
+     * The telegram ID of the AppUser.
+     */
+    private String telegramId;
+    /**
+     * The identification number of the channel.
+     */
+    private Long channelId;
+    /**
+     * The name of the channel.
+     */
+    private String channelName;
+
+}
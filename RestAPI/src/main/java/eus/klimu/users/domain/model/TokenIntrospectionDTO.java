@@ -0,0 +1,50 @@
+package eus.klimu.users.domain.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The Data Transfer Object with the result of verifying a token. Only the active tokens
+ * have a subject, roles and expiration date.
+ */
+@Getter
+@Setter
+@XmlRootElement
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TokenIntrospectionDTO implements Serializable {
+
+    /**
+     * True if the token is valid.
+     */
+    private boolean active;
+    /**
+     * The username the token was generated for.
+     */
+    private String sub;
+    /**
+     * The roles of the user.
+     */
+    private List<String> roles;
+    /**
+     * The moment the token expires, in seconds since the epoch.
+     */
+    private Long exp;
+
+    /**
+     * Generate the result for a token that is not valid.
+     * @return An inactive token introspection.
+     */
+    public static TokenIntrospectionDTO inactive() {
+        return new TokenIntrospectionDTO(false, null, null, null);
+    }
+
+}
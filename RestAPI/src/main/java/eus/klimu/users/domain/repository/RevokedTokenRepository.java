@@ -0,0 +1,42 @@
+package eus.klimu.users.domain.repository;
+
+import eus.klimu.users.domain.model.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Access to the database for the revoked tokens.
+ * Extends from a JpaRepository.
+ */
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, Long> {
+
+    /**
+     * Check if a token has been revoked.
+     * @param tokenId The identifier of the token, from the jti claim.
+     * @return True if the token has been revoked.
+     */
+    boolean existsByTokenId(String tokenId);
+
+    /**
+     * Find the tokens that are still valid and have been revoked after a moment.
+     * @param revokedAt The moment after which the tokens were revoked.
+     * @param now The current time, tokens that expire before it are ignored.
+     * @return A list with the revoked tokens.
+     */
+    List<RevokedToken> findByRevokedAtAfterAndExpiresAtAfter(Date revokedAt, Date now);
+
+    /**
+     * Delete the revoked tokens that have already expired.
+     * @param now The current time.
+     * @return The amount of deleted tokens.
+     */
+    @Modifying
+    @Query("DELETE FROM revoked_token t WHERE t.expiresAt < :now")
+    int deleteExpired(@Param("now") Date now);
+
+}
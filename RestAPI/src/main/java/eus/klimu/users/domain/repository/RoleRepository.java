@@ -1,8 +1,11 @@
 package eus.klimu.users.domain.repository;
 
 import eus.klimu.users.domain.model.Role;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
+
 /**
  * Access to the database for the roles.
  * Extends from a JpaRepository.
@@ -16,4 +19,12 @@ public interface RoleRepository extends JpaRepository<Role, Long> {
      */
     Role findByName(String name);
 
+    /**
+     * Find the roles after an identification number, in order of their identification number.
+     * @param id The identification number of the last role already read.
+     * @param pageable The maximum amount of roles.
+     * @return A list with the roles after that identification number.
+     */
+    List<Role> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
+
 }
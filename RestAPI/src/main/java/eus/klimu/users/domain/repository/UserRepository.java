@@ -1,8 +1,15 @@
 package eus.klimu.users.domain.repository;
 
+import eus.klimu.notification.domain.dispatch.Recipient;
+import eus.klimu.notification.domain.index.SubscriptionRow;
 import eus.klimu.users.domain.model.AppUser;
+import eus.klimu.users.domain.model.SubscriberDTO;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -25,4 +32,43 @@ public interface UserRepository extends JpaRepository<AppUser, Long> {
      */
     Optional<AppUser> findByTelegramId(String telegramId);
 
+    /**
+     * Find the users subscribed to a localized notification, walking from the localized notification through
+     * the user notifications to the users, with one row per user and channel.
+     * @param locationId The identification number of the location.
+     * @param typeId The identification number of the notification type.
+     * @return A list with the subscribers and the channel they are subscribed on.
+     */
+    @Query("SELECT DISTINCT new eus.klimu.users.domain.model.SubscriberDTO(" +
+            "u.id, u.username, u.name, u.surname, u.email, u.number, u.telegramId, c.id, c.name) " +
+            "FROM app_user u JOIN u.notifications un JOIN un.channel c JOIN un.notifications ln " +
+            "WHERE ln.location.id = :locationId AND ln.type.id = :typeId")
+    List<SubscriberDTO> findSubscribers(@Param("locationId") long locationId, @Param("typeId") long typeId);
+
+    /**
+     * Find every subscription of every user, used for building the subscription index.
+     * @return A list with all the subscriptions.
+     */
+    @Query("SELECT new eus.klimu.notification.domain.index.SubscriptionRow(u.id, ln.location.id, ln.type.id, c.id) " +
+            "FROM app_user u JOIN u.notifications un JOIN un.channel c JOIN un.notifications ln")
+    List<SubscriptionRow> findAllSubscriptions();
+
+    /**
+     * Find the subscriptions of a user.
+     * @param userId The identification number of the user.
+     * @return A list with the subscriptions of the user.
+     */
+    @Query("SELECT new eus.klimu.notification.domain.index.SubscriptionRow(u.id, ln.location.id, ln.type.id, c.id) " +
+            "FROM app_user u JOIN u.notifications un JOIN un.channel c JOIN un.notifications ln WHERE u.id = :userId")
+    List<SubscriptionRow> findSubscriptionsOfUser(@Param("userId") long userId);
+
+    /**
+     * Find the contact information of a group of users.
+     * @param ids The identification numbers of the users.
+     * @return A list with the contact information of the users.
+     */
+    @Query("SELECT new eus.klimu.notification.domain.dispatch.Recipient(u.id, u.username, u.email, u.number, u.telegramId) " +
+            "FROM app_user u WHERE u.id IN :ids")
+    List<Recipient> findRecipients(@Param("ids") Collection<Long> ids);
+
 }
@@ -0,0 +1,26 @@
+package eus.klimu.users.domain.service.definition;
+
+import java.util.Date;
+
+/**
+ * Definition of the different functions available for the revoked tokens.
+ */
+public interface RevokedTokenService {
+
+    /**
+     * Revoke a token, so it can no longer be used.
+     * @param tokenId The identifier of the token, from the jti claim.
+     * @param username The username the token was generated for.
+     * @param expiresAt The moment the token expires.
+     * @return False if the token had already been revoked, by this or another instance.
+     */
+    boolean revoke(String tokenId, String username, Date expiresAt);
+
+    /**
+     * Check if a token has been revoked.
+     * @param tokenId The identifier of the token, from the jti claim.
+     * @return True if the token has been revoked.
+     */
+    boolean isRevoked(String tokenId);
+
+}
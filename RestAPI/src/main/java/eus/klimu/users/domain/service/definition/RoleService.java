@@ -69,4 +69,12 @@ public interface RoleService {
      */
     void addRoleToUser(String username, String roleName);
 
+    /**
+     * Get a page of the roles, in order of their identification number.
+     * @param after The identification number of the last role already read.
+     * @param limit The maximum amount of roles.
+     * @return A list with the roles after that identification number.
+     */
+    List<Role> getRolesAfter(long after, int limit);
+
 }
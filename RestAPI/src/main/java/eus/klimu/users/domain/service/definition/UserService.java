@@ -1,6 +1,7 @@
 package eus.klimu.users.domain.service.definition;
 
 import eus.klimu.users.domain.model.AppUser;
+import eus.klimu.users.domain.model.SubscriberDTO;
 
 import java.util.List;
 
@@ -36,6 +37,14 @@ public interface UserService {
      */
     AppUser getUserFromTelegram(String chatId);
 
+    /**
+     * Get the AppUsers subscribed to a localized notification, with the channel they are subscribed on.
+     * @param locationId The identification number of the location.
+     * @param typeId The identification number of the notification type.
+     * @return A list with the subscribers, one per user and channel.
+     */
+    List<SubscriberDTO> getSubscribers(long locationId, long typeId);
+
     /**
      * Get all the AppUsers.
      * @return A list with all the AppUsers.
@@ -0,0 +1,132 @@
+package eus.klimu.users.domain.service.implementation;
+
+import eus.klimu.security.RevocationFilter;
+import eus.klimu.users.domain.model.RevokedToken;
+import eus.klimu.users.domain.repository.RevokedTokenRepository;
+import eus.klimu.users.domain.service.definition.RevokedTokenService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.transaction.Transactional;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The implementation of the revoked token service. The revoked tokens are stored on the database and mirrored
+ * on a bloom filter, so checking a token that has not been revoked never reaches the database. The filter is
+ * kept in sync with the tokens revoked by other instances of the application.
+ */
+@Slf4j
+@Service
+@Transactional
+@RequiredArgsConstructor
+public class RevokedTokenServiceImp implements RevokedTokenService {
+
+    /**
+     * The connection with the revoked token table on the database.
+     */
+    private final RevokedTokenRepository revokedTokenRepository;
+    /**
+     * The in-memory filter of the revoked tokens.
+     */
+    private final RevocationFilter revocationFilter;
+
+    /**
+     * How far back the synchronization looks, so tokens revoked by another instance while the
+     * previous synchronization was running are not missed.
+     */
+    @Value("${klimu.security.revocation.sync-overlap-ms:5000}")
+    private long syncOverlapMillis;
+    /**
+     * The moment of the last synchronization with the database.
+     */
+    private volatile long lastSync;
+
+    /**
+     * Load the tokens that are still valid into the filter.
+     */
+    @PostConstruct
+    public void load() {
+        long now = System.currentTimeMillis();
+        List<RevokedToken> tokens = revokedTokenRepository.findByRevokedAtAfterAndExpiresAtAfter(
+                new Date(0), new Date(now)
+        );
+        revocationFilter.clear();
+        tokens.forEach(token -> revocationFilter.add(token.getTokenId(), token.getExpiresAt().getTime()));
+        lastSync = now;
+        log.info("Loaded {} revoked token(s) into the revocation filter", tokens.size());
+    }
+
+    /**
+     * Revoke a token, saving it on the database and on the filter. The unique index on the token identifier
+     * decides which revocation wins when the same token is revoked at the same time, so the insert runs on its
+     * own transaction and a duplicate key means the token had already been revoked.
+     * @param tokenId The identifier of the token, from the jti claim.
+     * @param username The username the token was generated for.
+     * @param expiresAt The moment the token expires.
+     * @return False if the token had already been revoked, by this or another instance.
+     */
+    @Override
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
+    public boolean revoke(String tokenId, String username, Date expiresAt) {
+        log.info("Revoking token {} of user {}", tokenId, username);
+        boolean revoked;
+        try {
+            revokedTokenRepository.saveAndFlush(new RevokedToken(null, tokenId, username, expiresAt, new Date()));
+            revoked = true;
+        } catch (DataIntegrityViolationException e) {
+            log.warn("The token {} of user {} had already been revoked", tokenId, username);
+            revoked = false;
+        }
+        revocationFilter.add(tokenId, expiresAt.getTime());
+        return revoked;
+    }
+
+    /**
+     * Check if a token has been revoked. The database is only checked if the filter reports a possible hit.
+     * @param tokenId The identifier of the token, from the jti claim.
+     * @return True if the token has been revoked.
+     */
+    @Override
+    public boolean isRevoked(String tokenId) {
+        return revocationFilter.mightContain(tokenId) && revokedTokenRepository.existsByTokenId(tokenId);
+    }
+
+    /**
+     * Add the tokens revoked by other instances of the application to the filter, and drop the slices
+     * of the filter whose tokens have all expired.
+     */
+    @Scheduled(
+            fixedDelayString = "${klimu.security.revocation.sync-interval-ms:30000}",
+            initialDelayString = "${klimu.security.revocation.sync-interval-ms:30000}"
+    )
+    public void synchronize() {
+        long now = System.currentTimeMillis();
+        List<RevokedToken> tokens = revokedTokenRepository.findByRevokedAtAfterAndExpiresAtAfter(
+                new Date(lastSync - syncOverlapMillis), new Date(now)
+        );
+        tokens.forEach(token -> revocationFilter.add(token.getTokenId(), token.getExpiresAt().getTime()));
+        revocationFilter.expire(now);
+        lastSync = now;
+
+        if (!tokens.isEmpty()) {
+            log.info("Synchronized {} revoked token(s) into the revocation filter", tokens.size());
+        }
+    }
+
+    /**
+     * Delete the revoked tokens that have already expired from the database.
+     */
+    @Scheduled(fixedDelayString = "${klimu.security.revocation.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        int deleted = revokedTokenRepository.deleteExpired(new Date());
+        if (deleted > 0) {
+            log.info("Deleted {} expired revoked token(s) from the database", deleted);
+        }
+    }
+}
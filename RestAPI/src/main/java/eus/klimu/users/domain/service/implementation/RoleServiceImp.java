@@ -1,5 +1,6 @@
 package eus.klimu.users.domain.service.implementation;
 
+import eus.klimu.security.UserDetailsCache;
 import eus.klimu.users.domain.model.AppUser;
 import eus.klimu.users.domain.model.Role;
 import eus.klimu.users.domain.repository.RoleRepository;
@@ -7,6 +8,7 @@ import eus.klimu.users.domain.repository.UserRepository;
 import eus.klimu.users.domain.service.definition.RoleService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
@@ -31,6 +33,10 @@ public class RoleServiceImp implements RoleService {
      * The connection with the role table on the database.
      */
     private final RoleRepository roleRepository;
+    /**
+     * The users already loaded for the login, they must be reloaded when their roles change.
+     */
+    private final UserDetailsCache userDetailsCache;
 
     /**
      * Count all the roles on the database.
@@ -105,6 +111,7 @@ public class RoleServiceImp implements RoleService {
     @Override
     public Role updateRole(Role role) {
         log.info("Updating role with id={}", role.getId());
+        userDetailsCache.invalidateAll();
         return roleRepository.save(role);
     }
 
@@ -115,6 +122,7 @@ public class RoleServiceImp implements RoleService {
     @Override
     public void deleteRole(Role role) {
         log.info("Deleting role with id={}", role.getId());
+        userDetailsCache.invalidateAll();
         roleRepository.delete(role);
     }
 
@@ -131,8 +139,21 @@ public class RoleServiceImp implements RoleService {
 
         if (user != null && role != null) {
             user.getRoles().add(role);
+            userDetailsCache.invalidate(username);
         } else {
             log.error("Couldn't add role {} to user {}", roleName, username);
         }
     }
+
+    /**
+     * Get a page of the roles from the database, in order of their identification number.
+     * @param after The identification number of the last role already read.
+     * @param limit The maximum amount of roles.
+     * @return A list with the roles after that identification number.
+     */
+    @Override
+    public List<Role> getRolesAfter(long after, int limit) {
+        log.info("Fetching {} roles after id={}", limit, after);
+        return roleRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.of(0, limit));
+    }
 }
@@ -1,22 +1,31 @@
 package eus.klimu.users.domain.service.implementation;
 
+import eus.klimu.notification.domain.index.SubscriptionChangedEvent;
+import eus.klimu.security.EmailManager;
+import eus.klimu.security.PasswordHashingRejectedException;
 import eus.klimu.security.PasswordManager;
+import eus.klimu.security.UserDetailsCache;
 import eus.klimu.users.domain.model.AppUser;
+import eus.klimu.users.domain.model.SubscriberDTO;
 import eus.klimu.users.domain.repository.UserRepository;
 import eus.klimu.users.domain.service.definition.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * The implementation of the AppUser service. It interacts with the different AppUsers
@@ -32,34 +41,48 @@ public class UserServiceImp implements UserService, UserDetailsService {
      * The connection with the AppUser table on the database.
      */
     private final UserRepository userRepository;
+    /**
+     * Hashes the passwords of the new AppUsers.
+     */
+    private final PasswordEncoder passwordEncoder;
+    /**
+     * The users already loaded for the login.
+     */
+    private final UserDetailsCache userDetailsCache;
+    /**
+     * Notifies the subscription index about the users whose subscriptions changed.
+     */
+    private final ApplicationEventPublisher eventPublisher;
 
     /**
-     * Load a user from the database based on its username.
+     * Load a user based on its username. The user is only fetched from the database if it's not on the cache.
      * @param username The username of the AppUser that is being fetched.
      * @return The users detail of the AppUser, if found.
      * @throws UsernameNotFoundException Exception generated when the Appuser is not found.
      */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        AppUser user = userRepository.findByUsername(username).orElse(null);
+        return userDetailsCache.get(username, () -> {
+            AppUser user = userRepository.findByUsername(username).orElse(null);
 
-        if (user != null) {
-            log.info("User {} found on the database", username);
+            if (user != null) {
+                log.info("User {} found on the database", username);
 
-            // Get the user roles as SimpleGrantedAuthorities for Spring Security.
-            Collection<SimpleGrantedAuthority> authorities = new ArrayList<>();
-            user.getRoles().forEach(role -> authorities.add(new SimpleGrantedAuthority(role.getName())));
+                // Get the user roles as GrantedAuthorities for Spring Security.
+                Collection<GrantedAuthority> authorities = new ArrayList<>();
+                user.getRoles().forEach(role -> authorities.add(userDetailsCache.authority(role.getName())));
 
-            // Create a Spring Security user to check on with.
-            return new User(
-                    user.getUsername(),
-                    user.getPassword(),
-                    authorities
-            );
-        } else {
-            log.error("User {} was not found!", username);
-            throw new UsernameNotFoundException("Username " + " was not found");
-        }
+                // Create a Spring Security user to check on with.
+                return new User(
+                        user.getUsername(),
+                        user.getPassword(),
+                        authorities
+                );
+            } else {
+                log.error("User {} was not found!", username);
+                throw new UsernameNotFoundException("Username " + " was not found");
+            }
+        });
     }
 
     /**
@@ -106,6 +129,18 @@ public class UserServiceImp implements UserService, UserDetailsService {
         return userRepository.findByTelegramId(chatId).orElse(null);
     }
 
+    /**
+     * Get the AppUsers subscribed to a localized notification from the database, using a single query.
+     * @param locationId The identification number of the location.
+     * @param typeId The identification number of the notification type.
+     * @return A list with the subscribers, one per user and channel.
+     */
+    @Override
+    public List<SubscriberDTO> getSubscribers(long locationId, long typeId) {
+        log.info("Fetching subscribers for location={} and type={}", locationId, typeId);
+        return userRepository.findSubscribers(locationId, typeId);
+    }
+
     /**
      * Get all the AppUsers from the database.
      * @return A list with all the AppUsers from the database.
@@ -126,6 +161,10 @@ public class UserServiceImp implements UserService, UserDetailsService {
      *          The password must be at least 8 characters long and not more than 32 characters long, have at least an
      *          uppercase and a lowercase letter and a number.
      *      </li>
+     *      <li>
+     *          The email, if any, must be a single address without spaces, line breaks or angle brackets, as it's
+     *          written on the SMTP commands and headers.
+     *      </li>
      * </ul>
      * @param user The AppUser that is going to be checked.
      * @return If the user is correct the function returns an OK message. If there is any problem, the function
@@ -145,30 +184,44 @@ public class UserServiceImp implements UserService, UserDetailsService {
         } else {
             // Check if the password is good.
             message = PasswordManager.check(user.getPassword());
+            if (message.equals("OK")) {
+                // Check if the email can be used as an address.
+                message = EmailManager.check(user.getEmail());
+            }
         }
         return message;
     }
 
     /**
-     * Save a new AppUser on the database.
+     * Save a new AppUser on the database. The password of the AppUser is hashed before saving it.
      * @param user The AppUser that is going to be saved.
      * @return The AppUser after being saved on the database.
+     * @throws PasswordHashingRejectedException Generated if the server is too busy to hash the password.
      */
     @Override
     public AppUser saveUser(AppUser user) {
         log.info("Saving user {} on the database", user.getUsername());
-        return userRepository.save(user);
+        user.setPassword(passwordEncoder.encode(user.getPassword()));
+        AppUser savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(Collections.singletonList(savedUser.getId())));
+        return savedUser;
     }
 
     /**
-     * Save a list of new AppUsers on the database.
+     * Save a list of new AppUsers on the database. The passwords of the AppUsers are hashed before saving them.
      * @param users The list of AppUsers that is going to be saved.
      * @return The AppUsers after being saved on the database.
+     * @throws PasswordHashingRejectedException Generated if the server is too busy to hash the passwords.
      */
     @Override
     public List<AppUser> saveAllUsers(List<AppUser> users) {
         log.info("Saving {} user(s) on the database", users.size());
-        return userRepository.saveAll(users);
+        users.forEach(user -> user.setPassword(passwordEncoder.encode(user.getPassword())));
+        List<AppUser> savedUsers = userRepository.saveAll(users);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(
+                savedUsers.stream().map(AppUser::getId).collect(Collectors.toList())
+        ));
+        return savedUsers;
     }
 
     /**
@@ -182,7 +235,11 @@ public class UserServiceImp implements UserService, UserDetailsService {
         AppUser userFound = userRepository.findById(user.getId()).orElse(null);
 
         if (userFound != null) {
-            return userRepository.save(user);
+            userDetailsCache.invalidate(userFound.getUsername());
+            userDetailsCache.invalidate(user.getUsername());
+            AppUser updatedUser = userRepository.save(user);
+            eventPublisher.publishEvent(new SubscriptionChangedEvent(Collections.singletonList(updatedUser.getId())));
+            return updatedUser;
         }
         return null;
     }
@@ -194,6 +251,9 @@ public class UserServiceImp implements UserService, UserDetailsService {
     @Override
     public void deleteUser(AppUser user) {
         log.info("Removing user {} from database", user.getUsername());
+        userRepository.findById(user.getId()).ifPresent(userFound -> userDetailsCache.invalidate(userFound.getUsername()));
+        userDetailsCache.invalidate(user.getUsername());
         userRepository.deleteById(user.getId());
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(Collections.singletonList(user.getId())));
     }
 }
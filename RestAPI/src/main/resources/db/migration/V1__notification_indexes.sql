@@ -0,0 +1,4 @@
+-- The notifications are read by location or type within a range of dates, and the latest ones by date.
+CREATE INDEX idx_notification_location_date ON notification (location_id, date);
+CREATE INDEX idx_notification_type_date ON notification (notification_type_id, date);
+CREATE INDEX idx_notification_date ON notification (date);
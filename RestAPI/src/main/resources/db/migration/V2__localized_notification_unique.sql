@@ -0,0 +1,34 @@
+-- A location has a single localized notification per type. The subscriptions to the repeated ones are moved to
+-- the first one before removing them.
+UPDATE user_notification_notifications un
+    JOIN localized_notification ln ON ln.id = un.notifications_id
+    JOIN (
+        SELECT location_id, notification_type_id, MIN(id) AS id
+        FROM localized_notification
+        GROUP BY location_id, notification_type_id
+    ) first_ln ON first_ln.location_id = ln.location_id AND first_ln.notification_type_id = ln.notification_type_id
+SET un.notifications_id = first_ln.id
+WHERE un.notifications_id <> first_ln.id;
+
+DELETE ln FROM localized_notification ln
+    JOIN localized_notification first_ln
+        ON first_ln.location_id = ln.location_id
+        AND first_ln.notification_type_id = ln.notification_type_id
+        AND first_ln.id < ln.id;
+
+CREATE UNIQUE INDEX uk_localized_notification_location_type ON localized_notification (location_id, notification_type_id);
+
+-- The unique index replaces the previous one, created by Hibernate.
+SET @drop_index = IF(
+    EXISTS(
+        SELECT 1 FROM information_schema.statistics
+        WHERE table_schema = DATABASE()
+          AND table_name = 'localized_notification'
+          AND index_name = 'idx_localized_notification_location_type'
+    ),
+    'DROP INDEX idx_localized_notification_location_type ON localized_notification',
+    'DO 0'
+);
+PREPARE drop_index FROM @drop_index;
+EXECUTE drop_index;
+DEALLOCATE PREPARE drop_index;
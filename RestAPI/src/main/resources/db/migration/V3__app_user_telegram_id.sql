@@ -0,0 +1,2 @@
+-- The users are looked up by their telegram ID when the bot receives a message.
+CREATE INDEX idx_app_user_telegram_id ON app_user (telegram_id);
@@ -0,0 +1,9 @@
+-- The notifications and their outbox entries take their IDs from pooled-lo tables instead of the shared
+-- hibernate_sequence. The tables start after the IDs already used, so the new IDs don't collide with them.
+CREATE TABLE IF NOT EXISTS notification_seq (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO notification_seq (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM notification_seq);
+UPDATE notification_seq SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 1 FROM notification));
+
+CREATE TABLE IF NOT EXISTS notification_outbox_seq (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO notification_outbox_seq (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM notification_outbox_seq);
+UPDATE notification_outbox_seq SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 1 FROM notification_outbox));
@@ -0,0 +1,59 @@
+-- Every entity takes its IDs from its own pooled-lo table instead of the shared hibernate_sequence, so the
+-- inserts of different entities don't wait on the same row. hibernate_sequence is first moved past every ID
+-- already used, and every table then starts from it, so no ID given before is given again.
+-- The instances of the previous version take their IDs from hibernate_sequence, so they would give the same IDs
+-- as the new tables: stop all of them before the first instance of this version starts, a rolling deploy over
+-- this migration is not supported.
+CREATE TABLE IF NOT EXISTS hibernate_sequence (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO hibernate_sequence (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM hibernate_sequence);
+UPDATE hibernate_sequence SET next_val = GREATEST(
+    next_val,
+    (SELECT COALESCE(MAX(id), 0) + 1 FROM location),
+    (SELECT COALESCE(MAX(id), 0) + 1 FROM notification_type),
+    (SELECT COALESCE(MAX(id), 0) + 1 FROM localized_notification),
+    (SELECT COALESCE(MAX(id), 0) + 1 FROM user_notification),
+    (SELECT COALESCE(MAX(id), 0) + 1 FROM app_user),
+    (SELECT COALESCE(MAX(id), 0) + 1 FROM role),
+    (SELECT COALESCE(MAX(id), 0) + 1 FROM channel),
+    (SELECT COALESCE(MAX(id), 0) + 1 FROM revoked_token),
+    (SELECT COALESCE(MAX(id), 0) + 1 FROM notification),
+    (SELECT COALESCE(MAX(id), 0) + 1 FROM notification_outbox),
+    (SELECT COALESCE(MAX(next_val), 1) FROM notification_seq),
+    (SELECT COALESCE(MAX(next_val), 1) FROM notification_outbox_seq)
+);
+
+CREATE TABLE IF NOT EXISTS location_seq (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO location_seq (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM location_seq);
+UPDATE location_seq SET next_val = GREATEST(next_val, (SELECT MAX(next_val) FROM hibernate_sequence));
+
+CREATE TABLE IF NOT EXISTS notification_type_seq (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO notification_type_seq (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM notification_type_seq);
+UPDATE notification_type_seq SET next_val = GREATEST(next_val, (SELECT MAX(next_val) FROM hibernate_sequence));
+
+CREATE TABLE IF NOT EXISTS localized_notification_seq (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO localized_notification_seq (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM localized_notification_seq);
+UPDATE localized_notification_seq SET next_val = GREATEST(next_val, (SELECT MAX(next_val) FROM hibernate_sequence));
+
+CREATE TABLE IF NOT EXISTS user_notification_seq (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO user_notification_seq (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM user_notification_seq);
+UPDATE user_notification_seq SET next_val = GREATEST(next_val, (SELECT MAX(next_val) FROM hibernate_sequence));
+
+CREATE TABLE IF NOT EXISTS app_user_seq (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO app_user_seq (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM app_user_seq);
+UPDATE app_user_seq SET next_val = GREATEST(next_val, (SELECT MAX(next_val) FROM hibernate_sequence));
+
+CREATE TABLE IF NOT EXISTS role_seq (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO role_seq (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM role_seq);
+UPDATE role_seq SET next_val = GREATEST(next_val, (SELECT MAX(next_val) FROM hibernate_sequence));
+
+CREATE TABLE IF NOT EXISTS channel_seq (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO channel_seq (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM channel_seq);
+UPDATE channel_seq SET next_val = GREATEST(next_val, (SELECT MAX(next_val) FROM hibernate_sequence));
+
+CREATE TABLE IF NOT EXISTS revoked_token_seq (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO revoked_token_seq (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM revoked_token_seq);
+UPDATE revoked_token_seq SET next_val = GREATEST(next_val, (SELECT MAX(next_val) FROM hibernate_sequence));
+
+UPDATE notification_seq SET next_val = GREATEST(next_val, (SELECT MAX(next_val) FROM hibernate_sequence));
+
+UPDATE notification_outbox_seq SET next_val = GREATEST(next_val, (SELECT MAX(next_val) FROM hibernate_sequence));
@@ -0,0 +1,6 @@
+-- The observations are read by location and date.
+CREATE INDEX idx_observation_location_observed_at ON observation (location_id, observed_at);
+
+-- The writers reserve the IDs of every batch from this table, it must have its row before the first batch.
+CREATE TABLE IF NOT EXISTS observation_seq (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO observation_seq (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM observation_seq);
@@ -0,0 +1,23 @@
+-- A refresh token can only be revoked once: the unique index makes a second revocation of the same token fail,
+-- which is how a replayed refresh token is detected. The repeated rows left by concurrent revocations are removed
+-- before creating it.
+DELETE t FROM revoked_token t
+    JOIN revoked_token first_t
+        ON first_t.token_id = t.token_id
+        AND first_t.id < t.id;
+
+-- Hibernate creates the unique index when it creates the table, but not on a table that already existed.
+SET @create_index = IF(
+    EXISTS(
+        SELECT 1 FROM information_schema.statistics
+        WHERE table_schema = DATABASE()
+          AND table_name = 'revoked_token'
+          AND column_name = 'token_id'
+          AND non_unique = 0
+    ),
+    'DO 0',
+    'CREATE UNIQUE INDEX uk_revoked_token_token_id ON revoked_token (token_id)'
+);
+PREPARE create_index FROM @create_index;
+EXECUTE create_index;
+DEALLOCATE PREPARE create_index;
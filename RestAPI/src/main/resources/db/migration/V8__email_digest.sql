@@ -0,0 +1,3 @@
+-- The email digests are kept on the database until they are sent, taking their IDs from their own pooled-lo table.
+CREATE TABLE IF NOT EXISTS email_digest_seq (next_val BIGINT) ENGINE=InnoDB;
+INSERT INTO email_digest_seq (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM email_digest_seq);
@@ -1,17 +1,22 @@
 package eus.klimu;
 
+import eus.klimu.security.PasswordHasher;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
 @SpringBootTest
 class RestApiApplicationTests {
 
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     @Test
     void contextLoads() {
-        RestApiApplication restApiApplication = new RestApiApplication();
-        assertThat(restApiApplication.passwordEncoder()).isNotNull();
+        assertThat(passwordEncoder).isInstanceOf(PasswordHasher.class);
     }
 
 }
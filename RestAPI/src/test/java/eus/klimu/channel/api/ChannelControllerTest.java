@@ -0,0 +1,49 @@
+package eus.klimu.channel.api;
+
+import eus.klimu.channel.domain.model.Channel;
+import eus.klimu.channel.domain.service.definition.ChannelService;
+import eus.klimu.pagination.KeysetEndpoints;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ChannelControllerTest {
+
+    private final ChannelService channelService = mock(ChannelService.class);
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(
+            new ChannelController(channelService, KeysetEndpoints.pagination())
+    ).build();
+
+    ChannelControllerTest() {
+        List<Channel> channels = LongStream.rangeClosed(1, 5)
+                .mapToObj(id -> new Channel(id, "Channel " + id, null)).collect(Collectors.toList());
+        when(channelService.getChannelsAfter(anyLong(), anyInt()))
+                .thenAnswer(KeysetEndpoints.table(channels, Channel::getId));
+    }
+
+    @Test
+    void allReturnsThePageAfterTheCursor() throws Exception {
+        KeysetEndpoints.checkPage(mockMvc, "/channel/all");
+    }
+
+    @Test
+    void allWithoutParametersStreamsEveryRow() throws Exception {
+        KeysetEndpoints.checkStream(mockMvc, "/channel/all");
+
+        verify(channelService).getChannelsAfter(0, 2);
+        verify(channelService).getChannelsAfter(4, 2);
+    }
+
+    @Test
+    void allRejectsInvalidParameters() throws Exception {
+        KeysetEndpoints.checkInvalidParameters(mockMvc, "/channel/all");
+    }
+}
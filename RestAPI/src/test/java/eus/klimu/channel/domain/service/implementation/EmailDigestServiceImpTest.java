@@ -0,0 +1,127 @@
+package eus.klimu.channel.domain.service.implementation;
+
+import eus.klimu.channel.domain.model.EmailDigest;
+import eus.klimu.channel.domain.model.EmailDigestEntry;
+import eus.klimu.channel.domain.repository.EmailDigestRepository;
+import eus.klimu.location.domain.model.Location;
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+import eus.klimu.notification.domain.dispatch.Recipient;
+import eus.klimu.notification.domain.model.Notification;
+import eus.klimu.notification.domain.model.NotificationType;
+import eus.klimu.notification.domain.repository.NotificationRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EmailDigestServiceImpTest {
+
+    private final EmailDigestRepository digestRepository = mock(EmailDigestRepository.class);
+    private final NotificationRepository notificationRepository = mock(NotificationRepository.class);
+    private final EmailDigestServiceImp digestService = new EmailDigestServiceImp(
+            digestRepository, notificationRepository, 60000
+    );
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void heldNotificationsAreSavedForEveryRecipient() {
+        List<Recipient> recipients = Arrays.asList(recipient(1L, "ane@klimu.eus"), recipient(2L, "jon@klimu.eus"));
+
+        digestService.hold(new DeliveryBatch(7L, "Rain", new Date(), "RAIN", "Bilbao", 1L, "Email", recipients),
+                recipients);
+
+        ArgumentCaptor<List<EmailDigestEntry>> saved = ArgumentCaptor.forClass(List.class);
+        verify(digestRepository).saveAll(saved.capture());
+        assertThat(saved.getValue()).extracting(EmailDigestEntry::getEmail)
+                .containsExactly("ane@klimu.eus", "jon@klimu.eus");
+        assertThat(saved.getValue()).allSatisfy(entry -> {
+            assertThat(entry.getNotificationId()).isEqualTo(7L);
+            assertThat(entry.getClaimedUntil()).isNull();
+        });
+    }
+
+    @Test
+    void dueEntriesAreClaimedAndGroupedByEmail() {
+        List<EmailDigestEntry> entries = Arrays.asList(
+                entry(1L, "ane@klimu.eus", 10L), entry(2L, "ane@klimu.eus", 11L), entry(3L, "ane@klimu.eus", 10L),
+                entry(4L, "jon@klimu.eus", 12L)
+        );
+        when(digestRepository.lockDue(any(), any(), eq(100))).thenReturn(entries);
+        when(notificationRepository.findAllById(any())).thenReturn(Arrays.asList(
+                notification(10L), notification(11L), notification(12L)
+        ));
+        long before = System.currentTimeMillis();
+
+        List<EmailDigest> digests = digestService.claimDue(300000, 100, 50);
+
+        assertThat(digests).hasSize(2);
+        // The notification held twice for the same user is only listed once.
+        assertThat(digests.get(0).getNotifications()).extracting(DeliveryBatch::getNotificationId)
+                .containsExactly(10L, 11L);
+        assertThat(digests.get(0).getEntryIds()).containsExactly(1L, 2L, 3L);
+        assertThat(digests.get(1).getRecipient().getEmail()).isEqualTo("jon@klimu.eus");
+        assertThat(entries).allSatisfy(entry ->
+                assertThat(entry.getClaimedUntil().getTime()).isGreaterThanOrEqualTo(before + 60000));
+        verify(digestRepository).saveAll(entries);
+    }
+
+    @Test
+    void notificationsPastTheLimitAreOnlyCounted() {
+        when(digestRepository.lockDue(any(), any(), anyInt())).thenReturn(Arrays.asList(
+                entry(1L, "ane@klimu.eus", 10L), entry(2L, "ane@klimu.eus", 11L), entry(3L, "ane@klimu.eus", 12L)
+        ));
+        when(notificationRepository.findAllById(any())).thenReturn(Arrays.asList(
+                notification(10L), notification(11L), notification(12L)
+        ));
+
+        EmailDigest digest = digestService.claimDue(300000, 100, 2).get(0);
+
+        assertThat(digest.getNotifications()).hasSize(2);
+        assertThat(digest.getOmitted()).isEqualTo(1);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void entriesOfRemovedNotificationsAreDropped() {
+        when(digestRepository.lockDue(any(), any(), anyInt())).thenReturn(Arrays.asList(
+                entry(1L, "ane@klimu.eus", 10L), entry(2L, "jon@klimu.eus", 99L)
+        ));
+        when(notificationRepository.findAllById(any())).thenReturn(Collections.singletonList(notification(10L)));
+
+        List<EmailDigest> digests = digestService.claimDue(300000, 100, 50);
+
+        assertThat(digests).extracting(digest -> digest.getRecipient().getEmail()).containsExactly("ane@klimu.eus");
+        ArgumentCaptor<Iterable<Long>> deleted = ArgumentCaptor.forClass(Iterable.class);
+        verify(digestRepository).deleteAllByIdInBatch(deleted.capture());
+        assertThat(deleted.getValue()).containsExactly(2L);
+    }
+
+    @Test
+    void sentDigestsAreRemoved() {
+        digestService.complete(Arrays.asList(
+                new EmailDigest(recipient(1L, "ane@klimu.eus"), Collections.emptyList(), 0, Arrays.asList(1L, 2L)),
+                new EmailDigest(recipient(2L, "jon@klimu.eus"), Collections.emptyList(), 0, Collections.singletonList(3L))
+        ));
+
+        verify(digestRepository).deleteAllByIdInBatch(Arrays.asList(1L, 2L, 3L));
+    }
+
+    private static EmailDigestEntry entry(long id, String email, long notificationId) {
+        return new EmailDigestEntry(id, 1L, "user", email, notificationId, new Date(), null);
+    }
+
+    private static Recipient recipient(long id, String email) {
+        return new Recipient(id, "user" + id, email, null, null);
+    }
+
+    private static Notification notification(long id) {
+        return new Notification(
+                id, "Heavy rain", new Date(), new NotificationType(1L, "RAIN", "Heavy rain", "WARNING"),
+                new Location(1L, "Bilbao", "Spain")
+        );
+    }
+}
@@ -0,0 +1,68 @@
+package eus.klimu.channel.sender;
+
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+import eus.klimu.notification.domain.dispatch.Recipient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChannelBulkheadTest {
+
+    private final StubChannelSender email = new StubChannelSender("Email");
+    private final StubChannelSender telegram = new StubChannelSender("Telegram");
+    private final ChannelBulkhead emailBulkhead = new ChannelBulkhead(email, 1, 1, 500);
+    private final ChannelBulkhead telegramBulkhead = new ChannelBulkhead(telegram, 1, 10, 5000);
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        email.release();
+        emailBulkhead.shutdown(1000);
+        telegramBulkhead.shutdown(1000);
+    }
+
+    @Test
+    void slowChannelDoesNotHoldBackOtherChannels() {
+        email.block();
+        emailBulkhead.submit(batch("Email"));
+
+        List<DeliveryOutcome> outcomes = telegramBulkhead.send(batch("Telegram"));
+
+        assertThat(outcomes).hasSize(2).allMatch(outcome -> outcome.getStatus() == DeliveryOutcome.Status.SENT);
+        assertThat(telegram.getBatches()).hasSize(1);
+        assertThat(email.getBatches()).isEmpty();
+    }
+
+    @Test
+    void fullQueueRejectsNewBatches() {
+        email.block();
+        emailBulkhead.submit(batch("Email"));
+        emailBulkhead.submit(batch("Email"));
+
+        assertThatThrownBy(() -> emailBulkhead.submit(batch("Email"))).isInstanceOf(ChannelSaturatedException.class);
+        assertThat(emailBulkhead.getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void outcomesAreReportedPerRecipient() throws Exception {
+        telegram.fail();
+        Future<List<DeliveryOutcome>> future = telegramBulkhead.submit(batch("Telegram"));
+
+        assertThat(future.get()).extracting(DeliveryOutcome::getStatus)
+                .containsExactly(DeliveryOutcome.Status.FAILED, DeliveryOutcome.Status.FAILED);
+        assertThat(telegramBulkhead.getFailed()).isEqualTo(2);
+    }
+
+    private static DeliveryBatch batch(String channelName) {
+        return new DeliveryBatch(1L, "Heavy rain", new Date(), "Rain", "Bilbao", 1L, channelName, Arrays.asList(
+                new Recipient(1L, "ane", "ane@klimu.eus", null, "1"),
+                new Recipient(2L, "jon", "jon@klimu.eus", null, "2")
+        ));
+    }
+}
@@ -0,0 +1,246 @@
+package eus.klimu.channel.sender;
+
+import eus.klimu.channel.domain.model.EmailDigest;
+import eus.klimu.channel.domain.service.definition.EmailDigestService;
+import eus.klimu.channel.sender.smtp.SmtpStubServer;
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+import eus.klimu.notification.domain.dispatch.Recipient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Sends emails against a local SMTP stub.
+ */
+class EmailSenderTest {
+
+    private final InMemoryDigests digests = new InMemoryDigests();
+    private SmtpStubServer server;
+    private EmailSender sender;
+
+    @AfterEach
+    void stop() throws IOException {
+        sender.shutdown();
+        server.close();
+    }
+
+    @Test
+    void manyEmailsArePipelinedOnASingleConnection() throws IOException {
+        server = new SmtpStubServer(true);
+        sender = sender(0);
+
+        List<DeliveryOutcome> outcomes = sender.send(batch("Earthquake", recipients(50)));
+
+        assertThat(outcomes).hasSize(50).allMatch(outcome -> outcome.getStatus() == DeliveryOutcome.Status.SENT);
+        assertThat(server.getMails()).hasSize(50);
+        assertThat(server.getConnections()).isEqualTo(1);
+        assertThat(server.getPipelinedEnvelopes()).isGreaterThan(0);
+    }
+
+    @Test
+    void connectionsAreReusedBetweenBatches() throws IOException {
+        server = new SmtpStubServer(false);
+        sender = sender(0);
+
+        sender.send(batch("Rain", recipients(5)));
+        sender.send(batch("Wind", recipients(5)));
+
+        assertThat(server.getMails()).hasSize(10);
+        assertThat(server.getConnections()).isEqualTo(1);
+        assertThat(sender.getConnectionsReused()).isEqualTo(1);
+    }
+
+    @Test
+    void droppedConnectionsAreReplaced() throws IOException {
+        server = new SmtpStubServer(true);
+        sender = sender(0);
+
+        sender.send(batch("Rain", recipients(3)));
+        server.dropConnections();
+        List<DeliveryOutcome> outcomes = sender.send(batch("Wind", recipients(3)));
+
+        assertThat(outcomes).allMatch(outcome -> outcome.getStatus() == DeliveryOutcome.Status.SENT);
+        assertThat(server.getMails()).hasSize(6);
+        assertThat(server.getConnections()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectedRecipientsDoNotStopThePipeline() throws IOException {
+        server = new SmtpStubServer(true);
+        sender = sender(0);
+        List<Recipient> recipients = recipients(3);
+        recipients.add(1, new Recipient(99L, "bad", "bad@klimu.eus", null, null));
+
+        List<DeliveryOutcome> outcomes = sender.send(batch("Storm", recipients));
+
+        assertThat(outcomes).extracting(DeliveryOutcome::getStatus).containsExactly(
+                DeliveryOutcome.Status.SENT, DeliveryOutcome.Status.FAILED,
+                DeliveryOutcome.Status.SENT, DeliveryOutcome.Status.SENT
+        );
+        assertThat(server.getMails()).hasSize(3);
+    }
+
+    @Test
+    void temporaryRejectionsAreRetriedAndPermanentOnesAreNot() throws IOException {
+        server = new SmtpStubServer(true);
+        sender = sender(0);
+        List<Recipient> recipients = recipients(1);
+        recipients.add(new Recipient(98L, "busy", "busy@klimu.eus", null, null));
+        recipients.add(new Recipient(99L, "bad", "bad@klimu.eus", null, null));
+
+        List<DeliveryOutcome> outcomes = sender.send(batch("Storm", recipients));
+
+        assertThat(outcomes).extracting(DeliveryOutcome::getStatus).containsExactly(
+                DeliveryOutcome.Status.SENT, DeliveryOutcome.Status.RETRY, DeliveryOutcome.Status.FAILED
+        );
+        assertThat(outcomes.get(1).getDetail()).startsWith("450");
+    }
+
+    @Test
+    void emailsThatCouldInjectCommandsAreSkipped() throws IOException {
+        server = new SmtpStubServer(true);
+        sender = sender(0);
+        List<Recipient> recipients = recipients(2);
+        recipients.add(new Recipient(90L, "crlf", "a@klimu.eus>\r\nRCPT TO:<b@klimu.eus", null, null));
+        recipients.add(new Recipient(91L, "brackets", "<c@klimu.eus>", null, null));
+
+        List<DeliveryOutcome> outcomes = sender.send(batch("Storm", recipients));
+
+        assertThat(outcomes).extracting(DeliveryOutcome::getStatus).containsExactly(
+                DeliveryOutcome.Status.SKIPPED, DeliveryOutcome.Status.SKIPPED,
+                DeliveryOutcome.Status.SENT, DeliveryOutcome.Status.SENT
+        );
+        assertThat(server.getMails()).hasSize(2);
+    }
+
+    @Test
+    void unreachableServerFailsTheBatch() throws IOException {
+        server = new SmtpStubServer(true);
+        sender = sender(0);
+        server.close();
+
+        assertThatThrownBy(() -> sender.send(batch("Rain", recipients(3))))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasMessageContaining("3 email(s)");
+        assertThat(sender.getEmailsFailed()).isEqualTo(3);
+    }
+
+    @Test
+    void notificationsWithinTheWindowAreMergedIntoADigest() throws Exception {
+        server = new SmtpStubServer(true);
+        sender = sender(300);
+        List<Recipient> recipients = recipients(2);
+
+        for (String type : new String[] {"Rain", "Wind", "Storm"}) {
+            assertThat(sender.send(batch(type, recipients)))
+                    .allMatch(outcome -> outcome.getStatus() == DeliveryOutcome.Status.QUEUED);
+        }
+        assertThat(server.getMails()).isEmpty();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getMails().size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertThat(server.getMails()).hasSize(2);
+        assertThat(server.getMails().get(0).data).contains("Rain - Bilbao", "Wind - Bilbao", "Storm - Bilbao");
+        assertThat(sender.getDigestsSent()).isEqualTo(2);
+        assertThat(sender.getNotificationsDigested()).isEqualTo(6);
+        assertThat(digests.countWaiting()).isZero();
+    }
+
+    @Test
+    void digestsAreKeptWhileTheServerCantBeReached() throws Exception {
+        server = new SmtpStubServer(true);
+        sender = sender(100);
+        server.close();
+
+        sender.send(batch("Rain", recipients(2)));
+        Thread.sleep(500);
+
+        // The digests were claimed and not sent, they are still there for the next claim.
+        assertThat(digests.completed).isZero();
+        assertThat(digests.countWaiting()).isEqualTo(2);
+        assertThat(sender.getDigestsSent()).isZero();
+    }
+
+    private EmailSender sender(long digestWindowMillis) {
+        return new EmailSender(
+                digests, "127.0.0.1", server.getPort(), "", "", "noreply@klimu.eus", false, 2000,
+                2, 30000, 100, digestWindowMillis, 1000, 50, 50
+        );
+    }
+
+    private static List<Recipient> recipients(int count) {
+        List<Recipient> recipients = new ArrayList<>();
+        for (long i = 0; i < count; i++) {
+            recipients.add(new Recipient(i, "user" + i, "user" + i + "@klimu.eus", null, null));
+        }
+        return recipients;
+    }
+
+    private static DeliveryBatch batch(String type, List<Recipient> recipients) {
+        return new DeliveryBatch(1L, type + " warning\n.starts with a dot", new Date(), type, "Bilbao", 1L, "Email",
+                Collections.unmodifiableList(recipients));
+    }
+
+    /**
+     * Keeps the digests in memory, claiming them the same way the database does.
+     */
+    private static class InMemoryDigests implements EmailDigestService {
+
+        private final Map<String, List<DeliveryBatch>> held = new LinkedHashMap<>();
+        private final Map<String, Recipient> recipients = new HashMap<>();
+        private final Map<String, Long> startedAt = new HashMap<>();
+        private final Set<String> claimed = new HashSet<>();
+        private int completed;
+
+        @Override
+        public synchronized void hold(DeliveryBatch batch, List<Recipient> batchRecipients) {
+            for (Recipient recipient : batchRecipients) {
+                held.computeIfAbsent(recipient.getEmail(), email -> new ArrayList<>()).add(batch);
+                recipients.put(recipient.getEmail(), recipient);
+                startedAt.putIfAbsent(recipient.getEmail(), System.currentTimeMillis());
+            }
+        }
+
+        @Override
+        public synchronized List<EmailDigest> claimDue(long windowMillis, int maxDigests, int maxPerDigest) {
+            List<EmailDigest> due = new ArrayList<>();
+            for (Map.Entry<String, List<DeliveryBatch>> entry : held.entrySet()) {
+                String email = entry.getKey();
+                if (due.size() < maxDigests && !claimed.contains(email)
+                        && System.currentTimeMillis() - startedAt.get(email) >= windowMillis) {
+                    List<DeliveryBatch> batches = entry.getValue();
+                    int listed = Math.min(maxPerDigest, batches.size());
+                    claimed.add(email);
+                    due.add(new EmailDigest(recipients.get(email), new ArrayList<>(batches.subList(0, listed)),
+                            batches.size() - listed, Collections.emptyList()));
+                }
+            }
+            return due;
+        }
+
+        @Override
+        public synchronized void complete(List<EmailDigest> sent) {
+            for (EmailDigest digest : sent) {
+                String email = digest.getRecipient().getEmail();
+                held.remove(email);
+                startedAt.remove(email);
+                claimed.remove(email);
+                completed++;
+            }
+        }
+
+        @Override
+        public synchronized long countWaiting() {
+            return held.size();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package eus.klimu.channel.sender;
+
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Channel sender for the tests. It keeps the batches it receives and can be slowed down or blocked
+ * to simulate a channel that doesn't answer.
+ */
+class StubChannelSender implements ChannelSender {
+
+    private final String channelName;
+    private final List<DeliveryBatch> batches = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean blocked;
+    private volatile boolean failing;
+
+    StubChannelSender(String channelName) {
+        this.channelName = channelName;
+    }
+
+    /**
+     * Make every batch wait until {@link #release()} is called.
+     */
+    void block() {
+        blocked = true;
+    }
+
+    void release() {
+        release.countDown();
+    }
+
+    /**
+     * Answer every recipient with a failed outcome.
+     */
+    void fail() {
+        failing = true;
+    }
+
+    List<DeliveryBatch> getBatches() {
+        return batches;
+    }
+
+    @Override
+    public String getChannelName() {
+        return channelName;
+    }
+
+    @Override
+    public List<DeliveryOutcome> send(DeliveryBatch batch) {
+        if (blocked) {
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        batches.add(batch);
+        return batch.getRecipients().stream()
+                .map(recipient -> failing ? DeliveryOutcome.failed(recipient, "stub") : DeliveryOutcome.sent(recipient))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,173 @@
+package eus.klimu.channel.sender.smtp;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local SMTP server for the tests. It accepts every email, except the ones for addresses starting with "bad",
+ * rejected for good, or "busy", rejected for now, and keeps what it receives.
+ */
+public class SmtpStubServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final boolean pipelining;
+    private final List<Socket> sockets = Collections.synchronizedList(new ArrayList<>());
+    private final List<Mail> mails = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger pipelinedEnvelopes = new AtomicInteger();
+
+    public SmtpStubServer(boolean pipelining) throws IOException {
+        this.pipelining = pipelining;
+        this.serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(this::accept, "smtp-stub");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public List<Mail> getMails() {
+        return mails;
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    /**
+     * Get the amount of MAIL commands that arrived together with the rest of their envelope.
+     */
+    public int getPipelinedEnvelopes() {
+        return pipelinedEnvelopes.get();
+    }
+
+    /**
+     * Close every open connection, like a server dropping its idle sessions.
+     */
+    public void dropConnections() throws IOException {
+        synchronized (sockets) {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            sockets.clear();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        dropConnections();
+        serverSocket.close();
+    }
+
+    private void accept() {
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.incrementAndGet();
+                sockets.add(socket);
+                Thread session = new Thread(() -> session(socket), "smtp-stub-session");
+                session.setDaemon(true);
+                session.start();
+            }
+        } catch (IOException e) {
+            // The server was closed.
+        }
+    }
+
+    private void session(Socket socket) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            reply(writer, "220 stub ready");
+            String from = null;
+            String to = null;
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                String command = line.toUpperCase();
+                if (command.startsWith("EHLO")) {
+                    writer.write("250-stub\r\n");
+                    if (pipelining) {
+                        writer.write("250-PIPELINING\r\n");
+                    }
+                    reply(writer, "250 8BITMIME");
+                } else if (command.startsWith("MAIL FROM:")) {
+                    if (reader.ready()) {
+                        pipelinedEnvelopes.incrementAndGet();
+                    }
+                    from = line.substring(10);
+                    reply(writer, "250 OK");
+                } else if (command.startsWith("RCPT TO:")) {
+                    if (from == null) {
+                        reply(writer, "503 Need MAIL first");
+                    } else if (line.substring(8).startsWith("<bad")) {
+                        reply(writer, "550 No such user");
+                    } else if (line.substring(8).startsWith("<busy")) {
+                        reply(writer, "450 Mailbox busy");
+                    } else {
+                        to = line.substring(8);
+                        reply(writer, "250 OK");
+                    }
+                } else if (command.equals("DATA")) {
+                    if (to == null) {
+                        reply(writer, "554 No valid recipients");
+                        continue;
+                    }
+                    reply(writer, "354 Go ahead");
+                    StringBuilder data = new StringBuilder();
+                    while (!(line = reader.readLine()).equals(".")) {
+                        data.append(line.startsWith("..") ? line.substring(1) : line).append('\n');
+                    }
+                    mails.add(new Mail(from, to, data.toString()));
+                    from = null;
+                    to = null;
+                    reply(writer, "250 Queued");
+                } else if (command.equals("RSET")) {
+                    from = null;
+                    to = null;
+                    reply(writer, "250 OK");
+                } else if (command.equals("QUIT")) {
+                    reply(writer, "221 Bye");
+                    break;
+                } else {
+                    reply(writer, "502 Not implemented");
+                }
+            }
+        } catch (SocketException e) {
+            // The connection was dropped.
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void reply(Writer writer, String line) throws IOException {
+        writer.write(line);
+        writer.write("\r\n");
+        writer.flush();
+    }
+
+    /**
+     * An email received by the stub.
+     */
+    public static class Mail {
+
+        public final String from;
+        public final String to;
+        public final String data;
+
+        Mail(String from, String to, String data) {
+            this.from = from;
+            this.to = to;
+            this.data = data;
+        }
+    }
+}
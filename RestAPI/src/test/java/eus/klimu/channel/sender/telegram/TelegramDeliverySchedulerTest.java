@@ -0,0 +1,181 @@
+package eus.klimu.channel.sender.telegram;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the scheduler against a local HTTP stub of the Bot API, which answers with a 429 whenever a limit is broken.
+ */
+class TelegramDeliverySchedulerTest {
+
+    private static final int GLOBAL_PER_SECOND = 20;
+    private static final long CHAT_INTERVAL_MILLIS = 200;
+
+    private HttpServer server;
+    private final List<Long> requestTimes = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, List<String>> received = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastByChat = new ConcurrentHashMap<>();
+    private final AtomicInteger throttled = new AtomicInteger();
+    private final AtomicInteger forcedThrottles = new AtomicInteger();
+    private TelegramDeliveryScheduler scheduler;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/bottest/sendMessage", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        scheduler.shutdown(1000);
+        server.stop(0);
+    }
+
+    @Test
+    void largeAlertIsDeliveredWithoutThrottling() throws InterruptedException {
+        scheduler = scheduler();
+        int chats = 60;
+        for (int i = 0; i < chats; i++) {
+            assertThat(scheduler.enqueue(String.valueOf(i), "Earthquake")).isTrue();
+        }
+
+        waitFor(() -> scheduler.getDelivered() == chats);
+
+        assertThat(throttled.get()).isZero();
+        assertThat(received).hasSize(chats);
+        // 60 messages at 20 per second can't take less than about 3 seconds, and shouldn't take much longer.
+        long elapsed = requestTimes.get(requestTimes.size() - 1) - requestTimes.get(0);
+        assertThat(elapsed).isBetween(TimeUnit.MILLISECONDS.toNanos(2800), TimeUnit.MILLISECONDS.toNanos(4500));
+    }
+
+    @Test
+    void messagesForTheSameChatAreCoalesced() throws InterruptedException {
+        scheduler = scheduler();
+        for (int i = 0; i < 10; i++) {
+            scheduler.enqueue("42", "Aftershock " + i);
+        }
+
+        waitFor(() -> scheduler.getDelivered() == 10);
+
+        assertThat(throttled.get()).isZero();
+        assertThat(received.get("42").size()).isLessThan(10);
+        assertThat(String.join("\n\n", received.get("42")).split("\n\n")).hasSize(10);
+        assertThat(scheduler.getCoalesced()).isEqualTo(10 - received.get("42").size());
+    }
+
+    @Test
+    void throttledMessagesAreSentAfterRetryAfter() throws InterruptedException {
+        forcedThrottles.set(1);
+        scheduler = scheduler();
+        scheduler.enqueue("7", "Flood");
+
+        waitFor(() -> scheduler.getDelivered() == 1);
+
+        assertThat(scheduler.getThrottled()).isEqualTo(1);
+        assertThat(received.get("7")).containsExactly("Flood");
+    }
+
+    @Test
+    void throttledBotPausesEveryChat() throws InterruptedException {
+        forcedThrottles.set(1);
+        // Two messages per second, the second chat would go 500 ms after the first one without the pause.
+        scheduler = scheduler(2, 1000);
+        scheduler.enqueue("7", "Flood");
+        scheduler.enqueue("8", "Flood");
+
+        waitFor(() -> scheduler.getDelivered() == 2);
+
+        assertThat(requestTimes).hasSize(3);
+        assertThat(requestTimes.get(1) - requestTimes.get(0)).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(950));
+    }
+
+    @Test
+    void batchIsQueuedWholeOrNotAtAll() {
+        scheduler = scheduler(GLOBAL_PER_SECOND, 3);
+
+        assertThat(scheduler.enqueueAll(Arrays.asList("1", "2", "3", "4"), "Storm")).isFalse();
+        assertThat(scheduler.getPending()).isZero();
+        assertThat(scheduler.getRejected()).isEqualTo(4);
+        assertThat(scheduler.enqueueAll(Arrays.asList("1", "2", "3"), "Storm")).isTrue();
+    }
+
+    private TelegramDeliveryScheduler scheduler() {
+        return scheduler(GLOBAL_PER_SECOND, 1000);
+    }
+
+    private TelegramDeliveryScheduler scheduler(int globalPerSecond, int maxPending) {
+        TelegramBotClient client = new TelegramBotClient(
+                "http://127.0.0.1:" + server.getAddress().getPort(), "test", 1000, 1000
+        );
+        return new TelegramDeliveryScheduler(client, globalPerSecond, CHAT_INTERVAL_MILLIS, 1000, maxPending, 4, 3);
+    }
+
+    /**
+     * Answer like the Bot API, with a 429 if a message comes too soon after the previous one of the same chat or
+     * more messages than allowed arrive within a second.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        long now = System.nanoTime();
+        JsonObject request = JsonParser.parseString(
+                StreamUtils.copyToString(exchange.getRequestBody(), StandardCharsets.UTF_8)
+        ).getAsJsonObject();
+        String chatId = request.get("chat_id").getAsString();
+
+        boolean tooFast;
+        synchronized (requestTimes) {
+            long recent = requestTimes.stream().filter(time -> now - time < TimeUnit.SECONDS.toNanos(1)).count();
+            Long last = lastByChat.get(chatId);
+            tooFast = recent >= GLOBAL_PER_SECOND + 1
+                    || (last != null && now - last < TimeUnit.MILLISECONDS.toNanos(CHAT_INTERVAL_MILLIS - 20));
+            requestTimes.add(now);
+            lastByChat.put(chatId, now);
+        }
+
+        String answer;
+        int status;
+        if (tooFast || forcedThrottles.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+            if (tooFast) {
+                throttled.incrementAndGet();
+            }
+            status = 429;
+            answer = "{\"ok\":false,\"error_code\":429,\"parameters\":{\"retry_after\":1}}";
+        } else {
+            received.computeIfAbsent(chatId, id -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(request.get("text").getAsString());
+            status = 200;
+            answer = "{\"ok\":true}";
+        }
+
+        byte[] body = answer.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
@@ -0,0 +1,106 @@
+package eus.klimu.database;
+
+import org.hibernate.Session;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.engine.query.spi.HQLQueryPlan;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaQuery;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Translates the JPQL of the repositories into the SQL Hibernate sends to MySQL, without a database. The entities
+ * of the application are mapped with the same dialect and naming strategies Spring Boot uses, so the table and
+ * column names of the SQL are the real ones.
+ */
+public final class HibernateQueries {
+
+    private static Metadata metadata;
+    private static SessionFactoryImplementor sessionFactory;
+
+    private HibernateQueries() {}
+
+    /**
+     * Translate a JPQL query.
+     * @param jpql The JPQL query, as written on the repository.
+     * @return The SQL statements generated for the query, usually a single one.
+     */
+    public static List<String> toSql(String jpql) {
+        HQLQueryPlan plan = sessionFactory().getQueryPlanCache()
+                .getHQLQueryPlan(jpql, false, Collections.emptyMap());
+        return Arrays.asList(plan.getSqlStrings());
+    }
+
+    /**
+     * Translate the Criteria queries run by some code, such as the derived queries of a repository or a custom
+     * search. The code gets an entity manager of the application entities whose Criteria queries are translated
+     * and return no rows.
+     * @param queries Runs the queries with the given entity manager.
+     * @return The SQL statements generated for the queries, in order.
+     */
+    public static List<String> toSql(Consumer<EntityManager> queries) {
+        List<String> sql = new ArrayList<>();
+        try (Session session = sessionFactory().openSession()) {
+            EntityManager entityManager = mock(EntityManager.class, delegatesTo(session));
+            doAnswer(invocation -> {
+                CriteriaQuery<?> criteria = invocation.getArgument(0);
+                sql.addAll(toSql(session.createQuery(criteria).getQueryString()));
+                return mock(TypedQuery.class, RETURNS_SELF);
+            }).when(entityManager).createQuery(any(CriteriaQuery.class));
+            queries.accept(entityManager);
+        }
+        return sql;
+    }
+
+    /**
+     * Get the session factory with every entity of the application, built the first time it's needed.
+     * @return The session factory. It has no connections, so it can't run any query.
+     */
+    public static synchronized SessionFactoryImplementor sessionFactory() {
+        if (sessionFactory == null) {
+            sessionFactory = (SessionFactoryImplementor) metadata().buildSessionFactory();
+        }
+        return sessionFactory;
+    }
+
+    /**
+     * Get the mapping of every entity of the application, read the first time it's needed.
+     * @return The mapping of the entities, which can also generate the tables Hibernate creates.
+     */
+    public static synchronized Metadata metadata() {
+        if (metadata == null) {
+            Map<String, Object> settings = new HashMap<>();
+            settings.put("hibernate.dialect", "org.hibernate.dialect.MySQL8Dialect");
+            settings.put("hibernate.temp.use_jdbc_metadata_defaults", "false");
+            settings.put("hibernate.hbm2ddl.auto", "none");
+            settings.put("hibernate.physical_naming_strategy",
+                    "org.springframework.boot.orm.jpa.hibernate.SpringPhysicalNamingStrategy");
+            settings.put("hibernate.implicit_naming_strategy",
+                    "org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy");
+
+            StandardServiceRegistry registry = new StandardServiceRegistryBuilder().applySettings(settings).build();
+            MetadataSources sources = new MetadataSources(registry);
+            ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+            scanner.addIncludeFilter(new AnnotationTypeFilter(Entity.class));
+            for (BeanDefinition entity : scanner.findCandidateComponents("eus.klimu")) {
+                sources.addAnnotatedClassName(entity.getBeanClassName());
+            }
+            metadata = sources.buildMetadata();
+        }
+        return metadata;
+    }
+}
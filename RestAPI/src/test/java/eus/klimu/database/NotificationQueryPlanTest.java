@@ -0,0 +1,286 @@
+package eus.klimu.database;
+
+import eus.klimu.location.domain.model.Location;
+import eus.klimu.notification.domain.model.NotificationSearch;
+import eus.klimu.notification.domain.model.NotificationType;
+import eus.klimu.notification.domain.repository.LocalizedNotificationRepository;
+import eus.klimu.notification.domain.repository.NotificationOutboxRepository;
+import eus.klimu.notification.domain.repository.NotificationRepository;
+import eus.klimu.notification.domain.repository.NotificationSearchRepositoryImpl;
+import eus.klimu.notification.domain.repository.NotificationSpecifications;
+import eus.klimu.users.domain.repository.UserRepository;
+import org.hibernate.tool.hbm2ddl.SchemaExport;
+import org.hibernate.tool.schema.TargetType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that the SQL Hibernate generates for the notification queries can use the indexes of the schema
+ * migrations, with the plans given by MySQL. It runs on a dedicated schema, given with the system properties
+ * klimu.test.datasource.url, klimu.test.datasource.username and klimu.test.datasource.password, whose tables are
+ * dropped and created again from the entities before applying the migrations. Skipped without that schema.
+ * The tables are empty, so the assertions check the indexes MySQL considers, not the one it picks.
+ */
+class NotificationQueryPlanTest {
+
+    private static final Pattern NOTIFICATION_ALIAS = Pattern.compile(" from (\\w+) (\\w+)");
+
+    private static SingleConnectionDataSource dataSource;
+
+    @BeforeAll
+    static void createSchema() throws Exception {
+        String url = System.getProperty("klimu.test.datasource.url");
+        assumeTrue(url != null, "No test schema given with klimu.test.datasource.url");
+        dataSource = new SingleConnectionDataSource(
+                url, System.getProperty("klimu.test.datasource.username"),
+                System.getProperty("klimu.test.datasource.password"), true
+        );
+        try {
+            dataSource.getConnection();
+        } catch (SQLException e) {
+            dataSource = null;
+        }
+        assumeTrue(dataSource != null, "The test schema is not reachable");
+
+        dropTables();
+        createTables();
+        new SchemaMigrator(dataSource, "db/migration", 10).migrate();
+    }
+
+    @AfterAll
+    static void close() {
+        if (dataSource != null) {
+            dataSource.destroy();
+        }
+    }
+
+    @Test
+    void searchByLocationAndDateCanUseTheLocationIndex() throws SQLException {
+        NotificationSearch search = new NotificationSearch(
+                Collections.singleton(1L), null, null, date(2022, 1), date(2022, 2), false, null, 50
+        );
+        String sql = single(HibernateQueries.toSql(entityManager -> searchRepository(entityManager)
+                .search(NotificationSpecifications.of(search), false, 50)));
+
+        Plan plan = explain(sql, date(2022, 1), date(2022, 2));
+
+        assertThat(plan.possibleKeys).contains("idx_notification_location_date");
+    }
+
+    @Test
+    void searchByTypeAndDateCanUseTheTypeIndex() throws SQLException {
+        NotificationSearch search = new NotificationSearch(
+                null, Collections.singleton(1L), null, date(2022, 1), date(2022, 2), false, null, 50
+        );
+        String sql = single(HibernateQueries.toSql(entityManager -> searchRepository(entityManager)
+                .search(NotificationSpecifications.of(search), false, 50)));
+
+        Plan plan = explain(sql, date(2022, 1), date(2022, 2));
+
+        assertThat(plan.possibleKeys).contains("idx_notification_type_date");
+    }
+
+    @Test
+    void latestNotificationsAreOrderedLikeTheDateIndex() throws SQLException {
+        String sql = single(HibernateQueries.toSql(entityManager -> repository(entityManager, NotificationRepository.class)
+                .findAll(PageRequest.of(0, 50, Sort.by(Sort.Order.desc("date"), Sort.Order.desc("id"))))));
+
+        explain(sql);
+
+        // InnoDB adds the primary key to the index, so it's read backwards in the order of the query.
+        assertThat(sql).endsWith("order by " + alias(sql) + ".date desc, " + alias(sql) + ".id desc");
+        assertThat(indexColumns("notification", "idx_notification_date")).containsExactly("date");
+    }
+
+    @Test
+    void localizedNotificationByLocationAndTypeCanUseTheUniqueIndex() throws SQLException {
+        String sql = single(HibernateQueries.toSql(entityManager ->
+                repository(entityManager, LocalizedNotificationRepository.class).getByLocationAndType(
+                        new Location(1L, "Bilbao", "Spain"), new NotificationType(1L, "RAIN", "Heavy rain", "WARNING")
+                )));
+
+        Plan plan = explain(sql, 1L, 1L);
+
+        assertThat(plan.possibleKeys).contains("uk_localized_notification_location_type");
+    }
+
+    @Test
+    void userByTelegramIdCanUseTheTelegramIndex() throws SQLException {
+        String sql = single(HibernateQueries.toSql(entityManager ->
+                repository(entityManager, UserRepository.class).findByTelegramId("123456789")));
+
+        Plan plan = explain(sql, "123456789");
+
+        assertThat(plan.possibleKeys).contains("idx_app_user_telegram_id");
+    }
+
+    @Test
+    void outboxClaimReadsTheStatusIndexInOrder() throws Exception {
+        String sql = NotificationOutboxRepository.class.getMethod("lockReady", Date.class, int.class)
+                .getAnnotation(Query.class).value().replace(":now", "?").replace(":limit", "?");
+
+        Plan plan = explain("notification_outbox", sql, new Date(), 20);
+
+        assertThat(plan.possibleKeys).contains("idx_notification_outbox_status_next");
+        assertThat(plan.extra).doesNotContain("Using filesort");
+    }
+
+    @Test
+    void expiredOutboxLeasesCanUseTheLeaseIndex() throws Exception {
+        String sql = single(HibernateQueries.toSql(NotificationOutboxRepository.class
+                .getMethod("releaseExpired", Date.class).getAnnotation(Query.class).value()));
+
+        Plan plan = explain("notification_outbox", sql, new Date());
+
+        assertThat(plan.possibleKeys).contains("idx_notification_outbox_status_lease");
+    }
+
+    private static NotificationSearchRepositoryImpl searchRepository(EntityManager entityManager) {
+        NotificationSearchRepositoryImpl searchRepository = new NotificationSearchRepositoryImpl();
+        ReflectionTestUtils.setField(searchRepository, "entityManager", entityManager);
+        return searchRepository;
+    }
+
+    private static <T> T repository(EntityManager entityManager, Class<T> repositoryInterface) {
+        return new JpaRepositoryFactory(entityManager)
+                .getRepository(repositoryInterface, RepositoryFragments.just(searchRepository(entityManager)));
+    }
+
+    private static String single(List<String> sql) {
+        assertThat(sql).hasSize(1);
+        return sql.get(0);
+    }
+
+    private static String alias(String sql) {
+        Matcher matcher = NOTIFICATION_ALIAS.matcher(sql);
+        assertThat(matcher.find()).isTrue();
+        return matcher.group(2);
+    }
+
+    private static Date date(int year, int month) {
+        return new GregorianCalendar(year, month - 1, 1).getTime();
+    }
+
+    private static void dropTables() throws SQLException {
+        Connection connection = dataSource.getConnection();
+        List<String> tables = new ArrayList<>();
+        try (ResultSet resultSet = connection.getMetaData().getTables(connection.getCatalog(), null, "%", new String[]{"TABLE"})) {
+            while (resultSet.next()) {
+                tables.add(resultSet.getString("TABLE_NAME"));
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET FOREIGN_KEY_CHECKS = 0");
+            for (String table : tables) {
+                statement.execute("DROP TABLE `" + table + "`");
+            }
+            statement.execute("SET FOREIGN_KEY_CHECKS = 1");
+        }
+    }
+
+    /**
+     * Create the tables as Hibernate does when the application starts.
+     */
+    private static void createTables() throws SQLException, IOException {
+        Path script = Files.createTempFile("klimu-schema", ".sql");
+        Files.delete(script);
+        try {
+            new SchemaExport().setOutputFile(script.toString()).setDelimiter(";").setFormat(false)
+                    .createOnly(EnumSet.of(TargetType.SCRIPT), HibernateQueries.metadata());
+            try (Statement statement = dataSource.getConnection().createStatement()) {
+                for (String line : Files.readAllLines(script, StandardCharsets.UTF_8)) {
+                    if (!line.trim().isEmpty()) {
+                        statement.execute(line.trim().replaceAll(";$", ""));
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(script);
+        }
+    }
+
+    private static List<String> indexColumns(String table, String index) throws SQLException {
+        Connection connection = dataSource.getConnection();
+        List<String> columns = new ArrayList<>();
+        try (ResultSet resultSet = connection.getMetaData().getIndexInfo(connection.getCatalog(), null, table, false, false)) {
+            while (resultSet.next()) {
+                if (index.equalsIgnoreCase(resultSet.getString("INDEX_NAME"))) {
+                    columns.add(resultSet.getString("COLUMN_NAME"));
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Explain a query, keeping the plan of the table it reads from.
+     * @param sql The SQL of the query.
+     * @param parameters The values of the parameters of the query, in order.
+     * @return The plan of the main table.
+     */
+    private static Plan explain(String sql, Object... parameters) throws SQLException {
+        return explain(alias(sql), sql, parameters);
+    }
+
+    /**
+     * Explain a query, keeping the plan of one of its tables.
+     * @param alias The name or alias of the table on the query.
+     * @param sql The SQL of the query.
+     * @param parameters The values of the parameters of the query, in order.
+     * @return The plan of the table.
+     */
+    private static Plan explain(String alias, String sql, Object... parameters) throws SQLException {
+        try (PreparedStatement statement = dataSource.getConnection().prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                Object parameter = parameters[i];
+                statement.setObject(i + 1, parameter instanceof Date ? new Timestamp(((Date) parameter).getTime()) : parameter);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    if (alias.equals(resultSet.getString("table"))) {
+                        String possibleKeys = resultSet.getString("possible_keys");
+                        String extra = resultSet.getString("Extra");
+                        return new Plan(
+                                possibleKeys != null ? Arrays.asList(possibleKeys.split(",")) : Collections.emptyList(),
+                                extra != null ? extra : ""
+                        );
+                    }
+                }
+            }
+        }
+        throw new AssertionError("No plan for the table " + alias + " of " + sql);
+    }
+
+    private static final class Plan {
+
+        private final List<String> possibleKeys;
+        private final String extra;
+
+        private Plan(List<String> possibleKeys, String extra) {
+            this.possibleKeys = possibleKeys;
+            this.extra = extra;
+        }
+    }
+}
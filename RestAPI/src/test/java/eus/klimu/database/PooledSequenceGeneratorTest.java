@@ -0,0 +1,63 @@
+package eus.klimu.database;
+
+import org.hibernate.boot.model.naming.ObjectNameNormalizer;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.boot.spi.MetadataBuildingContext;
+import org.hibernate.dialect.MySQL8Dialect;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.PooledLoOptimizer;
+import org.hibernate.id.enhanced.TableStructure;
+import org.hibernate.type.LongType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class PooledSequenceGeneratorTest {
+
+    private final StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+            .applySetting("hibernate.dialect", MySQL8Dialect.class.getName())
+            .applySetting("hibernate.temp.use_jdbc_metadata_defaults", false)
+            .applySetting("klimu.id.increment-size", "20")
+            .applySetting("klimu.id.notification_seq.increment-size", "500")
+            .build();
+
+    @AfterEach
+    void tearDown() {
+        StandardServiceRegistryBuilder.destroy(registry);
+    }
+
+    @Test
+    void sequenceIsAPooledLoTableOnMySql() {
+        PooledSequenceGenerator generator = configure("location_seq");
+
+        assertThat(generator.getDatabaseStructure()).isInstanceOf(TableStructure.class);
+        assertThat(generator.getOptimizer()).isInstanceOf(PooledLoOptimizer.class);
+    }
+
+    @Test
+    void blockSizeOfTheSequenceOverridesTheDefault() {
+        assertThat(configure("location_seq").getOptimizer().getIncrementSize()).isEqualTo(20);
+        assertThat(configure("notification_seq").getOptimizer().getIncrementSize()).isEqualTo(500);
+    }
+
+    private PooledSequenceGenerator configure(String name) {
+        Properties params = new Properties();
+        params.setProperty(IdentifierGenerator.GENERATOR_NAME, name);
+        params.put(PersistentIdentifierGenerator.IDENTIFIER_NORMALIZER, new ObjectNameNormalizer() {
+            @Override
+            protected MetadataBuildingContext getBuildingContext() {
+                return mock(MetadataBuildingContext.class);
+            }
+        });
+
+        PooledSequenceGenerator generator = new PooledSequenceGenerator();
+        generator.configure(LongType.INSTANCE, params, registry);
+        return generator;
+    }
+}
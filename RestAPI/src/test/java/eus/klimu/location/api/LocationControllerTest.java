@@ -0,0 +1,48 @@
+package eus.klimu.location.api;
+
+import eus.klimu.location.domain.model.Location;
+import eus.klimu.location.domain.service.definition.LocationService;
+import eus.klimu.pagination.KeysetEndpoints;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class LocationControllerTest {
+
+    private final LocationService locationService = mock(LocationService.class);
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new LocationController(
+            locationService, KeysetEndpoints.pagination()
+    )).build();
+
+    LocationControllerTest() {
+        List<Location> rows = LongStream.rangeClosed(1, 5)
+                .mapToObj(id -> new Location(id, "City " + id, "Spain")).collect(Collectors.toList());
+        when(locationService.getLocationsAfter(anyLong(), anyInt())).thenAnswer(KeysetEndpoints.table(rows, Location::getId));
+    }
+
+    @Test
+    void allReturnsThePageAfterTheCursor() throws Exception {
+        KeysetEndpoints.checkPage(mockMvc, "/location/all");
+    }
+
+    @Test
+    void allWithoutParametersStreamsEveryRow() throws Exception {
+        KeysetEndpoints.checkStream(mockMvc, "/location/all");
+
+        verify(locationService).getLocationsAfter(0, 2);
+        verify(locationService).getLocationsAfter(4, 2);
+    }
+
+    @Test
+    void allRejectsInvalidParameters() throws Exception {
+        KeysetEndpoints.checkInvalidParameters(mockMvc, "/location/all");
+    }
+}
@@ -0,0 +1,50 @@
+package eus.klimu.notification.api;
+
+import eus.klimu.location.domain.service.definition.LocationService;
+import eus.klimu.notification.domain.model.LocalizedNotification;
+import eus.klimu.notification.domain.service.definition.LocalizedNotificationService;
+import eus.klimu.notification.domain.service.definition.NotificationTypeService;
+import eus.klimu.pagination.KeysetEndpoints;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class LocalizedNotificationControllerTest {
+
+    private final LocalizedNotificationService localizedNotificationService = mock(LocalizedNotificationService.class);
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new LocalizedNotificationController(
+            localizedNotificationService, mock(NotificationTypeService.class), mock(LocationService.class), KeysetEndpoints.pagination()
+    )).build();
+
+    LocalizedNotificationControllerTest() {
+        List<LocalizedNotification> rows = LongStream.rangeClosed(1, 5)
+                .mapToObj(id -> new LocalizedNotification(id, null, null)).collect(Collectors.toList());
+        when(localizedNotificationService.getLocalizedNotificationsAfter(anyLong(), anyInt())).thenAnswer(KeysetEndpoints.table(rows, LocalizedNotification::getId));
+    }
+
+    @Test
+    void allReturnsThePageAfterTheCursor() throws Exception {
+        KeysetEndpoints.checkPage(mockMvc, "/localized-notification/all");
+    }
+
+    @Test
+    void allWithoutParametersStreamsEveryRow() throws Exception {
+        KeysetEndpoints.checkStream(mockMvc, "/localized-notification/all");
+
+        verify(localizedNotificationService).getLocalizedNotificationsAfter(0, 2);
+        verify(localizedNotificationService).getLocalizedNotificationsAfter(4, 2);
+    }
+
+    @Test
+    void allRejectsInvalidParameters() throws Exception {
+        KeysetEndpoints.checkInvalidParameters(mockMvc, "/localized-notification/all");
+    }
+}
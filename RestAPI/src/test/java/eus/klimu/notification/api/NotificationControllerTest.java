@@ -0,0 +1,60 @@
+package eus.klimu.notification.api;
+
+import eus.klimu.location.domain.service.definition.LocationService;
+import eus.klimu.notification.domain.cache.LatestNotifications;
+import eus.klimu.notification.domain.changes.ChangeFeed;
+import eus.klimu.notification.domain.export.NotificationExporter;
+import eus.klimu.notification.domain.ingest.NotificationIngest;
+import eus.klimu.notification.domain.model.Notification;
+import eus.klimu.notification.domain.service.definition.NotificationService;
+import eus.klimu.notification.domain.service.definition.NotificationTypeService;
+import eus.klimu.notification.domain.stream.NotificationStream;
+import eus.klimu.pagination.CacheableResponses;
+import eus.klimu.pagination.KeysetEndpoints;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class NotificationControllerTest {
+
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new NotificationController(
+            mock(NotificationTypeService.class), notificationService, mock(LocationService.class),
+            mock(NotificationStream.class), mock(ChangeFeed.class), mock(LatestNotifications.class),
+            KeysetEndpoints.pagination(), mock(NotificationExporter.class), mock(NotificationIngest.class),
+            mock(CacheableResponses.class)
+    )).build();
+
+    NotificationControllerTest() {
+        List<Notification> rows = LongStream.rangeClosed(1, 5)
+                .mapToObj(id -> new Notification(id, "Heavy rain", new Date(), null, null)).collect(Collectors.toList());
+        when(notificationService.getNotificationsAfter(anyLong(), anyInt())).thenAnswer(KeysetEndpoints.table(rows, Notification::getId));
+    }
+
+    @Test
+    void allReturnsThePageAfterTheCursor() throws Exception {
+        KeysetEndpoints.checkPage(mockMvc, "/notification/all");
+    }
+
+    @Test
+    void allWithoutParametersStreamsEveryRow() throws Exception {
+        KeysetEndpoints.checkStream(mockMvc, "/notification/all");
+
+        verify(notificationService).getNotificationsAfter(0, 2);
+        verify(notificationService).getNotificationsAfter(4, 2);
+    }
+
+    @Test
+    void allRejectsInvalidParameters() throws Exception {
+        KeysetEndpoints.checkInvalidParameters(mockMvc, "/notification/all");
+    }
+}
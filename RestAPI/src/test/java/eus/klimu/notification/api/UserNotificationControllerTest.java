@@ -0,0 +1,54 @@
+package eus.klimu.notification.api;
+
+import eus.klimu.channel.domain.service.definition.ChannelService;
+import eus.klimu.location.domain.service.definition.LocationService;
+import eus.klimu.notification.domain.model.UserNotification;
+import eus.klimu.notification.domain.service.definition.LocalizedNotificationService;
+import eus.klimu.notification.domain.service.definition.NotificationTypeService;
+import eus.klimu.notification.domain.service.definition.UserNotificationService;
+import eus.klimu.pagination.KeysetEndpoints;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class UserNotificationControllerTest {
+
+    private final UserNotificationService userNotificationService = mock(UserNotificationService.class);
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new UserNotificationController(
+            mock(ChannelService.class), mock(LocationService.class), userNotificationService,
+            mock(NotificationTypeService.class), mock(LocalizedNotificationService.class), KeysetEndpoints.pagination()
+    )).build();
+
+    UserNotificationControllerTest() {
+        List<UserNotification> rows = LongStream.rangeClosed(1, 5)
+                .mapToObj(id -> new UserNotification(id, null, new ArrayList<>())).collect(Collectors.toList());
+        when(userNotificationService.getUserNotificationsAfter(anyLong(), anyInt())).thenAnswer(KeysetEndpoints.table(rows, UserNotification::getId));
+    }
+
+    @Test
+    void allReturnsThePageAfterTheCursor() throws Exception {
+        KeysetEndpoints.checkPage(mockMvc, "/user-notification/all");
+    }
+
+    @Test
+    void allWithoutParametersStreamsEveryRow() throws Exception {
+        KeysetEndpoints.checkStream(mockMvc, "/user-notification/all");
+
+        verify(userNotificationService).getUserNotificationsAfter(0, 2);
+        verify(userNotificationService).getUserNotificationsAfter(4, 2);
+    }
+
+    @Test
+    void allRejectsInvalidParameters() throws Exception {
+        KeysetEndpoints.checkInvalidParameters(mockMvc, "/user-notification/all");
+    }
+}
@@ -0,0 +1,131 @@
+package eus.klimu.notification.domain.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import eus.klimu.location.domain.model.Location;
+import eus.klimu.notification.domain.model.Notification;
+import eus.klimu.notification.domain.model.NotificationType;
+import eus.klimu.notification.domain.repository.NotificationRepository;
+import eus.klimu.notification.domain.service.definition.NotificationChangeService;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LatestNotificationsTest {
+
+    private final NotificationRepository notificationRepository = mock(NotificationRepository.class);
+    private final NotificationChangeService changeService = mock(NotificationChangeService.class);
+    private final LatestNotifications latest = new LatestNotifications(
+            notificationRepository, changeService, new ObjectMapper(), 3
+    );
+
+    LatestNotificationsTest() {
+        when(notificationRepository.findAll(any(Pageable.class))).thenReturn(new PageImpl<>(Arrays.asList(
+                notification(3L, 30), notification(2L, 20), notification(1L, 10)
+        )));
+    }
+
+    @Test
+    void savedNotificationsAreMergedNewestFirstAndTheOldestAreDropped() {
+        latest.getNotifications();
+
+        latest.saved(Arrays.asList(notification(4L, 25), notification(1L, 40)));
+
+        assertThat(latest.getNotifications()).extracting(Notification::getId).containsExactly(1L, 3L, 4L);
+        verify(notificationRepository, times(1)).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void notificationsWithoutDateGoLast() {
+        latest.getNotifications();
+
+        latest.saved(Collections.singletonList(new Notification(5L, "Fog", null, type(), location())));
+
+        assertThat(latest.getNotifications()).extracting(Notification::getId).containsExactly(3L, 2L, 1L);
+    }
+
+    @Test
+    void deletedNotificationIsRemovedUntilTheNextLoad() {
+        latest.getNotifications();
+
+        latest.deleted(2L);
+
+        assertThat(latest.getNotifications()).extracting(Notification::getId).containsExactly(3L, 1L);
+        assertThat(latest.getSize()).isEqualTo(2);
+    }
+
+    @Test
+    void deletingANotificationThatIsNotKeptKeepsTheSnapshot() {
+        latest.getJson();
+
+        latest.deleted(99L);
+        latest.getJson();
+
+        assertThat(latest.getNotifications()).hasSize(3);
+        assertThat(latest.getSerializations()).isEqualTo(1);
+    }
+
+    @Test
+    void jsonIsBuiltOnceForEverySnapshot() {
+        byte[] first = latest.getJson();
+
+        assertThat(latest.getJson()).isSameAs(first);
+        latest.saved(Collections.singletonList(notification(4L, 50)));
+        latest.getJson();
+
+        assertThat(latest.getSerializations()).isEqualTo(2);
+    }
+
+    @Test
+    void changesAreAppliedOnceTheTransactionCommits() {
+        latest.getNotifications();
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            latest.saved(Collections.singletonList(notification(4L, 50)));
+            latest.deleted(3L);
+            assertThat(latest.getNotifications()).extracting(Notification::getId).containsExactly(3L, 2L, 1L);
+
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(latest.getNotifications()).extracting(Notification::getId).containsExactly(4L, 2L);
+    }
+
+    @Test
+    void refreshOnlyLoadsAgainWhenTheChangeFeedMoved() {
+        when(changeService.getLastCursor()).thenReturn(5L);
+        latest.getNotifications();
+
+        latest.refresh();
+        verify(notificationRepository, times(1)).findAll(any(Pageable.class));
+
+        when(changeService.getLastCursor()).thenReturn(6L);
+        latest.refresh();
+        assertThat(latest.getReloads()).isEqualTo(2);
+    }
+
+    private static Notification notification(long id, long minutes) {
+        return new Notification(id, "Heavy rain", new Date(minutes * 60000), type(), location());
+    }
+
+    private static NotificationType type() {
+        return new NotificationType(1L, "RAIN", "Heavy rain", "WARNING");
+    }
+
+    private static Location location() {
+        return new Location(1L, "Bilbao", "Spain");
+    }
+}
@@ -0,0 +1,229 @@
+package eus.klimu.notification.domain.dispatch;
+
+import eus.klimu.channel.sender.ChannelBulkhead;
+import eus.klimu.channel.sender.ChannelSaturatedException;
+import eus.klimu.channel.sender.ChannelSender;
+import eus.klimu.channel.sender.ChannelSenderRegistry;
+import eus.klimu.channel.sender.DeliveryOutcome;
+import eus.klimu.location.domain.model.Location;
+import eus.klimu.notification.domain.index.SubscriptionIndex;
+import eus.klimu.notification.domain.index.SubscriptionRow;
+import eus.klimu.notification.domain.model.Notification;
+import eus.klimu.notification.domain.model.NotificationType;
+import eus.klimu.users.domain.model.SubscriberDTO;
+import eus.klimu.users.domain.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class NotificationDispatcherTest {
+
+    private static final long LOCATION = 10L;
+    private static final long TYPE = 100L;
+    private static final long EMAIL = 1L;
+    private static final long TELEGRAM = 2L;
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ChannelSenderRegistry senders = mock(ChannelSenderRegistry.class);
+    private final SubscriptionIndex index = new SubscriptionIndex(userRepository);
+    private final List<DeliveryBatch> batches = new CopyOnWriteArrayList<>();
+    private final Set<Long> rejectedUsers = new HashSet<>();
+    private final Set<Long> busyUsers = new HashSet<>();
+    private final ChannelBulkhead email = new ChannelBulkhead(new RecordingSender("Email"), 2, 10, 5000);
+    private final NotificationDispatcher dispatcher = new NotificationDispatcher(index, userRepository, senders, 2, 3);
+
+    NotificationDispatcherTest() {
+        when(senders.get("Email")).thenReturn(email);
+        when(userRepository.findRecipients(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(NotificationDispatcherTest::recipient).collect(Collectors.toList());
+        });
+    }
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        dispatcher.shutdown();
+        email.shutdown(1000);
+    }
+
+    @Test
+    void subscribersAreSplitInBatchesOfTheChannel() {
+        List<SubscriptionRow> rows = new ArrayList<>();
+        LongStream.rangeClosed(1, 7).forEach(id -> rows.add(new SubscriptionRow(id, LOCATION, TYPE, EMAIL)));
+        rows.add(new SubscriptionRow(8L, LOCATION, TYPE, TELEGRAM));
+        rows.add(new SubscriptionRow(9L, 20L, TYPE, EMAIL));
+        when(userRepository.findAllSubscriptions()).thenReturn(rows);
+        index.build();
+
+        int sent = dispatcher.dispatch(notification(), EMAIL, "Email");
+
+        assertThat(sent).isEqualTo(7);
+        assertThat(batches).allSatisfy(batch -> {
+            assertThat(batch.getRecipients()).hasSizeLessThanOrEqualTo(3);
+            assertThat(batch.getChannelName()).isEqualTo("Email");
+        });
+        assertThat(userIds(batches)).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+        assertThat(dispatcher.getRecipients()).isEqualTo(7);
+        assertThat(dispatcher.getBatches()).isEqualTo(batches.size());
+        verify(userRepository, never()).findSubscribers(anyLong(), anyLong());
+    }
+
+    @Test
+    void subscribersAreReadFromTheDatabaseUntilTheIndexIsReady() {
+        List<SubscriberDTO> subscribers = new ArrayList<>();
+        LongStream.rangeClosed(1, 4).forEach(id -> subscribers.add(subscriber(id, EMAIL)));
+        subscribers.add(subscriber(5L, TELEGRAM));
+        when(userRepository.findSubscribers(LOCATION, TYPE)).thenReturn(subscribers);
+
+        int sent = dispatcher.dispatch(notification(), EMAIL, "Email");
+
+        assertThat(sent).isEqualTo(4);
+        assertThat(batches).extracting(batch -> batch.getRecipients().size()).containsExactly(3, 1);
+        assertThat(userIds(batches)).containsExactly(1L, 2L, 3L, 4L);
+        verify(userRepository, never()).findRecipients(anyCollection());
+    }
+
+    @Test
+    void subscribersOfAChannelWithoutSenderAreUnrouted() {
+        when(userRepository.findAllSubscriptions()).thenReturn(Arrays.asList(
+                new SubscriptionRow(1L, LOCATION, TYPE, TELEGRAM),
+                new SubscriptionRow(2L, LOCATION, TYPE, TELEGRAM)
+        ));
+        index.build();
+
+        int sent = dispatcher.dispatch(notification(), TELEGRAM, "Telegram");
+
+        assertThat(sent).isZero();
+        assertThat(batches).isEmpty();
+        assertThat(dispatcher.getUnrouted()).isEqualTo(2);
+    }
+
+    @Test
+    void notificationWithoutSubscribersSendsNothing() {
+        when(userRepository.findAllSubscriptions()).thenReturn(Collections.emptyList());
+        index.build();
+
+        assertThat(dispatcher.dispatch(notification(), EMAIL, "Email")).isZero();
+        assertThat(batches).isEmpty();
+        assertThat(dispatcher.getNotifications()).isEqualTo(1);
+    }
+
+    @Test
+    void recipientsRejectedForGoodDoNotFailTheDispatch() {
+        List<SubscriptionRow> rows = new ArrayList<>();
+        LongStream.rangeClosed(1, 7).forEach(id -> rows.add(new SubscriptionRow(id, LOCATION, TYPE, EMAIL)));
+        when(userRepository.findAllSubscriptions()).thenReturn(rows);
+        index.build();
+        rejectedUsers.add(2L);
+        rejectedUsers.add(6L);
+
+        assertThat(dispatcher.dispatch(notification(), EMAIL, "Email")).isEqualTo(7);
+        assertThat(userIds(batches)).hasSize(7);
+        assertThat(dispatcher.getFailed()).isEqualTo(2);
+        assertThat(dispatcher.getRetried()).isZero();
+    }
+
+    @Test
+    void partialFailureIsOnlyRetriedForTheRecipientsLeft() {
+        List<SubscriptionRow> rows = new ArrayList<>();
+        LongStream.rangeClosed(1, 7).forEach(id -> rows.add(new SubscriptionRow(id, LOCATION, TYPE, EMAIL)));
+        when(userRepository.findAllSubscriptions()).thenReturn(rows);
+        index.build();
+        rejectedUsers.add(2L);
+        busyUsers.add(3L);
+        busyUsers.add(6L);
+
+        assertThatThrownBy(() -> dispatcher.dispatch(notification(), EMAIL, "Email"))
+                .isInstanceOf(DeliveryFailedException.class)
+                .hasMessageContaining("2 of 7")
+                .satisfies(e -> assertThat(((DeliveryFailedException) e).getRecipients()).containsExactly(3L, 6L));
+        assertThat(userIds(batches)).hasSize(7);
+        assertThat(dispatcher.getFailed()).isEqualTo(1);
+        assertThat(dispatcher.getRetried()).isEqualTo(2);
+
+        batches.clear();
+        busyUsers.clear();
+        assertThat(dispatcher.dispatch(notification(), EMAIL, "Email", Arrays.asList(3L, 6L))).isEqualTo(2);
+        assertThat(userIds(batches)).containsExactlyInAnyOrder(3L, 6L);
+    }
+
+    @Test
+    void saturatedChannelLeavesEveryRecipientForTheNextAttempt() {
+        ChannelSenderRegistry saturated = mock(ChannelSenderRegistry.class);
+        ChannelBulkhead bulkhead = mock(ChannelBulkhead.class);
+        when(saturated.get("Email")).thenReturn(bulkhead);
+        when(bulkhead.send(any())).thenThrow(new ChannelSaturatedException("The queue of channel Email is full"));
+        when(userRepository.findAllSubscriptions()).thenReturn(Arrays.asList(
+                new SubscriptionRow(1L, LOCATION, TYPE, EMAIL),
+                new SubscriptionRow(2L, LOCATION, TYPE, EMAIL)
+        ));
+        index.build();
+        NotificationDispatcher saturatedDispatcher = new NotificationDispatcher(index, userRepository, saturated, 1, 3);
+
+        try {
+            assertThatThrownBy(() -> saturatedDispatcher.dispatch(notification(), EMAIL, "Email"))
+                    .isInstanceOf(DeliveryFailedException.class)
+                    .hasCauseInstanceOf(ChannelSaturatedException.class)
+                    .satisfies(e -> assertThat(((DeliveryFailedException) e).getRecipients()).containsExactly(1L, 2L));
+        } finally {
+            saturatedDispatcher.shutdown();
+        }
+    }
+
+    private static Notification notification() {
+        return new Notification(
+                1L, "Heavy rain", new Date(),
+                new NotificationType(TYPE, "RAIN", "Heavy rain", "WARNING"),
+                new Location(LOCATION, "Bilbao", "Spain")
+        );
+    }
+
+    private static Recipient recipient(long id) {
+        return new Recipient(id, "user" + id, "user" + id + "@klimu.eus", null, null);
+    }
+
+    private static SubscriberDTO subscriber(long id, long channelId) {
+        return new SubscriberDTO(id, "user" + id, "Name", "Surname", "user" + id + "@klimu.eus", null, null,
+                channelId, channelId == EMAIL ? "Email" : "Telegram");
+    }
+
+    private static List<Long> userIds(List<DeliveryBatch> batches) {
+        return batches.stream().flatMap(batch -> batch.getRecipients().stream())
+                .map(Recipient::getUserId).collect(Collectors.toList());
+    }
+
+    private final class RecordingSender implements ChannelSender {
+
+        private final String channelName;
+
+        private RecordingSender(String channelName) {
+            this.channelName = channelName;
+        }
+
+        @Override
+        public String getChannelName() {
+            return channelName;
+        }
+
+        @Override
+        public List<DeliveryOutcome> send(DeliveryBatch batch) {
+            batches.add(batch);
+            return batch.getRecipients().stream().map(recipient -> {
+                if (rejectedUsers.contains(recipient.getUserId())) {
+                    return DeliveryOutcome.failed(recipient, "rejected");
+                }
+                return busyUsers.contains(recipient.getUserId())
+                        ? DeliveryOutcome.retry(recipient, "busy") : DeliveryOutcome.sent(recipient);
+            }).collect(Collectors.toList());
+        }
+    }
+}
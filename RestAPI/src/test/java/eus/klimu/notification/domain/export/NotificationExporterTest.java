@@ -0,0 +1,90 @@
+package eus.klimu.notification.domain.export;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class NotificationExporterTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final Connection connection = mock(Connection.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    private final ResultSet resultSet = mock(ResultSet.class);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(resultSet);
+
+        Timestamp date = new Timestamp(new GregorianCalendar(2022, 4, 20, 10, 30, 0).getTimeInMillis());
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getLong(1)).thenReturn(1L, 2L);
+        when(resultSet.getString(1)).thenReturn("1", "2");
+        when(resultSet.getTimestamp(2)).thenReturn(date, date);
+        when(resultSet.getString(3)).thenReturn("Heavy rain", "Wind, \"strong\"");
+        when(resultSet.getLong(4)).thenReturn(3L, 3L);
+        when(resultSet.getString(4)).thenReturn("3", "3");
+        when(resultSet.getString(5)).thenReturn("rain", "rain");
+        when(resultSet.getLong(6)).thenReturn(0L, 0L);
+        when(resultSet.getString(6)).thenReturn((String) null, (String) null);
+        when(resultSet.wasNull()).thenReturn(false, true, false, true);
+    }
+
+    @Test
+    void csvIsStreamedFromAForwardOnlyResultSet() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NotificationExporter exporter = new NotificationExporter(dataSource, Integer.MIN_VALUE, 1);
+
+        long rows = exporter.export(ExportFormat.CSV, null, null, Collections.singletonList("rain"), output);
+
+        assertThat(rows).isEqualTo(2);
+        assertThat(output.toString(StandardCharsets.UTF_8.name())).isEqualTo(
+                "id,date,message,type_id,type,location_id,city,country\r\n" +
+                "1,\"2022-05-20,10:30:00\",Heavy rain,3,rain,,,\r\n" +
+                "2,\"2022-05-20,10:30:00\",\"Wind, \"\"strong\"\"\",3,rain,,,\r\n"
+        );
+        verify(connection).prepareStatement(anyString(), eq(ResultSet.TYPE_FORWARD_ONLY), eq(ResultSet.CONCUR_READ_ONLY));
+        verify(statement).setFetchSize(Integer.MIN_VALUE);
+        verify(statement).setObject(1, "rain");
+    }
+
+    @Test
+    void ndjsonHasAnObjectPerLine() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NotificationExporter exporter = new NotificationExporter(dataSource, Integer.MIN_VALUE, 1);
+
+        exporter.export(ExportFormat.NDJSON, null, null, null, output);
+
+        assertThat(output.toString(StandardCharsets.UTF_8.name()).split("\n")).containsExactly(
+                "{\"id\":1,\"date\":\"2022-05-20,10:30:00\",\"message\":\"Heavy rain\",\"typeId\":3,\"type\":\"rain\"}",
+                "{\"id\":2,\"date\":\"2022-05-20,10:30:00\",\"message\":\"Wind, \\\"strong\\\"\",\"typeId\":3,\"type\":\"rain\"}"
+        );
+    }
+
+    @Test
+    void concurrentExportsAreLimited() {
+        NotificationExporter exporter = new NotificationExporter(dataSource, Integer.MIN_VALUE, 1);
+
+        assertThat(exporter.tryAcquire()).isTrue();
+        assertThat(exporter.tryAcquire()).isFalse();
+        exporter.release();
+        assertThat(exporter.tryAcquire()).isTrue();
+        assertThat(exporter.getRejectedExports()).isEqualTo(1);
+    }
+}
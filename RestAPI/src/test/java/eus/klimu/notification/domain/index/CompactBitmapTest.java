@@ -0,0 +1,105 @@
+package eus.klimu.notification.domain.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactBitmapTest {
+
+    @Test
+    void valuesAreSortedAndDeduplicated() {
+        CompactBitmap bitmap = CompactBitmap.of(new int[] { 70000, 3, 1, 3, 65536, 0, 99 }, 6);
+
+        assertThat(bitmap.toArray()).containsExactly(0, 1, 3, 65536, 70000);
+        assertThat(bitmap.cardinality()).isEqualTo(5);
+        assertThat(bitmap.contains(99)).isFalse();
+    }
+
+    @Test
+    void withAndWithoutLeaveTheOriginalUntouched() {
+        CompactBitmap original = CompactBitmap.of(new int[] { 1, 2 }, 2);
+
+        CompactBitmap added = original.with(70000);
+        CompactBitmap removed = original.without(1);
+
+        assertThat(original.toArray()).containsExactly(1, 2);
+        assertThat(added.toArray()).containsExactly(1, 2, 70000);
+        assertThat(removed.toArray()).containsExactly(2);
+        assertThat(original.with(1)).isSameAs(original);
+        assertThat(original.without(3)).isSameAs(original);
+    }
+
+    @Test
+    void removingTheLastValueOfAChunkDropsTheChunk() {
+        CompactBitmap bitmap = CompactBitmap.EMPTY.with(5).with(65541);
+
+        CompactBitmap removed = bitmap.without(65541).without(5);
+
+        assertThat(removed.isEmpty()).isTrue();
+        assertThat(removed.sizeInBytes()).isEqualTo(CompactBitmap.EMPTY.sizeInBytes());
+    }
+
+    @Test
+    void denseChunksSwitchBetweenArrayAndBitmap() {
+        int[] values = IntStream.range(0, 4096).map(i -> i * 2).toArray();
+        CompactBitmap array = CompactBitmap.of(values, values.length);
+
+        CompactBitmap dense = array.with(1);
+        CompactBitmap sparseAgain = dense.without(1);
+
+        // 4097 values no longer fit the array of a chunk, the fixed 8 KB bitmap is used instead.
+        assertThat(array.without(0).with(3).sizeInBytes()).isEqualTo(array.sizeInBytes());
+        assertThat(dense.with(3).sizeInBytes()).isEqualTo(dense.sizeInBytes());
+        assertThat(dense.cardinality()).isEqualTo(4097);
+        assertThat(dense.contains(1)).isTrue();
+        assertThat(dense.contains(8190)).isTrue();
+        assertThat(dense.contains(8191)).isFalse();
+        assertThat(sparseAgain.sizeInBytes()).isEqualTo(array.sizeInBytes());
+        assertThat(sparseAgain.toArray()).containsExactly(values);
+    }
+
+    @Test
+    void forEachVisitsBitmapChunksInOrder() {
+        int[] values = IntStream.rangeClosed(65536, 65536 + 5000).toArray();
+        CompactBitmap bitmap = CompactBitmap.of(values, values.length).with(3);
+
+        List<Integer> visited = new ArrayList<>();
+        bitmap.forEach(visited::add);
+
+        assertThat(visited).hasSize(5002).startsWith(3, 65536, 65537).endsWith(65536 + 5000).isSorted();
+    }
+
+    @Test
+    void randomOperationsMatchASortedSet() {
+        Random random = new Random(42);
+        TreeSet<Integer> expected = new TreeSet<>();
+        CompactBitmap bitmap = CompactBitmap.EMPTY;
+
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(200_000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(value);
+                bitmap = bitmap.without(value);
+            } else {
+                expected.add(value);
+                bitmap = bitmap.with(value);
+            }
+        }
+
+        assertThat(bitmap.toArray()).containsExactly(expected.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    @Test
+    void negativeValuesAreRejected() {
+        assertThat(CompactBitmap.EMPTY.contains(-1)).isFalse();
+        assertThatThrownBy(() -> CompactBitmap.EMPTY.with(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CompactBitmap.of(new int[] { -5 }, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
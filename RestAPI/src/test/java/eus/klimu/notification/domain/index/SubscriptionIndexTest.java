@@ -0,0 +1,65 @@
+package eus.klimu.notification.domain.index;
+
+import eus.klimu.users.domain.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SubscriptionIndexTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final SubscriptionIndex index = new SubscriptionIndex(userRepository);
+
+    @Test
+    void resyncPicksUpTheChangesOfOtherInstances() {
+        when(userRepository.findAllSubscriptions()).thenReturn(Arrays.asList(
+                new SubscriptionRow(1L, 10L, 100L, 1L),
+                new SubscriptionRow(2L, 10L, 100L, 1L),
+                new SubscriptionRow(3L, 20L, 100L, 2L)
+        ));
+        index.build();
+
+        // Another instance moved user 3 and removed user 2, no event reached this one.
+        when(userRepository.findAllSubscriptions()).thenReturn(Arrays.asList(
+                new SubscriptionRow(1L, 10L, 100L, 1L),
+                new SubscriptionRow(3L, 10L, 100L, 2L)
+        ));
+        index.resync();
+
+        assertThat(index.getSubscribers(10, 100, 1).toArray()).containsExactly(1);
+        assertThat(index.getSubscribers(10, 100, 2).toArray()).containsExactly(3);
+        assertThat(index.getSubscribers(20, 100)).isEmpty();
+        assertThat(index.getTopics()).isEqualTo(1);
+        assertThat(index.getUsers()).isEqualTo(2);
+        assertThat(index.getResyncs()).isEqualTo(1);
+    }
+
+    @Test
+    void resyncWaitsForTheFirstBuild() {
+        index.resync();
+
+        assertThat(index.isReady()).isFalse();
+        assertThat(index.getResyncs()).isZero();
+    }
+
+    @Test
+    void changedUsersAreReloaded() {
+        when(userRepository.findAllSubscriptions()).thenReturn(Collections.singletonList(
+                new SubscriptionRow(1L, 10L, 100L, 1L)
+        ));
+        index.build();
+        when(userRepository.findSubscriptionsOfUser(1L)).thenReturn(Collections.singletonList(
+                new SubscriptionRow(1L, 20L, 100L, 1L)
+        ));
+
+        index.onSubscriptionChanged(new SubscriptionChangedEvent(Collections.singletonList(1L)));
+
+        assertThat(index.getSubscribers(10, 100)).isEmpty();
+        assertThat(index.getSubscribers(20, 100, 1).toArray()).containsExactly(1);
+    }
+}
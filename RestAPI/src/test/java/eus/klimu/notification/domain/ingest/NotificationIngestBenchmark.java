@@ -0,0 +1,149 @@
+package eus.klimu.notification.domain.ingest;
+
+import com.zaxxer.hikari.HikariDataSource;
+import eus.klimu.channel.domain.model.Channel;
+import eus.klimu.channel.domain.service.definition.ChannelService;
+import eus.klimu.location.domain.model.Location;
+import eus.klimu.location.domain.service.definition.LocationService;
+import eus.klimu.notification.domain.cache.LatestNotifications;
+import eus.klimu.notification.domain.model.Notification;
+import eus.klimu.notification.domain.model.NotificationDTO;
+import eus.klimu.notification.domain.model.NotificationType;
+import eus.klimu.notification.domain.service.definition.NotificationTypeService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures the notifications saved per second by the bulk ingest on the database configured on
+ * application.properties. Only run with the benchmark profile: mvn test -Pbenchmark. The minimum rate can be
+ * changed with -Dklimu.benchmark.min-rate, and the rows written are removed at the end.
+ */
+class NotificationIngestBenchmark {
+
+    private static final int REQUEST_SIZE = 10_000;
+    private static final int WARM_UP_REQUESTS = 3;
+    private static final int MEASURED_REQUESTS = 20;
+
+    private static HikariDataSource dataSource;
+    private static NotificationIngest ingest;
+    private static long typeId;
+    private static long locationId;
+    private static long firstId = Long.MAX_VALUE;
+    private static long lastId = Long.MIN_VALUE;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        Properties properties = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"));
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(properties.getProperty("spring.datasource.url"));
+        dataSource.setUsername(properties.getProperty("spring.datasource.username"));
+        dataSource.setPassword(properties.getProperty("spring.datasource.password"));
+        dataSource.setInitializationFailTimeout(-1);
+        dataSource.setConnectionTimeout(5000);
+
+        boolean reachable;
+        try (Connection ignored = dataSource.getConnection()) {
+            reachable = true;
+        } catch (SQLException e) {
+            reachable = false;
+        }
+        assumeTrue(reachable, "The database is not reachable");
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        List<Long> typeIds = jdbcTemplate.queryForList("SELECT id FROM notification_type LIMIT 1", Long.class);
+        List<Long> locationIds = jdbcTemplate.queryForList("SELECT id FROM location LIMIT 1", Long.class);
+        assumeTrue(!typeIds.isEmpty() && !locationIds.isEmpty(), "There are no notification types or locations");
+
+        typeId = typeIds.get(0);
+        locationId = locationIds.get(0);
+        NotificationType type = new NotificationType();
+        type.setId(typeId);
+        Location location = new Location();
+        location.setId(locationId);
+        Channel channel = new Channel();
+        channel.setId(0L);
+
+        NotificationTypeService typeService = mock(NotificationTypeService.class);
+        when(typeService.getNotificationTypes(any())).thenReturn(Collections.singletonList(type));
+        LocationService locationService = mock(LocationService.class);
+        when(locationService.getLocationsById(any())).thenReturn(Collections.singletonList(location));
+        ChannelService channelService = mock(ChannelService.class);
+        when(channelService.getAllChannels()).thenReturn(Collections.singletonList(channel));
+
+        ingest = new NotificationIngest(
+                dataSource, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                typeService, locationService, channelService, mock(LatestNotifications.class), event -> { },
+                1000
+        );
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (dataSource == null) {
+            return;
+        }
+        if (firstId <= lastId) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.update("DELETE FROM notification_outbox WHERE notification_id BETWEEN ? AND ?", firstId, lastId);
+            jdbcTemplate.update("DELETE FROM notification_change WHERE notification_id BETWEEN ? AND ?", firstId, lastId);
+            jdbcTemplate.update("DELETE FROM notification WHERE id BETWEEN ? AND ?", firstId, lastId);
+        }
+        dataSource.close();
+    }
+
+    @Test
+    void ingestSavesAtLeastTheMinimumRate() throws SQLException {
+        List<NotificationDTO> request = buildRequest();
+        for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+            track(ingest.ingest(request));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_REQUESTS; i++) {
+            track(ingest.ingest(request));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double rate = MEASURED_REQUESTS * REQUEST_SIZE / seconds;
+
+        System.out.printf("Bulk ingest: %d notifications in %.2f s, %.0f notifications/s%n",
+                MEASURED_REQUESTS * REQUEST_SIZE, seconds, rate);
+        assertThat(rate).isGreaterThanOrEqualTo(Double.parseDouble(System.getProperty("klimu.benchmark.min-rate", "50000")));
+    }
+
+    private static List<NotificationDTO> buildRequest() {
+        List<NotificationDTO> request = new ArrayList<>(REQUEST_SIZE);
+        for (int i = 0; i < REQUEST_SIZE; i++) {
+            NotificationDTO notificationDTO = new NotificationDTO();
+            notificationDTO.setMessage("Benchmark notification " + i);
+            notificationDTO.setDate(String.format("2022-05-20,10:%02d:%02d", (i / 60) % 60, i % 60));
+            notificationDTO.setNotificationTypeId(typeId);
+            notificationDTO.setLocationId(locationId);
+            request.add(notificationDTO);
+        }
+        return request;
+    }
+
+    private static void track(List<Notification> notifications) {
+        firstId = Math.min(firstId, notifications.get(0).getId());
+        lastId = Math.max(lastId, notifications.get(notifications.size() - 1).getId());
+    }
+}
@@ -0,0 +1,66 @@
+package eus.klimu.notification.domain.repository;
+
+import eus.klimu.database.HibernateQueries;
+import eus.klimu.notification.domain.model.OutboxStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NotificationOutboxRepositoryTest {
+
+    @Test
+    void claimedEntryIsOnlyDeletedByItsWorker() throws NoSuchMethodException {
+        List<String> sql = HibernateQueries.toSql(query("deleteClaimed", long.class, String.class));
+
+        assertThat(sql).hasSize(1);
+        assertThat(sql.get(0)).startsWith("delete from notification_outbox")
+                .containsPattern("id=\\?").containsPattern("locked_by=\\?");
+    }
+
+    @Test
+    void claimedEntryIsOnlyReleasedByItsWorker() throws NoSuchMethodException {
+        List<String> sql = HibernateQueries.toSql(query(
+                "releaseClaimed", long.class, String.class, OutboxStatus.class, Date.class, String.class, String.class
+        ));
+
+        assertThat(sql).hasSize(1);
+        assertThat(sql.get(0)).startsWith("update notification_outbox set")
+                .contains("locked_by=null", "locked_until=null").containsPattern("recipients=\\?")
+                .containsPattern("where .*id=\\? and .*locked_by=\\?");
+    }
+
+    @Test
+    void expiredLeasesAreReleasedThroughTheLeaseIndex() throws NoSuchMethodException {
+        List<String> sql = HibernateQueries.toSql(query("releaseExpired", Date.class));
+
+        assertThat(sql).hasSize(1);
+        assertThat(sql.get(0)).startsWith("update notification_outbox set status='PENDING'")
+                .contains("locked_by=null", "locked_until=null")
+                .containsPattern("where status='IN_PROGRESS' and locked_until<\\?");
+    }
+
+    @Test
+    void onlyDeadEntriesArePurged() throws NoSuchMethodException {
+        List<String> sql = HibernateQueries.toSql(query("deleteDeadBefore", Date.class));
+
+        assertThat(sql).hasSize(1);
+        assertThat(sql.get(0)).startsWith("delete from notification_outbox")
+                .containsPattern("where status='DEAD' and next_attempt_at<\\?");
+    }
+
+    @Test
+    void claimOnlyReadsThePendingEntries() throws NoSuchMethodException {
+        String sql = query("lockReady", Date.class, int.class);
+
+        assertThat(sql).contains("WHERE status = 'PENDING' AND next_attempt_at <= :now ORDER BY next_attempt_at")
+                .doesNotContain("IN_PROGRESS", " OR ");
+    }
+
+    private static String query(String method, Class<?>... parameterTypes) throws NoSuchMethodException {
+        return NotificationOutboxRepository.class.getMethod(method, parameterTypes).getAnnotation(Query.class).value();
+    }
+}
@@ -0,0 +1,75 @@
+package eus.klimu.notification.domain.service.implementation;
+
+import eus.klimu.notification.domain.model.ChangeFeedDTO;
+import eus.klimu.notification.domain.model.ChangeOperation;
+import eus.klimu.notification.domain.model.NotificationChangeDTO;
+import eus.klimu.notification.domain.repository.NotificationChangeRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NotificationChangeServiceImpTest {
+
+    private static final long HOUR = 3600000;
+
+    private final NotificationChangeRepository changeRepository = mock(NotificationChangeRepository.class);
+
+    @Test
+    void gapIsWaitedForEvenIfTheNextChangeIsOld() {
+        NotificationChangeServiceImp changeService = service(60000);
+        // The change after the gap was done an hour ago, but this is the first time the gap is seen.
+        when(changeRepository.findChangesAfter(eq(0L), any())).thenReturn(Arrays.asList(
+                change(1L, 10L, HOUR), change(3L, 11L, HOUR)
+        ));
+
+        ChangeFeedDTO changes = changeService.getChanges(0, 100);
+
+        assertThat(changes.getCursor()).isEqualTo(1);
+        assertThat(changes.getChanges()).extracting(NotificationChangeDTO::getId).containsExactly(10L);
+    }
+
+    @Test
+    void gapIsSkippedOnceTheSettleTimeHasPassedSinceItWasFirstSeen() throws InterruptedException {
+        NotificationChangeServiceImp changeService = service(100);
+        when(changeRepository.findChangesAfter(eq(1L), any())).thenReturn(Arrays.asList(
+                change(3L, 11L, 0), change(4L, 12L, 0)
+        ));
+
+        assertThat(changeService.getChanges(1, 100).getCursor()).isEqualTo(1);
+        Thread.sleep(150);
+        ChangeFeedDTO changes = changeService.getChanges(1, 100);
+
+        assertThat(changes.getCursor()).isEqualTo(4);
+        assertThat(changes.getChanges()).extracting(NotificationChangeDTO::getId).containsExactly(11L, 12L);
+    }
+
+    @Test
+    void onlyTheLastChangeOfANotificationIsReturned() {
+        NotificationChangeServiceImp changeService = service(60000);
+        when(changeRepository.findChangesAfter(eq(0L), any())).thenReturn(Arrays.asList(
+                change(1L, 10L, 0), change(2L, 11L, 0), change(3L, 10L, 0)
+        ));
+
+        ChangeFeedDTO changes = changeService.getChanges(0, 100);
+
+        assertThat(changes.getCursor()).isEqualTo(3);
+        assertThat(changes.getChanges()).extracting(NotificationChangeDTO::getCursor).containsExactly(2L, 3L);
+    }
+
+    private NotificationChangeServiceImp service(long settleMillis) {
+        return new NotificationChangeServiceImp(changeRepository, mock(ApplicationEventPublisher.class), settleMillis);
+    }
+
+    private static NotificationChangeDTO change(long cursor, long notificationId, long ageMillis) {
+        return new NotificationChangeDTO(
+                cursor, notificationId, ChangeOperation.UPDATED, new Date(System.currentTimeMillis() - ageMillis),
+                "Heavy rain", new Date(), 1L, 1L
+        );
+    }
+}
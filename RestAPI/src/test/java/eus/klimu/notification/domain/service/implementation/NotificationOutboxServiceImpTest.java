@@ -0,0 +1,90 @@
+package eus.klimu.notification.domain.service.implementation;
+
+import eus.klimu.channel.domain.service.definition.ChannelService;
+import eus.klimu.notification.domain.model.NotificationOutbox;
+import eus.klimu.notification.domain.model.OutboxStatus;
+import eus.klimu.notification.domain.repository.NotificationOutboxRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NotificationOutboxServiceImpTest {
+
+    private final NotificationOutboxRepository outboxRepository = mock(NotificationOutboxRepository.class);
+    private final NotificationOutboxServiceImp outboxService = new NotificationOutboxServiceImp(
+            outboxRepository, mock(ChannelService.class), 3, 1000, 600000
+    );
+
+    @Test
+    void completeOnlyRemovesTheEntriesOfTheWorker() {
+        when(outboxRepository.deleteClaimed(1L, "worker#0")).thenReturn(1);
+
+        assertThat(outboxService.complete(entry(1L, "worker#0", 1))).isTrue();
+        assertThat(outboxService.complete(entry(1L, "worker#1", 1))).isFalse();
+        verify(outboxRepository, never()).deleteById(anyLong());
+    }
+
+    @Test
+    void failedEntryIsRetriedWithBackoff() {
+        when(outboxRepository.releaseClaimed(anyLong(), anyString(), any(), any(), any(), any())).thenReturn(1);
+        long before = System.currentTimeMillis();
+
+        assertThat(outboxService.fail(entry(1L, "worker#0", 2), "timeout")).isTrue();
+
+        ArgumentCaptor<Date> nextAttemptAt = ArgumentCaptor.forClass(Date.class);
+        verify(outboxRepository).releaseClaimed(
+                eq(1L), eq("worker#0"), eq(OutboxStatus.PENDING), nextAttemptAt.capture(), eq("timeout"), isNull()
+        );
+        // Second attempt: twice the initial backoff plus up to a 20% of jitter.
+        assertThat(nextAttemptAt.getValue().getTime() - before).isBetween(2000L, 2400L + 100L);
+    }
+
+    @Test
+    void entryIsDeadAfterTheLastAttempt() {
+        when(outboxRepository.releaseClaimed(anyLong(), anyString(), any(), any(), any(), any())).thenReturn(1);
+
+        outboxService.fail(entry(1L, "worker#0", 3), "rejected");
+
+        verify(outboxRepository).releaseClaimed(
+                eq(1L), eq("worker#0"), eq(OutboxStatus.DEAD), any(), eq("rejected"), isNull()
+        );
+    }
+
+    @Test
+    void partiallySentEntryKeepsOnlyTheRecipientsLeft() {
+        when(outboxRepository.releaseClaimed(anyLong(), anyString(), any(), any(), any(), any())).thenReturn(1);
+        NotificationOutbox entry = entry(1L, "worker#0", 1);
+
+        outboxService.fail(entry, "busy", Arrays.asList(4L, 9L));
+        entry.setRecipients("4,9");
+        outboxService.fail(entry, "timeout");
+
+        verify(outboxRepository).releaseClaimed(
+                eq(1L), eq("worker#0"), eq(OutboxStatus.PENDING), any(), eq("busy"), eq("4,9")
+        );
+        verify(outboxRepository).releaseClaimed(
+                eq(1L), eq("worker#0"), eq(OutboxStatus.PENDING), any(), eq("timeout"), eq("4,9")
+        );
+        assertThat(entry.getPendingRecipients()).containsExactly(4L, 9L);
+    }
+
+    @Test
+    void failOfAnEntryClaimedByAnotherWorkerIsIgnored() {
+        when(outboxRepository.releaseClaimed(anyLong(), anyString(), any(), any(), any(), any())).thenReturn(0);
+
+        assertThat(outboxService.fail(entry(1L, "worker#0", 1), "timeout")).isFalse();
+        verify(outboxRepository, never()).save(any());
+    }
+
+    private static NotificationOutbox entry(long id, String workerId, int attempts) {
+        Date now = new Date();
+        return new NotificationOutbox(id, 10L, 1L, OutboxStatus.IN_PROGRESS, attempts, now, workerId,
+                new Date(now.getTime() + 60000), null, now, null);
+    }
+}
@@ -0,0 +1,217 @@
+package eus.klimu.notification.domain.stream;
+
+import eus.klimu.notification.domain.dispatch.DeliveryBatch;
+import eus.klimu.notification.domain.model.DesktopEvent;
+import eus.klimu.notification.domain.service.definition.DesktopEventService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NotificationStreamTest {
+
+    /**
+     * The desktop_event table, shared by the instances.
+     */
+    private final InMemoryEvents events = new InMemoryEvents();
+    private final List<NotificationStream> instances = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        instances.forEach(NotificationStream::shutdown);
+    }
+
+    @Test
+    void eventsAreReadByEveryInstance() throws InterruptedException {
+        NotificationStream first = instance(16, 60000);
+        NotificationStream second = instance(16, 60000);
+        RecordingEmitter ane = connect(first, "ane", null);
+        RecordingEmitter jon = connect(second, "jon", null);
+
+        events.save(1, "ane", "jon");
+        events.save(2, "jon");
+        first.poll();
+        second.poll();
+
+        assertThat(ane.await(2)).containsExactly(":connected", "notification:1");
+        assertThat(jon.await(3)).containsExactly(":connected", "notification:1", "notification:2");
+        assertThat(first.getEventsPublished()).isEqualTo(2);
+    }
+
+    @Test
+    void reconnectingToAnotherInstanceReplaysTheMissedEvents() throws InterruptedException {
+        NotificationStream first = instance(16, 60000);
+        NotificationStream second = instance(16, 60000);
+        events.save(1, "ane");
+        events.save(2, "jon");
+        events.save(3, "ane");
+        first.poll();
+        second.poll();
+
+        RecordingEmitter ane = connect(second, "ane", "1");
+
+        assertThat(ane.await(2)).containsExactly(":connected", "notification:3");
+        assertThat(second.getEventsReplayed()).isEqualTo(1);
+    }
+
+    @Test
+    void eventsAlreadySeenOnAnotherInstanceAreNotSentAgain() throws InterruptedException {
+        NotificationStream stream = instance(16, 60000);
+        events.save(1, "ane");
+        stream.poll();
+        events.save(2, "ane");
+        events.save(3, "ane");
+
+        // The client got event 2 from an instance that read it first.
+        RecordingEmitter ane = connect(stream, "ane", "2");
+        stream.poll();
+
+        assertThat(ane.await(2)).containsExactly(":connected", "notification:3");
+    }
+
+    @Test
+    void clientThatMissedMoreThanTheRingHasToResync() throws InterruptedException {
+        NotificationStream stream = instance(2, 60000);
+        for (long id = 1; id <= 4; id++) {
+            events.save(id, "ane");
+        }
+        stream.poll();
+
+        RecordingEmitter ane = connect(stream, "ane", "1");
+
+        assertThat(ane.await(2)).containsExactly(":connected", "resync:4");
+    }
+
+    @Test
+    void restartedInstanceKeepsTheLastEventsForReplay() throws InterruptedException {
+        events.save(1, "ane");
+        events.save(2, "ane");
+        NotificationStream restarted = instance(16, 60000);
+        restarted.poll();
+
+        RecordingEmitter ane = connect(restarted, "ane", "1");
+
+        assertThat(ane.await(2)).containsExactly(":connected", "notification:2");
+    }
+
+    @Test
+    void gapIsWaitedForUntilItIsCommitted() throws InterruptedException {
+        NotificationStream stream = instance(16, 60000);
+        RecordingEmitter ane = connect(stream, "ane", null);
+        events.save(1, "ane");
+        events.save(3, "ane");
+        stream.poll();
+        assertThat(ane.await(2)).containsExactly(":connected", "notification:1");
+
+        events.save(2, "ane");
+        stream.poll();
+
+        assertThat(ane.await(4)).containsExactly(":connected", "notification:1", "notification:2", "notification:3");
+        assertThat(stream.getSkippedEvents()).isZero();
+    }
+
+    @Test
+    void gapIsSkippedOnceTheSettleTimeHasPassedSinceItWasSeen() throws InterruptedException {
+        NotificationStream stream = instance(16, 100);
+        RecordingEmitter ane = connect(stream, "ane", null);
+        events.save(1, "ane");
+        events.save(3, "ane");
+        stream.poll();
+        stream.poll();
+        assertThat(ane.await(2)).containsExactly(":connected", "notification:1");
+
+        Thread.sleep(150);
+        stream.poll();
+
+        assertThat(ane.await(3)).containsExactly(":connected", "notification:1", "notification:3");
+        assertThat(stream.getSkippedEvents()).isEqualTo(1);
+    }
+
+    @Test
+    void slowClientIsDisconnected() throws InterruptedException {
+        NotificationStream stream = new NotificationStream(events, 60000, 1, 16, 100, 5, 1, 60000, 60000) {
+            @Override
+            SseEmitter createEmitter() {
+                return new BlockedEmitter();
+            }
+        };
+        instances.add(stream);
+        stream.poll();
+        stream.connect("ane", null);
+        for (long id = 1; id <= 4; id++) {
+            events.save(id, "ane");
+        }
+
+        stream.poll();
+
+        assertThat(stream.getSlowDisconnects()).isPositive();
+        assertThat(stream.getConnections()).isZero();
+    }
+
+    private NotificationStream instance(int replaySize, long settleMillis) {
+        NotificationStream stream = new NotificationStream(events, 60000, 16, replaySize, 100, 5, 1, settleMillis, 60000) {
+            @Override
+            SseEmitter createEmitter() {
+                return new RecordingEmitter();
+            }
+        };
+        instances.add(stream);
+        // Instances start reading after the events that already exist.
+        stream.poll();
+        return stream;
+    }
+
+    private static RecordingEmitter connect(NotificationStream stream, String username, String lastEventId) {
+        return (RecordingEmitter) stream.connect(username, lastEventId);
+    }
+
+    /**
+     * An emitter whose client never reads, so its writer stays blocked.
+     */
+    private static final class BlockedEmitter extends SseEmitter {
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private static final class InMemoryEvents implements DesktopEventService {
+
+        private final NavigableMap<Long, DesktopEvent> rows = new TreeMap<>();
+
+        synchronized void save(long id, String... usernames) {
+            rows.put(id, new DesktopEvent(id, "{\"id\":" + id + "}", String.join("\n", usernames), new Date()));
+        }
+
+        @Override
+        public DesktopEvent publish(DeliveryBatch batch) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public synchronized List<DesktopEvent> getEventsAfter(long since, int limit) {
+            return rows.tailMap(since, false).values().stream().limit(limit).collect(Collectors.toList());
+        }
+
+        @Override
+        public synchronized long getLastId() {
+            return rows.isEmpty() ? 0 : rows.lastKey();
+        }
+
+        @Override
+        public int purge(long retentionMillis) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package eus.klimu.notification.domain.stream;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An emitter that keeps the events written to it, as "name:id" for the events and ":text" for the comments.
+ */
+class RecordingEmitter extends SseEmitter {
+
+    private static final Pattern ID = Pattern.compile("^id:(.*)$", Pattern.MULTILINE);
+    private static final Pattern NAME = Pattern.compile("^event:(.*)$", Pattern.MULTILINE);
+
+    private final List<String> events = new ArrayList<>();
+    private boolean failing;
+    private boolean completed;
+
+    @Override
+    public synchronized void send(SseEventBuilder builder) throws IOException {
+        if (failing) {
+            throw new IOException("Broken pipe");
+        }
+        StringBuilder text = new StringBuilder();
+        builder.build().forEach(part -> text.append(part.getData()));
+        Matcher id = ID.matcher(text);
+        Matcher name = NAME.matcher(text);
+        events.add(id.find() && name.find() ? name.group(1) + ":" + id.group(1) : text.toString().trim());
+    }
+
+    @Override
+    public synchronized void complete() {
+        completed = true;
+    }
+
+    synchronized List<String> getEvents() {
+        return new ArrayList<>(events);
+    }
+
+    synchronized boolean isCompleted() {
+        return completed;
+    }
+
+    synchronized void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    /**
+     * Wait until the writers have written some events.
+     * @param count The amount of events expected.
+     * @return The events written.
+     */
+    List<String> await(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (getEvents().size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        return getEvents();
+    }
+}
@@ -0,0 +1,64 @@
+package eus.klimu.notification.domain.stream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamConnectionTest {
+
+    private final RecordingEmitter emitter = new RecordingEmitter();
+    private final AtomicInteger closes = new AtomicInteger();
+
+    @Test
+    void eventsAreWrittenInOrder() {
+        StreamConnection connection = new StreamConnection("ane", emitter, 4, Runnable::run, closes::incrementAndGet);
+
+        connection.offer(event(1));
+        connection.offer(event(2));
+
+        assertThat(emitter.getEvents()).containsExactly("notification:1", "notification:2");
+        assertThat(connection.getBuffered()).isZero();
+    }
+
+    @Test
+    void slowClientIsDisconnectedWhenItsBufferIsFull() {
+        List<Runnable> writers = new ArrayList<>();
+        StreamConnection connection = new StreamConnection("ane", emitter, 2, writers::add, closes::incrementAndGet);
+
+        assertThat(connection.offer(event(1))).isTrue();
+        assertThat(connection.offer(event(2))).isTrue();
+        assertThat(connection.offer(event(3))).isFalse();
+
+        assertThat(connection.isClosed()).isTrue();
+        assertThat(connection.getBuffered()).isZero();
+        assertThat(emitter.isCompleted()).isTrue();
+        assertThat(connection.offer(event(4))).isFalse();
+        assertThat(closes).hasValue(1);
+
+        // The drain scheduled before the disconnection writes nothing.
+        writers.forEach(Runnable::run);
+        assertThat(emitter.getEvents()).isEmpty();
+    }
+
+    @Test
+    void failedWriteClosesTheConnection() {
+        StreamConnection connection = new StreamConnection("ane", emitter, 4, Runnable::run, closes::incrementAndGet);
+        emitter.setFailing(true);
+
+        connection.offer(event(1));
+
+        assertThat(connection.isClosed()).isTrue();
+        assertThat(closes).hasValue(1);
+        // The container already ended the response.
+        assertThat(emitter.isCompleted()).isFalse();
+    }
+
+    private static SseEmitter.SseEventBuilder event(long id) {
+        return SseEmitter.event().id(String.valueOf(id)).name("notification").data("{}");
+    }
+}
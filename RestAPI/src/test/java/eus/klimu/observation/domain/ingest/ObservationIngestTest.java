@@ -0,0 +1,129 @@
+package eus.klimu.observation.domain.ingest;
+
+import eus.klimu.observation.domain.model.Observation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ObservationIngestTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final Connection connection = mock(Connection.class);
+    private final PreparedStatement statement = mock(PreparedStatement.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        Statement lastInsertId = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.supportsBatchUpdates()).thenReturn(true);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.getConnection()).thenReturn(connection);
+        when(statement.executeUpdate()).thenReturn(1);
+        when(statement.executeBatch()).thenAnswer(invocation -> new int[0]);
+        when(connection.createStatement()).thenReturn(lastInsertId);
+        when(lastInsertId.executeQuery("SELECT LAST_INSERT_ID()")).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getLong(1)).thenReturn(110L);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    }
+
+    @Test
+    void batchThatDoesNotFitOnTheQueueIsRejected() {
+        ObservationIngest ingest = newIngest(3);
+
+        assertThat(ingest.offer(observations(2))).isTrue();
+        assertThat(ingest.offer(observations(2))).isFalse();
+
+        assertThat(ingest.getQueueDepth()).isEqualTo(2);
+        assertThat(ingest.getAccepted()).isEqualTo(2);
+        assertThat(ingest.getRejected()).isEqualTo(2);
+        assertThat(ingest.getRejectedRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void queuedObservationsAreCommittedTogether() throws SQLException {
+        ObservationIngest ingest = newIngest(100);
+        ingest.offer(observations(5));
+        ingest.offer(observations(5));
+
+        ingest.shutdown();
+
+        assertThat(ingest.getCommits()).isEqualTo(1);
+        assertThat(ingest.getCommitted()).isEqualTo(10);
+        assertThat(ingest.getMaxCommitSize()).isEqualTo(10);
+        assertThat(ingest.getQueueDepth()).isZero();
+        verify(statement).setLong(1, 100L);
+        verify(statement).setLong(1, 109L);
+        verify(statement, times(10)).addBatch();
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void observationsAreNotAcceptedOnceStopping() {
+        ObservationIngest ingest = newIngest(100);
+        ingest.shutdown();
+
+        assertThat(ingest.offer(observations(1))).isFalse();
+    }
+
+    @Test
+    void batchInterruptedWhileWaitingToRetryIsDropped() throws InterruptedException {
+        CountDownLatch failed = new CountDownLatch(1);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            failed.countDown();
+            throw new CannotCreateTransactionException("The database is down");
+        });
+        ObservationIngest ingest = new ObservationIngest(
+                dataSource, new TransactionTemplate(transactionManager), 100, 1, 100, 0, 3, 50, 1
+        );
+        ingest.offer(observations(5));
+        ingest.start();
+        assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // The writer is waiting to try again, and doesn't finish before the shutdown times out.
+        ingest.shutdown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (ingest.getDropped() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(ingest.getDropped()).isEqualTo(5);
+        assertThat(ingest.getCommitted()).isZero();
+        assertThat(ingest.getQueueDepth()).isZero();
+    }
+
+    private ObservationIngest newIngest(int capacity) {
+        return new ObservationIngest(
+                dataSource, new TransactionTemplate(transactionManager), capacity, 1, 100, 0, 1, 5000, 1
+        );
+    }
+
+    private static List<Observation> observations(int count) {
+        List<Observation> observations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            observations.add(new Observation(null, 1L, "temperature", 20.5, "C", new Date(), new Date()));
+        }
+        return observations;
+    }
+}
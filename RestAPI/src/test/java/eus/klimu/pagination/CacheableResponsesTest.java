@@ -0,0 +1,37 @@
+package eus.klimu.pagination;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheableResponsesTest {
+
+    private final CacheableResponses responses = new CacheableResponses(new ObjectMapper(), 30);
+
+    @Test
+    void responsesAreOnlyKeptForTheUserThatAskedForThem() {
+        ResponseEntity<byte[]> response = responses.page(Arrays.asList(1, 2), "2", null);
+
+        assertThat(response.getHeaders().getCacheControl()).isEqualTo("max-age=30, private");
+        assertThat(response.getHeaders().getVary()).containsExactly("accessToken", "refreshToken");
+        assertThat(response.getHeaders().getFirst(KeysetPagination.NEXT_CURSOR_HEADER)).isEqualTo("2");
+    }
+
+    @Test
+    void clientWithTheContentGetsNotModified() {
+        String eTag = responses.page(Arrays.asList(1, 2), null, null).getHeaders().getETag();
+
+        ResponseEntity<byte[]> response = responses.page(Arrays.asList(1, 2), null, eTag);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getBody()).isNull();
+        assertThat(response.getHeaders().getVary()).isNotEmpty();
+        assertThat(response.getHeaders().getFirst(HttpHeaders.ETAG)).isEqualTo(eTag);
+    }
+}
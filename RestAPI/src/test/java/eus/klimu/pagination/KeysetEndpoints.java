@@ -0,0 +1,89 @@
+package eus.klimu.pagination;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Checks the wiring of the /all endpoints with the keyset pagination, on a table of five elements with the
+ * identification numbers 1 to 5, streamed by batches of two.
+ */
+public final class KeysetEndpoints {
+
+    private KeysetEndpoints() {}
+
+    /**
+     * Create the keyset pagination of the endpoints, streaming by batches of two.
+     * @return The keyset pagination.
+     */
+    public static KeysetPagination pagination() {
+        KeysetPagination pagination = new KeysetPagination(new ObjectMapper(), 1000, 2);
+        ReflectionTestUtils.setField(pagination, "entityManager", mock(EntityManager.class));
+        return pagination;
+    }
+
+    /**
+     * Answer the keyset query of a service with the elements of a table.
+     * @param rows The elements of the table, in order.
+     * @param id Gets the identification number of an element.
+     * @param <T> The type of the elements.
+     * @return The answer of the (after, limit) query.
+     */
+    public static <T> Answer<List<T>> table(List<T> rows, ToLongFunction<T> id) {
+        return invocation -> {
+            long after = invocation.getArgument(0);
+            int limit = invocation.getArgument(1);
+            return rows.stream().filter(row -> id.applyAsLong(row) > after).limit(limit).collect(Collectors.toList());
+        };
+    }
+
+    /**
+     * Check that a page continues after the cursor and gives the cursor of the next page.
+     * @param mockMvc The controller.
+     * @param path The path of the /all endpoint.
+     */
+    public static void checkPage(MockMvc mockMvc, String path) throws Exception {
+        mockMvc.perform(get(path).param("after", "1").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(KeysetPagination.NEXT_CURSOR_HEADER, "3"))
+                .andExpect(jsonPath("$[*].id", contains(2, 3)));
+        mockMvc.perform(get(path).param("after", "3").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(KeysetPagination.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$[*].id", contains(4, 5)));
+    }
+
+    /**
+     * Check that the endpoint without parameters streams the whole table.
+     * @param mockMvc The controller.
+     * @param path The path of the /all endpoint.
+     */
+    public static void checkStream(MockMvc mockMvc, String path) throws Exception {
+        mockMvc.perform(get(path))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(KeysetPagination.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$[*].id", contains(1, 2, 3, 4, 5)));
+    }
+
+    /**
+     * Check that the endpoint rejects a negative cursor and a limit out of range.
+     * @param mockMvc The controller.
+     * @param path The path of the /all endpoint.
+     */
+    public static void checkInvalidParameters(MockMvc mockMvc, String path) throws Exception {
+        mockMvc.perform(get(path).param("after", "-1")).andExpect(status().isBadRequest());
+        mockMvc.perform(get(path).param("limit", "0")).andExpect(status().isBadRequest());
+        mockMvc.perform(get(path).param("limit", "1001")).andExpect(status().isBadRequest());
+    }
+}
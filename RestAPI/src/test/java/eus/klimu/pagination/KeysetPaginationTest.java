@@ -0,0 +1,73 @@
+package eus.klimu.pagination;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class KeysetPaginationTest {
+
+    private final List<Long> table = LongStream.rangeClosed(1, 25).boxed().collect(Collectors.toList());
+    private final List<Long> readAfter = new ArrayList<>();
+    private final EntityManager entityManager = mock(EntityManager.class);
+    private final KeysetPagination pagination = new KeysetPagination(new ObjectMapper(), 100, 10);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(pagination, "entityManager", entityManager);
+    }
+
+    @Test
+    void fullPageHasTheNextCursor() {
+        ResponseEntity<List<Long>> page = pagination.page(this::find, Long::longValue, 5L, 10);
+
+        assertThat(page.getBody()).containsExactly(6L, 7L, 8L, 9L, 10L, 11L, 12L, 13L, 14L, 15L);
+        assertThat(page.getHeaders().getFirst(KeysetPagination.NEXT_CURSOR_HEADER)).isEqualTo("15");
+    }
+
+    @Test
+    void lastPageHasNoNextCursor() {
+        ResponseEntity<List<Long>> page = pagination.page(this::find, Long::longValue, 20L, 10);
+
+        assertThat(page.getBody()).containsExactly(21L, 22L, 23L, 24L, 25L);
+        assertThat(page.getHeaders().containsKey(KeysetPagination.NEXT_CURSOR_HEADER)).isFalse();
+    }
+
+    @Test
+    void invalidLimitIsRejected() {
+        assertThat(pagination.page(this::find, Long::longValue, null, 0).getStatusCode())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(pagination.page(this::find, Long::longValue, null, 101).getStatusCode())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void streamWritesEveryElementByBatches() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        pagination.stream(response, this::find, Long::longValue);
+
+        assertThat(response.getContentAsString()).isEqualTo(table.toString().replace(" ", ""));
+        assertThat(readAfter).containsExactly(0L, 10L, 20L);
+        verify(entityManager, times(3)).clear();
+    }
+
+    private List<Long> find(long after, int limit) {
+        readAfter.add(after);
+        return table.stream().filter(id -> id > after).limit(limit).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,54 @@
+package eus.klimu.security;
+
+import eus.klimu.channel.sender.smtp.SmtpMessage;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmailManagerTest {
+
+    @Test
+    void plainAddressesAreValid() {
+        assertThat(EmailManager.check("ane@klimu.eus")).isEqualTo("OK");
+        assertThat(EmailManager.check("ane.etxeberria+alerts@mail.klimu.eus")).isEqualTo("OK");
+        assertThat(EmailManager.isValid("ane@klimu.eus")).isTrue();
+    }
+
+    @Test
+    void missingEmailIsAllowedButNotSendable() {
+        assertThat(EmailManager.check(null)).isEqualTo("OK");
+        assertThat(EmailManager.check("")).isEqualTo("OK");
+        assertThat(EmailManager.isValid(null)).isFalse();
+        assertThat(EmailManager.isValid("")).isFalse();
+    }
+
+    @Test
+    void addressesThatCouldInjectCommandsAreRejected() {
+        String[] emails = {
+                "ane@klimu.eus\r\nRCPT TO:<jon@klimu.eus>", "ane@klimu.eus\nBcc: jon@klimu.eus",
+                "ane@klimu.eus>", "<ane@klimu.eus", "ane @klimu.eus", "ane@klimu.eus\u0000"
+        };
+        for (String email : emails) {
+            assertThat(EmailManager.check(email)).as(email).isNotEqualTo("OK");
+            assertThat(EmailManager.isValid(email)).as(email).isFalse();
+        }
+    }
+
+    @Test
+    void malformedAddressesAreRejected() {
+        assertThat(EmailManager.check("klimu.eus")).isNotEqualTo("OK");
+        assertThat(EmailManager.check("@klimu.eus")).isNotEqualTo("OK");
+        assertThat(EmailManager.check("ane@")).isNotEqualTo("OK");
+        assertThat(EmailManager.check("ane@jon@klimu.eus")).isNotEqualTo("OK");
+        assertThat(EmailManager.check(new String(new char[250]).replace('\0', 'a') + "@k.eu")).isNotEqualTo("OK");
+    }
+
+    @Test
+    void messagesCanOnlyBeBuiltWithValidAddresses() {
+        assertThatThrownBy(() -> new SmtpMessage("noreply@klimu.eus", "ane@klimu.eus\r\nDATA", "Rain", "body"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(new SmtpMessage("noreply@klimu.eus", "ane@klimu.eus", "Rain", "body").toData())
+                .contains("To: <ane@klimu.eus>\r\n");
+    }
+}
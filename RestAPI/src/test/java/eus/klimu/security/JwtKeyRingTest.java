@@ -0,0 +1,113 @@
+package eus.klimu.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JwtKeyRingTest {
+
+    @Test
+    void temporaryKeyIsGeneratedWhenNoneIsConfigured() throws Exception {
+        JwtKeyRing keyRing = new JwtKeyRing(new JwtKeyProperties());
+        SigningKey activeKey = keyRing.getActiveKey();
+
+        String token = JWT.create().withKeyId(activeKey.getId()).withSubject("ane").sign(activeKey.getAlgorithm());
+
+        assertThat(activeKey.isSigning()).isTrue();
+        assertThat(keyRing.getVerifier(activeKey.getId()).verify(token).getSubject()).isEqualTo("ane");
+    }
+
+    @Test
+    void retiredKeyStillVerifiesItsTokens() throws Exception {
+        KeyPair oldPair = generate("RSA", 2048);
+        KeyPair newPair = generate("EC", 256);
+        JwtKeyProperties properties = new JwtKeyProperties();
+        properties.setActiveKey("new");
+        properties.getKeys().add(key("old", SigningKey.RS256, oldPair, false));
+        properties.getKeys().add(key("new", SigningKey.ES256, newPair, true));
+
+        JwtKeyRing keyRing = new JwtKeyRing(properties);
+        SigningKey oldKey = new SigningKey("old", SigningKey.RS256, oldPair.getPublic(), oldPair.getPrivate());
+        String oldToken = JWT.create().withKeyId("old").withSubject("ane").sign(oldKey.getAlgorithm());
+        String newToken = JWT.create().withKeyId("new").withSubject("jon")
+                .sign(keyRing.getActiveKey().getAlgorithm());
+
+        assertThat(keyRing.getActiveKey().getId()).isEqualTo("new");
+        assertThat(keyRing.getVerifier("old").verify(oldToken).getSubject()).isEqualTo("ane");
+        assertThat(keyRing.getVerifier("new").verify(newToken).getSubject()).isEqualTo("jon");
+        assertThatThrownBy(() -> keyRing.getVerifier("new").verify(oldToken))
+                .isInstanceOf(JWTVerificationException.class);
+    }
+
+    @Test
+    void unknownKeyHasNoVerifier() throws Exception {
+        JwtKeyRing keyRing = new JwtKeyRing(new JwtKeyProperties());
+
+        assertThat(keyRing.getVerifier("unknown")).isNull();
+        assertThat(keyRing.getVerifier(null)).isNull();
+    }
+
+    @Test
+    void activeKeyMustBeAbleToSign() throws Exception {
+        JwtKeyProperties properties = new JwtKeyProperties();
+        properties.setActiveKey("old");
+        properties.getKeys().add(key("old", SigningKey.RS256, generate("RSA", 2048), false));
+
+        assertThatThrownBy(() -> new JwtKeyRing(properties)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void jwksPublishesEveryPublicKey() throws Exception {
+        JwtKeyProperties properties = new JwtKeyProperties();
+        properties.setActiveKey("ec");
+        properties.getKeys().add(key("rsa", SigningKey.RS256, generate("RSA", 2048), false));
+        properties.getKeys().add(key("ec", SigningKey.ES256, generate("EC", 256), true));
+
+        List<Map<String, Object>> keys = (List<Map<String, Object>>) new JwtKeyRing(properties).toJwks().get("keys");
+
+        assertThat(keys).extracting(jwk -> jwk.get("kid")).containsExactly("rsa", "ec");
+        assertThat(keys.get(0)).containsEntry("kty", "RSA").containsEntry("alg", "RS256").containsKeys("n", "e");
+        assertThat(keys.get(1)).containsEntry("kty", "EC").containsEntry("crv", "P-256");
+        // The coordinates are always 32 bytes, 43 characters in base64url without padding.
+        assertThat((String) keys.get(1).get("x")).hasSize(43);
+        assertThat((String) keys.get(1).get("y")).hasSize(43);
+        assertThat(keys).allSatisfy(jwk -> assertThat(jwk).doesNotContainKeys("d", "p", "q"));
+    }
+
+    private static KeyPair generate(String algorithm, int size) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(algorithm);
+        generator.initialize(size);
+        return generator.generateKeyPair();
+    }
+
+    private static JwtKeyProperties.Key key(String id, String algorithm, KeyPair keyPair, boolean withPrivateKey) {
+        JwtKeyProperties.Key key = new JwtKeyProperties.Key();
+        key.setId(id);
+        key.setAlgorithm(algorithm);
+        key.setPublicKey(pem("PUBLIC KEY", keyPair.getPublic().getEncoded()));
+        if (withPrivateKey) {
+            key.setPrivateKey(pem("PRIVATE KEY", keyPair.getPrivate().getEncoded()));
+        }
+        return key;
+    }
+
+    private static Resource pem(String type, byte[] encoded) {
+        String pem = "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(encoded)
+                + "\n-----END " + type + "-----\n";
+        return new ByteArrayResource(pem.getBytes(StandardCharsets.US_ASCII));
+    }
+}
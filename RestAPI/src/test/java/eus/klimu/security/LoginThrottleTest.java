@@ -0,0 +1,70 @@
+package eus.klimu.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LoginThrottleTest {
+
+    // One attempt per minute recovered, so no bucket refills while a test runs.
+    private final LoginThrottle throttle = new LoginThrottle(4, 1000, 3, 1, 5, 1);
+
+    @Test
+    void usernameIsThrottledAfterItsCapacity() {
+        for (int i = 0; i < 3; i++) {
+            throttle.acquire("ane", "10.0.0." + i);
+        }
+
+        assertThatThrownBy(() -> throttle.acquire("ane", "10.0.0.9"))
+                .isInstanceOfSatisfying(LoginThrottledException.class,
+                        e -> assertThat(e.getRetryAfterSeconds()).isBetween(1L, 60L));
+        assertThat(throttle.getAllowed()).isEqualTo(3);
+        assertThat(throttle.getThrottled()).isEqualTo(1);
+    }
+
+    @Test
+    void addressIsThrottledAcrossUsernames() {
+        for (int i = 0; i < 5; i++) {
+            throttle.acquire("user" + i, "10.0.0.1");
+        }
+
+        assertThatThrownBy(() -> throttle.acquire("jon", "10.0.0.1")).isInstanceOf(LoginThrottledException.class);
+        throttle.acquire("jon", "10.0.0.2");
+    }
+
+    @Test
+    void throttledAddressDoesNotSpendTheUsernameAttempts() {
+        for (int i = 0; i < 5; i++) {
+            throttle.acquire("user" + i, "10.0.0.1");
+        }
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> throttle.acquire("ane", "10.0.0.1")).isInstanceOf(LoginThrottledException.class);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            throttle.acquire("ane", "10.0.0.2");
+        }
+    }
+
+    @Test
+    void successfulLoginResetsTheUsername() {
+        for (int i = 0; i < 3; i++) {
+            throttle.acquire("ane", "10.0.0." + i);
+        }
+        throttle.reset("ane");
+
+        throttle.acquire("ane", "10.0.0.9");
+        assertThat(throttle.getThrottled()).isZero();
+    }
+
+    @Test
+    void trackedKeysAreBounded() {
+        LoginThrottle small = new LoginThrottle(2, 10, 3, 1, 5, 1);
+        for (int i = 0; i < 1000; i++) {
+            small.acquire("user" + i, null);
+        }
+
+        assertThat(small.getTrackedKeys()).isLessThanOrEqualTo(10);
+    }
+}
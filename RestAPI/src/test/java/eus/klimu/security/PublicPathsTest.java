@@ -0,0 +1,80 @@
+package eus.klimu.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PublicPathsTest {
+
+    @Test
+    void wildcardPatternsMatchThePathAndEverythingBelow() {
+        assertThat(PublicPaths.isPublic("/login")).isTrue();
+        assertThat(PublicPaths.isPublic("/login/")).isTrue();
+        assertThat(PublicPaths.isPublic("/access/refresh")).isTrue();
+        assertThat(PublicPaths.isPublic("/role/name/ADMIN")).isTrue();
+        assertThat(PublicPaths.isPublic("/github-webhook/push/main")).isTrue();
+    }
+
+    @Test
+    void exactPatternsOnlyMatchThePath() {
+        assertThat(PublicPaths.isPublic("/user/create")).isTrue();
+        assertThat(PublicPaths.isPublic("/channel/all")).isTrue();
+        assertThat(PublicPaths.isPublic("/user/create/")).isTrue();
+        assertThat(PublicPaths.isPublic("/channel/all/")).isTrue();
+
+        assertThat(PublicPaths.isPublic("/user")).isFalse();
+        assertThat(PublicPaths.isPublic("/user/create/admin")).isFalse();
+        assertThat(PublicPaths.isPublic("/channel/1")).isFalse();
+        assertThat(PublicPaths.isPublic("/role/1")).isFalse();
+    }
+
+    @Test
+    void prefixesOfSegmentsAreNotPublic() {
+        assertThat(PublicPaths.isPublic("/loginx")).isFalse();
+        assertThat(PublicPaths.isPublic("/accessories")).isFalse();
+        assertThat(PublicPaths.isPublic("/user/created")).isFalse();
+    }
+
+    @Test
+    void malformedPathsAreNotPublic() {
+        assertThat(PublicPaths.isPublic(null)).isFalse();
+        assertThat(PublicPaths.isPublic("")).isFalse();
+        assertThat(PublicPaths.isPublic("login")).isFalse();
+        assertThat(PublicPaths.isPublic("/")).isFalse();
+    }
+
+    @Test
+    void restrictedPathsBelowAWildcardNeedAuthentication() {
+        assertThat(PublicPaths.isPublic("/access/auth/batch")).isFalse();
+        assertThat(PublicPaths.isPublic("/access/auth/batch/")).isFalse();
+        assertThat(PublicPaths.isPublic("/access/auth/batch/more")).isFalse();
+
+        assertThat(PublicPaths.isPublic("/access/auth/some.token")).isTrue();
+        assertThat(PublicPaths.isPublic("/access/auth")).isTrue();
+    }
+
+    @Test
+    void trieAgreesWithTheSecurityMatchers() {
+        String[] paths = {
+                "/login", "/login/", "/login/form", "/access/refresh", "/access/jwks", "/role/name/USER", "/role/all",
+                "/github-webhook", "/channel/all", "/channel/all/", "/channel/2", "/user-notification/create",
+                "/user-notification/create/", "/user-notification/all", "/user/create", "/user/create/", "/user/me",
+                "/user/me/", "/notification/search", "/access/auth/some.token", "/access/auth/batch",
+                "/access/auth/batch/", "/access/auth/batch/more"
+        };
+
+        for (String path : paths) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+            request.setServletPath(path);
+            boolean securityMatch = Arrays.stream(PublicPaths.getRestricted())
+                    .noneMatch(pattern -> new AntPathRequestMatcher(pattern).matches(request))
+                    && Arrays.stream(PublicPaths.getPatterns())
+                    .anyMatch(pattern -> new AntPathRequestMatcher(pattern).matches(request));
+            assertThat(PublicPaths.isPublic(path)).as(path).isEqualTo(securityMatch);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package eus.klimu.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RevocationFilterTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final RevocationFilter filter = new RevocationFilter(60, 1000, 0.01);
+
+    @Test
+    void revokedTokensAreAlwaysFound() {
+        long expiresAt = System.currentTimeMillis() + HOUR;
+        for (int i = 0; i < 1000; i++) {
+            filter.add("token-" + i, expiresAt);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(filter.mightContain("token-" + i)).isTrue();
+        }
+    }
+
+    @Test
+    void falsePositivesStayNearTheConfiguredRate() {
+        long expiresAt = System.currentTimeMillis() + HOUR;
+        for (int i = 0; i < 1000; i++) {
+            filter.add(UUID.randomUUID().toString(), expiresAt);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) {
+                falsePositives++;
+            }
+        }
+        // 1% expected, 3% leaves room for the randomness of the identifiers.
+        assertThat(falsePositives).isLessThan(300);
+        assertThat(filter.getPossibleHits()).isEqualTo(falsePositives);
+    }
+
+    @Test
+    void expiredSlicesAreDropped() {
+        long now = System.currentTimeMillis();
+        filter.add("expired", now - 2 * HOUR);
+        filter.add("valid", now + 2 * HOUR);
+
+        filter.expire(now);
+
+        assertThat(filter.getSlices()).isEqualTo(1);
+        assertThat(filter.mightContain("expired")).isFalse();
+        assertThat(filter.mightContain("valid")).isTrue();
+    }
+
+    @Test
+    void clearDropsEverySlice() {
+        filter.add("token", System.currentTimeMillis() + HOUR);
+        filter.clear();
+
+        assertThat(filter.mightContain("token")).isFalse();
+        assertThat(filter.getMemoryBytes()).isZero();
+    }
+}
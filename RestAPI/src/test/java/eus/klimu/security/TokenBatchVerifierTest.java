@@ -0,0 +1,79 @@
+package eus.klimu.security;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TokenBatchVerifierTest {
+
+    private final TokenManagement tokenManagement = mock(TokenManagement.class);
+    private final VerifiedToken valid = new VerifiedToken("ane", "jti", Collections.emptyList(), Long.MAX_VALUE);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private TokenBatchVerifier verifier;
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        verifier.shutdown();
+    }
+
+    @Test
+    void resultsKeepTheOrderOfTheBatch() {
+        verifier = new TokenBatchVerifier(tokenManagement, 2, 4, 2, 1000);
+        when(tokenManagement.introspect(anyString())).thenAnswer(invocation -> {
+            if (invocation.<String>getArgument(0).startsWith("bad")) {
+                throw new JWTVerificationException("Invalid token");
+            }
+            return valid;
+        });
+
+        List<VerifiedToken> verified = verifier.verify(Arrays.asList("good1", "bad1", null, "good2", "bad2"));
+
+        assertThat(verified).containsExactly(valid, null, null, valid, null);
+        assertThat(verifier.getTokens()).isEqualTo(5);
+    }
+
+    @Test
+    void fullExecutorRejectsTheBatch() throws InterruptedException {
+        verifier = new TokenBatchVerifier(tokenManagement, 1, 1, 1, 5000);
+        CountDownLatch started = new CountDownLatch(1);
+        when(tokenManagement.introspect(anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return valid;
+        });
+        Thread blocked = new Thread(() -> verifier.verify(Collections.singletonList("slow")));
+        blocked.start();
+        assertThat(started.await(1, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> verifier.verify(Arrays.asList("a", "b", "c")))
+                .isInstanceOf(TokenBatchRejectedException.class);
+        assertThat(verifier.getRejected()).isEqualTo(1);
+        release.countDown();
+        blocked.join(1000);
+    }
+
+    @Test
+    void slowBatchIsRejectedAfterTheTimeout() {
+        verifier = new TokenBatchVerifier(tokenManagement, 1, 4, 10, 50);
+        when(tokenManagement.introspect(anyString())).thenAnswer(invocation -> {
+            release.await();
+            return valid;
+        });
+
+        assertThatThrownBy(() -> verifier.verify(Collections.singletonList("slow")))
+                .isInstanceOf(TokenBatchRejectedException.class);
+    }
+}
@@ -0,0 +1,72 @@
+package eus.klimu.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenCacheTest {
+
+    private final TokenCache cache = new TokenCache(10);
+
+    @Test
+    void cachedTokenIsServedUntilItExpires() {
+        VerifiedToken valid = token(System.currentTimeMillis() + 60_000);
+        cache.put("header.payload.valid", valid);
+
+        assertThat(cache.get("header.payload.valid")).isSameAs(valid);
+        assertThat(cache.get("header.payload.other")).isNull();
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredTokenIsDroppedOnRead() {
+        cache.put("header.payload.expired", token(System.currentTimeMillis() - 1));
+
+        assertThat(cache.get("header.payload.expired")).isNull();
+        assertThat(cache.getSize()).isZero();
+    }
+
+    @Test
+    void removedTokenIsNotServed() {
+        cache.put("header.payload.removed", token(System.currentTimeMillis() + 60_000));
+        cache.remove("header.payload.removed");
+
+        assertThat(cache.get("header.payload.removed")).isNull();
+    }
+
+    @Test
+    void fullCacheDropsExpiredTokensFirst() {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            cache.put("expired." + i, token(now - 1));
+        }
+        for (int i = 0; i < 5; i++) {
+            cache.put("valid." + i, token(now + 60_000));
+        }
+        cache.put("valid.new", token(now + 60_000));
+
+        assertThat(cache.getSize()).isEqualTo(6);
+        assertThat(cache.getEvictions()).isEqualTo(5);
+        for (int i = 0; i < 5; i++) {
+            assertThat(cache.get("valid." + i)).isNotNull();
+        }
+    }
+
+    @Test
+    void cacheNeverGrowsPastItsMaximumSize() {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        for (int i = 0; i < 100; i++) {
+            cache.put("valid." + i, token(expiresAt));
+        }
+
+        assertThat(cache.getSize()).isLessThanOrEqualTo(10);
+        assertThat(cache.getEvictions()).isPositive();
+    }
+
+    private static VerifiedToken token(long expiresAt) {
+        return new VerifiedToken("ane", "jti", Collections.emptyList(), expiresAt);
+    }
+}
@@ -0,0 +1,95 @@
+package eus.klimu.security;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import eus.klimu.users.domain.service.definition.RevokedTokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TokenManagementTest {
+
+    private final Set<String> revoked = new HashSet<>();
+    private final RevokedTokenService revokedTokenService = mock(RevokedTokenService.class);
+    private final User user = new User("ane", "null", Collections.singletonList(new SimpleGrantedAuthority("USER")));
+    private TokenManagement tokenManagement;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(revokedTokenService.revoke(anyString(), anyString(), any())).thenAnswer(
+                invocation -> revoked.add(invocation.getArgument(0))
+        );
+        when(revokedTokenService.isRevoked(anyString())).thenAnswer(
+                invocation -> revoked.contains(invocation.<String>getArgument(0))
+        );
+        tokenManagement = new TokenManagement(
+                new JwtKeyRing(new JwtKeyProperties()), new TokenCache(100), revokedTokenService
+        );
+    }
+
+    @Test
+    void rotatedRefreshTokenCanNotBeUsedAgain() {
+        String refreshToken = bearer(TokenManagement.REFRESH_TIME);
+        assertThat(tokenManagement.getUserFromToken(refreshToken).getUsername()).isEqualTo("ane");
+
+        assertThat(tokenManagement.revokeToken(refreshToken)).isTrue();
+
+        assertThatThrownBy(() -> tokenManagement.getUsernamePasswordToken(refreshToken))
+                .isInstanceOf(JWTVerificationException.class);
+    }
+
+    @Test
+    void concurrentRotationIsDetectedAsReplay() {
+        String refreshToken = bearer(TokenManagement.REFRESH_TIME);
+        // Both requests verified the token before either of them revoked it.
+        tokenManagement.getUserFromToken(refreshToken);
+        when(revokedTokenService.isRevoked(anyString())).thenReturn(false);
+
+        assertThat(tokenManagement.revokeToken(refreshToken)).isTrue();
+        assertThat(tokenManagement.revokeToken(refreshToken)).isFalse();
+    }
+
+    @Test
+    void revokingOneTokenKeepsTheOthersValid() {
+        String accessToken = bearer(TokenManagement.ACCESS_TIME);
+        String refreshToken = bearer(TokenManagement.REFRESH_TIME);
+
+        tokenManagement.revokeToken(accessToken);
+
+        assertThatThrownBy(() -> tokenManagement.introspect(accessToken)).isInstanceOf(JWTVerificationException.class);
+        assertThat(tokenManagement.introspect(refreshToken).getUsername()).isEqualTo("ane");
+    }
+
+    @Test
+    void cachedTokenGivesEachRequestItsOwnAuthentication() {
+        String accessToken = bearer(TokenManagement.ACCESS_TIME);
+        UsernamePasswordAuthenticationToken first = tokenManagement.getUsernamePasswordToken(accessToken);
+        first.setDetails("request 1");
+        first.eraseCredentials();
+
+        UsernamePasswordAuthenticationToken second = tokenManagement.getUsernamePasswordToken(accessToken);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getDetails()).isNull();
+        assertThat(second.getName()).isEqualTo("ane");
+        assertThat(second.getAuthorities()).extracting(GrantedAuthority::getAuthority).containsExactly("USER");
+    }
+
+    private String bearer(int durationTime) {
+        return TokenManagement.TOKEN_SIGNATURE_NAME
+                + tokenManagement.generateToken(user, "https://klimu.eus/RestAPI/login", durationTime);
+    }
+}
@@ -0,0 +1,97 @@
+package eus.klimu.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserDetailsCacheTest {
+
+    private final UserDetailsCache cache = new UserDetailsCache(100, 600);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void clearTransaction() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void userIsLoadedOnceUntilInvalidated() {
+        cache.get("ane", loader("hash1"));
+        UserDetails cached = cache.get("ane", loader("hash2"));
+
+        assertThat(loads).hasValue(1);
+        assertThat(cached.getPassword()).isEqualTo("hash1");
+
+        cache.invalidate("ane");
+        assertThat(cache.get("ane", loader("hash2")).getPassword()).isEqualTo("hash2");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void erasedCredentialsDoNotReachTheCache() {
+        UserDetails first = cache.get("ane", loader("hash1"));
+        ((User) first).eraseCredentials();
+
+        assertThat(cache.get("ane", loader("hash2")).getPassword()).isEqualTo("hash1");
+    }
+
+    @Test
+    void userIsInvalidatedAgainAfterTheCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.invalidate("ane");
+        // A login during the transaction still reads the old version of the user.
+        cache.get("ane", loader("old"));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(cache.get("ane", loader("new")).getPassword()).isEqualTo("new");
+    }
+
+    @Test
+    void invalidateAllDropsEveryUser() {
+        cache.get("ane", loader("hash"));
+        cache.get("jon", loader("hash"));
+
+        cache.invalidateAll();
+
+        assertThat(cache.getSize()).isZero();
+        assertThat(cache.getInvalidations()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredUsersAreLoadedAgain() {
+        UserDetailsCache expiring = new UserDetailsCache(100, 0);
+        expiring.get("ane", loader("hash1"));
+
+        assertThat(expiring.get("ane", loader("hash2")).getPassword()).isEqualTo("hash2");
+        assertThat(expiring.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    void usersWithTheSameRoleShareTheAuthority() {
+        UserDetails ane = cache.get("ane", loader("hash"));
+        UserDetails jon = cache.get("jon", loader("hash"));
+
+        assertThat(ane.getAuthorities().iterator().next()).isSameAs(jon.getAuthorities().iterator().next());
+        assertThat(cache.authority("USER")).isSameAs(ane.getAuthorities().iterator().next());
+    }
+
+    private Supplier<UserDetails> loader(String password) {
+        return () -> {
+            loads.incrementAndGet();
+            return new User("user", password, Collections.singletonList(new SimpleGrantedAuthority("USER")));
+        };
+    }
+}
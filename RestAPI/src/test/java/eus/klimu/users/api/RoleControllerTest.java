@@ -0,0 +1,48 @@
+package eus.klimu.users.api;
+
+import eus.klimu.pagination.KeysetEndpoints;
+import eus.klimu.users.domain.model.Role;
+import eus.klimu.users.domain.service.definition.RoleService;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class RoleControllerTest {
+
+    private final RoleService roleService = mock(RoleService.class);
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new RoleController(
+            roleService, KeysetEndpoints.pagination()
+    )).build();
+
+    RoleControllerTest() {
+        List<Role> rows = LongStream.rangeClosed(1, 5)
+                .mapToObj(id -> new Role(id, "ROLE_" + id)).collect(Collectors.toList());
+        when(roleService.getRolesAfter(anyLong(), anyInt())).thenAnswer(KeysetEndpoints.table(rows, Role::getId));
+    }
+
+    @Test
+    void allReturnsThePageAfterTheCursor() throws Exception {
+        KeysetEndpoints.checkPage(mockMvc, "/role/all");
+    }
+
+    @Test
+    void allWithoutParametersStreamsEveryRow() throws Exception {
+        KeysetEndpoints.checkStream(mockMvc, "/role/all");
+
+        verify(roleService).getRolesAfter(0, 2);
+        verify(roleService).getRolesAfter(4, 2);
+    }
+
+    @Test
+    void allRejectsInvalidParameters() throws Exception {
+        KeysetEndpoints.checkInvalidParameters(mockMvc, "/role/all");
+    }
+}
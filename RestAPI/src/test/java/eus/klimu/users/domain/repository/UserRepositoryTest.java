@@ -0,0 +1,33 @@
+package eus.klimu.users.domain.repository;
+
+import eus.klimu.database.HibernateQueries;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserRepositoryTest {
+
+    @Test
+    void subscribersAreReadWithASingleProjectionQuery() throws NoSuchMethodException {
+        List<String> sql = HibernateQueries.toSql(query("findSubscribers", long.class, long.class));
+
+        assertThat(sql).hasSize(1);
+        String select = sql.get(0);
+        // Only the contact columns and the channel are read, never the whole user.
+        assertThat(select).startsWith("select distinct ")
+                .contains("email", "number", "telegram_id", "username")
+                .doesNotContain("password");
+        assertThat(select).contains(
+                "app_user_notifications", "user_notification", "channel",
+                "user_notification_notifications", "localized_notification"
+        );
+        assertThat(select).containsPattern("location_id=\\?").containsPattern("notification_type_id=\\?");
+    }
+
+    private static String query(String method, Class<?>... parameterTypes) throws NoSuchMethodException {
+        return UserRepository.class.getMethod(method, parameterTypes).getAnnotation(Query.class).value();
+    }
+}
@@ -0,0 +1,58 @@
+package eus.klimu.users.domain.service.implementation;
+
+import eus.klimu.security.RevocationFilter;
+import eus.klimu.users.domain.model.RevokedToken;
+import eus.klimu.users.domain.repository.RevokedTokenRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RevokedTokenServiceImpTest {
+
+    private final RevokedTokenRepository repository = mock(RevokedTokenRepository.class);
+    private final RevocationFilter filter = new RevocationFilter(60, 1000, 0.01);
+    private final RevokedTokenServiceImp service = new RevokedTokenServiceImp(repository, filter);
+    private final Date expiresAt = new Date(System.currentTimeMillis() + 60_000);
+
+    @Test
+    void firstRevocationIsSavedAndAddedToTheFilter() {
+        assertThat(service.revoke("jti", "ane", expiresAt)).isTrue();
+
+        verify(repository).saveAndFlush(any(RevokedToken.class));
+        assertThat(filter.mightContain("jti")).isTrue();
+    }
+
+    @Test
+    void duplicateKeyIsReportedAsAlreadyRevoked() {
+        when(repository.saveAndFlush(any(RevokedToken.class)))
+                .thenThrow(new DataIntegrityViolationException("Duplicate entry 'jti'"));
+
+        assertThat(service.revoke("jti", "ane", expiresAt)).isFalse();
+        assertThat(filter.mightContain("jti")).isTrue();
+    }
+
+    @Test
+    void tokensMissingFromTheFilterNeverReachTheDatabase() {
+        assertThat(service.isRevoked("jti")).isFalse();
+
+        verify(repository, never()).existsByTokenId(anyString());
+    }
+
+    @Test
+    void possibleHitsAreCheckedOnTheDatabase() {
+        service.revoke("jti", "ane", expiresAt);
+        when(repository.existsByTokenId("jti")).thenReturn(true);
+
+        assertThat(service.isRevoked("jti")).isTrue();
+        verify(repository).existsByTokenId("jti");
+    }
+}